@@ -0,0 +1,110 @@
+package com.neocoretechs.robocore.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.neocoretechs.robocore.machine.bridge.CircularBlockingDeque;
+import com.neocoretechs.robocore.machine.bridge.MachineBridge;
+import com.neocoretechs.robocore.machine.bridge.MachineReading;
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer.topicNames;
+/**
+ * The queues between the serial port and the consumers, single threaded: recorded commands through a
+ * {@link CircularBlockingDeque} as the demuxer's outbound requests pass, and the recorded digital and analog pin
+ * readings through a {@link MachineBridge} carrying MachineReading instances, and one backed by a {@link ReadingBuffer}.
+ * Each operation adds a batch of the queue's size and takes it back out.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector", "-Djmh.shutdownTimeout=1" })
+public class BridgeQueueBenchmark {
+	@Param({ "16", "64" })
+	int batch;
+	String[] commands;
+	int[] readingNum;
+	int[] readingVal;
+	int nextCommand = 0;
+	int nextReading = 0;
+	CircularBlockingDeque<String> deque;
+	MachineBridge queued;
+	MachineBridge buffered;
+	ReadingBuffer.ReadingVisitor visitor;
+	long sum = 0;
+
+	@Setup
+	public void setup() throws IOException {
+		RecordedInputs inputs = RecordedInputs.load();
+		AsynchDemuxer demuxer = inputs.demuxer();
+		commands = inputs.commands.toArray(new String[inputs.commands.size()]);
+		ArrayList<String> lines = new ArrayList<String>();
+		for(String line : inputs.readingLines(demuxer, topicNames.DIGITALPIN.val()))
+			lines.add(line);
+		for(String line : inputs.readingLines(demuxer, topicNames.ANALOGPIN.val()))
+			lines.add(line);
+		readingNum = new int[lines.size()];
+		readingVal = new int[lines.size()];
+		for(int i = 0; i < readingNum.length; i++) {
+			readingNum[i] = AsynchDemuxer.getReadingNumber(lines.get(i));
+			readingVal[i] = AsynchDemuxer.getReadingValueInt(lines.get(i));
+		}
+		deque = new CircularBlockingDeque<String>(batch);
+		queued = new MachineBridge(topicNames.ANALOGPIN.val(), batch);
+		buffered = new MachineBridge(topicNames.ANALOGPIN.val(), batch);
+		buffered.initReadingBuffer(batch);
+		visitor = reading -> sum += reading.getReadingValInt();
+	}
+
+	@Benchmark
+	public void circularBlockingDeque(Blackhole bh) throws InterruptedException {
+		for(int i = 0; i < batch; i++) {
+			deque.addLast(commands[nextCommand]);
+			if(++nextCommand == commands.length)
+				nextCommand = 0;
+		}
+		while(!deque.isEmpty())
+			bh.consume(deque.takeFirst());
+	}
+
+	@Benchmark
+	public void machineReadingBridge(Blackhole bh) {
+		for(int i = 0; i < batch; i++) {
+			queued.add(new MachineReading(1, 1, readingNum[nextReading], readingVal[nextReading]));
+			if(++nextReading == readingNum.length)
+				nextReading = 0;
+		}
+		while(!queued.get().isEmpty())
+			bh.consume(queued.waitForNewReading().getReadingValInt());
+	}
+
+	@Benchmark
+	public void readingBufferBridge(Blackhole bh) {
+		ReadingBuffer rb = buffered.getReadings();
+		for(int i = 0; i < batch; i++) {
+			rb.add(1, 1, readingNum[nextReading], readingVal[nextReading]);
+			if(++nextReading == readingNum.length)
+				nextReading = 0;
+		}
+		rb.drain(visitor, batch);
+		bh.consume(sum);
+	}
+}
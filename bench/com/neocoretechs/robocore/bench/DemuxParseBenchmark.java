@@ -0,0 +1,85 @@
+package com.neocoretechs.robocore.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer.topicNames;
+/**
+ * Parsing of recorded Marlinspike response lines: {@link AsynchDemuxer#parseDirective(String)} and
+ * {@link AsynchDemuxer#isLineTerminal(String)} over every line, and the static getReading* helpers over the
+ * reading lines of the digital and analog pin reports. Each operation is one pass over the lines.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector", "-Djmh.shutdownTimeout=1" })
+public class DemuxParseBenchmark {
+	AsynchDemuxer demuxer;
+	String[] lines;
+	String[] readingLines;
+
+	@Setup
+	public void setup() throws IOException {
+		RecordedInputs inputs = RecordedInputs.load();
+		demuxer = inputs.demuxer();
+		lines = inputs.lines();
+		String[] digital = inputs.readingLines(demuxer, topicNames.DIGITALPIN.val());
+		String[] analog = inputs.readingLines(demuxer, topicNames.ANALOGPIN.val());
+		readingLines = new String[digital.length + analog.length];
+		System.arraycopy(digital, 0, readingLines, 0, digital.length);
+		System.arraycopy(analog, 0, readingLines, digital.length, analog.length);
+	}
+
+	@Benchmark
+	public void parseDirective(Blackhole bh) {
+		for(String line : lines)
+			bh.consume(demuxer.parseDirective(line));
+	}
+
+	@Benchmark
+	public void isLineTerminal(Blackhole bh) {
+		for(String line : lines)
+			bh.consume(AsynchDemuxer.isLineTerminal(line));
+	}
+
+	@Benchmark
+	public void getReadingNumber(Blackhole bh) {
+		for(String line : readingLines)
+			bh.consume(AsynchDemuxer.getReadingNumber(line));
+	}
+
+	@Benchmark
+	public void getReadingValueInt(Blackhole bh) {
+		for(String line : readingLines)
+			bh.consume(AsynchDemuxer.getReadingValueInt(line));
+	}
+
+	@Benchmark
+	public void getReadingValueDouble(Blackhole bh) {
+		for(String line : readingLines)
+			bh.consume(AsynchDemuxer.getReadingValueDouble(line));
+	}
+
+	@Benchmark
+	public void getReadingValueString(Blackhole bh) {
+		for(String line : readingLines)
+			bh.consume(AsynchDemuxer.getReadingValueString(line));
+	}
+}
@@ -0,0 +1,105 @@
+package com.neocoretechs.robocore.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.neocoretechs.robocore.PID.BatchedPIDController;
+import com.neocoretechs.robocore.PID.IMUSetpointInfo;
+import com.neocoretechs.robocore.PID.MotionPIDController;
+/**
+ * One PID update of every channel: a {@link MotionPIDController} and {@link IMUSetpointInfo} per channel as
+ * MotionController computes the heading, against a {@link BatchedPIDController} one channel at a time and in vector lanes.
+ * The setpoints and measurements cycle through a fixed random table so each operation sees fresh errors.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector", "-Djmh.shutdownTimeout=1" })
+public class PIDBenchmark {
+	static final int ROWS = 256;
+	@Param({ "2", "8", "64" })
+	int channels;
+	float[][] setpoints;
+	float[][] measurements;
+	int next = 0;
+	MotionPIDController[] motion;
+	IMUSetpointInfo[] imu;
+	BatchedPIDController scalar;
+	BatchedPIDController vector;
+
+	@Setup
+	public void setup() {
+		Random r = new Random(1L);
+		setpoints = new float[ROWS][channels];
+		measurements = new float[ROWS][channels];
+		for(int row = 0; row < ROWS; row++) {
+			for(int i = 0; i < channels; i++) {
+				setpoints[row][i] = r.nextFloat() * 90;
+				measurements[row][i] = r.nextFloat() * 90;
+			}
+		}
+		motion = new MotionPIDController[channels];
+		imu = new IMUSetpointInfo[channels];
+		scalar = new BatchedPIDController(channels);
+		vector = new BatchedPIDController(channels);
+		scalar.setVector(false);
+		vector.setVector(true);
+		for(int i = 0; i < channels; i++) {
+			motion[i] = new MotionPIDController(2f, 0.5f, 0.1f, 1f, 30);
+			imu[i] = new IMUSetpointInfo();
+			imu[i].setMaximum(45);
+			imu[i].setMinimum(-45);
+			scalar.setGains(i, 2f, 0.1f, 0.5f);
+			scalar.setIntegralLimits(i, -45, 45);
+			vector.setGains(i, 2f, 0.1f, 0.5f);
+			vector.setIntegralLimits(i, -45, 45);
+		}
+	}
+
+	private int row() {
+		int row = next;
+		if(++next == ROWS)
+			next = 0;
+		return row;
+	}
+
+	@Benchmark
+	public void motionPIDControllers(Blackhole bh) {
+		int row = row();
+		for(int i = 0; i < channels; i++) {
+			imu[i].setDesiredTarget(setpoints[row][i]);
+			imu[i].setTarget(measurements[row][i]);
+			motion[i].Compute(imu[i]);
+			bh.consume(motion[i].getOutput());
+		}
+	}
+
+	@Benchmark
+	public float[] batchedScalar() {
+		int row = row();
+		return scalar.compute(setpoints[row], measurements[row], 1f);
+	}
+
+	@Benchmark
+	public float[] batchedVector() {
+		int row = row();
+		return vector.compute(setpoints[row], measurements[row], 1f);
+	}
+}
@@ -0,0 +1,92 @@
+package com.neocoretechs.robocore.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+import com.neocoretechs.robocore.serialreader.RecordingDataPort;
+import com.neocoretechs.robocore.serialreader.ReplayDataPort;
+/**
+ * Inputs for the benchmarks, taken from a session recorded by {@link RecordingDataPort}.<p>
+ * The recording named by the system property robocore.recording is used if given, so the benchmarks can run
+ * over traffic captured from a real Marlinspike. Otherwise a session of the commands the
+ * {@link MarlinspikeDataPort} emulator answers without hardware is recorded to a temporary file.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+final class RecordedInputs {
+	static final String RECORDING = "robocore.recording";
+	static final String[] SESSION = { "G4 P5", "G99 T4000", "G100", "M1", "M44 P12", "M110 N0",
+			"M115", "M700", "M802 P0 S10 M100", "M705" };
+	static final int ROUNDS = 50;
+	final ArrayList<String> commands;
+	final ArrayList<ArrayList<String>> responses = new ArrayList<ArrayList<String>>();
+	private final String fileName;
+
+	private RecordedInputs(String fileName) throws IOException {
+		this.fileName = fileName;
+		ReplayDataPort replay = new ReplayDataPort(fileName, false);
+		replay.connect(false);
+		commands = replay.getCommands();
+		for(String command : commands)
+			responses.add(replay.sendCommand(command));
+		replay.close();
+	}
+	/**
+	 * @return the inputs from the given recording, or from a new recording of the emulator
+	 * @throws IOException
+	 */
+	static RecordedInputs load() throws IOException {
+		String fileName = System.getProperty(RECORDING);
+		if(fileName == null || fileName.length() == 0) {
+			File file = File.createTempFile("marlinspike", ".rec");
+			file.deleteOnExit();
+			fileName = file.getPath();
+			RecordingDataPort recorder = new RecordingDataPort(new MarlinspikeDataPort(), fileName);
+			recorder.connect(true);
+			for(int r = 0; r < ROUNDS; r++)
+				for(String command : SESSION)
+					recorder.sendCommand(command);
+			recorder.close();
+		}
+		return new RecordedInputs(fileName);
+	}
+	/**
+	 * @return a demuxer with its topics registered, answering from the recording
+	 * @throws IOException
+	 */
+	AsynchDemuxer demuxer() throws IOException {
+		ReplayDataPort replay = new ReplayDataPort(fileName, false);
+		replay.setLoop(true);
+		AsynchDemuxer demuxer = new AsynchDemuxer(null);
+		demuxer.connect(replay);
+		return demuxer;
+	}
+	/**
+	 * @return every line of every response, in order
+	 */
+	String[] lines() {
+		ArrayList<String> lines = new ArrayList<String>();
+		for(ArrayList<String> response : responses)
+			lines.addAll(response);
+		return lines.toArray(new String[lines.size()]);
+	}
+	/**
+	 * @param demuxer resolves the directive of each line
+	 * @param topic the topic name
+	 * @return the reading lines of the responses to the topic, those without a directive of their own
+	 */
+	String[] readingLines(AsynchDemuxer demuxer, String topic) {
+		ArrayList<String> lines = new ArrayList<String>();
+		for(ArrayList<String> response : responses) {
+			if(response.isEmpty() || !topic.equals(demuxer.parseDirective(response.get(0))))
+				continue;
+			for(String line : response)
+				if(line != null && line.length() > 0 && !topic.equals(demuxer.parseDirective(line)))
+					lines.add(line);
+		}
+		return lines.toArray(new String[lines.size()]);
+	}
+}
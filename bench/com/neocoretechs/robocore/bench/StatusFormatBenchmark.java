@@ -0,0 +1,90 @@
+package com.neocoretechs.robocore.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
+import com.neocoretechs.robocore.marlinspike.AbstractBasicDataLoader;
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer.topicNames;
+import com.neocoretechs.robocore.marlinspike.mcodes.status.M115;
+import com.neocoretechs.robocore.marlinspike.mcodes.status.analogpin;
+import com.neocoretechs.robocore.marlinspike.mcodes.status.digitalpin;
+import com.neocoretechs.robocore.marlinspike.mcodes.status.status;
+/**
+ * The status topic handlers turning recorded reading lines into readings, through
+ * {@link AbstractBasicDataLoader#formatMachineReading(String)} as for a queued MachineBridge and through
+ * {@link AbstractBasicDataLoader#loadReading(ReadingBuffer, String)} as for a ReadingBuffer.
+ * Each operation is one pass over the reading lines of the topic's responses.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector", "-Djmh.shutdownTimeout=1" })
+public class StatusFormatBenchmark {
+	@Param({ "digitalpin", "analogpin", "status", "M115" })
+	String topic;
+	AbstractBasicDataLoader loader;
+	String[] lines;
+	ReadingBuffer readings;
+
+	@Setup
+	public void setup() throws IOException {
+		RecordedInputs inputs = RecordedInputs.load();
+		AsynchDemuxer demuxer = inputs.demuxer();
+		switch(topic) {
+			case "digitalpin":
+				loader = new digitalpin(demuxer);
+				lines = inputs.readingLines(demuxer, topicNames.DIGITALPIN.val());
+				break;
+			case "analogpin":
+				loader = new analogpin(demuxer);
+				lines = inputs.readingLines(demuxer, topicNames.ANALOGPIN.val());
+				break;
+			case "status":
+				loader = new status(demuxer);
+				lines = inputs.readingLines(demuxer, topicNames.STATUS.val());
+				break;
+			case "M115":
+				loader = new M115(demuxer);
+				lines = inputs.readingLines(demuxer, topicNames.M115.val());
+				break;
+			default:
+				throw new IllegalArgumentException("No status handler for topic "+topic);
+		}
+		if(lines.length == 0)
+			throw new IllegalStateException("Recording has no reading lines for topic "+topic);
+		readings = new ReadingBuffer(lines.length);
+	}
+
+	@Benchmark
+	public void formatMachineReading(Blackhole bh) {
+		for(String line : lines)
+			bh.consume(loader.formatMachineReading(line));
+	}
+
+	@Benchmark
+	public void loadReading(Blackhole bh) {
+		for(String line : lines)
+			loader.loadReading(readings, line);
+		bh.consume(readings.length());
+		readings.clear();
+	}
+}
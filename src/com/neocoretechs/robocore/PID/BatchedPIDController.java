@@ -0,0 +1,261 @@
+package com.neocoretechs.robocore.PID;
+
+import java.io.Serializable;
+
+import com.neocoretechs.robocore.config.TypedWrapper;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+/**
+ * PID computation for many channels at once, such as every motor channel of every LUN and the heading of a diff drive.
+ * Gains, limits, integrators and previous errors are held in primitive arrays indexed by channel, and one call to
+ * {@link #compute(float[], float[], float)} or {@link #computeError(float[], float)} updates them all in one pass,
+ * with jdk.incubator.vector lanes when enabled, rather than one {@link AbstractPIDController} at a time through a
+ * {@link SetpointInfoInterface}.<p>
+ * For each channel with error e over the interval dt:<br>
+ * P = Kp * e<br>
+ * I = I + Ki * e * dt, clamped to the integral limits<br>
+ * D = Kd * (e - previous e) / dt<br>
+ * output = P + I + D, clamped to the output limits.<p>
+ * The integral accumulates the scaled error, unlike the ITerm = Ki * ITerm of {@link MotionPIDController}, and
+ * anti windup is by conditional integration as well as the clamp: when the output is saturated and the error would
+ * drive it further into saturation, the integral holds its previous value.
+ * The vector and scalar passes perform the same float operations in the same order, so give the same results.<p>
+ * Not thread safe, compute from one control thread and set gains between computations.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class BatchedPIDController implements Serializable {
+	private static final long serialVersionUID = 1L;
+	public static boolean DEBUG = false;
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+	private final int channels;
+	final float[] kp, ki, kd;
+	final float[] integralMin, integralMax;
+	final float[] outputMin, outputMax;
+	final float[] integral, prevError, error, output;
+	private boolean vector = Boolean.parseBoolean(System.getProperty("robocore.pid.vector", "true"));
+	/**
+	 * Construct with zero gains and no limits on each channel.
+	 * @param channels the number of channels
+	 */
+	public BatchedPIDController(int channels) {
+		if(channels <= 0)
+			throw new IllegalArgumentException("Batched PID needs at least 1 channel:"+channels);
+		this.channels = channels;
+		kp = new float[channels];
+		ki = new float[channels];
+		kd = new float[channels];
+		integralMin = new float[channels];
+		integralMax = new float[channels];
+		outputMin = new float[channels];
+		outputMax = new float[channels];
+		integral = new float[channels];
+		prevError = new float[channels];
+		error = new float[channels];
+		output = new float[channels];
+		for(int i = 0; i < channels; i++) {
+			integralMin[i] = outputMin[i] = Float.NEGATIVE_INFINITY;
+			integralMax[i] = outputMax[i] = Float.POSITIVE_INFINITY;
+		}
+	}
+	/**
+	 * Construct with a channel per LUN, with the MotorKp, MotorKi and MotorKd of the PID entry of the same number and
+	 * the output and integral limited to the MinValue and MaxValue of the LUN, where present, as
+	 * {@link com.neocoretechs.robocore.config.Robot} reads them.
+	 * @param LUN the LUN configurations
+	 * @param PID the PID configurations, indexed by LUN
+	 * @return the controller
+	 */
+	public static BatchedPIDController fromConfig(TypedWrapper[] LUN, TypedWrapper[] PID) {
+		BatchedPIDController pid = new BatchedPIDController(LUN.length);
+		for(int lun = 0; lun < LUN.length; lun++) {
+			if(lun < PID.length && PID[lun] != null)
+				pid.setGains(lun, toFloat(PID[lun].get("MotorKp"), 0), toFloat(PID[lun].get("MotorKi"), 0), toFloat(PID[lun].get("MotorKd"), 0));
+			if(LUN[lun] != null) {
+				float min = toFloat(LUN[lun].get("MinValue"), Float.NEGATIVE_INFINITY);
+				float max = toFloat(LUN[lun].get("MaxValue"), Float.POSITIVE_INFINITY);
+				pid.setOutputLimits(lun, min, max);
+				pid.setIntegralLimits(lun, min, max);
+			}
+			if(DEBUG)
+				System.out.println("BatchedPIDController LUN "+lun+" "+pid.toString(lun));
+		}
+		return pid;
+	}
+
+	private static float toFloat(Object o, float dflt) {
+		return o instanceof String ? Float.parseFloat((String)o) : dflt;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public void setGains(int channel, float kp, float ki, float kd) {
+		this.kp[channel] = kp;
+		this.ki[channel] = ki;
+		this.kd[channel] = kd;
+	}
+	/**
+	 * @param channel the channel
+	 * @param min lowest value the integral may reach
+	 * @param max highest value the integral may reach
+	 */
+	public void setIntegralLimits(int channel, float min, float max) {
+		if(min > max)
+			throw new IllegalArgumentException("Integral minimum "+min+" above maximum "+max);
+		integralMin[channel] = min;
+		integralMax[channel] = max;
+		integral[channel] = Math.max(min, Math.min(max, integral[channel]));
+	}
+	/**
+	 * @param channel the channel
+	 * @param min lowest output
+	 * @param max highest output
+	 */
+	public void setOutputLimits(int channel, float min, float max) {
+		if(min > max)
+			throw new IllegalArgumentException("Output minimum "+min+" above maximum "+max);
+		outputMin[channel] = min;
+		outputMax[channel] = max;
+	}
+	/**
+	 * @param vector true to compute in jdk.incubator.vector lanes, false one channel at a time.
+	 * Defaults to the system property robocore.pid.vector, or true.
+	 */
+	public void setVector(boolean vector) {
+		this.vector = vector;
+	}
+
+	public boolean isVector() {
+		return vector;
+	}
+	/**
+	 * Clear the integral, previous error and output of a channel, as when it changes setpoint mode.
+	 * @param channel the channel
+	 */
+	public void clear(int channel) {
+		integral[channel] = Math.max(integralMin[channel], Math.min(integralMax[channel], 0f));
+		prevError[channel] = 0f;
+		error[channel] = 0f;
+		output[channel] = 0f;
+	}
+
+	public void clear() {
+		for(int i = 0; i < channels; i++)
+			clear(i);
+	}
+	/**
+	 * Compute every channel from its setpoint and measured value.
+	 * @param setpoint the desired value per channel
+	 * @param measured the present value per channel
+	 * @param dt the interval since the last computation, in the time unit of the gains
+	 * @return the output per channel, the array is owned by this controller and overwritten by the next computation
+	 */
+	public float[] compute(float[] setpoint, float[] measured, float dt) {
+		int i = 0;
+		if(vector) {
+			for(int bound = SPECIES.loopBound(channels); i < bound; i += SPECIES.length())
+				FloatVector.fromArray(SPECIES, setpoint, i).sub(FloatVector.fromArray(SPECIES, measured, i)).intoArray(error, i);
+		}
+		for(; i < channels; i++)
+			error[i] = setpoint[i] - measured[i];
+		return update(dt);
+	}
+	/**
+	 * Compute every channel from an error already formed, such as a heading difference reduced to -180 to 180 degrees.
+	 * @param err the error per channel, setpoint - measured
+	 * @param dt the interval since the last computation, in the time unit of the gains
+	 * @return the output per channel, the array is owned by this controller and overwritten by the next computation
+	 */
+	public float[] computeError(float[] err, float dt) {
+		System.arraycopy(err, 0, error, 0, channels);
+		return update(dt);
+	}
+
+	private float[] update(float dt) {
+		if(!(dt > 0f))
+			throw new IllegalArgumentException("PID interval must be positive:"+dt);
+		int i = 0;
+		if(vector)
+			i = updateVector(dt);
+		for(; i < channels; i++) {
+			float e = error[i];
+			float p = kp[i] * e;
+			float d = kd[i] * (e - prevError[i]) / dt;
+			float in = Math.max(integralMin[i], Math.min(integralMax[i], integral[i] + ki[i] * e * dt));
+			float u = p + in + d;
+			if((u > outputMax[i] && e > 0f) || (u < outputMin[i] && e < 0f)) {
+				// saturated and integrating further into it, hold the integral
+				in = integral[i];
+				u = p + in + d;
+			}
+			integral[i] = in;
+			output[i] = Math.max(outputMin[i], Math.min(outputMax[i], u));
+			prevError[i] = e;
+		}
+		return output;
+	}
+	/**
+	 * The lanes of {@link #update(float)} up to the last whole vector.
+	 * @return the first channel left for the scalar pass
+	 */
+	private int updateVector(float dt) {
+		int bound = SPECIES.loopBound(channels);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()) {
+			FloatVector e = FloatVector.fromArray(SPECIES, error, i);
+			FloatVector p = FloatVector.fromArray(SPECIES, kp, i).mul(e);
+			FloatVector d = FloatVector.fromArray(SPECIES, kd, i).mul(e.sub(FloatVector.fromArray(SPECIES, prevError, i))).div(dt);
+			FloatVector last = FloatVector.fromArray(SPECIES, integral, i);
+			FloatVector in = last.add(FloatVector.fromArray(SPECIES, ki, i).mul(e).mul(dt))
+					.min(FloatVector.fromArray(SPECIES, integralMax, i))
+					.max(FloatVector.fromArray(SPECIES, integralMin, i));
+			FloatVector omax = FloatVector.fromArray(SPECIES, outputMax, i);
+			FloatVector omin = FloatVector.fromArray(SPECIES, outputMin, i);
+			FloatVector u = p.add(in).add(d);
+			VectorMask<Float> hold = u.compare(VectorOperators.GT, omax).and(e.compare(VectorOperators.GT, 0f))
+					.or(u.compare(VectorOperators.LT, omin).and(e.compare(VectorOperators.LT, 0f)));
+			in = in.blend(last, hold);
+			u = p.add(in).add(d);
+			in.intoArray(integral, i);
+			u.min(omax).max(omin).intoArray(output, i);
+			e.intoArray(prevError, i);
+		}
+		return i;
+	}
+
+	public float[] getOutput() {
+		return output;
+	}
+
+	public float getOutput(int channel) {
+		return output[channel];
+	}
+
+	public float getError(int channel) {
+		return error[channel];
+	}
+
+	public float getIntegral(int channel) {
+		return integral[channel];
+	}
+
+	public float getPrevError(int channel) {
+		return prevError[channel];
+	}
+
+	public String toString(int channel) {
+		return String.format("Kp=%f,Ki=%f,Kd=%f,Integral=[%f,%f],Output=[%f,%f] Error=%f,Integral=%f,Output=%f",
+				kp[channel], ki[channel], kd[channel], integralMin[channel], integralMax[channel], outputMin[channel], outputMax[channel],
+				error[channel], integral[channel], output[channel]);
+	}
+
+	@Override
+	public String toString() {
+		return "BatchedPIDController channels="+channels+" vector="+vector+(vector ? " lanes="+SPECIES.length() : "");
+	}
+}
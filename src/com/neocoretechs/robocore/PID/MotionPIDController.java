@@ -58,24 +58,14 @@ public class MotionPIDController extends AbstractPIDController implements Serial
 	      PTerm = (Kp * error) ;//+ ITerm - kd * dInput;
 	      // derivative
 	      DTerm = Kd * (error - ppi.getPrevErr());
-	      // integral
-	      ITerm += error; // integrate the error
-	      ITerm = (Ki * ITerm); // then scale it, this limits windup
-	      //ITerm += (ki * error);
-	      // clamp the I term to prevent reset windup
-	      if( ITerm > 0 ) {
-	    	  if(ITerm > ppi.getMaximum()) 
-	    		  ITerm = ppi.getMaximum();
-	    	  else 
-	    		  if(ITerm < ppi.getMinimum()) 
-	    			  ITerm = ppi.getMinimum();
-	      } else {
-	    	  if(-ITerm > ppi.getMaximum() )
+	      // integral, accumulate the scaled error rather than rescaling the whole integral each time
+	      ITerm += (Ki * error);
+	      // clamp the I term to the maximum either way to prevent reset windup
+	      if(ITerm > ppi.getMaximum())
+	    	  ITerm = ppi.getMaximum();
+	      else
+	    	  if(ITerm < -ppi.getMaximum())
 	    		  ITerm = -ppi.getMaximum();
-	    	  else
-	    		  if(-ITerm < ppi.getMinimum())
-	    			  ITerm = -ppi.getMinimum();
-	      }
 	      //lastInput = Input;
 	      //lastTime = now;
 	      //error is positive if current_heading > bearing (compass direction)
@@ -21,7 +21,7 @@ import java.util.concurrent.TimeUnit;
  * The rationale behind the List interface is to make it presentable to UI components in the future.<p/>
  * @author Jonathan Groff (C) NeoCoreTechs 2020,2021
  */
-public class CircularBlockingDeque<T> implements BlockingQueue<T>, Iterable<T>, List<T> {
+public class CircularBlockingDeque<T> implements BlockingQueue<T>, Iterable<T>, List<T>, CircularQueue<T> {
 
   private final T[] deque;
   private final Object mutex;
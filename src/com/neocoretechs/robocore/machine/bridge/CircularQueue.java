@@ -0,0 +1,40 @@
+package com.neocoretechs.robocore.machine.bridge;
+
+/**
+ * The operations shared by the circular queues that carry readings between the thread placing the data and the
+ * thread retrieving it, so that a {@link MachineBridge} may be backed by either the monitor guarded
+ * {@link CircularBlockingDeque} or the lock free {@link LockFreeRing}. Adding to a full queue overwrites the oldest
+ * entry, taking from an empty one blocks.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ * @param <T> the element type
+ */
+public interface CircularQueue<T> extends Iterable<T> {
+	/**
+	 * Add the entry to the tail of the queue, overwriting the oldest entry if the queue is full.
+	 * @param entry the entry to add
+	 */
+	public void addLast(T entry);
+	/**
+	 * Retrieve and remove the head of the queue, blocking until an entry is available.
+	 * @return the head of the queue
+	 * @throws InterruptedException
+	 */
+	public T takeFirst() throws InterruptedException;
+	/**
+	 * @return the head of the queue without removing it, or null if the queue is empty
+	 */
+	public T peekFirst();
+	/**
+	 * @return true if there are no entries in the queue
+	 */
+	public boolean isEmpty();
+	/**
+	 * @return the number of entries currently in the queue
+	 */
+	public int length();
+	/**
+	 * Discard all the entries.
+	 */
+	public void clear();
+}
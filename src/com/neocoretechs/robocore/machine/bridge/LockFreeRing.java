@@ -0,0 +1,292 @@
+package com.neocoretechs.robocore.machine.bridge;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock free ring with the semantics of {@link CircularBlockingDeque} on the paths that matter between a
+ * producer and a consumer: {@link #addLast(Object)} never blocks and overwrites the oldest entry when the ring is full,
+ * {@link #takeFirst()} blocks until an entry is available.<p/>
+ * There is one consumer, the thread calling {@link #takeFirst()}, {@link #poll()}, {@link #peekFirst()} and {@link #clear()}.
+ * There may be one producer, or many if so constructed, in which case each add claims its sequence number with one atomic
+ * increment instead of the plain store of the single producer. Neither takes a lock or a monitor, so a virtual thread
+ * never pins its carrier here.<p/>
+ * Each slot carries the sequence number of the entry last written to it. The producer marks the slot as being written,
+ * stores the entry, then stamps the sequence. Producers a whole ring apart claim the same slot, so with many producers
+ * each waits for the slot to carry the sequence one ring before its own, claiming it from that stamp, and a slot's stamp
+ * only moves forward: an older writer finishing last cannot stamp its sequence over the newer entry.
+ * The consumer reads the stamp, the entry, and the stamp again, and accepts the entry only if both stamps are the one
+ * expected, so an entry overwritten while it was being read is detected and skipped.
+ * A consumer that has fallen a whole ring behind jumps to the oldest entry still present and counts the ones it lost,
+ * see {@link #getOverwritten()}. With many producers lapping the consumer an entry may be lost to a later one before it
+ * becomes the oldest, which is the nature of an overwriting queue anyway.<p/>
+ * The tail and head sequences live in one array, spaced apart so that the producers and the consumer do not share
+ * a cache line. How the consumer waits for an empty ring is chosen at construction, see {@link WaitStrategy}.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ * @param <T> the element type, null entries are not permitted
+ */
+public class LockFreeRing<T> implements CircularQueue<T> {
+	/**
+	 * How the consumer waits on an empty ring.
+	 */
+	public enum WaitStrategy {
+		/** Busy spin, lowest latency, burns a core, only for a consumer with a core of its own */
+		SPIN,
+		/** Yield between checks, low latency with other threads still scheduled */
+		YIELD,
+		/** Park until a producer unparks it, no cost when idle, the choice for virtual threads */
+		PARK
+	}
+	private static final int PAD = 16; // longs between counters, 128 bytes
+	private static final int TAIL = PAD;
+	private static final int HEAD = PAD * 2;
+	private static final long WRITING = Long.MIN_VALUE;
+	private static final int SPINS = 64; // spins waiting on a writer a ring ahead before yielding
+	private final int capacity;
+	private final boolean multiProducer;
+	private final WaitStrategy waitStrategy;
+	private final AtomicReferenceArray<T> elements;
+	private final AtomicLongArray stamps;
+	private final AtomicLongArray counters = new AtomicLongArray(PAD * 3);
+	private volatile Thread waiter = null;
+	private long overwritten = 0L;
+
+	/**
+	 * @param capacity the maximum number of entries, beyond which the oldest are overwritten
+	 * @param multiProducer true if more than one thread may add
+	 * @param waitStrategy how {@link #takeFirst()} waits on an empty ring
+	 */
+	public LockFreeRing(int capacity, boolean multiProducer, WaitStrategy waitStrategy) {
+		if(capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive:"+capacity);
+		this.capacity = capacity;
+		this.multiProducer = multiProducer;
+		this.waitStrategy = waitStrategy;
+		elements = new AtomicReferenceArray<T>(capacity);
+		stamps = new AtomicLongArray(capacity);
+		for(int i = 0; i < capacity; i++)
+			stamps.set(i, i - capacity); // the sequence a ring before the first in each slot
+	}
+	/**
+	 * A ring for many producers whose consumer parks.
+	 * @param capacity the maximum number of entries
+	 */
+	public LockFreeRing(int capacity) {
+		this(capacity, true, WaitStrategy.PARK);
+	}
+
+	private int index(long sequence) {
+		return (int)(sequence % capacity);
+	}
+	/**
+	 * Add the entry to the tail, overwriting the oldest if the ring is full. Never blocks, though with many producers
+	 * one may spin briefly while the producer a ring ahead of it finishes writing the same slot.
+	 * @param entry the entry, not null
+	 */
+	@Override
+	public void addLast(T entry) {
+		if(entry == null)
+			throw new NullPointerException();
+		long sequence;
+		if(multiProducer) {
+			sequence = counters.getAndIncrement(TAIL);
+		} else {
+			sequence = counters.get(TAIL);
+			counters.lazySet(TAIL, sequence + 1);
+		}
+		int i = index(sequence);
+		if(multiProducer) {
+			long previous = sequence - capacity;
+			for(int spins = 0; !stamps.compareAndSet(i, previous, WRITING); spins++) {
+				if(spins < SPINS)
+					Thread.onSpinWait();
+				else
+					Thread.yield();
+			}
+		} else {
+			stamps.set(i, WRITING);
+		}
+		elements.set(i, entry);
+		stamps.set(i, sequence);
+		Thread w = waiter;
+		if(w != null)
+			LockSupport.unpark(w);
+	}
+	/**
+	 * Find the head entry, skipping any that have been overwritten. Consumer only.
+	 * @param remove true to advance past the entry found
+	 * @return the entry or null if there is none ready
+	 */
+	private T head(boolean remove) {
+		while(true) {
+			long head = counters.get(HEAD);
+			long tail = counters.get(TAIL);
+			if(tail - head > capacity) { // lapped, the oldest present is a ring behind the tail
+				overwritten += (tail - capacity) - head;
+				counters.lazySet(HEAD, tail - capacity);
+				continue;
+			}
+			if(head >= tail)
+				return null;
+			int i = index(head);
+			long stamp = stamps.get(i);
+			if(stamp == head) {
+				T entry = elements.get(i);
+				if(stamps.get(i) == head) {
+					if(remove)
+						counters.lazySet(HEAD, head + 1);
+					return entry;
+				}
+				continue; // overwritten as we read it
+			}
+			if(stamp > head || counters.get(TAIL) - head > capacity)
+				continue; // overwritten, or being overwritten, since the tail was read
+			return null; // claimed but not yet written
+		}
+	}
+	/**
+	 * Retrieve and remove the head entry if there is one. Consumer only.
+	 * @return the head entry or null if the ring is empty
+	 */
+	public T poll() {
+		return head(true);
+	}
+	/**
+	 * Retrieve and remove the head entry, waiting as the {@link WaitStrategy} dictates until there is one. Consumer only.
+	 */
+	@Override
+	public T takeFirst() throws InterruptedException {
+		return poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+	/**
+	 * Retrieve and remove the head entry, waiting up to the timeout for one. Consumer only.
+	 * @param timeout the time to wait
+	 * @param unit the unit of the timeout
+	 * @return the head entry or null if the timeout elapsed first
+	 * @throws InterruptedException
+	 */
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+		T entry = head(true);
+		if(entry != null)
+			return entry;
+		long wait = unit.toNanos(timeout);
+		long deadline = System.nanoTime() + wait;
+		while(true) {
+			if(Thread.interrupted())
+				throw new InterruptedException();
+			long remaining = (wait == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime());
+			if(remaining <= 0)
+				return null;
+			switch(waitStrategy) {
+				case SPIN:
+					Thread.onSpinWait();
+					break;
+				case YIELD:
+					Thread.yield();
+					break;
+				case PARK:
+					waiter = Thread.currentThread();
+					// an add that missed the waiter was stamped before we look again
+					entry = head(true);
+					if(entry == null) {
+						if(remaining == Long.MAX_VALUE)
+							LockSupport.park(this);
+						else
+							LockSupport.parkNanos(this, remaining);
+						entry = head(true);
+					}
+					waiter = null;
+					if(entry != null)
+						return entry;
+					continue;
+			}
+			entry = head(true);
+			if(entry != null)
+				return entry;
+		}
+	}
+	/**
+	 * @return the head entry without removing it, or null if the ring is empty. Consumer only.
+	 */
+	@Override
+	public T peekFirst() {
+		return head(false);
+	}
+	/**
+	 * Discard all entries added so far. Consumer only.
+	 */
+	@Override
+	public void clear() {
+		counters.lazySet(HEAD, counters.get(TAIL));
+	}
+	/**
+	 * @return the number of entries waiting, approximate while producers are adding
+	 */
+	@Override
+	public int length() {
+		long n = counters.get(TAIL) - counters.get(HEAD);
+		return (int)(n < 0 ? 0 : (n > capacity ? capacity : n));
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return length() == 0;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+	/**
+	 * @return the number of entries overwritten before the consumer reached them
+	 */
+	public long getOverwritten() {
+		return overwritten;
+	}
+	/**
+	 * A weakly consistent iterator over the entries waiting from head to tail, skipping any that are overwritten
+	 * or not yet written as it passes. The ring is not changed.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			long tail = counters.get(TAIL);
+			long next = Math.max(counters.get(HEAD), tail - capacity);
+			T entry = advance();
+			private T advance() {
+				while(next < tail) {
+					int i = index(next);
+					long sequence = next++;
+					if(stamps.get(i) == sequence) {
+						T e = elements.get(i);
+						if(stamps.get(i) == sequence)
+							return e;
+					}
+				}
+				return null;
+			}
+			@Override
+			public boolean hasNext() {
+				return entry != null;
+			}
+			@Override
+			public T next() {
+				if(entry == null)
+					throw new NoSuchElementException();
+				T e = entry;
+				entry = advance();
+				return e;
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "LockFreeRing capacity="+capacity+" length="+length()+" overwritten="+overwritten+
+				(multiProducer ? " multi producer " : " single producer ")+waitStrategy;
+	}
+}
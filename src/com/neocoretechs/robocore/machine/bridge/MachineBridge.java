@@ -32,7 +32,8 @@ import java.util.Iterator;
 		//@XmlJavaTypeAdapter(RawDataXmlAdapter.class)
 		//@XmlElementWrapper()
 		//@XmlAnyElement(lax=true)
-    	CircularBlockingDeque<MachineReading> machineReadings = null;
+    	CircularQueue<MachineReading> machineReadings = null;
+    	ReadingBuffer readings = null;
    
 		private String group;
  
@@ -41,11 +42,31 @@ import java.util.Iterator;
          	this.group = group; 
         	this.machineReadings = new CircularBlockingDeque<MachineReading>(queueSize);
         }
+        /**
+         * @param group the topic
+         * @param queueSize the number of readings retained
+         * @param lockFree true to carry the readings in a {@link LockFreeRing} whose consumer parks rather than
+         * a {@link CircularBlockingDeque}. The readings then have one consumer, the thread waiting for them.
+         */
+        public MachineBridge(String group, int queueSize, boolean lockFree) {
+        	this.group = group;
+        	if(lockFree)
+        		this.machineReadings = new LockFreeRing<MachineReading>(queueSize);
+        	else
+        		this.machineReadings = new CircularBlockingDeque<MachineReading>(queueSize);
+        }
         
-        public CircularBlockingDeque<MachineReading> get() { return machineReadings; }
+        public CircularQueue<MachineReading> get() { return machineReadings; }
 	
+		/**
+		 * Add the reading to the queue, or copy its fields to the {@link ReadingBuffer} if there is one.
+		 * @param entry
+		 */
 		public void add(MachineReading entry) {
-			machineReadings.addLast(entry);
+			if(readings != null)
+				readings.add(entry);
+			else
+				machineReadings.addLast(entry);
 		}
 		/**
 		 * Initialize the blocking queue to receive data for the associated topic.
@@ -55,8 +76,24 @@ import java.util.Iterator;
 		 * @param queuesize
 		 */
 		public void init(int queuesize) {
-			machineReadings = new CircularBlockingDeque<MachineReading>(queuesize);		
+			if(machineReadings instanceof LockFreeRing)
+				machineReadings = new LockFreeRing<MachineReading>(queuesize);
+			else
+				machineReadings = new CircularBlockingDeque<MachineReading>(queuesize);		
+		}
+		
+		/**
+		 * Hold the readings of this bridge in a preallocated {@link ReadingBuffer} rather than a queue of
+		 * MachineReading instances. Producers then add through {@link #getReadings()} and consumers drain it.
+		 * @param queuesize the number of readings retained
+		 */
+		public void initReadingBuffer(int queuesize) {
+			readings = new ReadingBuffer(queuesize);
 		}
+		/**
+		 * @return the ReadingBuffer of this bridge, or null if it carries MachineReading instances
+		 */
+		public ReadingBuffer getReadings() { return readings; }
 		
 		public String getGroup() { return group; }
 		/**
@@ -106,15 +143,22 @@ import java.util.Iterator;
 		
 		@Override
 		public String toString() {
-			StringBuilder sb = new StringBuilder();
-			synchronized(machineReadings.getMutex()) {
-				Iterator<MachineReading> it = machineReadings.iterator();
-				while(it.hasNext()) {
-					sb.append(it.next());
-					sb.append("\r\n");
+			if(machineReadings instanceof CircularBlockingDeque) {
+				synchronized(((CircularBlockingDeque<MachineReading>)machineReadings).getMutex()) {
+					return readings();
 				}
-			return sb.toString();
 			}
+			return readings(); // the ring iterates without a lock
+		}
+		
+		private String readings() {
+			StringBuilder sb = new StringBuilder();
+			Iterator<MachineReading> it = machineReadings.iterator();
+			while(it.hasNext()) {
+				sb.append(it.next());
+				sb.append("\r\n");
+			}
+			return sb.toString();
 		}
 
     }
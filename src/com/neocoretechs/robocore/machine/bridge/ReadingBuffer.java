@@ -0,0 +1,271 @@
+package com.neocoretechs.robocore.machine.bridge;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The readings of a {@link MachineBridge} held in preallocated parallel arrays rather than as a
+ * {@link MachineReading} instance per response line. Each slot has the group, sequence, reading number and
+ * the int and double values of a reading in primitive arrays, and the String value in a side table allocated
+ * the first time a text reading is added, so numeric topics such as ultrasonic and encoder readings never have it.<p>
+ * As with {@link CircularBlockingDeque}, adding to a full buffer overwrites the oldest reading. The readings are
+ * drained in a batch through a {@link ReadingVisitor} presented with a reusable {@link Cursor} on each reading in turn,
+ * so neither adding nor draining creates an object.<p>
+ * Waiting is on a lock rather than a monitor so that a virtual thread does not pin its carrier.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public final class ReadingBuffer {
+	/**
+	 * Presented with each reading of a batch, see {@link ReadingBuffer#drain(ReadingVisitor, int)}.
+	 */
+	public interface ReadingVisitor {
+		/**
+		 * @param reading the current reading, valid only for the duration of the call
+		 */
+		public void visit(Cursor reading);
+	}
+	private final int capacity;
+	private final int[] rawGroup;
+	private final int[] rawSeq;
+	private final int[] rawReadingNum;
+	private final int[] readingValInt;
+	private final double[] readingValDouble;
+	private String[] readingValString = null; // text topics only
+	private int start = 0;
+	private int length = 0;
+	private long overwritten = 0L;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	private final Cursor cursor = new Cursor();
+
+	/**
+	 * @param capacity the number of readings retained, beyond which the oldest are overwritten
+	 */
+	public ReadingBuffer(int capacity) {
+		if(capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive:"+capacity);
+		this.capacity = capacity;
+		rawGroup = new int[capacity];
+		rawSeq = new int[capacity];
+		rawReadingNum = new int[capacity];
+		readingValInt = new int[capacity];
+		readingValDouble = new double[capacity];
+	}
+	/**
+	 * Claim the next slot, overwriting the oldest if full, and fill the fields common to all readings.
+	 * Called with the lock held.
+	 * @return the slot
+	 */
+	private int next(int group, int seq, int readingNum) {
+		int slot = (start + length) % capacity;
+		if(length == capacity) {
+			start = (start + 1) % capacity;
+			++overwritten;
+		} else {
+			++length;
+		}
+		rawGroup[slot] = group;
+		rawSeq[slot] = seq;
+		rawReadingNum[slot] = readingNum;
+		readingValInt[slot] = 0;
+		readingValDouble[slot] = 0;
+		if(readingValString != null)
+			readingValString[slot] = null;
+		return slot;
+	}
+	/**
+	 * Add an integer reading, as {@link MachineReading#MachineReading(int, int, int, int)}.
+	 */
+	public void add(int group, int seq, int readingNum, int value) {
+		lock.lock();
+		try {
+			readingValInt[next(group, seq, readingNum)] = value;
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+	/**
+	 * Add a floating point reading, as {@link MachineReading#MachineReading(int, int, int, double)}.
+	 */
+	public void add(int group, int seq, int readingNum, double value) {
+		lock.lock();
+		try {
+			readingValDouble[next(group, seq, readingNum)] = value;
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+	/**
+	 * Add a text reading, as {@link MachineReading#MachineReading(int, int, int, String)}.
+	 */
+	public void add(int group, int seq, int readingNum, String value) {
+		lock.lock();
+		try {
+			if(readingValString == null)
+				readingValString = new String[capacity];
+			readingValString[next(group, seq, readingNum)] = value;
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+	/**
+	 * Add a line of text with no group, sequence or reading number, as {@link MachineReading#MachineReading(String)}.
+	 */
+	public void add(String value) {
+		add(-1, -1, -1, value);
+	}
+	/**
+	 * Copy the fields of a MachineReading, for producers not yet adapted to the primitive adds.
+	 */
+	public void add(MachineReading mr) {
+		lock.lock();
+		try {
+			int slot = next(mr.getRawGroup(), mr.getRawSeq(), mr.getRawReadingNum());
+			readingValInt[slot] = mr.getReadingValInt();
+			readingValDouble[slot] = mr.getReadingValDouble();
+			if(mr.getReadingValString() != null) {
+				if(readingValString == null)
+					readingValString = new String[capacity];
+				readingValString[slot] = mr.getReadingValString();
+			}
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+	/**
+	 * Remove up to max readings from the head, presenting each to the visitor in the order added.
+	 * The buffer is locked while the visitor runs, so it should do no more than copy the fields out.
+	 * @param visitor the visitor
+	 * @param max the most readings to remove
+	 * @return the number of readings visited, 0 if the buffer was empty
+	 */
+	public int drain(ReadingVisitor visitor, int max) {
+		lock.lock();
+		try {
+			int n = Math.min(max, length);
+			for(int i = 0; i < n; i++) {
+				cursor.slot = start;
+				start = (start + 1) % capacity;
+				--length;
+				visitor.visit(cursor);
+			}
+			cursor.slot = -1;
+			return n;
+		} finally {
+			lock.unlock();
+		}
+	}
+	/**
+	 * Wait until there is at least one reading or the timeout elapses.
+	 * @param timeout the time to wait, 0 or less to wait indefinitely
+	 * @param unit the unit of the timeout
+	 * @return true if there are readings
+	 * @throws InterruptedException
+	 */
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		lock.lock();
+		try {
+			long nanos = unit.toNanos(timeout);
+			while(length == 0) {
+				if(timeout <= 0) {
+					available.await();
+				} else {
+					if(nanos <= 0)
+						return false;
+					nanos = available.awaitNanos(nanos);
+				}
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int length() {
+		lock.lock();
+		try {
+			return length;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public boolean isEmpty() {
+		return length() == 0;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+	/**
+	 * @return the number of readings overwritten before they were drained
+	 */
+	public long getOverwritten() {
+		lock.lock();
+		try {
+			return overwritten;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void clear() {
+		lock.lock();
+		try {
+			start = 0;
+			length = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+	/**
+	 * A view of the reading being visited, with the accessors of {@link MachineReading}.
+	 */
+	public final class Cursor {
+		private int slot = -1;
+		private Cursor() {}
+		public int getRawGroup() {
+			return rawGroup[slot];
+		}
+		public int getRawSeq() {
+			return rawSeq[slot];
+		}
+		public int getRawReadingNum() {
+			return rawReadingNum[slot];
+		}
+		public int getReadingValInt() {
+			return readingValInt[slot];
+		}
+		public double getReadingValDouble() {
+			return readingValDouble[slot];
+		}
+		public String getReadingValString() {
+			return (readingValString == null ? null : readingValString[slot]);
+		}
+		/**
+		 * @return a MachineReading with the fields of the current reading, for consumers not yet adapted to the cursor
+		 */
+		public MachineReading toMachineReading() {
+			MachineReading mr = new MachineReading(getRawGroup(), getRawSeq(), getRawReadingNum(), getReadingValString());
+			mr.setReadingValInt(getReadingValInt());
+			mr.setReadingValDouble(getReadingValDouble());
+			return mr;
+		}
+		/**
+		 * @return the reading formatted as {@link MachineReading#toString()} would
+		 */
+		@Override
+		public String toString() {
+			if(getRawGroup() == -1 && getRawSeq() == -1 && getRawReadingNum() == -1)
+				return getReadingValString();
+			return "Group "+getRawGroup()+" Sequence "+getRawSeq()+" Reading # "+getRawReadingNum()+" = "+getReadingValDouble()+" "+
+					getReadingValInt()+" "+getReadingValString();
+		}
+	}
+}
@@ -14,6 +14,12 @@ public abstract class TopicList implements TopicListInterface, Serializable {
 	public TopicList(String groupName, int queueSize) {
 		mb = new MachineBridge(groupName, queueSize);
 	}
+	/**
+	 * @param lockFree true if the readings are carried by a {@link LockFreeRing}
+	 */
+	public TopicList(String groupName, int queueSize, boolean lockFree) {
+		mb = new MachineBridge(groupName, queueSize, lockFree);
+	}
 	
 	@Override
 	public MachineBridge getMachineBridge() { return mb; }
@@ -5,6 +5,7 @@ import java.util.concurrent.BrokenBarrierException;
 
 import com.neocoretechs.robocore.machine.bridge.MachineBridge;
 import com.neocoretechs.robocore.machine.bridge.MachineReading;
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
 
 /**
  * Abstraction of Marlinspike topic result handler that loads the data without any
@@ -19,6 +20,8 @@ public abstract class AbstractBasicDataLoader extends AbstractBasicResponse {
 	public AbstractBasicDataLoader(AsynchDemuxer asynchDemuxer, String topicName, int queueSize) {
 		super(asynchDemuxer, topicName, queueSize);
 		this.queueSize = queueSize;
+		if(asynchDemuxer != null && asynchDemuxer.isReadingBuffers())
+			topicList.getMachineBridge().initReadingBuffer(queueSize);
 	}
 	/**
 	 * Typically just returning the passed MachineReading as the String payload therein,
@@ -35,10 +38,21 @@ public abstract class AbstractBasicDataLoader extends AbstractBasicResponse {
 	 * @return the MachineReading formatted to spec
 	 */
 	public abstract MachineReading formatMachineReading(String sdata);
+	/**
+	 * Add the reading for one retrieved Marlinspike response line to the {@link ReadingBuffer} of the MachineBridge,
+	 * when the demuxer was set to use them. By default the MachineReading from {@link #formatMachineReading(String)}
+	 * is copied in, topics with frequent readings override this to add the fields directly.
+	 * @param readings the buffer of the MachineBridge
+	 * @param sdata The line by line Marlinspike responses
+	 */
+	public void loadReading(ReadingBuffer readings, String sdata) {
+		readings.add(formatMachineReading(sdata));
+	}
 	
 	@Override
 	public void run(ArrayList<String> readLine) {
 			MachineBridge mb = topicList.getMachineBridge();
+			ReadingBuffer readings = mb.getReadings();
 			MachineReading mr = null;
 			synchronized(mb) {
 				for(String data: readLine) {
@@ -50,8 +64,12 @@ public abstract class AbstractBasicDataLoader extends AbstractBasicResponse {
 						if(sload != null && sload.length() > 0 && (asynchDemuxer.isLineTerminal(data) && isTopic)) 
 							break;
 						if( !isTopic ) {
-							mr = formatMachineReading(data);
-							mb.add(mr);
+							if(readings != null) {
+								loadReading(readings, data);
+							} else {
+								mr = formatMachineReading(data);
+								mb.add(mr);
+							}
 						}
 					}
 				}
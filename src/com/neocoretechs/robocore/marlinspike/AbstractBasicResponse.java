@@ -27,7 +27,7 @@ public abstract class AbstractBasicResponse implements ResponseInterface {
 	public AbstractBasicResponse(AsynchDemuxer asynchDemuxer, String topicName) {
 		this.asynchDemuxer = asynchDemuxer;
 		this.topicName = topicName;
-		this.topicList = new TopicList(topicName, 2) {
+		this.topicList = new TopicList(topicName, 2, asynchDemuxer != null && asynchDemuxer.isLockFreeBridges()) {
 			private static final long serialVersionUID = 1L;
 			@Override
 			public void retrieveData(ArrayList<String> readLine) throws InterruptedException {
@@ -44,7 +44,7 @@ public abstract class AbstractBasicResponse implements ResponseInterface {
 	public AbstractBasicResponse(AsynchDemuxer asynchDemuxer, String topicName, int queueSize) {
 		this.asynchDemuxer = asynchDemuxer;
 		this.topicName = topicName;
-		this.topicList = new TopicList(topicName, queueSize) {
+		this.topicList = new TopicList(topicName, queueSize, asynchDemuxer != null && asynchDemuxer.isLockFreeBridges()) {
 			private static final long serialVersionUID = 1L;
 			@Override
 			public void retrieveData(ArrayList<String> readLine) throws InterruptedException {
@@ -9,10 +9,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import com.neocoretechs.robocore.SynchronizedThreadManager;
-import com.neocoretechs.robocore.machine.bridge.CircularBlockingDeque;
 import com.neocoretechs.robocore.machine.bridge.FileIOUtilities;
 import com.neocoretechs.robocore.machine.bridge.MachineBridge;
 import com.neocoretechs.robocore.machine.bridge.TopicList;
@@ -27,6 +31,7 @@ import com.neocoretechs.robocore.marlinspike.mcodes.M0;
 import com.neocoretechs.robocore.marlinspike.mcodes.M1;
 import com.neocoretechs.robocore.marlinspike.mcodes.M10;
 import com.neocoretechs.robocore.marlinspike.mcodes.M11;
+import com.neocoretechs.robocore.marlinspike.mcodes.M110;
 import com.neocoretechs.robocore.marlinspike.mcodes.M12;
 import com.neocoretechs.robocore.marlinspike.mcodes.M13;
 import com.neocoretechs.robocore.marlinspike.mcodes.M14;
@@ -95,8 +100,10 @@ import com.neocoretechs.robocore.marlinspike.mcodes.status.ultrasonic;
 import com.neocoretechs.robocore.marlinspike.mcodes.status.ultrasonicpinsetting;
 import com.neocoretechs.robocore.marlinspike.mcodes.status.unknownG;
 import com.neocoretechs.robocore.marlinspike.mcodes.status.unknownM;
+import com.neocoretechs.robocore.serialreader.DataPortBinaryFramingInterface;
 import com.neocoretechs.robocore.serialreader.DataPortCommandInterface;
 import com.neocoretechs.robocore.serialreader.DataPortInterface;
+import com.neocoretechs.robocore.serialreader.DataPortPipelineInterface;
 
 /**
  * This class is the primary interface between real time data and the other subsystems.<p>
@@ -126,7 +133,15 @@ import com.neocoretechs.robocore.serialreader.DataPortInterface;
  * <code>init()</code><br>
  * <code>config(List<String> of String Marlinspike commands)</code><br>
  * This class is designed for horizontal scaling: multiple Marlinspike boards can be attached to different ports, and
- * an instance of this class can be created for each {@link MarlinspikeControl}.
+ * an instance of this class can be created for each {@link MarlinspikeControl}.<p>
+ * By default each command waits for its complete response before the next is sent. If a pipeline window is set via
+ * {@link #setPipelineWindow(int)} before connecting, and the port implements {@link DataPortPipelineInterface}, up to
+ * that many commands are kept in flight. Each is sent with an N&lt;line&gt; sequence number and *&lt;checksum&gt;, and a
+ * separate reader thread demuxxes the responses to the same topic handlers, retiring the oldest outstanding command
+ * whose topic matches the response, or which the response reports as an error. A command refused for its line number
+ * or checksum was not run, so once the commands sent with it come back it is sent again after M110, in its place
+ * ahead of those not yet sent. The first refused after each M110 is the one at fault, the others follow from it;
+ * at fault a second time it is reported, counted in {@link #getCommandsFailed()} and dropped.
  * @author Jonathan Groff (C) NeoCoreTechs 2019,2020,2021
  *
  */
@@ -136,12 +151,30 @@ public class AsynchDemuxer implements Runnable {
 	private volatile boolean shouldRun = true;
 	private DataPortCommandInterface dataPort;
 	//public CyclicBarrier mutexWrite = new CyclicBarrier(3);
-	private CircularBlockingDeque<String> requestQueue = new CircularBlockingDeque<String>(16);
+	private CommandQueue requestQueue = new CommandQueue(64);
 	private MarlinspikeManager marlinSpikeManager;
 	private final static String MSG_BEGIN = "<";
 	private final static String MSG_TERMINATE ="/>";
 	protected long RESPONSE_WAIT_MS = 2000; // Number of MS to wait for response from Marlinspike port
+	protected long RESYNC_POLL_MS = 10; // longest an idle pipelined sender leaves refused commands waiting
 	private static Object mutex = new Object();
+	// pipelined mode, 0 window is one command at a time through sendCommand
+	private int pipelineWindow = 0;
+	private boolean binaryFraming = false;
+	private boolean lockFreeBridges = false;
+	private boolean readingBuffers = false;
+	private Semaphore windowPermits;
+	private ArrayBlockingQueue<InFlight> inFlight;
+	// commands refused for line number or checksum, in the order sent, to go again after M110
+	private final ConcurrentLinkedQueue<InFlight> refused = new ConcurrentLinkedQueue<InFlight>();
+	private int lineNumber = 0;
+	private int epoch = 0; // M110s sent, taken by the sender
+	private int refusedEpoch = -1; // epoch of the last command refused, taken by the reader
+	private volatile boolean resync = true;
+	private volatile long commandsCompleted = 0L;
+	private volatile long sequenceErrors = 0L;
+	private volatile long commandsFailed = 0L;
+	private volatile DirectiveTrie directives = null;
 
 	public enum topicNames {
 		STATUS("status"),
@@ -178,7 +211,7 @@ public class AsynchDemuxer implements Runnable {
 		G4("G4"),G5("G5"),G6("G6"),G99("G99"),G100("G100"),
 		M0("M0"),M1("M1"),M2("M2"),M3("M3"),M4("M4"),M5("M5"),M6("M6"),M7("M7"),M8("M8"),M9("M9"),M10("M10"),M11("M11"),M12("M12"),M13("M13"),
 		M14("M14"),M15("M15"),M16("M16"),M33("M33"),M35("M35"),M36("M36"),M37("M37"),M38("M38"),M39("M39"),M40("M40"),M41("M41"),M42("M42"),M45("M45"),M47("M47"),
-		M80("M80"),M81("M81"),M301("M301"),M302("M302"),M304("M304"),M306("M306"),
+		M80("M80"),M81("M81"),M110("M110"),M301("M301"),M302("M302"),M304("M304"),M306("M306"),
 		M445("M445"),M500("M500"),M501("M501"),M502("M502"),M799("M799"),M999("M999"),
 		M115("FIRMWARE_NAME:Marlinspike RoboCore"); // followed by FIRMWARE_URL,PROTOCOL_VERSION,MACHINE_TYPE,MACHINE NAME,MACHINE_UUID
 		String name;
@@ -194,7 +227,74 @@ public class AsynchDemuxer implements Runnable {
 	
 	public TopicListInterface getTopic(String group) { return topics.get(group); }
 	
+	public Set<String> getTopicNames() { return topics.keySet(); }
+	
 	public void clearWriteBuffer() { requestQueue.clear(); }
+	/**
+	 * @return the number of motor and PWM level commands superseded by a newer level before being sent
+	 */
+	public long getCommandsCoalesced() { return requestQueue.getCoalesced(); }
+	/**
+	 * Set the number of commands that may be outstanding at the Marlinspike at once. Must be called before
+	 * {@link #connect(DataPortCommandInterface)}, and takes effect only if the port implements {@link DataPortPipelineInterface}.
+	 * @param window maximum commands in flight, 0 to wait for each response before sending the next command
+	 */
+	public void setPipelineWindow(int window) {
+		if(window < 0)
+			throw new IllegalArgumentException("Pipeline window must be 0 or greater:"+window);
+		this.pipelineWindow = window;
+	}
+	
+	public int getPipelineWindow() { return pipelineWindow; }
+	/**
+	 * Request the compact binary framing of the link, negotiated with M800 S1 on {@link #connect(DataPortCommandInterface)}.
+	 * Must be called before connect, and takes effect only if the port implements {@link DataPortBinaryFramingInterface}
+	 * and the Marlinspike accepts, otherwise the text protocol remains in use.
+	 * @param binary true to request binary framing
+	 */
+	public void setBinaryFraming(boolean binary) {
+		this.binaryFraming = binary;
+	}
+	/**
+	 * @return true if binary framing was requested and negotiated with the Marlinspike
+	 */
+	public boolean isBinaryFraming() {
+		return binaryFraming && dataPort instanceof DataPortBinaryFramingInterface && ((DataPortBinaryFramingInterface)dataPort).isBinaryFraming();
+	}
+	/**
+	 * Carry the readings of each topic to its consumer in a {@link com.neocoretechs.robocore.machine.bridge.LockFreeRing}
+	 * rather than a CircularBlockingDeque. Must be called before {@link #connect(DataPortCommandInterface)} creates the topics,
+	 * and each {@link MachineBridge} must then have one consumer.
+	 * @param lockFree true for lock free bridges
+	 */
+	public void setLockFreeBridges(boolean lockFree) {
+		this.lockFreeBridges = lockFree;
+	}
+	
+	public boolean isLockFreeBridges() { return lockFreeBridges; }
+	/**
+	 * Hold the readings of the data topics in a preallocated {@link com.neocoretechs.robocore.machine.bridge.ReadingBuffer}
+	 * rather than a MachineReading per response line. Must be called before {@link #connect(DataPortCommandInterface)}
+	 * creates the topics, and the consumers must drain the buffer as PublishResponses does.
+	 * @param buffers true for reading buffers
+	 */
+	public void setReadingBuffers(boolean buffers) {
+		this.readingBuffers = buffers;
+	}
+	
+	public boolean isReadingBuffers() { return readingBuffers; }
+	/**
+	 * @return The number of commands whose responses have been demuxxed
+	 */
+	public long getCommandsCompleted() { return commandsCompleted; }
+	/**
+	 * @return The number of line number or checksum errors reported by the Marlinspike in pipelined mode
+	 */
+	public long getSequenceErrors() { return sequenceErrors; }
+	/**
+	 * @return The number of commands refused for line number or checksum again after being sent again, and dropped
+	 */
+	public long getCommandsFailed() { return commandsFailed; }
 	/**
 	 * Called by setDeviceLevels, will search in slotEntry and deviceEntry and in the case of
 	 * slotEntry can be expected to return the first TypeSlotChannelEnable in order to obtain the slot designator
@@ -213,11 +313,10 @@ public class AsynchDemuxer implements Runnable {
 	}
 	
 	/**
-	 * Add a write request to the outbound queue. The queue is circular and blocking and technically, a deque.
-	 * If the elements reach a predetermined upper bound they are emplaced at the beginning. If this occurs,
-	 * a warning message is displayed but otherwise operation is unaffected. If these warnings are an issue,
-	 * the size of the deque must be increased.
-	 * @param ad The AsynchDemuxer to queue to.
+	 * Add a write request to the outbound {@link CommandQueue}. Motor and PWM level commands replace a waiting
+	 * level command for the same slot and channel or pin, so only the newest level is sent, unless another command was
+	 * queued after it, so no level passes a stop or reset sent before it. All other commands are delivered in order.
+	 * If the queue is full this blocks until the demuxer takes a command, a subscriber callback calling it included.
 	 * @param req The request to be enqueued.
 	 */
 	public void addWrite(String req) {
@@ -226,12 +325,9 @@ public class AsynchDemuxer implements Runnable {
 			System.out.println("Adding request to demuxer:"+this+" "+req+" len:"+requestQueue.length()+" thread:"+Thread.currentThread()+" "+Date.from(Instant.now()));
 	}
 	/**
-	 * Add a write request to the outbound queue. The queue is circular and blocking and technically, a deque.
-	 * If the elements reach a predetermined upper bound they are emplaced at the beginning. If this occurs,
-	 * a warning message is displayed but otherwise operation is unaffected. If these warnings are an issue,
-	 * the size of the deque must be increased.
-	 * @param ad The AsynchDemuxer to queue to.
-	 * @param req The request to be enqueued.
+	 * Add a list of write requests to the outbound queue, in order.
+	 * @param req The requests to be enqueued.
+	 * @see #addWrite(String)
 	 */
 	public void addWrite(List<String> req) {
 		for(String reqs: req)
@@ -250,6 +346,11 @@ public class AsynchDemuxer implements Runnable {
 				Thread.sleep(100);
 			} catch (InterruptedException e) {}
 		}
+		if(binaryFraming && dataPort instanceof DataPortBinaryFramingInterface) {
+			boolean binary = ((DataPortBinaryFramingInterface)dataPort).negotiateBinaryFraming();
+			if(DEBUG)
+				System.out.println("AsynchDemuxer "+this+" binary framing "+(binary ? "in use" : "refused, using text"));
+		}
 		init();
 	}
 	/**
@@ -482,6 +583,12 @@ public class AsynchDemuxer implements Runnable {
 			//	System.out.println("AsynchDemuxer.Init bring up "+topicNames.M81.val());
 			topics.put(topicNames.M81.val(), new M81(this).getTopicList());
 			//
+			// M110 - set line number, resynchronizes pipelined mode
+			//
+			//if(DEBUG)
+			//	System.out.println("AsynchDemuxer.Init bring up "+topicNames.M110.val());
+			topics.put(topicNames.M110.val(), new M110(this).getTopicList());
+			//
 			// M301
 			//
 			//if(DEBUG)
@@ -725,6 +832,8 @@ public class AsynchDemuxer implements Runnable {
 			// General error return from command, missing param or formatting
 			topics.put(topicNames.ERROR.val(), new errorsetting(this).getTopicList());
 			//
+		// precompile the registered directives for parseDirective
+		directives = new DirectiveTrie(topics.keySet());
 		// spin the main loop to read lines from the Marlinspike and muxx them
 		SynchronizedThreadManager.startSupervisorThread();
 		SynchronizedThreadManager.getInstance().spin(this, "ASYNCHDEMUXER");
@@ -734,17 +843,18 @@ public class AsynchDemuxer implements Runnable {
 	}
 	
 	//
-	// Methods to extract data from the line acquired from the serial port read
+	// Methods to extract data from the line acquired from the serial port read.
+	// A reading line is the reading number, a space, then the value. The numeric fields are parsed
+	// in place on the line, without substrings or boxing, trailing whitespace and line terminators ignored.
 	//
-    public static double getReadingValueDouble(String readLine) {
+    public static double getReadingValueDouble(CharSequence readLine) {
     	if( readLine != null ) {
-    		int sindex = readLine.indexOf(" ");
+    		int sindex = indexOf(readLine, ' ', 0, readLine.length());
     		if( sindex != -1 && sindex+1 < readLine.length() ) {
-    			String rnum = readLine.substring(sindex+1);
     			try {
-    				return Double.valueOf(rnum);
-    			} catch(Exception e) {
-    				System.out.println("AsynchDemux Cannot convert double value from:"+rnum);
+    				return parseDouble(readLine, sindex+1, readLine.length());
+    			} catch(NumberFormatException e) {
+    				System.out.println("AsynchDemux Cannot convert double value from:"+readLine);
     			}
     		}
     	}
@@ -752,15 +862,14 @@ public class AsynchDemuxer implements Runnable {
     	return 0;
 	}
     
-	public static int getReadingValueInt(String readLine) {
+	public static int getReadingValueInt(CharSequence readLine) {
       	if( readLine != null ) {
-      		int sindex = readLine.indexOf(" ");
+      		int sindex = indexOf(readLine, ' ', 0, readLine.length());
       		if( sindex != -1 && sindex+1 < readLine.length() ) {
-      			String rnum = readLine.substring(sindex+1);
       			try {
-      				return Integer.valueOf(rnum);
-      			} catch(Exception e) {
-      				System.out.println("AsynchDemux Cannot convert integer value from:"+rnum);
+      				return parseInt(readLine, sindex+1, readLine.length());
+      			} catch(NumberFormatException e) {
+      				System.out.println("AsynchDemux Cannot convert integer value from:"+readLine);
       			}
       		}
       	}
@@ -785,23 +894,131 @@ public class AsynchDemuxer implements Runnable {
      * @param readLine
      * @return The integer value of the field
      */
-    public static int getReadingNumber(String readLine) {
+    public static int getReadingNumber(CharSequence readLine) {
 	       	if( readLine != null ) {
-	       		int sindex = readLine.indexOf(" ");
+	       		int sindex = indexOf(readLine, ' ', 0, readLine.length());
       			if( sindex != -1 && sindex+1 < readLine.length() ) {
-      				String rnum = readLine.substring(0,sindex);
       				try {
-      					return Integer.valueOf(rnum);
-      				} catch(Exception e) {
-      					System.out.println("AsynchDemux Cannot convert Integer from:"+rnum);
+      					return parseInt(readLine, 0, sindex);
+      				} catch(NumberFormatException e) {
+      					System.out.println("AsynchDemux Cannot convert Integer from:"+readLine);
       				}
       			}
 	       	}	
 	       	System.out.println("AsynchDemux Can't get valid reading number from:"+readLine);
 	       	return 0;
 	}
+    
+    private static int indexOf(CharSequence line, char c, int start, int end) {
+    	for(int i = start; i < end; i++)
+    		if(line.charAt(i) == c)
+    			return i;
+    	return -1;
+    }
+    /**
+     * Parse a decimal integer from a range of the line, ignoring surrounding whitespace.
+     * @param line The line
+     * @param start Index of the first character of the field
+     * @param end Index after the last character of the field
+     * @return The value
+     * @throws NumberFormatException if the field is empty or not an integer
+     */
+    public static int parseInt(CharSequence line, int start, int end) {
+    	while(start < end && line.charAt(start) <= ' ')
+    		++start;
+    	while(end > start && line.charAt(end-1) <= ' ')
+    		--end;
+    	return Integer.parseInt(line, start, end, 10);
+    }
+    
+    private static final double[] POWERS_OF_TEN = {
+    	1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    	1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    /**
+     * Parse a decimal floating point number from a range of the line, ignoring surrounding whitespace.
+     * Values of up to 15 significant digits with exponents within 22 are computed exactly in place,
+     * anything else, such as NaN or long fractions, is left to Double.parseDouble.
+     * @param line The line
+     * @param start Index of the first character of the field
+     * @param end Index after the last character of the field
+     * @return The value, rounded as Double.parseDouble would
+     * @throws NumberFormatException if the field is empty or not a number
+     */
+    public static double parseDouble(CharSequence line, int start, int end) {
+    	while(start < end && line.charAt(start) <= ' ')
+    		++start;
+    	while(end > start && line.charAt(end-1) <= ' ')
+    		--end;
+    	int i = start;
+    	boolean negative = false;
+    	if(i < end && (line.charAt(i) == '-' || line.charAt(i) == '+'))
+    		negative = (line.charAt(i++) == '-');
+    	long mantissa = 0;
+    	int digits = 0, scale = 0;
+    	boolean seenDigit = false, seenPoint = false;
+    	for(; i < end; i++) {
+    		char c = line.charAt(i);
+    		if(c >= '0' && c <= '9') {
+    			seenDigit = true;
+    			if(mantissa != 0 || c != '0')
+    				++digits;
+    			mantissa = mantissa * 10 + (c - '0');
+    			if(seenPoint)
+    				--scale;
+    			if(digits > 15)
+    				break;
+    		} else if(c == '.' && !seenPoint) {
+    			seenPoint = true;
+    		} else {
+    			break;
+    		}
+    	}
+    	if(i < end && seenDigit && (line.charAt(i) == 'e' || line.charAt(i) == 'E') && digits <= 15) {
+    		int j = i + 1;
+    		boolean negexp = false;
+    		if(j < end && (line.charAt(j) == '-' || line.charAt(j) == '+'))
+    			negexp = (line.charAt(j++) == '-');
+    		int exp = 0;
+    		int expStart = j;
+    		while(j < end && line.charAt(j) >= '0' && line.charAt(j) <= '9' && exp < 1000)
+    			exp = exp * 10 + (line.charAt(j++) - '0');
+    		if(j > expStart) {
+    			scale += (negexp ? -exp : exp);
+    			i = j;
+    		}
+    	}
+    	if(i != end || !seenDigit || digits > 15 || scale < -22 || scale > 22)
+    		return Double.parseDouble(line.subSequence(start, end).toString());
+    	double d = (double)mantissa;
+    	d = (scale < 0 ? d / POWERS_OF_TEN[-scale] : d * POWERS_OF_TEN[scale]);
+    	return negative ? -d : d;
+    }
+    /**
+     * Parse the space separated integers of a line into the given array, in place.
+     * @param line The line
+     * @param results Receives the values, parsing stops when it is full
+     * @return The number of values parsed
+     * @throws NumberFormatException if a field is not an integer
+     */
+    public static int parseSingleLineIntegerResults(CharSequence line, int[] results) {
+    	int count = 0;
+    	int end = line.length();
+    	int i = 0;
+    	while(count < results.length) {
+    		while(i < end && line.charAt(i) <= ' ')
+    			++i;
+    		if(i == end)
+    			break;
+    		int j = i;
+    		while(j < end && line.charAt(j) > ' ')
+    			++j;
+    		results[count++] = Integer.parseInt(line, i, j, 10);
+    		i = j;
+    	}
+    	return count;
+    }
 
- 
 	/**
 	 * Configure the robot with a series of G-code directives at startup in file startup.gcode.
 	 * Wait until write queue empties and number of waiters on write is 0. This might augment
@@ -835,9 +1052,12 @@ public class AsynchDemuxer implements Runnable {
 	 */
 
 	public void run() {
+		if(pipelineWindow > 0 && dataPort instanceof DataPortPipelineInterface) {
+			runPipelined((DataPortPipelineInterface)dataPort);
+			return;
+		}
 		// Take Marlinspike lines from circular blocking deque and demux them.
 		// this will process the responses from the dataport that have been placed on the deque.
-		String fop;
 		ArrayList<String> payload;
 		while(shouldRun) {
 			try {
@@ -845,34 +1065,10 @@ public class AsynchDemuxer implements Runnable {
 					System.out.println("AsynchDemux "+this+" queue="+requestQueue.size());
 				long cmdTime = System.nanoTime();
 				payload = dataPort.sendCommand(requestQueue.takeFirst());
-				System.out.println("Marlinspike time="+(System.nanoTime()-cmdTime));
 				if(DEBUG)
-					System.out.println("AsynchDemux "+this+" response:"+payload+" from dataport:"+dataPort);
-				if(payload == null || payload.size() == 0 ) {
-					throw new IndexOutOfBoundsException(this.getClass().getName()+" "+Thread.currentThread().getName()+
-							" RESPONSE FROM PORT "+dataPort.getPortName()+" NULL DIRECTIVE:"+Arrays.toString(payload.toArray()));
-				}
-				fop = parseDirective(payload.get(0));
-				if(fop != null) {
-					if(DEBUG)
-						System.out.println("AsynchDemux "+this+" Parsed directive:"+fop);
-					if(fop.endsWith("ERROR"))
-						fop = topicNames.ERROR.val();
-					TopicListInterface tl = topics.get(fop);
-					if( tl != null ) {
-						if(DEBUG)
-							System.out.println("AsynchDemux "+this+" call out to topic:"+tl.getMachineBridge().getGroup());
-						// consume the lines from the Marlinspike response until we see a terminal directive
-						// once this happens we pass it to the proper TopicList {@link AbstractBasicResponse}
-						// retrieveData method that consumes the payload line(s) 
-						if(DEBUG)
-							System.out.println(this.getClass().getName()+" "+tl+" payload:"+Arrays.toString(payload.toArray()));
-						tl.retrieveData(payload);
-					} else {
-						throw new IndexOutOfBoundsException(this.getClass().getName()+" "+Thread.currentThread().getName()+
-								" RESPONSE FROM PORT "+dataPort.getPortName()+" NO TOPIC FOR:"+fop+", CANNOT DEMUX DIRECTIVE:"+Arrays.toString(payload.toArray()));
-					}
-				}
+					System.out.println("Marlinspike time="+(System.nanoTime()-cmdTime));
+				demux(payload);
+				++commandsCompleted;
 			} catch(Exception e) {
 				e.printStackTrace();
 				//shouldRun = false;
@@ -880,81 +1076,326 @@ public class AsynchDemuxer implements Runnable {
 		}
 		System.out.println(this.getClass().getName()+" "+Thread.currentThread().getName()+" exiting run...");
 	}
+	/**
+	 * Dispatch one response from the Marlinspike to the {@link TopicListInterface} for its directive.
+	 * @param payload The lines of the response
+	 * @return The topic the response was demuxxed to, or null if the directive could not be parsed
+	 * @throws InterruptedException
+	 */
+	private String demux(ArrayList<String> payload) throws InterruptedException {
+		if(DEBUG)
+			System.out.println("AsynchDemux "+this+" response:"+payload+" from dataport:"+dataPort);
+		if(payload == null || payload.size() == 0 ) {
+			throw new IndexOutOfBoundsException(this.getClass().getName()+" "+Thread.currentThread().getName()+
+					" RESPONSE FROM PORT "+dataPort.getPortName()+" NULL DIRECTIVE:"+(payload == null ? "null" : Arrays.toString(payload.toArray())));
+		}
+		String fop = parseDirective(payload.get(0));
+		if(fop != null) {
+			if(DEBUG)
+				System.out.println("AsynchDemux "+this+" Parsed directive:"+fop);
+			if(fop.endsWith("ERROR"))
+				fop = topicNames.ERROR.val();
+			TopicListInterface tl = topics.get(fop);
+			if( tl != null ) {
+				if(DEBUG)
+					System.out.println("AsynchDemux "+this+" call out to topic:"+tl.getMachineBridge().getGroup());
+				// consume the lines from the Marlinspike response until we see a terminal directive
+				// once this happens we pass it to the proper TopicList {@link AbstractBasicResponse}
+				// retrieveData method that consumes the payload line(s) 
+				if(DEBUG)
+					System.out.println(this.getClass().getName()+" "+tl+" payload:"+Arrays.toString(payload.toArray()));
+				tl.retrieveData(payload);
+			} else {
+				throw new IndexOutOfBoundsException(this.getClass().getName()+" "+Thread.currentThread().getName()+
+						" RESPONSE FROM PORT "+dataPort.getPortName()+" NO TOPIC FOR:"+fop+", CANNOT DEMUX DIRECTIVE:"+Arrays.toString(payload.toArray()));
+			}
+		}
+		return fop;
+	}
+	
+	/**
+	 * A command sent in pipelined mode awaiting its response.
+	 */
+	static final class InFlight {
+		final int sequence;
+		final String command;
+		final String topic;
+		final int attempt; // times refused at fault
+		final int epoch;
+		final long sent;
+		InFlight(int sequence, String command, String topic, int attempt, int epoch, long sent) {
+			this.sequence = sequence;
+			this.command = command;
+			this.topic = topic;
+			this.attempt = attempt;
+			this.epoch = epoch;
+			this.sent = sent;
+		}
+		@Override
+		public String toString() {
+			return "N"+sequence+" "+topic;
+		}
+	}
+	
+	/**
+	 * Pipelined main loop. This thread sends queued commands as long as the window has room, tagging each with
+	 * the next line number. A companion {@link ResponseReader} thread demuxxes the responses and frees the window.
+	 * The first command sent, and the first after any line number or checksum error, is M110 to set the line number.
+	 * The queue is polled rather than waited on so an idle sender still sends refused commands again.
+	 * @param pipe the port
+	 */
+	private void runPipelined(DataPortPipelineInterface pipe) {
+		windowPermits = new Semaphore(pipelineWindow);
+		inFlight = new ArrayBlockingQueue<InFlight>(pipelineWindow);
+		SynchronizedThreadManager.getInstance().spin(new ResponseReader(pipe), "ASYNCHDEMUXER");
+		while(shouldRun) {
+			try {
+				String req = requestQueue.pollFirst(RESYNC_POLL_MS);
+				if(resync)
+					resynchronize(pipe);
+				if(req != null) {
+					req = req.trim();
+					send(pipe, req, expectedTopic(req), 0);
+				}
+			} catch(InterruptedException ie) {
+				break;
+			} catch(Exception e) {
+				e.printStackTrace();
+			}
+		}
+		System.out.println(this.getClass().getName()+" "+Thread.currentThread().getName()+" exiting run...");
+	}
+	
+	/**
+	 * Wait for every command in flight to come back, so all those refused with the error are known and none is
+	 * still to be refused, then set the line number with M110 and send the refused ones again in the order they were
+	 * sent. They go ahead of any command taken but not yet sent, which was queued after them.
+	 * @param pipe the port
+	 */
+	private void resynchronize(DataPortPipelineInterface pipe) throws InterruptedException, IOException {
+		windowPermits.acquire(pipelineWindow);
+		windowPermits.release(pipelineWindow);
+		resync = false;
+		lineNumber = 0;
+		++epoch;
+		// those refused again while these go out are refused after them, so wait for the next resync
+		ArrayList<InFlight> resend = new ArrayList<InFlight>(refused.size());
+		InFlight r;
+		while((r = refused.poll()) != null)
+			resend.add(r);
+		send(pipe, topicNames.M110.val(), topicNames.M110.val(), 0);
+		for(InFlight f : resend)
+			send(pipe, f.command, f.topic, f.attempt);
+	}
+	
+	private void send(DataPortPipelineInterface pipe, String req, String topic, int attempt) throws InterruptedException, IOException {
+		windowPermits.acquire();
+		int seq = lineNumber++;
+		// the entry must be in flight before the command is, lest the response beat it
+		inFlight.put(new InFlight(seq, req, topic, attempt, epoch, System.nanoTime()));
+		String line = "N"+seq+" "+req;
+		pipe.writeCommand(line+"*"+checksum(line));
+		if(DEBUG)
+			System.out.println("AsynchDemux "+this+" sent:"+line+" in flight:"+inFlight.size());
+	}
+	
+	/**
+	 * Retire the oldest command in flight if the response is its acknowledgement or an error, otherwise
+	 * the response was unsolicited, such as a realtime report, and the window is unchanged. A command refused for its
+	 * line number or checksum is kept to be sent again, before the window is freed for the sender to resynchronize,
+	 * unless it is the first refused since M110, so at fault, for the second time, when it is dropped and reported.
+	 * A response that could not be demuxxed retires nothing, lest every later response be matched to the wrong command;
+	 * should it have been the acknowledgement, the command expires.
+	 * @param fop The topic the response was demuxxed to, not null
+	 */
+	private void retire(String fop) {
+		InFlight head = inFlight.peek();
+		if(head == null)
+			return;
+		boolean seqError = topicNames.LINESEQ.val().equals(fop) || topicNames.CHECKMISMATCH.val().equals(fop) || 
+				topicNames.NOCHECKSUM.val().equals(fop) || topicNames.NOLINECHECK.val().equals(fop);
+		if(fop.equals(head.topic) || seqError || isErrorTopic(fop)) {
+			inFlight.poll();
+			if(seqError) {
+				++sequenceErrors;
+				// not run by the Marlinspike, those after the first refused since M110 only for following it
+				boolean atFault = head.epoch != refusedEpoch;
+				refusedEpoch = head.epoch;
+				if(head.topic.equals(topicNames.M110.val())) { // goes out again anyway
+					++commandsCompleted;
+				} else if(atFault && head.attempt > 0) {
+					++commandsFailed;
+					++commandsCompleted;
+					System.out.println(this.getClass().getName()+" PORT "+dataPort.getPortName()+" REFUSED "+head+" AGAIN, DROPPED");
+				} else {
+					refused.add(atFault ? new InFlight(head.sequence, head.command, head.topic, head.attempt + 1, head.epoch, head.sent) : head);
+				}
+				resync = true;
+			} else
+				++commandsCompleted;
+			windowPermits.release();
+			if(DEBUG && !head.topic.equals(fop))
+				System.out.println("AsynchDemux "+this+" response "+fop+" retired "+head);
+		}
+	}
+	
+	/**
+	 * Release the oldest command in flight if it has waited longer than RESPONSE_WAIT_MS, so a lost
+	 * response cannot close the window for good.
+	 */
+	private void expire() {
+		InFlight head = inFlight.peek();
+		if(head != null && (System.nanoTime() - head.sent) > TimeUnit.MILLISECONDS.toNanos(RESPONSE_WAIT_MS)) {
+			inFlight.poll();
+			windowPermits.release();
+			System.out.println(this.getClass().getName()+" NO RESPONSE FROM PORT "+dataPort.getPortName()+" FOR "+head+" AFTER "+RESPONSE_WAIT_MS+" ms");
+		}
+	}
+	
+	/**
+	 * Reads the responses to pipelined commands and demuxxes them.
+	 */
+	final class ResponseReader implements Runnable {
+		private final DataPortPipelineInterface pipe;
+		ResponseReader(DataPortPipelineInterface pipe) {
+			this.pipe = pipe;
+		}
+		@Override
+		public void run() {
+			while(shouldRun) {
+				try {
+					ArrayList<String> payload = pipe.readResponse(RESPONSE_WAIT_MS);
+					if(payload != null) {
+						String fop = demux(payload);
+						if(fop != null)
+							retire(fop);
+					}
+				} catch(InterruptedException ie) {
+					break;
+				} catch(Exception e) {
+					e.printStackTrace();
+				}
+				// unsolicited reports can keep coming while a response is lost
+				expire();
+			}
+		}
+	}
+	
+	/**
+	 * The Marlin style line checksum, exclusive or of all characters of the line
+	 * @param line The line including N&lt;line&gt; prefix
+	 * @return the checksum 0-255
+	 */
+	public static int checksum(String line) {
+		int cs = 0;
+		for(int i = 0; i < line.length(); i++)
+			cs ^= line.charAt(i);
+		return cs & 0xFF;
+	}
+	
+	private boolean isErrorTopic(String fop) {
+		return fop.equals(topicNames.ERROR.val()) || fop.equals(topicNames.BADMOTOR.val()) || fop.equals(topicNames.BADPWM.val()) ||
+				fop.equals(topicNames.UNKNOWNG.val()) || fop.equals(topicNames.UNKNOWNM.val()) || fop.equals(topicNames.MALFORMEDG.val()) ||
+				fop.equals(topicNames.MALFORMEDM.val()) || fop.equals(topicNames.BADCONTROL.val()) || fop.equals(topicNames.NOMORGCODE.val()) ||
+				fop.equals(topicNames.CONTROLLERSTOPPED.val());
+	}
+	
+	/**
+	 * The topic of the response expected for a command. Acknowledgements carry the code itself, reports carry their header.
+	 * @param req the command
+	 * @return the topic name
+	 */
+	static String expectedTopic(String req) {
+		int sindex = req.indexOf(' ');
+		String code = (sindex == -1 ? req : req.substring(0, sindex));
+		switch(code) {
+			case "M44": return topicNames.DIGITALPIN.val();
+			case "M46": 
+			case "M802": return topicNames.ANALOGPIN.val();
+			case "M47": return topicNames.BATTERY.val();
+			case "M115": return topicNames.M115.val();
+			case "M300": return topicNames.ULTRASONIC.val();
+			case "M503": return topicNames.EEPROM.val();
+			case "M700": return topicNames.STATUS.val();
+			case "M701": return topicNames.DIGITALPINSETTING.val();
+			case "M702": return topicNames.ANALOGPINSETTING.val();
+			case "M703": return topicNames.ULTRASONICPINSETTING.val();
+			case "M704": return topicNames.PWMPINSETTING.val();
+			case "M705": return topicNames.MOTORCONTROLSETTING.val();
+			case "M706": return topicNames.ASSIGNEDPINS.val();
+			case "M798": return topicNames.CONTROLLERSTATUS.val();
+			default: return code;
+		}
+	}
+	
 	/**
 	 * Determine if this line contains a message acknowledgement such as <G5/>
 	 * @param line
 	 * @return true if terminal message
 	 */
 	public static boolean isLineTerminal(String line) {
-		int endDelim;
-		String fop;
-		try {
-			if((line.charAt(0)) == '<' ) {
-				// has to equal one of > or />
-				endDelim = line.indexOf(MSG_TERMINATE);
-				if(endDelim == -1)
-					endDelim = line.indexOf('>');
-				else
-					return true;
-				if( endDelim == -1 ) {
-					return false;
-				}		
-				fop = line.substring(1, endDelim);
-				if(fop.startsWith("/"))
-					return true;
-				if(fop.endsWith("/"))
-					return true;
-				//if(DEBUG)
-				//	System.out.println("op:"+op);
-			}
+		if(line == null || line.length() == 0 || line.charAt(0) != '<')
 			return false;
-		} catch (IndexOutOfBoundsException ioob) {
+		// has to equal one of > or />
+		if(line.indexOf(MSG_TERMINATE) != -1)
+			return true;
+		int endDelim = line.indexOf('>');
+		if( endDelim == -1 ) {
 			return false;
 		}
+		// </message> or <message/ >
+		return endDelim > 1 && (line.charAt(1) == '/' || line.charAt(endDelim-1) == '/');
 	}
 
 	/**
-	 * Parse out the delimiters and headers of a Marlinspike message, returning the message directive portion
+	 * Parse out the delimiters and headers of a Marlinspike message, returning the message directive portion.
+	 * Once init() has registered the topics the directive is resolved through the {@link DirectiveTrie} in place.
+	 * A directive portion with spaces resolves to the longest registered directive beginning it, one without
+	 * must match a registered directive in full, else is returned as is.
 	 * @param line message in the form <message/> or <message x y z/>
 	 * @return payload portion such as: message
 	 */
 	public String parseDirective(String line) {
-		int endDelim = -1;
-		String fop;
-		try {
-			if(line.charAt(0) == '<' ) {
-				// has to equal one of > or />
-				endDelim = line.indexOf(MSG_TERMINATE);
-				if(endDelim == -1)
-					endDelim = line.indexOf('>');
-				if( endDelim == -1 ) {
-					return null;
-				}	
-				fop = line.substring(1, endDelim);
-				if(fop.startsWith("/"))
-					fop = fop.substring(1);
-				if(fop.endsWith("/"))
-					fop = fop.substring(0,fop.length()-1);
-				if(fop.contains(" ")) {
-					// see if we have a directive with a partial match
-					Iterator<String> it = topics.keySet().iterator();
-					while(it.hasNext()) {
-						String directive = (String)it.next();
-						endDelim = fop.indexOf(directive);
-						if(endDelim != -1) {
-							//fop = fop.substring(endDelim, endDelim+directive.length());
-							//return fop;
-							return directive;
-						}
-					}
-					return null;
+		if(line == null || line.length() < 2 || line.charAt(0) != '<')
+			return null;
+		// has to equal one of > or />
+		int endDelim = line.indexOf(MSG_TERMINATE);
+		if(endDelim == -1)
+			endDelim = line.indexOf('>');
+		if( endDelim == -1 ) {
+			return null;
+		}
+		int start = 1;
+		if(start < endDelim && line.charAt(start) == '/')
+			++start;
+		if(endDelim > start && line.charAt(endDelim-1) == '/')
+			--endDelim;
+		boolean partial = false;
+		for(int i = start; i < endDelim; i++) {
+			if(line.charAt(i) == ' ') {
+				partial = true;
+				break;
+			}
+		}
+		DirectiveTrie trie = directives;
+		if(trie != null) {
+			String directive = trie.match(line, start, endDelim, !partial);
+			if(directive != null)
+				return directive;
+		}
+		String fop = line.substring(start, endDelim);
+		if(partial) {
+			// see if we have a directive elsewhere in the line
+			Iterator<String> it = topics.keySet().iterator();
+			while(it.hasNext()) {
+				String directive = it.next();
+				if(fop.indexOf(directive) != -1) {
+					return directive;
 				}
-				return fop;
 			}
-		} catch (IndexOutOfBoundsException ioob) {
-			return null;	
+			return null;
 		}
-		return null;
+		return fop;
 	}
 	/**
 	 * Extract the portion of the message after the directive
@@ -993,8 +1434,13 @@ public class AsynchDemuxer implements Runnable {
 	}
 	
 	public static int[] parseSingleLineIntegerResults(String line) {
-		String[] sp = line.split(" ");
-		return Arrays.stream(sp).mapToInt(Integer::parseInt).toArray();
+		int fields = 0;
+		for(int i = 0; i < line.length(); i++)
+			if(line.charAt(i) > ' ' && (i == 0 || line.charAt(i-1) <= ' '))
+				++fields;
+		int[] results = new int[fields];
+		parseSingleLineIntegerResults(line, results);
+		return results;
 	}
 	
 
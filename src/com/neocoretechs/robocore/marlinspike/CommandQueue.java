@@ -0,0 +1,207 @@
+package com.neocoretechs.robocore.marlinspike;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+/**
+ * The outbound command queue of the {@link AsynchDemuxer}, aware of the class of each command.<p>
+ * Level setting commands such as G5 motor power, G6 PWM level and M45 PWM pin are coalesced: while a level command for
+ * the same controller slot, channel or pin and the same set of fields is waiting, with no one shot command queued
+ * after it, a newer one replaces it in place, so only the newest level is sent, at the position of the first.
+ * A level never moves ahead of a one shot command queued before it, such as a stop or reset; behind one it is queued
+ * anew. All other commands, configuration, reports and so on, are one shot and always delivered, in the order queued.<p>
+ * When the queue is full, producers block in {@link #addLast(String)} until the demuxer takes a command rather than
+ * overwriting the oldest, unless the new command replaces one that is waiting. A subscriber callback queueing
+ * commands is held up for as long.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class CommandQueue {
+	private static boolean DEBUG = false;
+	private final Object mutex = new Object();
+	private final int limit;
+	private final ArrayDeque<Entry> queue;
+	// waiting level commands by key
+	private final HashMap<String, Entry> pending = new HashMap<String, Entry>();
+	// coalesced codes, and the fields whose values address the device
+	private final HashMap<String, String> levelCodes = new HashMap<String, String>();
+	private long coalesced = 0L;
+	private long queued = 0L; // sequence of the next entry
+	private long lastOneShot = -1L; // sequence of the newest one shot entry queued, levels before it stay put
+
+	static final class Entry {
+		String command;
+		final String key;
+		final long sequence;
+		Entry(String command, String key, long sequence) {
+			this.command = command;
+			this.key = key;
+			this.sequence = sequence;
+		}
+	}
+	/**
+	 * @param capacity the maximum number of commands waiting before producers wait
+	 */
+	public CommandQueue(int capacity) {
+		this.limit = capacity;
+		this.queue = new ArrayDeque<Entry>(capacity);
+		levelCodes.put("G5", "ZC");
+		levelCodes.put("G6", "ZC");
+		levelCodes.put("M45", "P");
+	}
+	/**
+	 * Declare a command as a level setting, to be coalesced with the newest waiting command for the same device.
+	 * @param code The command code, such as G5
+	 * @param addressFields The letters of the fields whose values identify the device, such as ZC for slot and channel.
+	 * The other fields are taken as levels.
+	 */
+	public void setLevelCode(String code, String addressFields) {
+		synchronized(mutex) {
+			levelCodes.put(code, addressFields);
+		}
+	}
+	/**
+	 * The coalescing key of a level command, the code, the address fields with their values and the letters of the other fields,
+	 * so G5 Z0 C1 P100 has the key G5 Z0 C1 P
+	 * @return the key, or null for a one shot command
+	 */
+	private String key(String command) {
+		int end = command.length();
+		int i = 0;
+		while(i < end && command.charAt(i) <= ' ')
+			++i;
+		int j = i;
+		while(j < end && command.charAt(j) > ' ')
+			++j;
+		String addressFields = levelCodes.get(command.substring(i, j));
+		if(addressFields == null)
+			return null;
+		StringBuilder sb = new StringBuilder(command.substring(i, j));
+		while(true) {
+			i = j;
+			while(i < end && command.charAt(i) <= ' ')
+				++i;
+			if(i == end)
+				break;
+			j = i;
+			while(j < end && command.charAt(j) > ' ')
+				++j;
+			sb.append(' ');
+			if(addressFields.indexOf(command.charAt(i)) != -1)
+				sb.append(command, i, j);
+			else
+				sb.append(command.charAt(i));
+		}
+		return sb.toString();
+	}
+	/**
+	 * Queue a command. A level command replaces the waiting one for the same device, if no one shot command
+	 * was queued after it.
+	 * Blocks while the queue is full, if interrupted the command is queued regardless and the interrupt status kept.
+	 * @param command The command
+	 */
+	public void addLast(String command) {
+		synchronized(mutex) {
+			String key = key(command);
+			if(replace(key, command))
+				return;
+			while(queue.size() >= limit) {
+				try {
+					mutex.wait();
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				if(replace(key, command))
+					return;
+			}
+			Entry e = new Entry(command, key, queued++);
+			queue.addLast(e);
+			if(key != null)
+				pending.put(key, e);
+			else
+				lastOneShot = e.sequence;
+			mutex.notifyAll();
+		}
+	}
+	/**
+	 * Replace the waiting level command with the key, if there is one and no one shot command is behind it.
+	 * @return true if replaced
+	 */
+	private boolean replace(String key, String command) {
+		if(key == null)
+			return false;
+		Entry e = pending.get(key);
+		if(e == null || e.sequence < lastOneShot)
+			return false;
+		if(DEBUG)
+			System.out.println("CommandQueue replacing "+e.command.trim()+" with "+command.trim());
+		e.command = command;
+		++coalesced;
+		return true;
+	}
+	/**
+	 * Retrieve the next command, waiting until one is available.
+	 * @return the command
+	 * @throws InterruptedException
+	 */
+	public String takeFirst() throws InterruptedException {
+		synchronized(mutex) {
+			while(queue.isEmpty())
+				mutex.wait();
+			return first();
+		}
+	}
+	/**
+	 * Retrieve the next command, waiting up to the timeout for one to be available.
+	 * @param timeoutMillis the longest wait
+	 * @return the command, or null if none came in time
+	 * @throws InterruptedException
+	 */
+	public String pollFirst(long timeoutMillis) throws InterruptedException {
+		synchronized(mutex) {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			while(queue.isEmpty()) {
+				long wait = deadline - System.nanoTime();
+				if(wait <= 0)
+					return null;
+				TimeUnit.NANOSECONDS.timedWait(mutex, wait);
+			}
+			return first();
+		}
+	}
+
+	private String first() {
+		Entry e = queue.pollFirst();
+		if(e.key != null && pending.get(e.key) == e)
+			pending.remove(e.key);
+		mutex.notifyAll();
+		return e.command;
+	}
+
+	public void clear() {
+		synchronized(mutex) {
+			queue.clear();
+			pending.clear();
+			mutex.notifyAll();
+		}
+	}
+
+	public int length() {
+		synchronized(mutex) {
+			return queue.size();
+		}
+	}
+
+	public int size() {
+		return length();
+	}
+	/**
+	 * @return the number of level commands replaced by a newer one before being sent
+	 */
+	public long getCoalesced() {
+		synchronized(mutex) {
+			return coalesced;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.neocoretechs.robocore.marlinspike;
+
+import java.util.Collection;
+/**
+ * Character trie over the directives registered with the {@link AsynchDemuxer}, used to resolve the directive of a
+ * Marlinspike response line in one pass over the line without creating substrings.<p>
+ * Built once the topics are registered, and read only thereafter, so lookups from several threads need no locking.
+ * The String returned for a match is the registered directive itself, so it may be used directly as the topic key.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public final class DirectiveTrie {
+	private final Node root = new Node();
+
+	static final class Node {
+		char[] labels = new char[0];
+		Node[] children = new Node[0];
+		String directive = null;
+
+		Node child(char c) {
+			for(int i = 0; i < labels.length; i++)
+				if(labels[i] == c)
+					return children[i];
+			return null;
+		}
+
+		Node addChild(char c) {
+			Node n = child(c);
+			if(n == null) {
+				int len = labels.length;
+				char[] nlabels = new char[len+1];
+				Node[] nchildren = new Node[len+1];
+				System.arraycopy(labels, 0, nlabels, 0, len);
+				System.arraycopy(children, 0, nchildren, 0, len);
+				nlabels[len] = c;
+				nchildren[len] = n = new Node();
+				labels = nlabels;
+				children = nchildren;
+			}
+			return n;
+		}
+	}
+
+	public DirectiveTrie(Collection<String> directives) {
+		for(String directive : directives)
+			add(directive);
+	}
+
+	private void add(String directive) {
+		Node n = root;
+		for(int i = 0; i < directive.length(); i++)
+			n = n.addChild(directive.charAt(i));
+		n.directive = directive;
+	}
+	/**
+	 * Find the directive leading the given range of the line.
+	 * @param line The response line
+	 * @param start Index of the first character of the directive portion
+	 * @param end Index after the last character of the directive portion
+	 * @param exact true if the whole range must be the directive, false to take the longest directive that begins it
+	 * @return The registered directive, or null if none matches
+	 */
+	public String match(CharSequence line, int start, int end, boolean exact) {
+		Node n = root;
+		String longest = null;
+		for(int i = start; i < end; i++) {
+			n = n.child(line.charAt(i));
+			if(n == null)
+				return (exact ? null : longest);
+			if(n.directive != null)
+				longest = n.directive;
+		}
+		return n.directive != null ? n.directive : (exact ? null : longest);
+	}
+}
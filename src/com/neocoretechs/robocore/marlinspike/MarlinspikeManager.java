@@ -22,6 +22,7 @@ import com.neocoretechs.robocore.config.TypedWrapper;
 import com.neocoretechs.robocore.marlinspike.AsynchDemuxer.topicNames;
 import com.neocoretechs.robocore.marlinspike.TypeSlotChannelEnable.typeNames;
 import com.neocoretechs.robocore.serialreader.ByteSerialDataPort;
+import com.neocoretechs.robocore.serialreader.DataPortCommandInterface;
 import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
 import com.neocoretechs.robocore.serialreader.marlinspikeport.Pins;
 import com.neocoretechs.robocore.serialreader.marlinspikeport.control.AbstractMotorControl;
@@ -283,12 +284,21 @@ public class MarlinspikeManager implements Serializable {
 	 * @throws IOException 
 	 */
 	public void configureDemuxer() throws IOException {
+		if(robot.getDataPort().equals("MarlinspikeDataPort"))
+			configureDemuxer(new MarlinspikeDataPort());
+		else
+			configureDemuxer(new ByteSerialDataPort(robot.getDataPort()));
+	}
+	/**
+	 * Configure the {@link AsynchDemuxer} as {@link #configureDemuxer()} does, on the given port rather than the one
+	 * named by the Robot configuration, such as one of several emulated boards in one process.
+	 * @param dataPort the port to the Marlinspike
+	 * @throws IOException
+	 */
+	public void configureDemuxer(DataPortCommandInterface dataPort) throws IOException {
 		asynchDemuxer = new AsynchDemuxer(this);
 		try {
-			if(robot.getDataPort().equals("MarlinspikeDataPort"))
-				asynchDemuxer.connect(new MarlinspikeDataPort());
-			else
-				asynchDemuxer.connect(new ByteSerialDataPort(robot.getDataPort()));
+			asynchDemuxer.connect(dataPort);
 		} catch(IOException ioe) {
 			throw new RuntimeException(ioe);
 		}
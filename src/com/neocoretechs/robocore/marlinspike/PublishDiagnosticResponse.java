@@ -11,6 +11,7 @@ import org.ros.node.topic.Publisher;
 
 import com.neocoretechs.robocore.machine.bridge.CircularBlockingDeque;
 import com.neocoretechs.robocore.machine.bridge.MachineReading;
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
 
 import diagnostic_msgs.DiagnosticStatus;
 /**
@@ -103,6 +104,14 @@ public class PublishDiagnosticResponse extends PublishResponses<DiagnosticStatus
 		}
 	}
 	
+	@Override
+	public void addTo(ReadingBuffer.Cursor reading) {
+		diagnostic_msgs.KeyValue kv2 = node.getTopicMessageFactory().newFromType(diagnostic_msgs.KeyValue._TYPE);
+		kv2.setKey(String.valueOf(messageSize)+".)");
+		kv2.setValue(reading.toString());
+		li.add(kv2);
+	}
+	
 	@Override
 	public String displayMessage() {
 		return msg.getHardwareId()+", "+msg.getName()+", "+msg.getMessage();
@@ -6,6 +6,7 @@ import org.ros.node.topic.Publisher;
 import com.neocoretechs.robocore.machine.bridge.CircularBlockingDeque;
 import com.neocoretechs.robocore.machine.bridge.MachineBridge;
 import com.neocoretechs.robocore.machine.bridge.MachineReading;
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
 import com.neocoretechs.robocore.machine.bridge.TopicListInterface;
 
 /**
@@ -22,7 +23,7 @@ import com.neocoretechs.robocore.machine.bridge.TopicListInterface;
  * @author Jonathan Groff (C) NeoCoreTechs 2021
  *
  */
-public abstract class PublishResponses<T> implements PublishResponseInterface<T> {
+public abstract class PublishResponses<T> implements PublishResponseInterface<T>, ReadingBuffer.ReadingVisitor {
 	private static boolean DEBUG = false;
 	protected ConnectedNode node;
 	protected Publisher<T> publisher;
@@ -74,12 +75,43 @@ public abstract class PublishResponses<T> implements PublishResponseInterface<T>
 	public abstract void addTo(MachineReading mr);
 	
 	public abstract String displayMessage();
+	/**
+	 * Add a reading drained from a {@link ReadingBuffer} to the message. By default a MachineReading is made from it
+	 * and passed to {@link #addTo(MachineReading)}, publishers of frequent readings override this to copy the fields directly.
+	 * @param reading the reading, valid only for the duration of the call
+	 */
+	public void addTo(ReadingBuffer.Cursor reading) {
+		addTo(reading.toMachineReading());
+	}
+	
+	@Override
+	public void visit(ReadingBuffer.Cursor reading) {
+		++messageSize;
+		addTo(reading);
+	}
+	/**
+	 * Drain the readings of a bridge backed by a {@link ReadingBuffer} into one message, as {@link #publish()}
+	 * does for a queue of MachineReadings, without making an object per reading.
+	 */
+	private void publish(ReadingBuffer readings) {
+		if(readings.isEmpty())
+			return;
+		setUp();
+		messageSize = 0;
+		readings.drain(this, readings.capacity());
+		if(messageSize > 0)
+			outgoingQueue.addLast(msg);
+	}
 	
 	@Override
 	public void publish() {
 		//while(shouldRun ) {
 			//try {
 				MachineBridge mb = getTopicList().getMachineBridge();
+				if(mb.getReadings() != null) {
+					publish(mb.getReadings());
+					return;
+				}
 				synchronized(mb) {
 					if( mb.get().isEmpty() ) {
 						return;
@@ -6,6 +6,7 @@ import org.ros.node.topic.Publisher;
 
 import com.neocoretechs.robocore.machine.bridge.CircularBlockingDeque;
 import com.neocoretechs.robocore.machine.bridge.MachineReading;
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
 
 import sensor_msgs.Range;
 
@@ -36,6 +37,11 @@ public class PublishUltrasonicResponse extends PublishResponses<Range> {
 		Double range = mr.getReadingValDouble();
 		msg.setRange(range.floatValue());
 	}
+	
+	@Override
+	public void addTo(ReadingBuffer.Cursor reading) {
+		msg.setRange((float)reading.getReadingValDouble());
+	}
 
 	@Override
 	public String displayMessage() {
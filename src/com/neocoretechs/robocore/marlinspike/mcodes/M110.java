@@ -0,0 +1,18 @@
+package com.neocoretechs.robocore.marlinspike.mcodes;
+
+import com.neocoretechs.robocore.marlinspike.AbstractBasicResponse;
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer.topicNames;
+/**
+ * M110 [N&lt;line&gt;] - Set the current line number used to sequence commands sent with
+ * the N&lt;line&gt; prefix and *&lt;checksum&gt; suffix. Issued by the pipelined mode of
+ * {@link AsynchDemuxer} to synchronize its sequence numbers with the Marlinspike.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class M110 extends AbstractBasicResponse {
+	public M110(AsynchDemuxer asynchDemuxer) {
+		super(asynchDemuxer, topicNames.M110.val());
+	}
+
+}
@@ -1,6 +1,7 @@
 package com.neocoretechs.robocore.marlinspike.mcodes.status;
 
 import com.neocoretechs.robocore.machine.bridge.MachineReading;
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
 import com.neocoretechs.robocore.marlinspike.AbstractBasicDataLoader;
 import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
 import com.neocoretechs.robocore.marlinspike.AsynchDemuxer.topicNames;
@@ -33,9 +34,15 @@ public class battery extends AbstractBasicDataLoader {
 	}
 	@Override
 	public MachineReading formatMachineReading(String sdata) {
-		int reading = asynchDemuxer.getReadingNumber(sdata);
-		int datai =  asynchDemuxer.getReadingValueInt(sdata);
+		int reading = AsynchDemuxer.getReadingNumber(sdata);
+		int datai =  AsynchDemuxer.getReadingValueInt(sdata);
 		return new MachineReading(1, reading, reading, datai);		
 	}
 
+	@Override
+	public void loadReading(ReadingBuffer readings, String sdata) {
+		int reading = AsynchDemuxer.getReadingNumber(sdata);
+		readings.add(1, reading, reading, AsynchDemuxer.getReadingValueInt(sdata));
+	}
+
 }
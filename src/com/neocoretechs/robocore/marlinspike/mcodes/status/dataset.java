@@ -1,6 +1,7 @@
 package com.neocoretechs.robocore.marlinspike.mcodes.status;
 
 import com.neocoretechs.robocore.machine.bridge.MachineReading;
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
 import com.neocoretechs.robocore.marlinspike.AbstractBasicDataLoader;
 import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
 import com.neocoretechs.robocore.marlinspike.AsynchDemuxer.topicNames;
@@ -26,4 +27,9 @@ public class dataset extends AbstractBasicDataLoader {
 		return new MachineReading(sdata);
 	}
 
+	@Override
+	public void loadReading(ReadingBuffer readings, String sdata) {
+		readings.add(sdata);
+	}
+
 }
@@ -1,6 +1,7 @@
 package com.neocoretechs.robocore.marlinspike.mcodes.status;
 
 import com.neocoretechs.robocore.machine.bridge.MachineReading;
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
 import com.neocoretechs.robocore.marlinspike.AbstractBasicDataLoader;
 import com.neocoretechs.robocore.marlinspike.ActivationInterface;
 import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
@@ -43,10 +44,15 @@ public class digitalpin extends AbstractBasicDataLoader implements ActivationInt
 	
 	@Override
 	public MachineReading formatMachineReading(String sdata) {
-		//int reading = asynchDemuxer.getReadingNumber(sdata);
-		//int data =  asynchDemuxer.getReadingValueInt(sdata);
-		int[] data = AsynchDemuxer.parseSingleLineIntegerResults(sdata);
-		return new MachineReading(1, 1, data[0], data[1]);
+		// pin and value parsed in place
+		int pin = AsynchDemuxer.getReadingNumber(sdata);
+		int data =  AsynchDemuxer.getReadingValueInt(sdata);
+		return new MachineReading(1, 1, pin, data);
+	}
+
+	@Override
+	public void loadReading(ReadingBuffer readings, String sdata) {
+		readings.add(1, 1, AsynchDemuxer.getReadingNumber(sdata), AsynchDemuxer.getReadingValueInt(sdata));
 	}
 
 	@Override
@@ -2,6 +2,7 @@ package com.neocoretechs.robocore.marlinspike.mcodes.status;
 
 
 import com.neocoretechs.robocore.machine.bridge.MachineReading;
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
 import com.neocoretechs.robocore.marlinspike.AbstractBasicDataLoader;
 import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
 import com.neocoretechs.robocore.marlinspike.AsynchDemuxer.topicNames;
@@ -32,9 +33,15 @@ public class eeprom extends AbstractBasicDataLoader {
 	}
 	@Override
 	public MachineReading formatMachineReading(String sdata) {
-		int reading = asynchDemuxer.getReadingNumber(sdata);
+		int reading = AsynchDemuxer.getReadingNumber(sdata);
 		String datax =  asynchDemuxer.getReadingValueString(sdata);
 		return new MachineReading(1, reading, reading, datax);
 	}
 
+	@Override
+	public void loadReading(ReadingBuffer readings, String sdata) {
+		int reading = AsynchDemuxer.getReadingNumber(sdata);
+		readings.add(1, reading, reading, asynchDemuxer.getReadingValueString(sdata));
+	}
+
 }
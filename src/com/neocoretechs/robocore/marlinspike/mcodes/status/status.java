@@ -2,6 +2,7 @@ package com.neocoretechs.robocore.marlinspike.mcodes.status;
 
 
 import com.neocoretechs.robocore.machine.bridge.MachineReading;
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
 import com.neocoretechs.robocore.marlinspike.AbstractBasicDataLoader;
 import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
 import com.neocoretechs.robocore.marlinspike.AsynchDemuxer.topicNames;
@@ -27,4 +28,9 @@ public class status extends AbstractBasicDataLoader {
 		return new MachineReading(sdata);
 	}
 
+	@Override
+	public void loadReading(ReadingBuffer readings, String sdata) {
+		readings.add(sdata);
+	}
+
 }
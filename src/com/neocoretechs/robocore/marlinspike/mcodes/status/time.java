@@ -2,6 +2,7 @@ package com.neocoretechs.robocore.marlinspike.mcodes.status;
 
 
 import com.neocoretechs.robocore.machine.bridge.MachineReading;
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
 import com.neocoretechs.robocore.marlinspike.AbstractBasicDataLoader;
 import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
 import com.neocoretechs.robocore.marlinspike.AsynchDemuxer.topicNames;
@@ -29,5 +30,10 @@ public class time extends AbstractBasicDataLoader {
 	public MachineReading formatMachineReading(String sdata) {
 		return new MachineReading(sdata);
 	}
+
+	@Override
+	public void loadReading(ReadingBuffer readings, String sdata) {
+		readings.add(sdata);
+	}
 	
 }
@@ -31,6 +31,10 @@ import com.neocoretechs.robocore.machine.bridge.CircularBlockingDeque;
 import com.neocoretechs.robocore.marlinspike.PublishDiagnosticResponse;
 import com.neocoretechs.robocore.pca.ComputeVariance;
 import com.neocoretechs.robocore.pca.Point3f;
+import com.neocoretechs.robocore.pca.SlidingWindowCovariance;
+import com.neocoretechs.robocore.serialreader.IMUAcquisition;
+import com.neocoretechs.robocore.serialreader.IMUSample;
+import com.neocoretechs.robocore.serialreader.IMUSampleRing;
 import com.neocoretechs.robocore.serialreader.IMUSerialDataPort;
 import com.neocoretechs.robocore.serialreader.UltrasonicSerialDataPort;
 
@@ -114,6 +118,9 @@ public class FusionIMURange   {
 	Instant lastTime = Instant.now();
 
 	IMUSerialDataPort imuDataPort;
+	static final int IMU_RING = 64; // samples kept for the readers of imuRing
+	final IMUSampleRing imuRing = new IMUSampleRing(IMU_RING);
+	IMUAcquisition acquisition = null;
 	
 	static final String REMAP_URM_PORT = "__urmport";
 	static final String REMAP_IMU_PORT = "__imuport";
@@ -166,9 +173,11 @@ public class FusionIMURange   {
 	double last_distance = 0;
 	private int WINSIZE = 20;
 	private CircularBlockingDeque<EulerTime> eulerdata = new CircularBlockingDeque<EulerTime>(2);
+	public CircularBlockingDeque<sensor_msgs.Imu> imuMessages = new CircularBlockingDeque<sensor_msgs.Imu>(WINSIZE);
 	public CircularBlockingDeque<String> dataQueue = new CircularBlockingDeque<String>(WINSIZE);
 	public CircularBlockingDeque<String> statusQueue = new CircularBlockingDeque<String>(WINSIZE);
-	private CircularBlockingDeque<Point3f> pointWindow = new CircularBlockingDeque<Point3f>(WINSIZE);
+	private SlidingWindowCovariance pointWindow = new SlidingWindowCovariance(WINSIZE);
+	private ComputeVariance windowVariance = new ComputeVariance(); // reused for each full window
 	static enum MODE { HCSR04, URM37};
 	static MODE SENSOR_TYPE = MODE.URM37;
 	private Runnable readThread, pubThread, timerThread;
@@ -275,51 +284,49 @@ public class FusionIMURange   {
 	}
 	
 	/**
-	 * Retrieve the data from the IMU
+	 * The samples of the IMU as they are read, for readers in this process such as heading hold,
+	 * which take the latest or wait for the next without holding up the acquisition.
+	 * @return the ring of samples
+	 */
+	public IMUSampleRing getIMURing() {
+		return imuRing;
+	}
+	/**
+	 * Fill the message from a sample of the IMU
 	 * @param eulers the EulerTime instance
+	 * @param imuSample the sample taken from the ring
 	 * @return true if data has changed from last batch of processing
-	 * @throws IOException
 	 */
-	public boolean getIMU(EulerTime eulers) throws IOException{
+	public boolean getIMU(EulerTime eulers, IMUSample imuSample) {
 		if( DEBUG )
-			System.out.println("reading ACCEL");
+			System.out.println("IMU sample "+imuSample.sequence);
 		synchronized(eulers.accels) {
-			eulers.accels = imuDataPort.readAccel();
+			System.arraycopy(imuSample.accels, 0, eulers.accels, 0, 3);
 			if(DEBUG)
 				System.out.println("Accel:"+eulers.accels[0]+" "+eulers.accels[1]+" "+eulers.accels[2]);
 		}
-		if( DEBUG )
-			System.out.println("reading GYRO");
 		synchronized(eulers.gyros) {
-			eulers.gyros = imuDataPort.readGyro();
+			System.arraycopy(imuSample.gyros, 0, eulers.gyros, 0, 3);
 			if( DEBUG)
 				System.out.println("Gyros:"+eulers.gyros[0]+" "+eulers.gyros[1]+" "+eulers.gyros[2]);
 		}
-		if( DEBUG )
-			System.out.println("reading MAG");
 		synchronized(eulers.mags) {
-			eulers.mags = imuDataPort.readMag();
+			System.arraycopy(imuSample.mags, 0, eulers.mags, 0, 3);
 			if(DEBUG)
 				System.out.println("Mag:"+eulers.mags[0]+" "+eulers.mags[1]+" "+eulers.mags[2]);
 		}
-		if( DEBUG )
-			System.out.println("reading EULER");
 		synchronized(eulers.eulers) {
-			eulers.eulers = imuDataPort.readEuler();
+			System.arraycopy(imuSample.eulers, 0, eulers.eulers, 0, 3);
 			if(DEBUG)
 				System.out.println("Eulers:"+eulers.eulers[0]+" "+eulers.eulers[1]+" "+eulers.eulers[2]);
 		}
-		if( DEBUG )
-			System.out.println("reading QUATERNION");
 		synchronized(eulers.quats) {
-			eulers.quats = imuDataPort.readQuaternion();
+			System.arraycopy(imuSample.quats, 0, eulers.quats, 0, 4);
 			if(DEBUG)
 				System.out.println("Quats:"+eulers.quats[0]+" "+eulers.quats[1]+" "+eulers.quats[2]+" "+eulers.quats[3]);
 		}
+		eulers.temp = imuSample.temperature;
 		if(DEBUG)
-			System.out.println("reading TEMPERATURE");
-		eulers.temp = imuDataPort.readTemperature();
-		if(DEBUG && eulers.temp != Integer.MAX_VALUE)
 			System.out.println("Temp:"+eulers.temp);
 		
 		boolean dataChanged = hasDataChanged(eulers);
@@ -659,36 +666,15 @@ public class FusionIMURange   {
 		//StringBuilder sb = new StringBuilder();
 		//
 		Point3f winPoint = new Point3f((float)x,(float)y,(float)delta);
-		pointWindow.addLast(winPoint);
-		if(pointWindow.length() == WINSIZE) {
-			//
-			float latestDist = 0.0f;
-			float latestTime = Float.MIN_VALUE;
-			// --- MIN DISTANCE ---
-			//sb.append(",mindistance=");
-			float minDist = Float.MAX_VALUE;
-			float maxDist = Float.MIN_VALUE;
-			float sumDist = 0.0f;
-			double minTime = Double.MAX_VALUE;
-			double maxTime = Double.MIN_VALUE;
-			double sumTime = 0.0f;
-			for (Point3f p : pointWindow) {
-				float d = (float)Math.sqrt(p.x()*p.x() + p.y()*p.y());
-				if (p.t() > latestTime) {
-					latestTime = p.t();
-					latestDist = d;
-				}
-				if (d < minDist)
-					minDist = d;
-				if (d > maxDist)
-					maxDist = d;
-				if(p.t() < minTime)
-					minTime = p.t();
-				if(p.t() > maxTime)
-					maxTime = p.t();
-				sumDist += Math.sqrt(p.x()*p.x() + p.y()*p.y());
-				sumTime += p.t();
-			}
+		pointWindow.add(winPoint);
+		if(pointWindow.isFull()) {
+			// the window statistics are kept as it slides, no pass over it here
+			float latestDist = pointWindow.getLatestDistance();
+			float latestTime = pointWindow.getMaxTime();
+			float minDist = pointWindow.getMinDistance();
+			float maxDist = pointWindow.getMaxDistance();
+			double minTime = pointWindow.getMinTime();
+			double maxTime = pointWindow.getMaxTime();
 			sb.put("nowtime",String.format("%s",lastTime.plusNanos((long) latestTime)));
 			sb.put("nowdistance",Float.parseFloat(String.format("%3.3f", latestDist)));
 			sb.put("mindistance",Float.parseFloat(String.format("%3.3f", minDist)));
@@ -697,19 +683,12 @@ public class FusionIMURange   {
 			sb.put("maxtime",String.format("%s",lastTime.plusNanos((long) maxTime)));
 			// --- AVERAGE DISTANCE ---
 			//sb.append(",avedistance=");
-			float avgDist = sumDist / pointWindow.size();
-			double avgTime = sumTime / pointWindow.size();
+			float avgDist = (float)pointWindow.getMeanDistance();
+			double avgTime = pointWindow.getMeanTime();
 			sb.put("avedistance",Float.parseFloat(String.format("%3.3f", avgDist)));
 			sb.put("avetime",String.format("%s", avgTime));
-			CircularBlockingDeque<Point3f> newWindow = new CircularBlockingDeque<Point3f>(pointWindow.size());
-			for(int i = 0; i < pointWindow.size(); i++) {
-				Point3f px = pointWindow.get(i);
-				double td = px.t() - minTime;
-				Point3f nx = new Point3f(px.x(), px.y(), (float)td);
-				newWindow.add(i, nx);
-			}
-			ComputeVariance c = new ComputeVariance();
-			c.leastVariance(newWindow);
+			ComputeVariance c = windowVariance;
+			c.leastVariance(pointWindow);
 			pointWindow.poll();
 			// robot-frame PCA direction (unit vector)
 			double v_x = c.getEigvec3().x;
@@ -938,12 +917,13 @@ public class FusionIMURange   {
 		}
 	}
 	/**
-	 * Read the IMU and queue the results onto the eulerdata mini-queue
+	 * Start the acquisition of the IMU into the ring, then turn the samples into messages on the eulerdata mini-queue
+	 * and the queue of IMU messages
 	 */
 	class ultraPub implements Runnable, Notifier {
 		public volatile boolean shouldRun = true;
 		boolean isRunning = false;
-		private int sequenceNumber, lastSequenceNumber;
+		private volatile int sequenceNumber, lastSequenceNumber;
 		org.ros.message.Time time = null;
 		@Override
 		public boolean isStarted() {
@@ -980,66 +960,71 @@ public class FusionIMURange   {
 			// Publish status to message bus, then, begin calibration if necessary
 			// with prompts and status to status bus
 			dataQueue.clear();
+			// one thread reads the IMU into the ring, this one turns the samples into messages
+			acquisition = new IMUAcquisition(this::acquire, imuRing);
+			acquisition.start();
+			IMUSample sample = new IMUSample();
+			long seen = -1L;
 			while(shouldRun) {
-				/*
-					statPub.add(e.getMessage());
-					StackTraceElement[] se = e.getStackTrace();
-					for(StackTraceElement ste: se)
-						statPub.add(ste.getClassName()+","+ste.getMethodName()+","+ste.getFileName()+","+ste.getLineNumber());
-					System.out.println(e);
-					e.printStackTrace();
-					new PublishDiagnosticResponse(connectedNode, statpub, statusQueue, "IMU INITIALIZATION", 
-							diagnostic_msgs.DiagnosticStatus.WARN, statPub);
-					while(!statusQueue.isEmpty()) {
-						statpub.publish(statusQueue.takeFirst());
-						Thread.sleep(1);
-					}
-					Thread.sleep(1000);
-				 */
-				// Begin IMU message processing
-				//
 				try {
-					if(display_revision) {
-						display_revision = false;
-						statusQueue.addLast(imuDataPort.displayRevision(imuDataPort.getRevision()));
-					}
-					time1 = System.currentTimeMillis();
-					time = org.ros.message.Time.fromMillis(time1);
+					if(!imuRing.awaitNext(seen, sample, 1000L))
+						continue;
+				} catch (InterruptedException e) {
+					break;
+				}
+				seen = sample.sequence;
+				time1 = System.currentTimeMillis();
+				time = org.ros.message.Time.fromMillis(time1);
+				++sequenceNumber;
+				EulerTime eulers = new EulerTime(time, sequenceNumber);
+				if(getIMU(eulers, sample)) {
+					eulerdata.addLast(eulers);
+					imuMessages.addLast(eulers.ImuMessage);
+				}
+			}
+			acquisition.stop();
+		}
+		/**
+		 * Read a sample for the {@link IMUAcquisition}. Everything else done with the port is done here too,
+		 * on the acquisition thread, so it cannot interleave with a reading.
+		 */
+		private IMUSample acquire(IMUSample sample) throws IOException {
+			if(display_revision) {
+				display_revision = false;
+				statusQueue.addLast(imuDataPort.displayRevision(imuDataPort.getRevision()));
+			}
+			long start = System.currentTimeMillis();
+			try {
+				imuDataPort.readSample(sample);
+			} catch (IOException e) {
+				System.out.println("IMU publishing loop malfunction "+e.getMessage()+" at "+LocalDateTime.ofInstant(Instant.ofEpochMilli(System.currentTimeMillis()), ZoneId.systemDefault()));
+				statusQueue.addLast("IMU publishing loop malfunction:");
+				statusQueue.addLast(e.getMessage());
+				throw e;
+			}
+			if(System.currentTimeMillis() - start >= 1000) {
+				if(SAMPLERATE) {
+					statusQueue.addLast("IMU Samples per second:"+(sequenceNumber-lastSequenceNumber));
 					lastSequenceNumber = sequenceNumber;
-					++sequenceNumber;
-					EulerTime eulers = new EulerTime(time, sequenceNumber);
-					if(getIMU(eulers)) {
-						eulerdata.addLast(eulers);
-						if(System.currentTimeMillis() - time1 >= 1000) {
-							if(SAMPLERATE) {
-								statusQueue.addLast("IMU Samples per second:"+(sequenceNumber-lastSequenceNumber));
-							}
-							// If overall system status falls below 1, attempt an on-the-fly recalibration
-							try {
-								// If any individual element falls below total usability, attempt an on-the-fly recalibration
-								if( (time1-startTime) > 60000 ) { // give it 60 seconds to come up from last recalib
-									byte[] stat = imuDataPort.getCalibrationStatus();
-									startTime = time1; // start time is when we recalibrated last
-									if( stat == null || stat[1] == 0 || stat[2] == 0 || stat[3] == 0) {
-										imuDataPort.resetCalibration();
-										statusQueue.addLast("** SYSTEM RESET AND RECALIBRATED");
-										stat = imuDataPort.getCalibrationStatus();
-										statusQueue.addLast(imuDataPort.formatCalibrationStatus(stat));
-									}
-								}
-							} catch(IOException ioe) { // calibration
-								ioe.printStackTrace();
-							}
+				}
+				// If overall system status falls below 1, attempt an on-the-fly recalibration
+				try {
+					// If any individual element falls below total usability, attempt an on-the-fly recalibration
+					if( (start-startTime) > 60000 ) { // give it 60 seconds to come up from last recalib
+						byte[] stat = imuDataPort.getCalibrationStatus();
+						startTime = start; // start time is when we recalibrated last
+						if( stat == null || stat[1] == 0 || stat[2] == 0 || stat[3] == 0) {
+							imuDataPort.resetCalibration();
+							statusQueue.addLast("** SYSTEM RESET AND RECALIBRATED");
+							stat = imuDataPort.getCalibrationStatus();
+							statusQueue.addLast(imuDataPort.formatCalibrationStatus(stat));
 						}
-					} // data changed - true return from getIMU
-
-				} catch (IOException e) {
-					System.out.println("IMU publishing loop malfunction "+e.getMessage()+" at "+LocalDateTime.ofInstant(Instant.ofEpochMilli(System.currentTimeMillis()), ZoneId.systemDefault()));
-					statusQueue.addLast("IMU publishing loop malfunction:");
-					statusQueue.addLast(e.getMessage());
-					e.printStackTrace();
+					}
+				} catch(IOException ioe) { // calibration
+					ioe.printStackTrace();
 				}
 			}
+			return sample;
 		}
 
 		private void calibrate() {
@@ -1266,30 +1251,15 @@ public class FusionIMURange   {
 				protected void loop() throws InterruptedException {
 					if(DEBUG)
 						System.out.println("<<< Enter publishing loop >>>");
-					//
-					// Begin IMU message processing
-					//
-					EulerTime et = fusionIMU.eulerdata.peekLast();
-					if(et != null) {
-						synchronized(et.ImuMessage) {
-							rawIMUPubs.imus.addLast(et.ImuMessage);
-						}
-					}
-					try {
-						Thread.sleep(100);
-					} catch (InterruptedException e) {}
-					String data = fusionIMU.dataQueue.poll();
-					if(data != null) {
-						if(DEBUG)
-							System.out.println("Publishing data queue:"+fusionIMU.dataQueue.length());
-						std_msgs.String sPub = new std_msgs.String();
-						sPub.setData(data);
-						rangepub.publish(sPub);
-						if(DEBUG)
-							System.out.println("Published data queue:"+fusionIMU.dataQueue.length());
-					} else {
-						Thread.sleep(20);
-					}
+					// IMU messages go straight from the acquisition to RawIMUPubs, wait for the fused range data
+					String data = fusionIMU.dataQueue.takeFirst();
+					if(DEBUG)
+						System.out.println("Publishing data queue:"+fusionIMU.dataQueue.length());
+					std_msgs.String sPub = new std_msgs.String();
+					sPub.setData(data);
+					rangepub.publish(sPub);
+					if(DEBUG)
+						System.out.println("Published data queue:"+fusionIMU.dataQueue.length());
 					if(DEBUG)
 						if(fusionIMU.dataQueue.isEmpty())
 							System.out.println("empty");
@@ -1349,17 +1319,14 @@ public class FusionIMURange   {
 					// Publish status to message bus, then, begin calibration if necessary
 					// with prompts and status to status bus
 					ArrayList<String> stats = new ArrayList<String>();
+					stats.add(fusionIMU.statusQueue.takeFirst()); // wait for the first, then take any others with it
 					fusionIMU.statusQueue.drainTo(stats);
-					if(!stats.isEmpty()) {
-						if(DEBUG)
-							System.out.println("Publishing response queue:"+stats.size()+" residual:"+fusionIMU.statusQueue.size());
-						new PublishDiagnosticResponse(connectedNode, statuspub, diags, "robocore/status", 
-								diagnostic_msgs.DiagnosticStatus.OK, (Collection<String>)stats);
-						if(DEBUG)
-							System.out.println("Published response queue:"+stats.size());
-					} else {
-						Thread.sleep(200);
-					}
+					if(DEBUG)
+						System.out.println("Publishing response queue:"+stats.size()+" residual:"+fusionIMU.statusQueue.size());
+					new PublishDiagnosticResponse(connectedNode, statuspub, diags, "robocore/status", 
+							diagnostic_msgs.DiagnosticStatus.OK, (Collection<String>)stats);
+					if(DEBUG)
+						System.out.println("Published response queue:"+stats.size());
 				}
 			});
 		}
@@ -1372,7 +1339,6 @@ public class FusionIMURange   {
 		private static final boolean SAMPLERATE = false; // display pubs per second
 		public static FusionIMURange fusionIMU;
 		Map<String, String> remaps;
-		public CircularBlockingDeque<sensor_msgs.Imu> imus = new CircularBlockingDeque<sensor_msgs.Imu>(20);
 		//-------------------------------------
 		public RawIMUPubs(ConnectedNode connectedNode, FusionIMURange fusionIMURange) {
 			fusionIMU = fusionIMURange;
@@ -1410,9 +1376,9 @@ public class FusionIMURange   {
 					if(DEBUG)
 						System.out.println("<<< Enter publishing loop >>>");
 					// Publish IMU to message bus
-					sensor_msgs.Imu imuMessage = imus.take();
+					sensor_msgs.Imu imuMessage = fusionIMU.imuMessages.takeFirst();
 					if(DEBUG)
-						System.out.println("Publishing queue:"+imus.size());
+						System.out.println("Publishing queue:"+fusionIMU.imuMessages.size());
 					pubsimu.publish(imuMessage);
 				}
 			});
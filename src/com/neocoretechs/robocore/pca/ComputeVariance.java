@@ -14,6 +14,8 @@ public class ComputeVariance {
 	private Matrix3 m_covariance;
 	private Point3f centroid;
 	private double confidence;
+	private boolean closedForm = true;
+	private final double[] values = new double[3], vectors = new double[9]; // least to greatest, vector k at 3k
 	/**
 	 * @return the variance1
 	 */
@@ -56,6 +58,18 @@ public class ComputeVariance {
 	public double getConfidence() {
 		return confidence;
 	}
+	/**
+	 * @return true if the eigenvalues and eigenvectors are found in closed form, the default
+	 */
+	public boolean isClosedForm() {
+		return closedForm;
+	}
+	/**
+	 * @param closedForm false to use the general iterative {@link EigenvalueDecomposition}
+	 */
+	public void setClosedForm(boolean closedForm) {
+		this.closedForm = closedForm;
+	}
 	/**
 	 * @return the m_covariance
 	 */
@@ -124,6 +138,61 @@ public class ComputeVariance {
 			System.out.println(this.getClass().getName()+" least_variance_direction...computing covariance, eigenvalues and eigenvectors");
 		}
 		m_covariance = computeCovariance(window);
+		decompose();
+	}
+	/**
+	 * Principal component analysis of a window whose covariance is kept up to date as it slides, the same as
+	 * {@link #leastVariance(List)} of its points without the passes over them. The centroid is the mean of the
+	 * points as they are, time included.
+	 * @param window the points
+	 */
+	public void leastVariance(SlidingWindowCovariance window) {
+		if(DEBUG) {
+			System.out.println(this.getClass().getName()+" least_variance_direction...using sliding covariance, computing eigenvalues and eigenvectors");
+		}
+		if(m_covariance == null)
+			m_covariance = new Matrix3();
+		window.getCovariance(m_covariance);
+		centroid = window.getCentroid();
+		decompose();
+	}
+	/**
+	 * Eigenvalues and eigenvectors of the covariance, least to greatest, by {@link SymmetricEigen3} unless
+	 * the iterative {@link EigenvalueDecomposition} was asked for. Each eigenvector points forward in time.
+	 */
+	private void decompose() {
+		if(closedForm) {
+			SymmetricEigen3.decompose(m_covariance.getValues(), values, vectors);
+		} else {
+			iterativeDecompose();
+		}
+		variance1 = values[0];
+		variance2 = values[1];
+		variance3 = values[2];
+		if(DEBUG) {
+			System.out.println(this.getClass().getName()+" least_variance_direction...variance1="+variance1+" variance2="+variance2+" variance3="+variance3);
+		}
+		eigVec1 = eigenvector(0);
+		eigVec2 = eigenvector(1);
+		eigVec3 = eigenvector(2);
+		confidence = variance3 / (variance2 + variance1 + EigenvalueDecomposition.eps);
+		if( DEBUG) {
+			System.out.println(this.getClass().getName()+" least_variance_direction...eigenvector eigvec1="+eigVec1+" eigvec2="+eigVec2+" eigvec3="+eigVec3);
+		}
+	}
+	/**
+	 * The sign of an eigenvector is arbitrary, turn it so its time component is positive, or if none, y then x.
+	 */
+	private Vector4d eigenvector(int k) {
+		double x = vectors[3*k], y = vectors[3*k+1], z = vectors[3*k+2];
+		if(z < 0.0 || (z == 0.0 && (y < 0.0 || (y == 0.0 && x < 0.0))))
+			return new Vector4d(-x, -y, -z);
+		return new Vector4d(x, y, z);
+	}
+	/**
+	 * The general iterative decomposition, into values and vectors least to greatest.
+	 */
+	private void iterativeDecompose() {
 		EigenvalueDecomposition eigenvalue_decomp = new EigenvalueDecomposition(m_covariance);
 		double[] eigenvalues_vector = eigenvalue_decomp.getRealEigenvalues();
 		int min_index = 0, max_index = 0, middle_index = 0;
@@ -141,21 +210,12 @@ public class ComputeVariance {
 			}
 		while (middle_index==min_index || middle_index==max_index)
 			middle_index++;
-
-		variance1 = eigenvalues_vector[min_index];
-		variance2 = eigenvalues_vector[middle_index];
-		variance3 = eigenvalues_vector[max_index];
-		if(DEBUG) {
-			System.out.println(this.getClass().getName()+" least_variance_direction...variance1="+variance1+" variance2="+variance2+" variance3="+variance3);
-		}
 		Matrix3 eigenvectors_matrix = eigenvalue_decomp.getV();
-
-		eigVec1 = new Vector4d(eigenvectors_matrix.get(0, min_index),eigenvectors_matrix.get(1, min_index),eigenvectors_matrix.get(2, min_index));
-		eigVec2 = new Vector4d(eigenvectors_matrix.get(0, middle_index), eigenvectors_matrix.get(1, middle_index), eigenvectors_matrix.get(2, middle_index));
-		eigVec3 = new Vector4d(eigenvectors_matrix.get(0, max_index), eigenvectors_matrix.get(1, max_index), eigenvectors_matrix.get(2, max_index));
-		confidence = variance3 / (variance2 + variance1 + EigenvalueDecomposition.eps);
-		if( DEBUG) {
-			System.out.println(this.getClass().getName()+" least_variance_direction...eigenvector eigvec1="+eigVec1+" eigvec2="+eigVec2+" eigvec3="+eigVec3);
+		int[] order = {min_index, middle_index, max_index};
+		for(int k = 0; k < 3; k++) {
+			values[k] = eigenvalues_vector[order[k]];
+			for(int i = 0; i < 3; i++)
+				vectors[3*k+i] = eigenvectors_matrix.get(i, order[k]);
 		}
 	}
 
@@ -0,0 +1,281 @@
+package com.neocoretechs.robocore.pca;
+
+import java.util.Arrays;
+/**
+ * The statistics of a sliding window of {@link Point3f} x, y, time kept up to date as each point enters and leaves,
+ * in constant time, in place of passes over the whole window for each point.<p>
+ * The mean and the covariance of x, y and t are updated by Welford's method, adding the new point and removing the
+ * oldest, the sums of products taken about the running mean, and times taken from an origin at the oldest point so a
+ * large t does not swamp the spread. Rounding of the removals accumulates, so every {@link #RESYNC} removals the sums
+ * are computed again from the window and the origin moved up.
+ * The least and greatest distance from the origin, sqrt(x*x+y*y), and the earliest and latest time, are kept in
+ * monotonic deques: each holds the points that could still become the extreme, in order, the extreme at the head.
+ * The covariance, as ComputeVariance computes it, divided by the count, feeds {@link ComputeVariance#leastVariance(SlidingWindowCovariance)}.<p>
+ * Not thread safe.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class SlidingWindowCovariance {
+	public static final int RESYNC = 1024; // removals between exact recomputations of the sums
+	private final int capacity;
+	private final float[] xs, ys, ts, ds;
+	private long first = 0L, next = 0L; // sequence of the oldest point and of the next point
+	private double origin; // time the t sums are taken from
+	private double mx, my, mt, md;
+	private double cxx, cyy, ctt, cxy, cxt, cyt;
+	private int removals = 0;
+	private final Extremes minDistance, maxDistance, minTime, maxTime;
+	/**
+	 * The points that could still be the least, or greatest, value in the window, oldest first, the extreme at the head.
+	 */
+	private static final class Extremes {
+		private final long[] sequences;
+		private final double[] values;
+		private final boolean greatest;
+		private long head = 0L, tail = 0L;
+
+		Extremes(int capacity, boolean greatest) {
+			sequences = new long[capacity];
+			values = new double[capacity];
+			this.greatest = greatest;
+		}
+		/**
+		 * Drop the points the new one makes irrelevant, those behind it no more extreme, keeping equals so the
+		 * oldest of equal extremes is at the head.
+		 */
+		void push(long sequence, double value) {
+			int n = sequences.length;
+			while(tail > head) {
+				double back = values[(int)((tail - 1) % n)];
+				if(greatest ? back >= value : back <= value)
+					break;
+				--tail;
+			}
+			sequences[(int)(tail % n)] = sequence;
+			values[(int)(tail % n)] = value;
+			++tail;
+		}
+
+		void evict(long sequence) {
+			if(tail > head && sequences[(int)(head % sequences.length)] == sequence)
+				++head;
+		}
+
+		double value() {
+			return values[(int)(head % values.length)];
+		}
+
+		long sequence() {
+			return sequences[(int)(head % sequences.length)];
+		}
+
+		void clear() {
+			head = tail = 0L;
+		}
+	}
+	/**
+	 * @param capacity points in the full window
+	 */
+	public SlidingWindowCovariance(int capacity) {
+		if(capacity < 1)
+			throw new IllegalArgumentException("Window capacity must be positive:"+capacity);
+		this.capacity = capacity;
+		xs = new float[capacity];
+		ys = new float[capacity];
+		ts = new float[capacity];
+		ds = new float[capacity];
+		minDistance = new Extremes(capacity, false);
+		maxDistance = new Extremes(capacity, true);
+		minTime = new Extremes(capacity, false);
+		maxTime = new Extremes(capacity, true);
+	}
+
+	public void add(Point3f p) {
+		add(p.x(), p.y(), p.t());
+	}
+	/**
+	 * Add a point, the oldest leaving first if the window is full.
+	 */
+	public void add(float x, float y, float t) {
+		if(isFull())
+			poll();
+		long sequence = next++;
+		int i = (int)(sequence % capacity);
+		float d = (float)Math.sqrt(x*x + y*y);
+		xs[i] = x;
+		ys[i] = y;
+		ts[i] = t;
+		ds[i] = d;
+		int n = size();
+		if(n == 1)
+			origin = t;
+		double dx = x - mx, dy = y - my, dt = t - origin - mt;
+		mx += dx / n;
+		my += dy / n;
+		mt += dt / n;
+		md += (d - md) / n;
+		double ex = x - mx, ey = y - my, et = t - origin - mt;
+		cxx += dx * ex;
+		cyy += dy * ey;
+		ctt += dt * et;
+		cxy += dx * ey;
+		cxt += dx * et;
+		cyt += dy * et;
+		minDistance.push(sequence, d);
+		maxDistance.push(sequence, d);
+		minTime.push(sequence, t);
+		maxTime.push(sequence, t);
+	}
+	/**
+	 * Remove the oldest point.
+	 * @return false if the window was empty
+	 */
+	public boolean poll() {
+		if(first == next)
+			return false;
+		long sequence = first++;
+		minDistance.evict(sequence);
+		maxDistance.evict(sequence);
+		minTime.evict(sequence);
+		maxTime.evict(sequence);
+		int n = size();
+		if(n == 0) {
+			clear();
+			return true;
+		}
+		int i = (int)(sequence % capacity);
+		double x = xs[i], y = ys[i], t = ts[i] - origin;
+		double ex = x - mx, ey = y - my, et = t - mt;
+		mx -= ex / n;
+		my -= ey / n;
+		mt -= et / n;
+		md -= (ds[i] - md) / n;
+		double dx = x - mx, dy = y - my, dt = t - mt;
+		cxx -= dx * ex;
+		cyy -= dy * ey;
+		ctt -= dt * et;
+		cxy -= dx * ey;
+		cxt -= dx * et;
+		cyt -= dy * et;
+		if(++removals >= RESYNC)
+			resync();
+		return true;
+	}
+
+	public void clear() {
+		first = next;
+		mx = my = mt = md = 0.0;
+		cxx = cyy = ctt = cxy = cxt = cyt = 0.0;
+		removals = 0;
+		minDistance.clear();
+		maxDistance.clear();
+		minTime.clear();
+		maxTime.clear();
+	}
+	/**
+	 * Compute the means and sums again from the points in the window, two passes as ComputeVariance does,
+	 * times from the oldest point.
+	 */
+	void resync() {
+		removals = 0;
+		int n = size();
+		origin = ts[(int)(first % capacity)];
+		double sx = 0, sy = 0, st = 0, sd = 0;
+		for(long s = first; s < next; s++) {
+			int i = (int)(s % capacity);
+			sx += xs[i];
+			sy += ys[i];
+			st += ts[i] - origin;
+			sd += ds[i];
+		}
+		mx = sx / n;
+		my = sy / n;
+		mt = st / n;
+		md = sd / n;
+		cxx = cyy = ctt = cxy = cxt = cyt = 0.0;
+		for(long s = first; s < next; s++) {
+			int i = (int)(s % capacity);
+			double dx = xs[i] - mx, dy = ys[i] - my, dt = ts[i] - origin - mt;
+			cxx += dx * dx;
+			cyy += dy * dy;
+			ctt += dt * dt;
+			cxy += dx * dy;
+			cxt += dx * dt;
+			cyt += dy * dt;
+		}
+	}
+
+	public int size() {
+		return (int)(next - first);
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public boolean isFull() {
+		return size() == capacity;
+	}
+	/**
+	 * The covariance of x, y and t, divided by the count, zero for fewer than 2 points.
+	 * @param cov receives it
+	 * @return cov
+	 */
+	public Matrix3 getCovariance(Matrix3 cov) {
+		int n = size();
+		double[] v = cov.getValues();
+		if(n < 2) {
+			Arrays.fill(v, 0.0);
+			return cov;
+		}
+		double nd = n;
+		v[0] = cxx / nd;
+		v[4] = cyy / nd;
+		v[8] = ctt / nd;
+		v[1] = v[3] = cxy / nd;
+		v[2] = v[6] = cxt / nd;
+		v[5] = v[7] = cyt / nd;
+		return cov;
+	}
+	/**
+	 * @return the mean x, y and t of the window
+	 */
+	public Point3f getCentroid() {
+		return new Point3f((float)mx, (float)my, (float)(origin + mt));
+	}
+
+	public double getMeanTime() {
+		return origin + mt;
+	}
+
+	public double getMeanDistance() {
+		return md;
+	}
+
+	public float getMinDistance() {
+		return (float)minDistance.value();
+	}
+
+	public float getMaxDistance() {
+		return (float)maxDistance.value();
+	}
+
+	public float getMinTime() {
+		return (float)minTime.value();
+	}
+
+	public float getMaxTime() {
+		return (float)maxTime.value();
+	}
+	/**
+	 * @return the distance of the point with the latest time, the oldest of those with that time
+	 */
+	public float getLatestDistance() {
+		return ds[(int)(maxTime.sequence() % capacity)];
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SlidingWindowCovariance size=%d capacity=%d mean=(%f,%f,%f)", size(), capacity, mx, my, origin + mt);
+	}
+}
@@ -0,0 +1,185 @@
+package com.neocoretechs.robocore.pca;
+/**
+ * Eigenvalues and eigenvectors of a symmetric 3x3 matrix in closed form, in place of the iterative
+ * {@link EigenvalueDecomposition} for the covariance matrices of {@link ComputeVariance}.<p>
+ * The eigenvalues are the roots of the characteristic cubic by the trigonometric method: with q the mean of the
+ * diagonal and p the root mean square of the elements of A - qI over 6, B = (A - qI)/p has the eigenvalues
+ * 2cos(phi + 2pi k/3), k = 0,1,2, where cos(3phi) = det(B)/2.
+ * When the three stand apart the eigenvectors of the least and greatest are cross products of rows of A - lambda I,
+ * and the middle one their cross product.
+ * When two are nearer than {@link #SEPARATION} of the spread the cross products for them lose accuracy, as eps over
+ * the gap, and the cubic gives them only to half the digits when they repeat,
+ * so the eigenvector of the one standing apart is found by cross products, and the pair by a Jacobi rotation of A
+ * restricted to the plane normal to it, which finds them to full accuracy however close they are.<p>
+ * The matrix is scaled by a power of 2 to its greatest element so nothing overflows or underflows.
+ * Results go into arrays the caller supplies; nothing is allocated.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public final class SymmetricEigen3 {
+	public static final double SEPARATION = 0.1; // least gap between eigenvalues, of their spread, for cross products alone
+
+	private SymmetricEigen3() {}
+	/**
+	 * @param m the matrix row major, as {@link Matrix3#getValues()}; the upper triangle is read
+	 * @param values receives the eigenvalues, least to greatest
+	 * @param vectors receives the unit eigenvectors in the order of the values, vector k at 3k, 3k+1, 3k+2
+	 */
+	public static void decompose(double[] m, double[] values, double[] vectors) {
+		decompose(m[0], m[1], m[2], m[4], m[5], m[8], values, vectors);
+	}
+	/**
+	 * @param a00 row 0 column 0
+	 * @param a01 row 0 column 1
+	 * @param a02 row 0 column 2
+	 * @param a11 row 1 column 1
+	 * @param a12 row 1 column 2
+	 * @param a22 row 2 column 2
+	 * @param values receives the eigenvalues, least to greatest
+	 * @param vectors receives the unit eigenvectors in the order of the values, vector k at 3k, 3k+1, 3k+2
+	 */
+	public static void decompose(double a00, double a01, double a02, double a11, double a12, double a22,
+			double[] values, double[] vectors) {
+		if(a01 == 0.0 && a02 == 0.0 && a12 == 0.0) { // diagonal, zero included
+			values[0] = a00;
+			values[1] = a11;
+			values[2] = a22;
+			for(int i = 0; i < 9; i++)
+				vectors[i] = (i % 4 == 0) ? 1.0 : 0.0;
+			sort(values, vectors);
+			return;
+		}
+		double greatest = Math.max(Math.max(Math.max(Math.abs(a00), Math.abs(a01)), Math.max(Math.abs(a02), Math.abs(a11))),
+				Math.max(Math.abs(a12), Math.abs(a22)));
+		int exponent = Math.getExponent(greatest);
+		double down = Math.scalb(1.0, -exponent);
+		double b01 = a01 * down, b02 = a02 * down, b12 = a12 * down;
+		double q = (a00 * down + a11 * down + a22 * down) / 3.0;
+		// A - qI, scaled
+		double c00 = a00 * down - q, c11 = a11 * down - q, c22 = a22 * down - q;
+		double off = b01 * b01 + b02 * b02 + b12 * b12;
+		double p = Math.sqrt((c00 * c00 + c11 * c11 + c22 * c22 + 2.0 * off) / 6.0);
+		double det = c00 * (c11 * c22 - b12 * b12) - b01 * (b01 * c22 - b12 * b02) + b02 * (b01 * b12 - c11 * b02);
+		double r = det / (2.0 * p * p * p);
+		double phi = Math.acos(Math.max(-1.0, Math.min(1.0, r))) / 3.0;
+		// eigenvalues of A - qI, scaled, least to greatest
+		double l2 = 2.0 * p * Math.cos(phi);
+		double l0 = 2.0 * p * Math.cos(phi + 2.0 * Math.PI / 3.0);
+		double l1 = -l0 - l2;
+		double spread = l2 - l0;
+		if(Math.min(l1 - l0, l2 - l1) >= SEPARATION * spread) {
+			nullVector(c00, b01, b02, c11, b12, c22, l0, vectors, 0);
+			nullVector(c00, b01, b02, c11, b12, c22, l2, vectors, 6);
+			// middle normal to both, then least made exactly normal to the other two
+			cross(vectors, 6, vectors, 0, vectors, 3);
+			normalize(vectors, 3);
+			cross(vectors, 3, vectors, 6, vectors, 0);
+			values[0] = l0;
+			values[1] = l1;
+			values[2] = l2;
+		} else {
+			// the one standing apart by cross products, the nearly repeated pair in the plane normal to it
+			int apart = (l1 - l0 < l2 - l1) ? 6 : 0;
+			int u = (apart == 0) ? 3 : 0, v = (apart == 0) ? 6 : 3;
+			double la = (apart == 0) ? l0 : l2;
+			nullVector(c00, b01, b02, c11, b12, c22, la, vectors, apart);
+			double x = vectors[apart], y = vectors[apart + 1], z = vectors[apart + 2];
+			if(Math.abs(x) > Math.abs(y)) {
+				double n = 1.0 / Math.sqrt(x * x + z * z);
+				vectors[u] = -z * n;
+				vectors[u + 1] = 0.0;
+				vectors[u + 2] = x * n;
+			} else {
+				double n = 1.0 / Math.sqrt(y * y + z * z);
+				vectors[u] = 0.0;
+				vectors[u + 1] = z * n;
+				vectors[u + 2] = -y * n;
+			}
+			cross(vectors, apart, vectors, u, vectors, v);
+			// A - qI restricted to the plane
+			double ux = vectors[u], uy = vectors[u + 1], uz = vectors[u + 2];
+			double vx = vectors[v], vy = vectors[v + 1], vz = vectors[v + 2];
+			double cux = c00 * ux + b01 * uy + b02 * uz, cuy = b01 * ux + c11 * uy + b12 * uz, cuz = b02 * ux + b12 * uy + c22 * uz;
+			double cvx = c00 * vx + b01 * vy + b02 * vz, cvy = b01 * vx + c11 * vy + b12 * vz, cvz = b02 * vx + b12 * vy + c22 * vz;
+			double m00 = ux * cux + uy * cuy + uz * cuz;
+			double m01 = ux * cvx + uy * cvy + uz * cvz;
+			double m11 = vx * cvx + vy * cvy + vz * cvz;
+			double t = 0.0;
+			if(m01 != 0.0) {
+				double theta = (m11 - m00) / (2.0 * m01);
+				t = Math.copySign(1.0, theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1.0));
+			}
+			double cs = 1.0 / Math.sqrt(t * t + 1.0), sn = t * cs;
+			for(int i = 0; i < 3; i++) {
+				double ui = vectors[u + i], vi = vectors[v + i];
+				vectors[u + i] = cs * ui - sn * vi;
+				vectors[v + i] = sn * ui + cs * vi;
+			}
+			values[apart / 3] = la;
+			values[u / 3] = m00 - t * m01;
+			values[v / 3] = m11 + t * m01;
+		}
+		double up = Math.scalb(1.0, exponent);
+		for(int i = 0; i < 3; i++)
+			values[i] = (values[i] + q) * up;
+		sort(values, vectors);
+	}
+	/**
+	 * The unit vector normal to the rows of C - lambda I, the greatest cross product of two of them.
+	 */
+	private static void nullVector(double c00, double c01, double c02, double c11, double c12, double c22, double lambda,
+			double[] out, int at) {
+		double r00 = c00 - lambda, r11 = c11 - lambda, r22 = c22 - lambda;
+		// rows (r00,c01,c02) (c01,r11,c12) (c02,c12,r22)
+		double x01 = c01 * c12 - c02 * r11, y01 = c02 * c01 - r00 * c12, z01 = r00 * r11 - c01 * c01;
+		double x02 = c01 * r22 - c02 * c12, y02 = c02 * c02 - r00 * r22, z02 = r00 * c12 - c01 * c02;
+		double x12 = r11 * r22 - c12 * c12, y12 = c12 * c02 - c01 * r22, z12 = c01 * c12 - r11 * c02;
+		double n01 = x01 * x01 + y01 * y01 + z01 * z01;
+		double n02 = x02 * x02 + y02 * y02 + z02 * z02;
+		double n12 = x12 * x12 + y12 * y12 + z12 * z12;
+		if(n01 >= n02 && n01 >= n12) {
+			out[at] = x01; out[at + 1] = y01; out[at + 2] = z01;
+		} else if(n02 >= n12) {
+			out[at] = x02; out[at + 1] = y02; out[at + 2] = z02;
+		} else {
+			out[at] = x12; out[at + 1] = y12; out[at + 2] = z12;
+		}
+		if(Math.max(n01, Math.max(n02, n12)) == 0.0) { // every direction, rank 0
+			out[at] = 1.0; out[at + 1] = 0.0; out[at + 2] = 0.0;
+		}
+		normalize(out, at);
+	}
+
+	private static void cross(double[] a, int ia, double[] b, int ib, double[] out, int at) {
+		double x = a[ia + 1] * b[ib + 2] - a[ia + 2] * b[ib + 1];
+		double y = a[ia + 2] * b[ib] - a[ia] * b[ib + 2];
+		double z = a[ia] * b[ib + 1] - a[ia + 1] * b[ib];
+		out[at] = x;
+		out[at + 1] = y;
+		out[at + 2] = z;
+	}
+
+	private static void normalize(double[] v, int at) {
+		double n = 1.0 / Math.sqrt(v[at] * v[at] + v[at + 1] * v[at + 1] + v[at + 2] * v[at + 2]);
+		v[at] *= n;
+		v[at + 1] *= n;
+		v[at + 2] *= n;
+	}
+	/**
+	 * Order the values least to greatest, the vectors with them.
+	 */
+	private static void sort(double[] values, double[] vectors) {
+		for(int i = 1; i < 3; i++) {
+			for(int j = i; j > 0 && values[j] < values[j - 1]; j--) {
+				double s = values[j];
+				values[j] = values[j - 1];
+				values[j - 1] = s;
+				for(int k = 0; k < 3; k++) {
+					s = vectors[3 * j + k];
+					vectors[3 * j + k] = vectors[3 * (j - 1) + k];
+					vectors[3 * (j - 1) + k] = s;
+				}
+			}
+		}
+	}
+}
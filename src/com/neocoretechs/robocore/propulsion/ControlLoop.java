@@ -0,0 +1,172 @@
+package com.neocoretechs.robocore.propulsion;
+
+import com.neocoretechs.robocore.SynchronizedThreadManager;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.ClockInterface;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.RealClock;
+/**
+ * Runs a control computation at a fixed rate against absolute deadlines, rather than whenever input happens to arrive.<p>
+ * Tick n is due at start + n * period. The loop waits for each deadline on its {@link ClockInterface}, records in a
+ * {@link JitterHistogram} how late the tick actually began, and calls the {@link Tick}. Deadlines do not drift with
+ * the time the tick takes. A tick still running when the next deadline passes is an overrun, the deadlines missed are
+ * counted and skipped rather than run back to back to catch up.<p>
+ * The tick works from the latest snapshot of its inputs, which producers such as message callbacks only store.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class ControlLoop implements Runnable {
+	private static boolean DEBUG = false;
+	public static final String THREAD_GROUP = "CONTROLLOOP";
+	/**
+	 * The computation run once per period.
+	 */
+	public interface Tick {
+		/**
+		 * @param tick the number of the tick, counting missed deadlines
+		 * @param deadlineMicros the time on the loop's clock the tick was due
+		 * @throws Exception counted in {@link ControlLoop#getErrors()}, the loop carries on
+		 */
+		public void tick(long tick, long deadlineMicros) throws Exception;
+	}
+	private final Tick tick;
+	private final long periodMicros;
+	private final ClockInterface clock;
+	private final JitterHistogram jitter = new JitterHistogram();
+	private volatile boolean shouldRun = true;
+	private volatile Thread runner = null;
+	private volatile long ticks = 0L;
+	private volatile long overruns = 0L;
+	private volatile long missed = 0L;
+	private volatile long errors = 0L;
+	private volatile long worstTickMicros = 0L;
+	/**
+	 * @param rateHz ticks per second
+	 * @param tick the computation
+	 */
+	public ControlLoop(int rateHz, Tick tick) {
+		this(rateHz, tick, new RealClock());
+	}
+	/**
+	 * @param rateHz ticks per second
+	 * @param tick the computation
+	 * @param clock the time base of the deadlines
+	 */
+	public ControlLoop(int rateHz, Tick tick, ClockInterface clock) {
+		if(rateHz <= 0 || rateHz > 1000000)
+			throw new IllegalArgumentException("Control loop rate must be 1 to 1000000 Hz:"+rateHz);
+		this.tick = tick;
+		this.periodMicros = 1000000L / rateHz;
+		this.clock = clock;
+	}
+	/**
+	 * Spin the loop on its own thread.
+	 */
+	public void start() {
+		SynchronizedThreadManager.getInstance().init(new String[] {THREAD_GROUP});
+		SynchronizedThreadManager.getInstance().spin(this, THREAD_GROUP);
+	}
+	/**
+	 * Stop the loop after the tick in progress.
+	 */
+	public void stop() {
+		shouldRun = false;
+		Thread t = runner;
+		if(t != null && t != Thread.currentThread())
+			t.interrupt();
+	}
+
+	@Override
+	public void run() {
+		runner = Thread.currentThread();
+		long n = 0L;
+		long start = clock.micros();
+		if(DEBUG)
+			System.out.println("ControlLoop "+this+" starting at "+start+"us");
+		try {
+			while(shouldRun) {
+				long deadline = start + n * periodMicros;
+				long now = clock.micros();
+				if(now < deadline) {
+					clock.delayMicroseconds(deadline - now);
+					now = clock.micros();
+				}
+				jitter.record(now - deadline);
+				try {
+					tick.tick(n, deadline);
+				} catch(InterruptedException ie) {
+					break;
+				} catch(Exception e) {
+					++errors;
+					e.printStackTrace();
+				}
+				++ticks;
+				long end = clock.micros();
+				if(end - now > worstTickMicros)
+					worstTickMicros = end - now;
+				++n;
+				long next = start + n * periodMicros;
+				if(end > next) {
+					// overran, skip the deadlines already past
+					long skip = (end - next) / periodMicros + 1;
+					++overruns;
+					missed += skip;
+					n += skip;
+					if(DEBUG)
+						System.out.println("ControlLoop "+this+" overrun, tick took "+(end - now)+"us, skipped "+skip);
+				}
+			}
+		} catch(InterruptedException ie) {
+			// stopped
+		}
+		runner = null;
+		if(DEBUG)
+			System.out.println("ControlLoop stopped "+this);
+	}
+
+	public long getPeriodMicros() {
+		return periodMicros;
+	}
+	/**
+	 * @return ticks run
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+	/**
+	 * @return ticks that ran past the following deadline
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+	/**
+	 * @return deadlines skipped because of overruns
+	 */
+	public long getMissed() {
+		return missed;
+	}
+	/**
+	 * @return ticks that threw an exception
+	 */
+	public long getErrors() {
+		return errors;
+	}
+	/**
+	 * @return longest time a tick took, in microseconds
+	 */
+	public long getWorstTickMicros() {
+		return worstTickMicros;
+	}
+
+	public JitterHistogram getJitter() {
+		return jitter;
+	}
+
+	public boolean isRunning() {
+		return runner != null;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("period=%dus ticks=%d overruns=%d missed=%d errors=%d worst tick=%dus",
+				periodMicros, ticks, overruns, missed, errors, worstTickMicros);
+	}
+}
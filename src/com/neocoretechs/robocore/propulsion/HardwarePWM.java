@@ -1,9 +1,7 @@
 package com.neocoretechs.robocore.propulsion;
 
-import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 
 import com.neocoretechs.robocore.serialreader.marlinspikeport.InterruptServiceInterface;
 /**
@@ -19,77 +17,62 @@ import com.neocoretechs.robocore.serialreader.marlinspikeport.InterruptServiceIn
 public abstract class HardwarePWM {
 	public int pin;
 	public enum mode { INPUT, OUTPUT };
+	int chip = -1;
 	int channel = 0;
+	SysfsPWMWriter writer;
 	InterruptServiceInterface interruptService=null;
-	// explicitly disable PWM for safety
-	/*
-	static {
-		try {
-			init0();
-		} catch (IOException e) {}
-		try {
-			init1();
-		} catch (IOException e) {}
-	}
-	*/
+	/**
+	 * @param pin a header pin mapped to a PWM channel by {@link PWMDevice}, 7 and 12 by default
+	 * @throws IOException if the pin has no PWM or its channel cannot be opened
+	 */
 	public HardwarePWM(int pin) throws IOException {
-		switch(pin) {
-			case 7 -> init0();
-			case 12 -> init1();
-			default -> throw new IOException("Only pins 7 and 12 are valid for PWM");
-		}
+		this.writer = PWMDevice.getWriter(pin);
+		int[] cc = PWMDevice.getChipChannel(pin);
+		this.chip = cc[0];
+		this.channel = cc[1];
 		this.pin = pin;
+		init();
 	}
 	/**
-	 * Order freq - duty - enable
-	 * @throws IOException
+	 * A PWM channel not mapped to a header pin, pin left 0.
+	 * @param chip the pwmchip number
+	 * @param channel the channel of the chip
+	 * @throws IOException if the channel cannot be opened
 	 */
-	private static void init0() throws IOException {
-		pwm0("100000","0");
-		disable0();
-		try {
-			Thread.sleep(50);
-		} catch (InterruptedException e) {}
+	public HardwarePWM(int chip, int channel) throws IOException {
+		this.writer = PWMDevice.getWriter(chip, channel);
+		this.chip = chip;
+		this.channel = channel;
+		init();
 	}
 	/**
 	 * Order freq - duty - enable
 	 * @throws IOException
 	 */
-	private static void init1() throws IOException {
-		pwm1("100000","0");
-		disable1();
-		try {
-			Thread.sleep(50);
-		} catch (InterruptedException e) {}
+	private void init() throws IOException {
+		writer.invalidate();
+		writer.setPeriodDuty(100000, 0);
+		writer.enable(false);
 	}
-	
 	public static void pwm0(String freq, String duty) throws IOException {
-		writeSysfs(PWMDevice.getFreq0(), freq);
-		writeSysfs(PWMDevice.getDuty0(), duty);
+		PWMDevice.getWriter(7).setPeriodDuty(Long.parseLong(freq), Long.parseLong(duty));
 		enable0();
-		try {
-			Thread.sleep(50);
-		} catch (InterruptedException e) {}
 	}
 	public static void pwm1(String freq, String duty) throws IOException {
-		writeSysfs(PWMDevice.getFreq1(), freq);
-		writeSysfs(PWMDevice.getDuty1(), duty);
+		PWMDevice.getWriter(12).setPeriodDuty(Long.parseLong(freq), Long.parseLong(duty));
 		enable1();
-		try {
-			Thread.sleep(50);
-		} catch (InterruptedException e) {}
 	}
 	public static void enable0() throws IOException {
-		writeSysfs(PWMDevice.getEnable0(), "1");
+		PWMDevice.getWriter(7).enable(true);
 	}
 	public static void disable0() throws IOException {
-		writeSysfs(PWMDevice.getEnable0(), "0");
+		PWMDevice.getWriter(7).enable(false);
 	}
 	public static void enable1() throws IOException {
-		writeSysfs(PWMDevice.getEnable1(), "1");
+		PWMDevice.getWriter(12).enable(true);
 	}
 	public static void disable1() throws IOException {
-		writeSysfs(PWMDevice.getEnable1(), "0");
+		PWMDevice.getWriter(12).enable(false);
 	}
 	
 	public static void writeSysfs(String path, String value) throws IOException {
@@ -111,29 +94,8 @@ public abstract class HardwarePWM {
 	public abstract void detachInterrupt(boolean overflow);
 	
 	public String toString() {
-		if(this.pin == 0)
+		if(writer == null)
 			return "PWM pin/devices uninitialized";
-		switch(pin) {
-		case 12:
-			StringBuilder sb = new StringBuilder("PWM pin:"+String.valueOf(pin));
-			sb.append(" PWMFreq1:");
-			sb.append(PWMDevice.getFreq1());
-			sb.append(" PWMDuty1:");
-			sb.append(PWMDevice.getDuty1());
-			sb.append(" PWMEnable1:");
-			sb.append(PWMDevice.getEnable1());
-			return sb.toString();
-		case 7:
-			sb = new StringBuilder("PWM pin:"+String.valueOf(pin));
-			sb.append(" PWMFreq0:");
-			sb.append(PWMDevice.getFreq0());
-			sb.append(" PWMDuty0:");
-			sb.append(PWMDevice.getDuty0());
-			sb.append(" PWMEnable0:");
-			sb.append(PWMDevice.getEnable0());
-			return sb.toString();
-		default:
-			return ("PWM pin "+String.valueOf(pin)+" invalid, only 7 and 12 apply");
-		}
+		return "PWM pin:"+pin+" chip:"+chip+" channel:"+channel+" "+writer;
 	}
 }
@@ -0,0 +1,110 @@
+package com.neocoretechs.robocore.propulsion;
+
+import java.util.ArrayList;
+/**
+ * Histogram of how late each tick of a {@link ControlLoop} started after its deadline, in microseconds.
+ * Bucket 0 counts ticks on time, bucket n ticks late by 2<sup>n-1</sup> up to 2<sup>n</sup> microseconds,
+ * the last bucket everything later. The lines of {@link #toLines()} suit a diagnostic status message.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class JitterHistogram {
+	public static final int BUCKETS = 24; // last bucket from 2^22 us, about 4 seconds
+	private final long[] counts = new long[BUCKETS];
+	private long total = 0L;
+	private long sum = 0L;
+	private long max = 0L;
+	/**
+	 * Count one tick.
+	 * @param lateMicros microseconds the tick started after its deadline, 0 or less is on time
+	 */
+	public synchronized void record(long lateMicros) {
+		if(lateMicros < 0)
+			lateMicros = 0;
+		++counts[bucket(lateMicros)];
+		++total;
+		sum += lateMicros;
+		if(lateMicros > max)
+			max = lateMicros;
+	}
+
+	static int bucket(long lateMicros) {
+		if(lateMicros <= 0)
+			return 0;
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(lateMicros));
+	}
+	/**
+	 * @param bucket the bucket
+	 * @return the largest lateness counted in the bucket, in microseconds
+	 */
+	public static long upperBound(int bucket) {
+		if(bucket == 0)
+			return 0L;
+		if(bucket == BUCKETS - 1)
+			return Long.MAX_VALUE;
+		return (1L << bucket) - 1;
+	}
+
+	public synchronized long getCount(int bucket) {
+		return counts[bucket];
+	}
+
+	public synchronized long getTotal() {
+		return total;
+	}
+
+	public synchronized long getMax() {
+		return max;
+	}
+
+	public synchronized double getMean() {
+		return total == 0 ? 0.0 : (double)sum / total;
+	}
+	/**
+	 * @param fraction of the ticks, 0 to 1
+	 * @return the upper bound of the bucket holding the given fraction of the ticks, at most the latest tick
+	 */
+	public synchronized long percentile(double fraction) {
+		if(total == 0)
+			return 0L;
+		long target = (long)Math.ceil(fraction * total);
+		long seen = 0L;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if(seen >= target)
+				return Math.min(upperBound(i), max);
+		}
+		return max;
+	}
+
+	public synchronized void reset() {
+		for(int i = 0; i < BUCKETS; i++)
+			counts[i] = 0L;
+		total = 0L;
+		sum = 0L;
+		max = 0L;
+	}
+	/**
+	 * @return a summary line, then a line for each bucket with a count
+	 */
+	public synchronized ArrayList<String> toLines() {
+		ArrayList<String> lines = new ArrayList<String>();
+		lines.add(String.format("ticks=%d mean=%.1fus p50<=%dus p99<=%dus max=%dus", total, getMean(), percentile(.5), percentile(.99), max));
+		for(int i = 0; i < BUCKETS; i++) {
+			if(counts[i] == 0)
+				continue;
+			if(i == 0)
+				lines.add(String.format("on time %d", counts[i]));
+			else if(i == BUCKETS - 1)
+				lines.add(String.format(">=%dus %d", 1L << (i - 1), counts[i]));
+			else
+				lines.add(String.format("%d-%dus %d", 1L << (i - 1), upperBound(i), counts[i]));
+		}
+		return lines;
+	}
+
+	@Override
+	public String toString() {
+		return String.join("\n", toLines());
+	}
+}
@@ -26,6 +26,7 @@ import org.ros.namespace.GraphName;
 import org.ros.node.AbstractNodeMain;
 import org.ros.node.ConnectedNode;
 import org.ros.node.DefaultNodeMainExecutor;
+import org.ros.node.Node;
 import org.ros.node.NodeMainExecutor;
 import org.ros.node.parameter.ParameterTree;
 import org.ros.node.service.CountDownServiceServerListener;
@@ -210,6 +211,11 @@ import trajectory_msgs.ComeToHeadingStamped;
  * __pwm:=direct<br>
  * Indicates that PWM directives sent as a service are to be directly applied as a set of values working
  * on a PWM pin<p>
+ * __controlrate:=hz<br>
+ * Compute propulsion in a {@link ControlLoop} at the given fixed rate from the latest joystick or model move input,
+ * rather than in the message callbacks. The latest input is applied every tick until another arrives, as the joystick
+ * publishes only on change; the stop button and __softstop stop propulsion as they do in the callbacks.
+ * The loop jitter is published as a diagnostic and returned by the status service for "jitter".<p>
  * GPIO service invocation always works directly on a pin.<p>  
  *<pre>
  * sensor_msgs/MagneticField (3 axis magnetic flux information most likely from IMU)<br>
@@ -371,10 +377,20 @@ public class MotionController extends AbstractNodeMain {
 	static final long SHUTDOWN_NS = 250000;
 	static long lastCmdTime = System.nanoTime();
 	// slope speed change over time analysis
-	private CircularBlockingDeque<Float> speedQueueL = new CircularBlockingDeque<Float>(5);
-	private CircularBlockingDeque<Float> speedQueueR = new CircularBlockingDeque<Float>(5);
+	private SlopeEstimator speedQueueL = new SlopeEstimator(5);
+	private SlopeEstimator speedQueueR = new SlopeEstimator(5);
 	private float maxSpeedSlope = 100;
 	private boolean SOFTSTOP = false;
+	// fixed rate control, 0 computes propulsion in the message callbacks as they arrive
+	private int CONTROL_RATE = 0;
+	private volatile ControlLoop controlLoop = null;
+	static int JITTER_REPORT_SECONDS = 60;
+	private long nextJitterReport = 0L; // tick, taken only by the control loop
+	// latest snapshot of each propulsion input, taken by the control loop
+	private volatile sensor_msgs.Joy latestJoy = null;
+	private volatile long latestJoyTime = 0L;
+	private volatile trajectory_msgs.ComeToHeadingStamped latestMove = null;
+	private volatile long latestMoveTime = 0L;
 
 	HashMap<Integer, Boolean> publishedLUNRestValue = new HashMap<Integer, Boolean>();
 	//-----mega
@@ -474,6 +490,16 @@ public class MotionController extends AbstractNodeMain {
 	public GraphName getDefaultNodeName() {
 		return GraphName.of("pubsubs_motion");
 	}
+	/**
+	 * Stop the {@link ControlLoop} with the node, after the tick in progress, so it does not outlive the node
+	 * ticking on publishers already shut down.
+	 */
+	@Override
+	public void onShutdown(Node node) {
+		ControlLoop loop = controlLoop;
+		if(loop != null)
+			loop.stop();
+	}
 
 	/**
 	 * Extract the linear and angular components from cmd_vel topic Twist quaternion, take the linear X (pitch) and
@@ -551,6 +577,9 @@ public class MotionController extends AbstractNodeMain {
 		// see if we are implementing software dead-man protocol True or False
 		if( remaps.containsKey("__softstop") )
 			SOFTSTOP  = Boolean.parseBoolean(remaps.get("__softstop"));
+		// run propulsion at a fixed rate in Hz from the latest inputs rather than in each callback
+		if( remaps.containsKey("__controlrate") )
+			CONTROL_RATE = Integer.parseInt(remaps.get("__controlrate"));
 
 		final Publisher<diagnostic_msgs.DiagnosticStatus> statpub =
 				connectedNode.newPublisher("robocore/status", diagnostic_msgs.DiagnosticStatus._TYPE);
@@ -704,7 +733,18 @@ public class MotionController extends AbstractNodeMain {
 					@Override
 					public void onNewMessage(sensor_msgs.Joy message) {
 						try {
-							processJoystickMessages(connectedNode, pubschannel, message, twistpub, twistmsg);
+							if(CONTROL_RATE > 0) {
+								// time first, a message taken by the loop is never older than its time
+								latestJoyTime = System.nanoTime();
+								latestJoy = message;
+								// emergency stop goes out at once, not at the next tick
+								if(message.getButtons()[6] == 0)
+									return;
+							}
+							// propulsion state is shared with the control loop and the move callback
+							synchronized(MotionController.this) {
+								processJoystickMessages(connectedNode, pubschannel, message, twistpub, twistmsg);
+							}
 						} catch(IOException ioe) {
 							throw new RuntimeException(ioe);
 						}
@@ -749,8 +789,15 @@ public class MotionController extends AbstractNodeMain {
 				subsmodelmove.addMessageListener(new MessageListener<trajectory_msgs.ComeToHeadingStamped>() {
 					@Override
 					public void onNewMessage(trajectory_msgs.ComeToHeadingStamped message) {
+						if(CONTROL_RATE > 0) {
+							latestMoveTime = System.nanoTime();
+							latestMove = message;
+							return;
+						}
 						try {
-							publishRobotMoveRelative(connectedNode, twistpub, twistmsg, message);
+							synchronized(MotionController.this) {
+								publishRobotMoveRelative(connectedNode, twistpub, twistmsg, message);
+							}
 						} catch (IOException e) {
 							ArrayList<String> st = new ArrayList<String>();
 							st.addAll(Arrays.stream(e.getStackTrace()).map(m->m.toString()).collect(Collectors.toList()));
@@ -1149,6 +1196,9 @@ public class MotionController extends AbstractNodeMain {
 		// tell the waiting constructors that we have registered publishers
 		awaitStart.countDown();
 
+		if(CONTROL_RATE > 0)
+			startControlLoop(connectedNode, pubschannel, statpub, twistpub, twistmsg);
+
 		//----------------------------------------
 		// Begin publishing loop
 		//
@@ -1203,6 +1253,60 @@ public class MotionController extends AbstractNodeMain {
 	} // onStart
 	
 
+	/**
+	 * Start the fixed rate {@link ControlLoop} for propulsion. Each tick takes the most recent of the joystick and
+	 * model move inputs and runs it through the same processing the callbacks otherwise do, so the PID controllers
+	 * compute and setMotorArcSpeed and setDeviceLevels are called once per tick whatever the message rate.
+	 * An input is applied every tick until the next arrives, however old, as a joystick held steady publishes nothing;
+	 * the stop button and {@link #SOFTSTOP} are what stop propulsion. The tick holds the controller, as does
+	 * the emergency stop of the joystick callback, so the stop never comes within a tick.
+	 * The jitter histogram of the loop is published as a diagnostic every {@link #JITTER_REPORT_SECONDS}, on the
+	 * first tick at or past each report, as ticks skipped by an overrun never run.
+	 * @param connectedNode
+	 * @param pubschannel
+	 * @param statpub the diagnostic channel for the jitter report
+	 * @param twistpub
+	 * @param twistmsg
+	 */
+	private void startControlLoop(ConnectedNode connectedNode, HashMap<String, Publisher<Int32MultiArray>> pubschannel, 
+			Publisher<diagnostic_msgs.DiagnosticStatus> statpub, Publisher<geometry_msgs.Twist> twistpub, geometry_msgs.Twist twistmsg) {
+		final long reportTicks = (long)CONTROL_RATE * JITTER_REPORT_SECONDS;
+		nextJitterReport = reportTicks;
+		controlLoop = new ControlLoop(CONTROL_RATE, (tick, deadline) -> {
+			sensor_msgs.Joy joy = latestJoy;
+			long joyTime = latestJoyTime;
+			trajectory_msgs.ComeToHeadingStamped move = latestMove;
+			long moveTime = latestMoveTime;
+			synchronized(this) {
+				if(joy != null && (move == null || joyTime - moveTime >= 0))
+					processJoystickMessages(connectedNode, pubschannel, joy, twistpub, twistmsg);
+				else if(move != null)
+					publishRobotMoveRelative(connectedNode, twistpub, twistmsg, move);
+			}
+			if(tick >= nextJitterReport) {
+				nextJitterReport = tick - tick % reportTicks + reportTicks;
+				new PublishDiagnosticResponse(connectedNode, statpub, statusQueue, "Control loop jitter", 
+						diagnostic_msgs.DiagnosticStatus.OK, getControlLoopReport());
+			}
+		});
+		controlLoop.start();
+		if(DEBUG)
+			System.out.printf("%s control loop started at %d Hz%n", this.getClass().getName(), CONTROL_RATE);
+	}
+	/**
+	 * @return the state of the control loop and its jitter histogram, or a line saying there is none
+	 */
+	ArrayList<String> getControlLoopReport() {
+		ArrayList<String> report = new ArrayList<String>();
+		if(controlLoop == null) {
+			report.add("Control loop not running, propulsion computed per message");
+			return report;
+		}
+		report.add(controlLoop.toString());
+		report.addAll(controlLoop.getJitter().toLines());
+		return report;
+	}
+
 	/**
 	* {@link com.neocoretechs.robocore.MegaPubs#configureSubscriberListener}<br>
 	* Configure a publisher to talk to a MarlinSpikeControlInterface which receives 
@@ -1769,72 +1873,23 @@ public class MotionController extends AbstractNodeMain {
 		twistpub.publish(twistmsg);
 	}
 	/**
-	 * If slope is negative and coordinate is neg acceleration in reverse
-	 * If slope is pos and coord is negative reverse deceleration
-	 * 
-	 * @param speed
-	 * @param speedQueue
-	 * @return
+	 * Add the speed to the window of recent speeds and take the least squares slope of the window per sample.
+	 * If the slope is steeper than maxSpeedSlope, accelerating or decelerating in either direction,
+	 * the new speed is limited to half way from the previous one, and kept so in the window.
+	 * @param speed the speed to be sent
+	 * @param speedWindow the recent speeds of the wheel
+	 * @return the speed limited to the slope
 	 */
-	private float slope(float speed, CircularBlockingDeque<Float> speedQueue) {
-		speedQueue.addLast(speed);
-		int n = speedQueue.length();
-		double m, c, sum_x = 0, sum_y = 0, sum_xy = 0, sum_x2 = 0;
-		for (int i = 0; i < n; i++) {
-			sum_x += i;//x[i];
-			sum_y += speedQueue.get(i);//[i];
-			sum_xy += i * speedQueue.get(i);//[i] * y[i];
-			sum_x2 += Math.pow(i, 2);//pow(x[i], 2);
-		}
-		m = (n * sum_xy - sum_x * sum_y) / (n * sum_x2 - Math.pow(sum_x, 2));
-		//c = (sum_y - m * sum_x) / n;
-		//System.out.println("m = " + m);
-		//System.out.println("c = " + c);
-		if(m == 0)
-			return speedQueue.get(n-1);
-		if(m < 0) {
-			if(m < -maxSpeedSlope) {
-				if(n == 1) {
-					speedQueue.set(0,speedQueue.get(1)/2); // divide it in half, we only have 1 point
-				} else {
-					// slope neg and coord neg, reverse accel
-					if(speedQueue.get(n-1) < 0) {
-						// diff of last point and next to last
-						float diff = speedQueue.get(n-1)-speedQueue.get(n-2);
-						// split the diff
-						speedQueue.set(n-1, speedQueue.get(n-2)+(diff/2.0f));
-					} else {
-						// slope neg and coord pos, forward decel
-						// diff of next to last and last
-						float diff = speedQueue.get(n-2)-speedQueue.get(n-1);
-						// split the diff
-						speedQueue.set(n-1, speedQueue.get(n-2)-(diff/2.0f));
-					}
-				}
-			}
-		} else {
-			// slope pos
-			if(m > maxSpeedSlope) {
-				if(n == 1) {
-					speedQueue.set(0,speedQueue.get(1)/2); // divide it in half, we only have 1 point
-				} else {
-					// slope pos and coord neg, reverse decel
-					if(speedQueue.get(n-1) < 0) {
-						// diff of next to last and last
-						float diff = speedQueue.get(n-2)-speedQueue.get(n-1);
-						// split the diff
-						speedQueue.set(n-1, speedQueue.get(n-2)-(diff/2.0f));
-					} else {
-						// slope pos and coord pos, forward accel
-						// diff of last and next to last
-						float diff = speedQueue.get(n-1)-speedQueue.get(n-2);
-						// split the diff
-						speedQueue.set(n-1, speedQueue.get(n-2)+(diff/2.0f));
-					}
-				}
-			}
+	private float slope(float speed, SlopeEstimator speedWindow) {
+		double m = speedWindow.add(speed);
+		int n = speedWindow.size();
+		if(n > 1 && (m < -maxSpeedSlope || m > maxSpeedSlope)) {
+			// split the diff of last point and next to last
+			float last = (float)speedWindow.getY(n-1);
+			float prev = (float)speedWindow.getY(n-2);
+			speedWindow.replaceLast(prev+((last-prev)/2.0f));
 		}
-		return speedQueue.get(n-1);
+		return (float)speedWindow.last();
 	}
 	/**
 	 * 
@@ -2357,6 +2412,9 @@ public class MotionController extends AbstractNodeMain {
 									sb.append(ndd.getMarlinspikeControl().commandReset());
 								response.setData(sb.toString());
 								break;
+							case "jitter":
+								response.setData(String.join("\n", getControlLoopReport()));
+								break;
 							case "status":
 							default:
 								for(DeviceEntry ndd : robot.getManager().getDevices())
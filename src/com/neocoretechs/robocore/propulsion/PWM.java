@@ -50,40 +50,37 @@ import com.neocoretechs.robocore.serialreader.marlinspikeport.InterruptServiceIn
 public class PWM extends HardwarePWM implements InterruptServiceHandlerInterface {
 	public static boolean DEBUG = false;
 	public static boolean DEBUGENABLE = false;
-	private boolean enabled = false;
+	private volatile boolean enabled = false;
 	
 	public PWM(int pin) throws IOException {
 		super(pin);
 	}
 	
+	public PWM(int chip, int channel) throws IOException {
+		super(chip, channel);
+	}
+	
 	public synchronized void enable(boolean enable) throws IOException {
 		enabled = enable;
-		switch(pin) {
-			case 7:
-				enable0();
-				break;
-			case 12:
-				enable1();
-				break;
-			default:
-				System.out.println("Pin must specify 7 or 12 for hardware PWM enable!");
-				return;
-		}
+		writer.enable(enable);
 		if(DEBUG || DEBUGENABLE)
-			System.out.printf("%s enable pin %d value %b%n", this.getClass().getName(), pin, enabled);
+			System.out.printf("%s enable pin %d chip %d channel %d value %b%n", this.getClass().getName(), pin, chip, channel, enabled);
 
 	}
+	/**
+	 * Set the period and duty cycle, both in nanoseconds, and enable. Unchanged values are not rewritten.
+	 * When enabled at the same period only the duty cycle changes, and goes through {@link SysfsPWMWriter#setDuty(long)}
+	 * without waiting on this PWM, so a burst of updates from several threads is coalesced to the newest.
+	 */
 	@Override
-	public synchronized void freqDuty(int hZ, int val) throws IOException {
-		switch(pin) {
-			case 7:
-				pwm0(String.valueOf(hZ),String.valueOf(val));
-				break;
-			case 12:
-				pwm1(String.valueOf(hZ),String.valueOf(val));
-				break;
-			default:
-				System.out.println("Pin Must specify 7 or 12 for hardware PWM frequency!");
+	public void freqDuty(int hZ, int val) throws IOException {
+		if(enabled && writer.getPeriod() == hZ) {
+			writer.setDuty(val);
+		} else {
+			synchronized(this) {
+				writer.setPeriodDuty(hZ, val);
+				enable(true);
+			}
 		}
 		if(DEBUG)
 			System.out.printf("%s freqDuty pin %d freq:%d duty:%d%n", this.getClass().getName(), pin, hZ, val);
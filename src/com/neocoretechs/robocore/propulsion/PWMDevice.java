@@ -2,6 +2,9 @@ package com.neocoretechs.robocore.propulsion;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 /**
  * Relies on -DPWMDevices=legacy or be absent to support older distros
  * must be exported first: echo 0 > /sys/class/pwm/pwmchip0/export - this will create the pwm device tree under the export directory.
@@ -16,7 +19,10 @@ import java.io.RandomAccessFile;
  * The gpioset gpiochip1 66=1 sets PIN_16, which is offset 66, to 1. At 1kHz 100% duty cycle the 35k gear motor draws 28W <br>
  * At 10kHz and 50% duty cycle only 13W but with almost no noticeable difference in speed.<br>
  * IMPORTANT: Cannot immediately reverse direction with 35k gear motors. Board will crash. 
- * Must disable PWM, wait 200-500ms, set opposite direction, then enable PWM.
+ * Must disable PWM, wait 200-500ms, set opposite direction, then enable PWM.<p>
+ * Pins map to a pwmchip and channel, pin 7 to chip 0 channel 0 and pin 12 to chip 4 channel 0 by default, more given by
+ * -DPWMPins=pin:chip:channel,... The class directory is /sys/class/pwm unless -DPWMRoot names another, as a test does.
+ * {@link #getWriter(int)} keeps one {@link SysfsPWMWriter} open per pin.
  * @author Jonathan Groff Copyright (C) NeoCoreTechs 2025
  */
 public class PWMDevice {
@@ -32,6 +38,94 @@ public class PWMDevice {
 			"/sys/devices/platform/pwm-ctrl/freq1" : "/sys/class/pwm/pwmchip4/pwm0/period");
 	private static String enable1 = ((System.getProperty("PWMDevices") != null && System.getProperty("PWMDevices").equals("legacy")) ?
 			"/sys/devices/platform/pwm-ctrl/enable1" : "/sys/class/pwm/pwmchip4/pwm0/enable"); // 0 or 1
+	private static final Map<Integer, int[]> pins = new HashMap<Integer, int[]>();
+	private static final Map<Integer, SysfsPWMWriter> writers = new HashMap<Integer, SysfsPWMWriter>();
+	static {
+		pins.put(7, new int[] {0, 0});
+		pins.put(12, new int[] {4, 0});
+		String extra = System.getProperty("PWMPins");
+		if(extra != null) {
+			for(String spec : extra.split(",")) {
+				String[] f = spec.trim().split(":");
+				if(f.length != 3)
+					throw new IllegalArgumentException("PWMPins entry "+spec+" is not pin:chip:channel");
+				pins.put(Integer.parseInt(f[0]), new int[] {Integer.parseInt(f[1]), Integer.parseInt(f[2])});
+			}
+		}
+	}
+
+	private static boolean isLegacy() {
+		return System.getProperty("PWMDevices") != null && System.getProperty("PWMDevices").equals("legacy");
+	}
+	/**
+	 * @return the PWM class directory, /sys/class/pwm unless -DPWMRoot is given
+	 */
+	public static String getRoot() {
+		return System.getProperty("PWMRoot", SysfsPWMWriter.SYSFS_PWM);
+	}
+	/**
+	 * @param pin the header pin
+	 * @return the pwmchip and channel of the pin, or null if it has no PWM
+	 */
+	public static int[] getChipChannel(int pin) {
+		return pins.get(pin);
+	}
+	/**
+	 * Get the writer for a pin, opening and exporting the channel on first use.
+	 * @param pin the header pin
+	 * @return the writer shared by all users of the pin
+	 * @throws IOException if the pin has no PWM or the channel cannot be opened
+	 */
+	public static synchronized SysfsPWMWriter getWriter(int pin) throws IOException {
+		SysfsPWMWriter w = writers.get(pin);
+		if(w != null)
+			return w;
+		int[] cc = pins.get(pin);
+		if(cc == null)
+			throw new IOException("Pin "+pin+" has no PWM, valid pins are "+pins.keySet());
+		if(isLegacy()) {
+			switch(pin) {
+				case 7 -> w = new SysfsPWMWriter("pwm-ctrl 0", Paths.get(freq0), Paths.get(duty0), Paths.get(enable0), true);
+				case 12 -> w = new SysfsPWMWriter("pwm-ctrl 1", Paths.get(freq1), Paths.get(duty1), Paths.get(enable1), true);
+				default -> throw new IOException("Only pins 7 and 12 are valid for legacy pwm-ctrl");
+			}
+		} else {
+			w = SysfsPWMWriter.open(getRoot(), cc[0], cc[1]);
+		}
+		writers.put(pin, w);
+		return w;
+	}
+	/**
+	 * Get the writer for a chip and channel not mapped to a pin.
+	 * @param chip the pwmchip number
+	 * @param channel the channel of the chip
+	 * @return the writer, shared with other users of the channel
+	 * @throws IOException if the channel cannot be opened
+	 */
+	public static synchronized SysfsPWMWriter getWriter(int chip, int channel) throws IOException {
+		for(Map.Entry<Integer, int[]> e : pins.entrySet()) {
+			if(e.getValue()[0] == chip && e.getValue()[1] == channel)
+				return getWriter(e.getKey());
+		}
+		int key = -1 - (chip << 8 | channel); // below every pin number
+		SysfsPWMWriter w = writers.get(key);
+		if(w == null) {
+			w = SysfsPWMWriter.open(getRoot(), chip, channel);
+			writers.put(key, w);
+		}
+		return w;
+	}
+	/**
+	 * Close every open writer, the next use of a pin opening it again.
+	 */
+	public static synchronized void closeWriters() {
+		for(SysfsPWMWriter w : writers.values()) {
+			try {
+				w.close();
+			} catch (IOException e) {}
+		}
+		writers.clear();
+	}
 	/**
 	 * @return the duty0
 	 */
@@ -0,0 +1,165 @@
+package com.neocoretechs.robocore.propulsion;
+/**
+ * Least squares slope of the most recent samples, held in a primitive ring with running sums of x, y, xy and x<sup>2</sup>
+ * so each sample updates the slope in constant time without allocating.<p>
+ * Samples are added with a timestamp, or with {@link #add(double)} at unit spacing, counting samples as
+ * MotionController has. The sums are taken relative to an origin moved up to the oldest sample, and recomputed
+ * from the ring, once per window of samples. This keeps large timestamps and values from costing precision in the
+ * sums, and stops rounding error building up in them from the samples leaving the window.<p>
+ * Not thread safe, each estimator belongs to one control thread.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public final class SlopeEstimator {
+	private final int capacity;
+	private final double[] xs; // relative to origin
+	private final double[] ys;
+	private int start = 0;
+	private int length = 0;
+	private long samples = 0L;
+	private double origin = 0.0;
+	private double yOrigin = 0.0; // the sums are of y - yOrigin, ys holds the values as given
+	private double sumX, sumY, sumXY, sumX2;
+	private int sinceResync = 0;
+	/**
+	 * @param window the number of most recent samples the slope is taken over, at least 2
+	 */
+	public SlopeEstimator(int window) {
+		if(window < 2)
+			throw new IllegalArgumentException("Slope window must be at least 2 samples:"+window);
+		capacity = window;
+		xs = new double[window];
+		ys = new double[window];
+	}
+	/**
+	 * Add a sample one unit after the previous one.
+	 * @param y the value
+	 * @return the slope including this sample, per sample
+	 */
+	public double add(double y) {
+		return add((double)samples, y);
+	}
+	/**
+	 * Add a sample at the given time, which should not be before the previous sample.
+	 * @param x the time of the sample, in any unit
+	 * @param y the value
+	 * @return the slope including this sample, in units of y per unit of x
+	 */
+	public double add(double x, double y) {
+		++samples;
+		if(length == 0) {
+			origin = x;
+			yOrigin = y;
+			sinceResync = 0;
+		}
+		if(length == capacity) {
+			double ox = xs[start], oy = ys[start] - yOrigin;
+			sumX -= ox;
+			sumY -= oy;
+			sumXY -= ox * oy;
+			sumX2 -= ox * ox;
+			start = (start + 1) % capacity;
+			--length;
+		}
+		double dx = x - origin, dy = y - yOrigin;
+		int slot = (start + length) % capacity;
+		xs[slot] = dx;
+		ys[slot] = y;
+		++length;
+		sumX += dx;
+		sumY += dy;
+		sumXY += dx * dy;
+		sumX2 += dx * dx;
+		if(++sinceResync >= capacity)
+			resync();
+		return slope();
+	}
+	/**
+	 * Move the origin to the oldest sample and recompute the sums from the ring.
+	 */
+	private void resync() {
+		double shift = xs[start];
+		origin += shift;
+		yOrigin = ys[start];
+		sumX = sumY = sumXY = sumX2 = 0.0;
+		for(int i = 0; i < length; i++) {
+			int slot = (start + i) % capacity;
+			double dx = xs[slot] - shift, dy = ys[slot] - yOrigin;
+			xs[slot] = dx;
+			sumX += dx;
+			sumY += dy;
+			sumXY += dx * dy;
+			sumX2 += dx * dx;
+		}
+		sinceResync = 0;
+	}
+	/**
+	 * @return the least squares slope of the samples in the window, NaN with fewer than 2 samples or all at the same time
+	 */
+	public double slope() {
+		if(length < 2)
+			return Double.NaN;
+		double den = length * sumX2 - sumX * sumX;
+		if(den == 0.0)
+			return Double.NaN;
+		return (length * sumXY - sumX * sumY) / den;
+	}
+	/**
+	 * Replace the value of the newest sample, keeping its time, as when it is limited after the slope is seen.
+	 * @param y the new value
+	 */
+	public void replaceLast(double y) {
+		if(length == 0)
+			throw new IllegalStateException("No sample to replace");
+		int slot = (start + length - 1) % capacity;
+		double dy = (y - yOrigin) - (ys[slot] - yOrigin);
+		ys[slot] = y;
+		sumY += dy;
+		sumXY += xs[slot] * dy;
+	}
+	/**
+	 * @param index 0 the oldest sample in the window to {@link #size()}-1 the newest
+	 * @return the value of the sample
+	 */
+	public double getY(int index) {
+		if(index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("index=" + index + " length=" + length);
+		return ys[(start + index) % capacity];
+	}
+	/**
+	 * @param index 0 the oldest sample in the window to {@link #size()}-1 the newest
+	 * @return the time of the sample
+	 */
+	public double getX(int index) {
+		if(index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("index=" + index + " length=" + length);
+		return origin + xs[(start + index) % capacity];
+	}
+	/**
+	 * @return the value of the newest sample
+	 */
+	public double last() {
+		return getY(length - 1);
+	}
+	/**
+	 * @return the number of samples in the window
+	 */
+	public int size() {
+		return length;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public void clear() {
+		start = length = sinceResync = 0;
+		samples = 0L;
+		origin = yOrigin = sumX = sumY = sumXY = sumX2 = 0.0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SlopeEstimator window=%d samples=%d slope=%f", capacity, length, slope());
+	}
+}
@@ -0,0 +1,265 @@
+package com.neocoretechs.robocore.propulsion;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+/**
+ * Writes the period, duty cycle and enable attributes of one PWM channel through FileChannels held open for the life
+ * of the channel, rather than opening a FileWriter for each value.<p>
+ * A value equal to the one last written to its attribute is skipped. {@link #setDuty(long)} coalesces: the newest duty
+ * cycle is left for whichever thread is writing, and a caller finding the channel busy returns at once, so a burst of
+ * updates from a control loop costs one write of the latest value rather than one write each. Every path that holds
+ * the channel looks for a duty cycle left pending once it lets go, and writes it, so none is lost to a caller that
+ * found the channel busy with a period, enable or invalidate.<p>
+ * Each value is written from position 0 followed by a newline, as a fresh store to a sysfs attribute. A regular file
+ * standing in for an attribute, as in a test, holds the last value as its first line.<p>
+ * The sysfs layout is root/pwmchip&lt;chip&gt;/pwm&lt;channel&gt;/{period,duty_cycle,enable} under /sys/class/pwm, the
+ * channel directory created by writing the channel number to root/pwmchip&lt;chip&gt;/export. Period and duty cycle
+ * are in nanoseconds, the duty cycle may not exceed the period, so the period is written first unless it is shrinking
+ * below the present duty cycle. The legacy pwm-ctrl freq0 holds a frequency in Hertz in place of the period, so for it
+ * the duty cycle is not checked against it and it is always written first.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class SysfsPWMWriter implements Closeable {
+	public static boolean DEBUG = false;
+	public static final String SYSFS_PWM = "/sys/class/pwm";
+	static final long EXPORT_WAIT_MILLIS = 1000L; // for udev to create the exported channel
+	private static final long NONE = Long.MIN_VALUE;
+	private final String name;
+	private final FileChannel period, duty, enable;
+	private final boolean frequency; // the period attribute holds a frequency, as pwm-ctrl freq0
+	private final ByteBuffer buf = ByteBuffer.allocate(24); // guarded by lock
+	private final ReentrantLock lock = new ReentrantLock();
+	private final AtomicLong pendingDuty = new AtomicLong(NONE);
+	private volatile long writtenPeriod = NONE, writtenDuty = NONE, writtenEnable = NONE; // written under lock
+	private long writes = 0L, skipped = 0L;
+	private final AtomicLong coalesced = new AtomicLong();
+	/**
+	 * Open the attributes of a channel exported under a sysfs style PWM root, exporting it first if its directory is absent.
+	 * @param root the PWM class directory, normally {@link #SYSFS_PWM}
+	 * @param chip the pwmchip number
+	 * @param channel the pwm channel of the chip
+	 * @return the writer
+	 * @throws IOException if the chip is absent or the channel cannot be exported or opened
+	 */
+	public static SysfsPWMWriter open(String root, int chip, int channel) throws IOException {
+		Path chipDir = Paths.get(root, "pwmchip"+chip);
+		if(!Files.isDirectory(chipDir))
+			throw new IOException("PWM chip "+chipDir+" not present");
+		Path dir = chipDir.resolve("pwm"+channel);
+		if(!Files.isDirectory(dir)) {
+			if(DEBUG)
+				System.out.println("SysfsPWMWriter exporting "+dir);
+			try(FileChannel export = FileChannel.open(chipDir.resolve("export"), StandardOpenOption.WRITE)) {
+				export.write(ByteBuffer.wrap((channel+"\n").getBytes()), 0);
+			}
+			long deadline = System.currentTimeMillis() + EXPORT_WAIT_MILLIS;
+			while(!Files.isWritable(dir.resolve("enable"))) {
+				if(System.currentTimeMillis() > deadline)
+					throw new IOException("PWM channel "+dir+" did not appear after export");
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted waiting for export of "+dir);
+				}
+			}
+		}
+		return new SysfsPWMWriter(dir.toString(), dir.resolve("period"), dir.resolve("duty_cycle"), dir.resolve("enable"));
+	}
+	/**
+	 * Open period, duty cycle and enable attributes at explicit paths.
+	 * @param name for messages
+	 * @param periodPath the period attribute
+	 * @param dutyPath the duty cycle attribute
+	 * @param enablePath the enable attribute
+	 * @throws IOException if any cannot be opened for writing
+	 */
+	public SysfsPWMWriter(String name, Path periodPath, Path dutyPath, Path enablePath) throws IOException {
+		this(name, periodPath, dutyPath, enablePath, false);
+	}
+	/**
+	 * Open attributes at explicit paths, such as the legacy pwm-ctrl freq0, duty0 and enable0.
+	 * @param name for messages
+	 * @param periodPath the period or frequency attribute
+	 * @param dutyPath the duty cycle attribute
+	 * @param enablePath the enable attribute
+	 * @param frequency true if the period attribute holds a frequency in Hertz, the duty cycle not bounded by it
+	 * @throws IOException if any cannot be opened for writing
+	 */
+	public SysfsPWMWriter(String name, Path periodPath, Path dutyPath, Path enablePath, boolean frequency) throws IOException {
+		this.name = name;
+		this.frequency = frequency;
+		this.period = FileChannel.open(periodPath, StandardOpenOption.WRITE);
+		this.duty = FileChannel.open(dutyPath, StandardOpenOption.WRITE);
+		this.enable = FileChannel.open(enablePath, StandardOpenOption.WRITE);
+	}
+	/**
+	 * Set period and duty cycle together, ordered so the duty cycle never exceeds the period.
+	 * For a frequency attribute the frequency is written, then the duty cycle.
+	 * A duty cycle still pending from {@link #setDuty(long)} is superseded.
+	 * @param periodNs the period, or the frequency
+	 * @param dutyNs the duty cycle
+	 * @throws IOException if a write fails, or the duty cycle exceeds the period
+	 */
+	public void setPeriodDuty(long periodNs, long dutyNs) throws IOException {
+		if(!frequency && dutyNs > periodNs)
+			throw new IOException(name+" duty cycle "+dutyNs+" exceeds period "+periodNs);
+		lock.lock();
+		try {
+			pendingDuty.set(NONE);
+			if(!frequency && writtenDuty != NONE && periodNs < writtenDuty) {
+				writtenDuty = write(duty, writtenDuty, dutyNs);
+				writtenPeriod = write(period, writtenPeriod, periodNs);
+			} else {
+				writtenPeriod = write(period, writtenPeriod, periodNs);
+				writtenDuty = write(duty, writtenDuty, dutyNs);
+			}
+		} finally {
+			lock.unlock();
+		}
+		drain();
+	}
+	/**
+	 * Set the duty cycle, coalescing with concurrent callers. Returns without writing if another thread is writing,
+	 * which writes the newest duty cycle once it lets go of the channel.
+	 * @param dutyNs the duty cycle, not more than the period
+	 * @throws IOException if the write fails, or the duty cycle exceeds the period last written, a frequency aside
+	 */
+	public void setDuty(long dutyNs) throws IOException {
+		if(pendingDuty.getAndSet(dutyNs) != NONE)
+			coalesced.incrementAndGet();
+		drain();
+	}
+	/**
+	 * Write the pending duty cycle unless another thread holds the channel, which will look again once it lets go.
+	 * Called after setting a duty cycle and after each unlock.
+	 */
+	private void drain() throws IOException {
+		while(pendingDuty.get() != NONE && lock.tryLock()) {
+			try {
+				long d = pendingDuty.getAndSet(NONE);
+				if(d != NONE) {
+					if(!frequency && writtenPeriod != NONE && d > writtenPeriod)
+						throw new IOException(name+" duty cycle "+d+" exceeds period "+writtenPeriod);
+					writtenDuty = write(duty, writtenDuty, d);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	public void enable(boolean on) throws IOException {
+		lock.lock();
+		try {
+			writtenEnable = write(enable, writtenEnable, on ? 1L : 0L);
+		} finally {
+			lock.unlock();
+		}
+		drain();
+	}
+	/**
+	 * Forget the values written so the next of each is written even if unchanged, as after something else has written the attributes.
+	 * @throws IOException if a duty cycle left pending meanwhile cannot be written
+	 */
+	public void invalidate() throws IOException {
+		lock.lock();
+		try {
+			writtenPeriod = writtenDuty = writtenEnable = NONE;
+		} finally {
+			lock.unlock();
+		}
+		drain();
+	}
+	/**
+	 * Write a value unless it is the one last written, with the lock held.
+	 * @return the value now in the attribute
+	 */
+	private long write(FileChannel ch, long last, long value) throws IOException {
+		if(value == last) {
+			++skipped;
+			return last;
+		}
+		long written = value;
+		buf.clear();
+		if(value < 0) {
+			buf.put((byte)'-');
+			value = -value;
+		}
+		int start = buf.position();
+		do {
+			buf.put((byte)('0' + (value % 10)));
+			value /= 10;
+		} while(value > 0);
+		for(int i = start, j = buf.position() - 1; i < j; i++, j--) {
+			byte b = buf.get(i);
+			buf.put(i, buf.get(j));
+			buf.put(j, b);
+		}
+		buf.put((byte)'\n');
+		buf.flip();
+		int pos = 0;
+		while(buf.hasRemaining())
+			pos += ch.write(buf, pos);
+		++writes;
+		if(DEBUG)
+			System.out.println("SysfsPWMWriter "+name+" wrote "+written);
+		return written;
+	}
+
+	public long getPeriod() {
+		return writtenPeriod == NONE ? -1L : writtenPeriod;
+	}
+
+	public long getDuty() {
+		return writtenDuty == NONE ? -1L : writtenDuty;
+	}
+
+	public boolean isEnabled() {
+		return writtenEnable == 1L;
+	}
+	/**
+	 * @return writes made to the attributes
+	 */
+	public long getWrites() {
+		return writes;
+	}
+	/**
+	 * @return writes skipped because the value had not changed
+	 */
+	public long getSkipped() {
+		return skipped;
+	}
+	/**
+	 * @return duty cycles replaced by a newer one before they were written
+	 */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			period.close();
+			duty.close();
+			enable.close();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s period=%d duty=%d enabled=%b writes=%d skipped=%d coalesced=%d",
+				name, getPeriod(), getDuty(), isEnabled(), writes, skipped, coalesced.get());
+	}
+}
@@ -0,0 +1,142 @@
+package com.neocoretechs.robocore.serialreader;
+
+import java.io.IOException;
+/**
+ * The register read transaction of the BNO055 UART protocol over any {@link DataPortInterface}, so it serves the
+ * serial port of {@link IMUSerialDataPort} and a stand-in for the sensor alike.<p>
+ * A read is the frame 0xAA 0x01 address length. The sensor answers 0xBB length data 1..n, or 0xEE and a status.
+ * A 0x07 BUS_OVER_RUN_ERROR, or a response that is neither, sends the frame again after the delay of the
+ * {@link RetryBackoff}, other statuses fail at once. The data is read into a buffer supplied by the caller,
+ * so a read allocates nothing.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class BNO055RegisterReader {
+	public static boolean DEBUG = false;
+	public static final int MAX_LENGTH = 128; // longest read in one frame
+	static final byte[] ReadErrors = {
+		 0x02,
+		 0x04,
+		 0x05,
+		 0x06,
+		 0x07,
+		 0X08,
+		 0x09,
+		 0x0A};
+
+	static final String[] ReadErrorMsg = { "READ_FAIL","REGMAP_INVALID_ADDRESS","REGMAP_WRITE_DISABLED","WRONG_START_BYTE","BUS_OVER_RUN_ERROR",
+			 "MAX_LENGTH_ERROR","MIN_LENGTH_ERROR", "RECEIVE_CHARACTER_TIMEOUT"};
+	private final DataPortInterface port;
+	private volatile RetryBackoff retry = RetryBackoff.DEFAULT;
+	private long frames = 0L;
+	private long retries = 0L;
+	/**
+	 * @param port the byte stream to and from the sensor
+	 */
+	public BNO055RegisterReader(DataPortInterface port) {
+		this.port = port;
+	}
+
+	public void setRetryBackoff(RetryBackoff retry) {
+		this.retry = retry;
+	}
+
+	public RetryBackoff getRetryBackoff() {
+		return retry;
+	}
+	/**
+	 * Read consecutive registers.
+	 * @param address the first register
+	 * @param buf receives the register values
+	 * @param off where in buf the first value goes
+	 * @param length registers to read, 1 to {@link #MAX_LENGTH}
+	 * @throws IOException if the sensor refuses the read after any retries, or answers with another length
+	 */
+	public void read(byte address, byte[] buf, int off, int length) throws IOException {
+		if(length < 1 || length > MAX_LENGTH)
+			throw new IOException("Register read of "+length+" bytes, must be 1 to "+MAX_LENGTH);
+		int retry = 0;
+		byte resp;
+		RetryBackoff backoff = this.retry;
+		while( (resp = signalRead(address, (byte)length)) == (byte)0x07 && backoff.backoff(++retry)) {
+			++retries;
+			if(DEBUG)
+				System.out.printf("%s retry %d of register %02x%n", this.getClass().getName(), retry, address);
+		}
+		// done retrying
+		if( resp != 0 ) {
+			switch(resp) {
+			case ((byte)0x03):
+				throw new IOException(String.format("Error from write ACK:%02x WRITE_FAIL - check connection, protocol settings and operation mode\r\n",resp));
+			case((byte)0x04):
+				throw new IOException(String.format("Error from write ACK:%02x REGMAP_INVALID_ADDRESS - check if the register is addressable\r\n",resp));
+			case((byte)0x06):
+				throw new IOException(String.format("Error from write ACK:%02x WRONG_START_BYTE - Check if first byte sent is 0xAA\r\n",resp));
+			case((byte)0x07):
+				throw new IOException(String.format("Error from write ACK:%02x BUS_OVER_RUN_ERROR - resend the command\r\n",resp));
+			case((byte)0X08):
+				throw new IOException(String.format("Error from write ACK:%02x MAX_LENGTH_ERROR - split command so single frame < 128 bytes\r\n",resp));
+			case((byte)0x09):
+				throw new IOException(String.format("Error from write ACK:%02x MIN_LENGTH_ERROR - send a valid frame\r\n",resp));
+			case((byte)0x0A):
+				throw new IOException(String.format("Error from write ACK:%02x RECEIVE_CHARACTER_TIMEOUT - decrease waiting time between sending of 2 bytes of 1 frame to < 100ms\r\n",resp));
+			default:
+				throw new IOException("Bad response for signalRead after " + retry +" retries, exiting read with response:"+resp);
+			}
+		}
+		// Returning with 0 from signalRead means we found 0xBB
+		// next byte is length, then data 1..n
+		int blen = port.read() & 0xFF;
+		if( blen != length) {
+			throw new IOException(String.format("Received length byte: %d but read requested %d bytes.\r\n", blen, length));
+		}
+		for(int i = 0; i < blen; i++) {
+			buf[off + i] = (byte)( port.read() & 0xFF);
+		}
+	}
+	/**
+	 * Send the read frame and take the response header.
+	 * @return 0 on 0xBB, the status after 0xEE, or 0x07 for any other response
+	 */
+	private byte signalRead(byte address, byte length) throws IOException {
+		++frames;
+		port.write((byte) 0xAA); // Start byte
+		port.write((byte) 0x01);  // Read
+		port.write((byte) (address & 0xFF));
+		port.write((byte) (length & 0xFF));
+		byte resp = (byte)( port.read() & 0xFF);
+		if( resp == (byte)0xBB ) {
+			return 0;
+		}
+		// read fail is EE, otherwise confusion
+		if( resp != (byte)0xEE ) {
+			if(DEBUG)
+				System.out.printf("Received unexpected response in signalRead: %02x while looking for error byte '0xEE'\r\n", resp);
+			return (byte)0x07; // lets call this bus overrun from chip
+		} else {
+			resp = (byte)( port.read() & 0xFF);
+		}
+		// should have the error code
+		String err = "UNKNOWN";
+		for(int i = 0; i < ReadErrors.length; i++)
+			if(ReadErrors[i] == resp) {
+				err = ReadErrorMsg[i];
+				break;
+			}
+		if(DEBUG || resp != (byte)0x07)
+			System.out.printf("Error detected in IMU read, code: %02x %s\r\n",resp, err);
+		return resp;
+	}
+	/**
+	 * @return read frames sent, retries included
+	 */
+	public long getFrames() {
+		return frames;
+	}
+	/**
+	 * @return frames sent again after a bus overrun
+	 */
+	public long getRetries() {
+		return retries;
+	}
+}
@@ -0,0 +1,662 @@
+package com.neocoretechs.robocore.serialreader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+/**
+ * Stands in for the BNO055 on the far end of the UART, byte for byte, so the IMU code can be run, profiled and load tested
+ * without the sensor. {@link #getInputStream()} and {@link #getOutputStream()} take the place of those of the serial port,
+ * as {@link IMUSerialDataPort#getInstance(String, InputStream, OutputStream)} does, or
+ * {@link IMUSerialDataPort#getInstance(String)} given the port name {@link #PORT_NAME}.<p>
+ * Frames are answered as the sensor does in UART mode: a register read 0xAA 0x01 address length with 0xBB length data,
+ * a register write 0xAA 0x00 address length data with 0xEE 0x01, and a frame that cannot be served with 0xEE and the
+ * status the datasheet gives for it. A register outside the map is 0x04 REGMAP_INVALID_ADDRESS, a read only register 0x05
+ * REGMAP_WRITE_DISABLED, a configuration register written outside CONFIG mode 0x03 WRITE_FAIL, a start byte other than
+ * 0xAA 0x06, a length over 128 0x08, a length of 0 0x09, and a gap of more than 100 ms within a frame 0x0A. A bus overrun,
+ * 0x07, can be scripted for the next frames with {@link #scriptOverruns(int)} or occur at random with {@link #setOverrunRate(double, long)},
+ * any other status for the next frame with {@link #scriptError(int)}.<p>
+ * The operation mode written to OPR_MODE selects which outputs are produced: the accelerometer, magnetometer and gyro
+ * of the non fusion modes read 0 when not enabled, and the fusion outputs, Euler angles, quaternion, linear acceleration
+ * and gravity, read 0 outside the fusion modes. In CONFIG mode the outputs keep the values last read. IMUPLUS heading
+ * is relative to the heading when the mode was entered. SYS_STAT reads 0 idle in CONFIG mode, 5 with fusion running,
+ * 6 without. Writing 0x20 to SYS_TRIGGER resets the sensor to its power on register map, unanswered, as the sensor
+ * resets before it can answer. Writing 0x01 runs the self test, all passing.<p>
+ * CALIB_STAT rises from 0 to 3 over {@link #setCalibrationMillis(long)} after a non CONFIG mode is entered, the gyro first,
+ * then the accelerometer, then the magnetometer and system. Writing all 22 offset and radius registers, as loading a
+ * calibration file does, calibrates the sensor at once, until the next reset.<p>
+ * The outputs are those of a sensor following a {@link MotionProfile} in time since the simulator was made, sensed when a
+ * read frame is complete, with optional noise on the raw sensors. Each byte takes the time to cross the wire at the baud
+ * rate, 10 bits a byte, and each response starts {@link #setResponseMicros(long)} after the frame it answers.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public final class BNO055Simulator {
+	public static boolean DEBUG = false;
+	public static final String PORT_NAME = "bno055sim";
+	public static final double GRAVITY = 9.80665; // m/s^2
+	public static final double FIELD_NORTH = 20.0; // microtesla, horizontal component
+	public static final double FIELD_DOWN = 40.0; // microtesla, vertical component
+	public static final long CHARACTER_TIMEOUT_NANOS = 100000000L; // 100 ms within a frame
+	static final double RATE_STEP = 0.01; // seconds between poses differenced for rates
+	// status after 0xEE
+	public static final int WRITE_SUCCESS = 0x01;
+	public static final int READ_FAIL = 0x02;
+	public static final int WRITE_FAIL = 0x03;
+	public static final int REGMAP_INVALID_ADDRESS = 0x04;
+	public static final int REGMAP_WRITE_DISABLED = 0x05;
+	public static final int WRONG_START_BYTE = 0x06;
+	public static final int BUS_OVER_RUN_ERROR = 0x07;
+	public static final int MAX_LENGTH_ERROR = 0x08;
+	public static final int MIN_LENGTH_ERROR = 0x09;
+	public static final int RECEIVE_CHARACTER_TIMEOUT = 0x0A;
+	// sensors enabled by each operation mode, CONFIG through NDOF
+	private static final int ACC = 1, MAG = 2, GYR = 4, FUSION = 8;
+	private static final int[] MODE_SENSORS = {
+		0, ACC, MAG, GYR, ACC|MAG, ACC|GYR, MAG|GYR, ACC|MAG|GYR,
+		ACC|GYR|FUSION, ACC|MAG|FUSION, ACC|MAG|FUSION, ACC|MAG|GYR|FUSION, ACC|MAG|GYR|FUSION };
+	private static final int OFFSETS = IMUSerialDataPort.ACCEL_OFFSET_X_LSB_ADDR;
+	private static final int OFFSETS_LENGTH = 22;
+	private static final int CALIB_STAT = IMUSerialDataPort.BNO055_CALIB_STAT_ADDR;
+	private static final int SELFTEST_RESULT = IMUSerialDataPort.BNO055_SELFTEST_RESULT_ADDR;
+	private static final int SYS_STAT = IMUSerialDataPort.BNO055_SYS_STAT_ADDR;
+	private static final int SYS_ERR = IMUSerialDataPort.BNO055_SYS_ERR_ADDR;
+	private static final int UNIT_SEL = 0x3B;
+	private static final int PAGE_ID = IMUSerialDataPort.BNO055_PAGE_ID_ADDR;
+	private static final int OPR_MODE = IMUSerialDataPort.BNO055_OPR_MODE_ADDR;
+	private static final int SYS_TRIGGER = IMUSerialDataPort.BNO055_SYS_TRIGGER_ADDR;
+	private static final int AXIS_MAP_CONFIG = IMUSerialDataPort.BNO055_AXIS_MAP_CONFIG_ADDR;
+	private static final int AXIS_MAP_SIGN = IMUSerialDataPort.BNO055_AXIS_MAP_SIGN_ADDR;
+	private static final int RESPONSES = 1024; // response bytes in flight, a power of 2
+
+	private final byte[][] pages = new byte[2][0x80];
+	private final long start = System.nanoTime();
+	private MotionProfile motion;
+	private long byteNanos;
+	private long responseNanos = 0L;
+	private long calibrationNanos = 0L;
+	private int temperature = 25;
+	private double noise = 0.0;
+	private Random noiseRandom = null;
+	private double overrunRate = 0.0;
+	private Random overrunRandom = null;
+	private int overruns = 0;
+	private int error = 0;
+	// operating state
+	private int mode;
+	private long modeEntered;
+	private double headingOrigin;
+	private boolean offsetsLoaded;
+	// frame being received
+	private final int[] frame = new int[4 + 128];
+	private int framed = 0;
+	private long lastReceived = 0L;
+	private long arrival = 0L; // when the last byte written arrives
+	private long sendAt = 0L; // when the last byte queued has crossed the wire
+	// responses queued with the time each byte has crossed the wire
+	private final byte[] responses = new byte[RESPONSES];
+	private final long[] due = new long[RESPONSES];
+	private int head = 0, tail = 0;
+	private boolean open = true;
+	// motion scratch
+	private final double[] pose = new double[6];
+	private final double[] before = new double[6];
+	// counters
+	private long frames = 0L, reads = 0L, writes = 0L, errors = 0L, resets = 0L, bytesIn = 0L, bytesOut = 0L;
+
+	private final InputStream in = new InputStream() {
+		@Override
+		public int read() throws IOException {
+			return BNO055Simulator.this.read();
+		}
+		@Override
+		public int available() {
+			return BNO055Simulator.this.available();
+		}
+		@Override
+		public void close() {
+			BNO055Simulator.this.close();
+		}
+	};
+	private final OutputStream out = new OutputStream() {
+		@Override
+		public void write(int b) throws IOException {
+			BNO055Simulator.this.write(b);
+		}
+		@Override
+		public void close() {
+			BNO055Simulator.this.close();
+		}
+	};
+	/**
+	 * The orientation and motion of the simulated sensor over time.
+	 */
+	@FunctionalInterface
+	public interface MotionProfile {
+		/**
+		 * @param seconds since the simulator was made
+		 * @param pose receives heading, clockwise from north, roll and pitch in degrees, applied in that order,
+		 * then linear acceleration X forward, Y left and Z up of the sensor in m/s^2
+		 */
+		public void pose(double seconds, double[] pose);
+	}
+	/**
+	 * A level sensor at rest, heading north, at 115200 baud.
+	 */
+	public BNO055Simulator() {
+		this(still(), 115200);
+	}
+	/**
+	 * @param motion the profile the sensor follows
+	 * @param baud the wire speed, 0 for none
+	 */
+	public BNO055Simulator(MotionProfile motion, int baud) {
+		this.motion = motion;
+		setBaud(baud);
+		powerOn();
+	}
+
+	public InputStream getInputStream() {
+		return in;
+	}
+
+	public OutputStream getOutputStream() {
+		return out;
+	}
+	/**
+	 * @param baud the wire speed, 0 for none
+	 */
+	public synchronized void setBaud(int baud) {
+		byteNanos = baud <= 0 ? 0L : 10000000000L / baud;
+	}
+	/**
+	 * @param micros time from the end of a frame to the start of its response
+	 */
+	public synchronized void setResponseMicros(long micros) {
+		responseNanos = micros * 1000L;
+	}
+	/**
+	 * @param millis time for the calibration status to reach 3 after a non CONFIG mode is entered, 0 for at once
+	 */
+	public synchronized void setCalibrationMillis(long millis) {
+		calibrationNanos = millis * 1000000L;
+	}
+
+	public synchronized void setMotion(MotionProfile motion) {
+		this.motion = motion;
+	}
+
+	public synchronized void setTemperature(int celsius) {
+		temperature = celsius;
+	}
+	/**
+	 * @param lsb standard deviation of the white noise on the raw accelerometer, magnetometer and gyro, in counts
+	 * @param seed of the noise
+	 */
+	public synchronized void setNoise(double lsb, long seed) {
+		noise = lsb;
+		noiseRandom = lsb > 0.0 ? new Random(seed) : null;
+	}
+	/**
+	 * @param rate chance of a frame being answered 0x07 BUS_OVER_RUN_ERROR
+	 * @param seed of the chance
+	 */
+	public synchronized void setOverrunRate(double rate, long seed) {
+		overrunRate = rate;
+		overrunRandom = rate > 0.0 ? new Random(seed) : null;
+	}
+	/**
+	 * @param frames the next frames to be answered 0x07 BUS_OVER_RUN_ERROR
+	 */
+	public synchronized void scriptOverruns(int frames) {
+		overruns = frames;
+	}
+	/**
+	 * @param status answers the next frame after any scripted overruns, 0xEE and this
+	 */
+	public synchronized void scriptError(int status) {
+		error = status;
+	}
+	/**
+	 * @param address register of page 0
+	 * @return its value, outputs as last sensed
+	 */
+	public synchronized int getRegister(int address) {
+		return pages[0][address] & 0xFF;
+	}
+
+	public synchronized int getMode() {
+		return mode;
+	}
+	/**
+	 * Stop answering, readers of the input stream get the end of stream.
+	 */
+	public synchronized void close() {
+		open = false;
+		notifyAll();
+	}
+	/**
+	 * Take a byte from the host. A complete frame is answered at once, its response arriving as the wire allows.
+	 */
+	synchronized void write(int c) throws IOException {
+		if(!open)
+			throw new IOException("BNO055Simulator closed");
+		++bytesIn;
+		long now = System.nanoTime();
+		arrival = Math.max(now, arrival) + byteNanos;
+		sendAt = Math.max(arrival + responseNanos, sendAt); // any answer starts after this byte and those queued
+		if(framed > 0 && now - lastReceived > CHARACTER_TIMEOUT_NANOS) {
+			framed = 0;
+			respond(RECEIVE_CHARACTER_TIMEOUT);
+		}
+		lastReceived = now;
+		c &= 0xFF;
+		if(framed == 0 && c != 0xAA) {
+			respond(WRONG_START_BYTE);
+			return;
+		}
+		frame[framed++] = c;
+		if(framed < 4)
+			return;
+		int length = frame[3];
+		if(framed == 4) {
+			if(frame[1] != 0x00 && frame[1] != 0x01) {
+				framed = 0;
+				respond(WRONG_START_BYTE);
+				return;
+			}
+			if(length == 0 || length > 128) {
+				framed = 0;
+				respond(length == 0 ? MIN_LENGTH_ERROR : MAX_LENGTH_ERROR);
+				return;
+			}
+		}
+		if(frame[1] == 0x00 && framed < 4 + length)
+			return; // write data to come
+		framed = 0;
+		++frames;
+		if(overruns > 0) {
+			--overruns;
+			respond(BUS_OVER_RUN_ERROR);
+		} else if(overrunRandom != null && overrunRandom.nextDouble() < overrunRate) {
+			respond(BUS_OVER_RUN_ERROR);
+		} else if(error != 0) {
+			respond(error);
+			error = 0;
+		} else if(frame[1] == 0x01) {
+			readRegisters(frame[2], length, now);
+		} else {
+			writeRegisters(frame[2], length, now);
+		}
+	}
+
+	private void readRegisters(int address, int length, long now) {
+		if(address + length > 0x80) {
+			respond(REGMAP_INVALID_ADDRESS);
+			return;
+		}
+		++reads;
+		byte[] page = pages[pages[0][PAGE_ID] & 1];
+		if(page == pages[0])
+			sense(now);
+		queue(0xBB);
+		queue(length);
+		for(int i = 0; i < length; i++)
+			queue(page[address + i]);
+	}
+
+	private void writeRegisters(int address, int length, long now) {
+		if(address + length > 0x80) {
+			respond(REGMAP_INVALID_ADDRESS);
+			return;
+		}
+		int page = pages[0][PAGE_ID] & 1;
+		for(int i = address; i < address + length; i++) {
+			if(!writable(page, i)) {
+				respond(REGMAP_WRITE_DISABLED);
+				return;
+			}
+			if(mode != IMUSerialDataPort.OPERATION_MODE_CONFIG && configOnly(page, i)) {
+				respond(WRITE_FAIL);
+				return;
+			}
+		}
+		++writes;
+		for(int i = 0; i < length; i++) {
+			int value = frame[4 + i];
+			int register = address + i;
+			if(page == 1) {
+				pages[1][register] = (byte)value;
+				if(register == PAGE_ID)
+					pages[0][PAGE_ID] = (byte)value;
+				continue;
+			}
+			switch(register) {
+				case OPR_MODE:
+					setMode(value & 0x0F, now);
+					break;
+				case SYS_TRIGGER:
+					if((value & 0x20) != 0) {
+						if(DEBUG)
+							System.out.println("BNO055Simulator reset");
+						++resets;
+						powerOn();
+						return; // the sensor resets before it can answer
+					}
+					if((value & 0x01) != 0)
+						pages[0][SELFTEST_RESULT] = 0x0F;
+					pages[0][SYS_TRIGGER] = (byte)(value & 0xC0); // the trigger bits clear themselves
+					break;
+				default:
+					pages[0][register] = (byte)value;
+					break;
+			}
+			if(register == PAGE_ID)
+				pages[1][PAGE_ID] = (byte)value;
+		}
+		if(page == 0 && address <= OFFSETS && address + length >= OFFSETS + OFFSETS_LENGTH)
+			offsetsLoaded = true;
+		respond(WRITE_SUCCESS);
+	}
+
+	private static boolean writable(int page, int register) {
+		if(page == 1)
+			return register >= PAGE_ID;
+		return register == PAGE_ID || register == UNIT_SEL || (register >= OPR_MODE && register <= AXIS_MAP_SIGN) ||
+				(register >= OFFSETS && register < OFFSETS + OFFSETS_LENGTH);
+	}
+
+	private static boolean configOnly(int page, int register) {
+		return register != PAGE_ID && (page == 1 || (register != OPR_MODE && register != SYS_TRIGGER));
+	}
+	/**
+	 * The register map at power on, in CONFIG mode, uncalibrated.
+	 */
+	private void powerOn() {
+		for(byte[] page : pages)
+			Arrays.fill(page, (byte)0);
+		byte[] p = pages[0];
+		p[IMUSerialDataPort.BNO055_CHIP_ID_ADDR] = IMUSerialDataPort.BNO055_ID;
+		p[IMUSerialDataPort.BNO055_ACCEL_REV_ID_ADDR] = (byte)0xFB;
+		p[IMUSerialDataPort.BNO055_MAG_REV_ID_ADDR] = (byte)0x32;
+		p[IMUSerialDataPort.BNO055_GYRO_REV_ID_ADDR] = (byte)0x0F;
+		p[IMUSerialDataPort.BNO055_SW_REV_ID_LSB_ADDR] = (byte)0x11;
+		p[IMUSerialDataPort.BNO055_SW_REV_ID_MSB_ADDR] = (byte)0x03;
+		p[IMUSerialDataPort.BNO055_BL_REV_ID_ADDR] = (byte)0x15;
+		p[UNIT_SEL] = (byte)0x80;
+		p[AXIS_MAP_CONFIG] = (byte)0x24;
+		p[SELFTEST_RESULT] = (byte)0x0F;
+		p[IMUSerialDataPort.BNO055_TEMP_ADDR] = (byte)temperature;
+		mode = IMUSerialDataPort.OPERATION_MODE_CONFIG;
+		offsetsLoaded = false;
+		framed = 0;
+	}
+
+	private void setMode(int value, long now) {
+		if(value >= MODE_SENSORS.length)
+			value = IMUSerialDataPort.OPERATION_MODE_CONFIG;
+		if(value != mode) {
+			mode = value;
+			modeEntered = now;
+			motion.pose(seconds(now), pose);
+			headingOrigin = value == IMUSerialDataPort.OPERATION_MODE_IMUPLUS ? pose[0] : 0.0;
+		}
+		pages[0][OPR_MODE] = (byte)value;
+	}
+	/**
+	 * Read the sensors into the output registers, as they are at this time in the motion profile.
+	 */
+	private void sense(long now) {
+		byte[] p = pages[0];
+		int sensors = MODE_SENSORS[mode];
+		p[CALIB_STAT] = (byte)calibration(sensors, now);
+		p[SYS_STAT] = (byte)(mode == IMUSerialDataPort.OPERATION_MODE_CONFIG ? 0 : (sensors & FUSION) != 0 ? 5 : 6);
+		p[SYS_ERR] = 0;
+		if(mode == IMUSerialDataPort.OPERATION_MODE_CONFIG)
+			return;
+		double t = seconds(now);
+		motion.pose(t - RATE_STEP, before);
+		motion.pose(t, pose);
+		double heading = wrap(pose[0] - headingOrigin, 360.0);
+		double psi = Math.toRadians(heading), phi = Math.toRadians(pose[1]), theta = Math.toRadians(pose[2]);
+		double cps = Math.cos(psi), sps = Math.sin(psi), cph = Math.cos(phi), sph = Math.sin(phi), cth = Math.cos(theta), sth = Math.sin(theta);
+		// columns of the rotation from the sensor to north, east, down, heading then pitch then roll
+		double r00 = cth * cps, r01 = sph * sth * cps - cph * sps, r02 = cph * sth * cps + sph * sps;
+		double r10 = cth * sps, r11 = sph * sth * sps + cph * cps, r12 = cph * sth * sps - sph * cps;
+		double r20 = -sth, r21 = sph * cth, r22 = cph * cth;
+		// gravity and field in the sensor frame, X forward, Y left, Z up
+		double gx = GRAVITY * r20, gy = -GRAVITY * r21, gz = GRAVITY * r22;
+		double mx = FIELD_NORTH * r00 + FIELD_DOWN * r20;
+		double my = -(FIELD_NORTH * r01 + FIELD_DOWN * r21);
+		double mz = -(FIELD_NORTH * r02 + FIELD_DOWN * r22);
+		// rates of the Euler angles, the body rates when level, heading clockwise is negative about Z up
+		double rollRate = (pose[1] - before[1]) / RATE_STEP;
+		double pitchRate = (pose[2] - before[2]) / RATE_STEP;
+		double yawRate = -(wrap(pose[0] - before[0] + 180.0, 360.0) - 180.0) / RATE_STEP;
+		boolean acc = (sensors & ACC) != 0, mag = (sensors & MAG) != 0, gyr = (sensors & GYR) != 0, fusion = (sensors & FUSION) != 0;
+		put(IMUSerialDataPort.BNO055_ACCEL_DATA_X_LSB_ADDR, acc, 100.0, true, pose[3] + gx, pose[4] + gy, pose[5] + gz);
+		put(IMUSerialDataPort.BNO055_MAG_DATA_X_LSB_ADDR, mag, 16.0, true, mx, my, mz);
+		put(IMUSerialDataPort.BNO055_GYRO_DATA_X_LSB_ADDR, gyr, 16.0, true, rollRate, pitchRate, yawRate);
+		put(IMUSerialDataPort.BNO055_EULER_H_LSB_ADDR, fusion, 16.0, false, heading, pose[1], pose[2]);
+		double c1 = Math.cos(phi / 2), s1 = Math.sin(phi / 2), c2 = Math.cos(theta / 2), s2 = Math.sin(theta / 2), c3 = Math.cos(psi / 2), s3 = Math.sin(psi / 2);
+		double qs = fusion ? 1 << 14 : 0.0;
+		int q = IMUSerialDataPort.BNO055_QUATERNION_DATA_W_LSB_ADDR;
+		word(q, qs * (c1 * c2 * c3 + s1 * s2 * s3));
+		word(q + 2, qs * (s1 * c2 * c3 - c1 * s2 * s3));
+		word(q + 4, qs * (c1 * s2 * c3 + s1 * c2 * s3));
+		word(q + 6, qs * (c1 * c2 * s3 - s1 * s2 * c3));
+		put(IMUSerialDataPort.BNO055_LINEAR_ACCEL_DATA_X_LSB_ADDR, fusion, 100.0, false, pose[3], pose[4], pose[5]);
+		put(IMUSerialDataPort.BNO055_GRAVITY_DATA_X_LSB_ADDR, fusion, 100.0, false, gx, gy, gz);
+		p[IMUSerialDataPort.BNO055_TEMP_ADDR] = (byte)temperature;
+	}
+
+	private void put(int address, boolean enabled, double scale, boolean raw, double x, double y, double z) {
+		if(!enabled)
+			scale = 0.0;
+		boolean noisy = raw && enabled && noiseRandom != null;
+		word(address, x * scale + (noisy ? noiseRandom.nextGaussian() * noise : 0.0));
+		word(address + 2, y * scale + (noisy ? noiseRandom.nextGaussian() * noise : 0.0));
+		word(address + 4, z * scale + (noisy ? noiseRandom.nextGaussian() * noise : 0.0));
+	}
+	/**
+	 * Store a count as the sensor does, LSB first, saturating.
+	 */
+	private void word(int address, double counts) {
+		long v = Math.round(counts);
+		v = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+		pages[0][address] = (byte)v;
+		pages[0][address + 1] = (byte)(v >> 8);
+	}
+
+	private int calibration(int sensors, long now) {
+		if(mode == IMUSerialDataPort.OPERATION_MODE_CONFIG)
+			return pages[0][CALIB_STAT] & 0xFF;
+		int gyro = level(3, now), accel = level(2, now), mag = level(1, now);
+		int sys = (sensors & FUSION) == 0 ? 0 : 3; // the least calibrated sensor fused
+		if((sensors & FUSION) != 0) {
+			if((sensors & GYR) != 0)
+				sys = Math.min(sys, gyro);
+			if((sensors & ACC) != 0)
+				sys = Math.min(sys, accel);
+			if((sensors & MAG) != 0)
+				sys = Math.min(sys, mag);
+		}
+		return sys << 6 | ((sensors & GYR) != 0 ? gyro : 0) << 4 | ((sensors & ACC) != 0 ? accel : 0) << 2 | ((sensors & MAG) != 0 ? mag : 0);
+	}
+	/**
+	 * @param speed 3 reaching full calibration in a third of the time, 1 in all of it
+	 * @return 0 to 3
+	 */
+	private int level(int speed, long now) {
+		if(offsetsLoaded || calibrationNanos == 0L)
+			return 3;
+		return (int)Math.min(3L, (now - modeEntered) * 3L * speed / calibrationNanos);
+	}
+
+	private double seconds(long now) {
+		return (now - start) / 1e9;
+	}
+
+	private static double wrap(double value, double range) {
+		return (value % range + range) % range;
+	}
+	/**
+	 * Answer 0xEE and a status.
+	 */
+	private void respond(int status) {
+		if(status != WRITE_SUCCESS) {
+			++errors;
+			if(DEBUG)
+				System.out.printf("BNO055Simulator answering status %02x%n", status);
+		}
+		queue(0xEE);
+		queue(status);
+	}
+
+	private void queue(int b) {
+		if(tail - head == RESPONSES) {
+			System.out.println("BNO055Simulator response overrun, host not reading");
+			return;
+		}
+		sendAt += byteNanos;
+		due[tail & (RESPONSES - 1)] = sendAt;
+		responses[tail & (RESPONSES - 1)] = (byte)b;
+		++tail;
+		notifyAll();
+	}
+	/**
+	 * Give the host the next response byte once it has crossed the wire, blocking until then.
+	 * @return the byte, or -1 once closed
+	 */
+	int read() throws IOException {
+		while(true) {
+			long at;
+			synchronized(this) {
+				try {
+					while(head == tail && open)
+						wait();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException("BNO055Simulator read interrupted");
+				}
+				if(!open)
+					return -1;
+				at = due[head & (RESPONSES - 1)];
+				if(System.nanoTime() >= at) {
+					++bytesOut;
+					return responses[head++ & (RESPONSES - 1)] & 0xFF;
+				}
+			}
+			LockSupport.parkNanos(this, at - System.nanoTime());
+		}
+	}
+	/**
+	 * @return response bytes that have crossed the wire
+	 */
+	synchronized int available() {
+		long now = System.nanoTime();
+		int n = 0;
+		while(head + n != tail && due[(head + n) & (RESPONSES - 1)] <= now)
+			++n;
+		return n;
+	}
+	/**
+	 * @return complete frames received, errors included
+	 */
+	public synchronized long getFrames() {
+		return frames;
+	}
+	/**
+	 * @return register reads answered with data
+	 */
+	public synchronized long getReads() {
+		return reads;
+	}
+	/**
+	 * @return register writes done
+	 */
+	public synchronized long getWrites() {
+		return writes;
+	}
+	/**
+	 * @return frames and bytes answered with an error status
+	 */
+	public synchronized long getErrors() {
+		return errors;
+	}
+
+	public synchronized long getResets() {
+		return resets;
+	}
+
+	public synchronized long getBytesIn() {
+		return bytesIn;
+	}
+
+	public synchronized long getBytesOut() {
+		return bytesOut;
+	}
+	/**
+	 * Level, at rest, heading north.
+	 */
+	public static MotionProfile still() {
+		return (seconds, pose) -> Arrays.fill(pose, 0.0);
+	}
+	/**
+	 * Level, turning in place.
+	 * @param degreesPerSecond heading rate, positive clockwise
+	 */
+	public static MotionProfile turning(double degreesPerSecond) {
+		return (seconds, pose) -> {
+			Arrays.fill(pose, 0.0);
+			pose[0] = wrap(degreesPerSecond * seconds, 360.0);
+		};
+	}
+	/**
+	 * Heading north, rolling and pitching back and forth, a quarter period apart, as on uneven ground.
+	 * @param rollDegrees roll amplitude
+	 * @param pitchDegrees pitch amplitude
+	 * @param periodSeconds of one swing
+	 */
+	public static MotionProfile rocking(double rollDegrees, double pitchDegrees, double periodSeconds) {
+		return (seconds, pose) -> {
+			Arrays.fill(pose, 0.0);
+			double w = 2.0 * Math.PI * seconds / periodSeconds;
+			pose[1] = rollDegrees * Math.sin(w);
+			pose[2] = pitchDegrees * Math.cos(w);
+		};
+	}
+	/**
+	 * Through the given poses at the given times, straight between them, the heading the shorter way round,
+	 * holding the first pose before the first time and the last after the last.
+	 * @param seconds the times, ascending
+	 * @param poses heading, roll, pitch and linear acceleration X, Y, Z at each time
+	 */
+	public static MotionProfile waypoints(double[] seconds, double[][] poses) {
+		if(seconds.length == 0 || seconds.length != poses.length)
+			throw new IllegalArgumentException("Need a pose for each time");
+		double[] times = seconds.clone();
+		double[][] ps = new double[poses.length][];
+		for(int i = 0; i < poses.length; i++)
+			ps[i] = Arrays.copyOf(poses[i], 6);
+		return (t, pose) -> {
+			int i = 0;
+			while(i < times.length - 1 && t >= times[i + 1])
+				++i;
+			double f = i == times.length - 1 || t <= times[i] ? 0.0 : (t - times[i]) / (times[i + 1] - times[i]);
+			double[] a = ps[i], b = ps[Math.min(i + 1, ps.length - 1)];
+			double turn = wrap(b[0] - a[0] + 180.0, 360.0) - 180.0;
+			pose[0] = wrap(a[0] + turn * f, 360.0);
+			for(int j = 1; j < 6; j++)
+				pose[j] = a[j] + (b[j] - a[j]) * f;
+		};
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("BNO055Simulator mode=%02x frames=%d reads=%d writes=%d errors=%d resets=%d bytes in=%d out=%d",
+				mode, frames, reads, writes, errors, resets, bytesIn, bytesOut);
+	}
+}
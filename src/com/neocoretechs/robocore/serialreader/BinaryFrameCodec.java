@@ -0,0 +1,326 @@
+package com.neocoretechs.robocore.serialreader;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+/**
+ * Encoding of commands and responses in the compact binary framing optionally negotiated with a Marlinspike by
+ * M800 S1, in place of G/M code text lines and quasi-XML replies.<p>
+ * A frame is the sync byte 0xA5, the payload length as one byte, or 0xFF followed by two bytes for payloads of
+ * 255 bytes or more, an opcode, the payload, and a CRC-16/CCITT of the length, opcode and payload. Multi byte values are little endian.<p>
+ * Opcodes:
+ * <pre>
+ * 0x01 TEXT    payload is the command line, or the lines of a response separated by line feed
+ * 0x05 G5      slot, channel (0xFF if none), then a 16 bit level for each of P, Q, R... in turn
+ * 0x06 G6      as G5
+ * 0x2D M45     pin, 16 bit level
+ * 0x80 ACK G   the G code acknowledged, one byte or two if above 255, as &lt;G5/&gt;
+ * 0x81 ACK M   the M code acknowledged, as &lt;M2/&gt;
+ * </pre>
+ * Commands and responses without a compact form, or whose values do not fit, travel as TEXT, so every command
+ * may be sent in either framing. Decoding restores the equivalent text, so the lines delivered to the
+ * {@link com.neocoretechs.robocore.marlinspike.AsynchDemuxer} are the same whichever framing is in use.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public final class BinaryFrameCodec {
+	public static final byte SYNC = (byte)0xA5;
+	public static final int OP_TEXT = 0x01;
+	public static final int OP_G5 = 0x05;
+	public static final int OP_G6 = 0x06;
+	public static final int OP_M45 = 0x2D;
+	public static final int OP_ACK_G = 0x80;
+	public static final int OP_ACK_M = 0x81;
+	public static final int MAX_PAYLOAD = 65535;
+	private static final int NO_CHANNEL = 0xFF;
+	private static final char[] levelFields = {'P','Q','R','S','T','U','V','W','X','Y'};
+	private static final int[] crcTable = new int[256];
+	static {
+		for(int i = 0; i < 256; i++) {
+			int crc = i << 8;
+			for(int j = 0; j < 8; j++)
+				crc = ((crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1);
+			crcTable[i] = crc & 0xFFFF;
+		}
+	}
+
+	private BinaryFrameCodec() {}
+	/**
+	 * CRC-16/CCITT, polynomial 0x1021 initial value 0xFFFF, of the given range of the buffer.
+	 */
+	public static int crc16(ByteBuffer bb, int from, int to) {
+		int crc = 0xFFFF;
+		for(int i = from; i < to; i++)
+			crc = ((crc << 8) ^ crcTable[((crc >>> 8) ^ bb.get(i)) & 0xFF]) & 0xFFFF;
+		return crc;
+	}
+	/**
+	 * Encode a command line as a frame at the position of the buffer, in its compact form if it has one.
+	 * A trailing line terminator is ignored.
+	 * @param command the command
+	 * @param out the buffer to receive the frame, left in little endian order
+	 * @throws java.nio.BufferOverflowException if the frame does not fit
+	 */
+	public static void encodeCommand(CharSequence command, ByteBuffer out) {
+		int end = command.length();
+		while(end > 0 && command.charAt(end-1) <= ' ')
+			--end;
+		int start = 0;
+		while(start < end && command.charAt(start) <= ' ')
+			++start;
+		int frame = out.position();
+		if(!encodeLevels(command, start, end, out)) {
+			out.position(frame);
+			beginFrame(out, OP_TEXT, end - start);
+			for(int i = start; i < end; i++)
+				out.put((byte)command.charAt(i));
+		}
+		endFrame(out, frame);
+	}
+	/**
+	 * Encode G5/G6 Z&lt;slot&gt; [C&lt;channel&gt;] P&lt;level&gt; [Q&lt;level&gt;...] or M45 P&lt;pin&gt; S&lt;level&gt;, fields in that order.
+	 * @return false if the command has no compact form, the buffer position is then undefined
+	 */
+	private static boolean encodeLevels(CharSequence cmd, int start, int end, ByteBuffer out) {
+		int[] tok = new int[2];
+		if(!token(cmd, start, end, tok))
+			return false;
+		int opcode;
+		if(equals(cmd, tok, "G5"))
+			opcode = OP_G5;
+		else if(equals(cmd, tok, "G6"))
+			opcode = OP_G6;
+		else if(equals(cmd, tok, "M45"))
+			opcode = OP_M45;
+		else
+			return false;
+		int frame = out.position();
+		beginFrame(out, opcode, 0); // length patched below
+		int payload = out.position();
+		if(opcode == OP_M45) {
+			int pin = field(cmd, end, tok, 'P', 0, 254);
+			int level = field(cmd, end, tok, 'S', Short.MIN_VALUE, Short.MAX_VALUE);
+			if(pin == Integer.MIN_VALUE || level == Integer.MIN_VALUE || token(cmd, tok[1], end, tok))
+				return false;
+			out.put((byte)pin);
+			out.putShort((short)level);
+		} else {
+			int slot = field(cmd, end, tok, 'Z', 0, 254);
+			if(slot == Integer.MIN_VALUE)
+				return false;
+			out.put((byte)slot);
+			int channelPos = out.position();
+			out.put((byte)NO_CHANNEL);
+			int level = 0;
+			while(token(cmd, tok[1], end, tok)) {
+				char c = cmd.charAt(tok[0]);
+				if(c == 'C' && level == 0 && out.get(channelPos) == (byte)NO_CHANNEL) {
+					int channel = parse(cmd, tok[0] + 1, tok[1], 0, 254);
+					if(channel == Integer.MIN_VALUE)
+						return false;
+					out.put(channelPos, (byte)channel);
+					continue;
+				}
+				if(level == levelFields.length || c != levelFields[level])
+					return false;
+				int value = parse(cmd, tok[0] + 1, tok[1], Short.MIN_VALUE, Short.MAX_VALUE);
+				if(value == Integer.MIN_VALUE)
+					return false;
+				out.putShort((short)value);
+				++level;
+			}
+			if(level == 0)
+				return false;
+		}
+		out.put(frame + 1, (byte)(out.position() - payload));
+		return true;
+	}
+	/**
+	 * Encode the lines of a response as a frame at the position of the buffer, a single &lt;Gn/&gt; or &lt;Mn/&gt;
+	 * line as an acknowledgement, otherwise as text. Lines may contain line terminators.
+	 * @param lines the response
+	 * @param out the buffer to receive the frame, left in little endian order
+	 * @throws java.nio.BufferOverflowException if the frame does not fit
+	 */
+	public static void encodeResponse(List<String> lines, ByteBuffer out) {
+		int frame = out.position();
+		if(lines.size() == 1) {
+			String line = lines.get(0).trim();
+			int len = line.length();
+			if(len > 4 && line.charAt(0) == '<' && line.charAt(len-2) == '/' && line.charAt(len-1) == '>' &&
+				(line.charAt(1) == 'G' || line.charAt(1) == 'M')) {
+				int code = parse(line, 2, len-2, 0, 65535);
+				if(code != Integer.MIN_VALUE) {
+					beginFrame(out, line.charAt(1) == 'G' ? OP_ACK_G : OP_ACK_M, code > 255 ? 2 : 1);
+					if(code > 255)
+						out.putShort((short)code);
+					else
+						out.put((byte)code);
+					endFrame(out, frame);
+					return;
+				}
+			}
+		}
+		int len = 0;
+		for(String s : lines)
+			len += s.length() + 1;
+		if(len > MAX_PAYLOAD)
+			throw new IllegalArgumentException("Response of "+len+" characters exceeds frame payload");
+		int lenPos = out.position() + 1;
+		beginFrame(out, OP_TEXT, len);
+		int payload = out.position();
+		for(String s : lines) {
+			int e = s.length();
+			int b = 0;
+			while(b < e) {
+				while(b < e && (s.charAt(b) == '\r' || s.charAt(b) == '\n' || s.charAt(b) == ' '))
+					++b;
+				int le = b;
+				while(le < e && s.charAt(le) != '\r' && s.charAt(le) != '\n')
+					++le;
+				int te = le;
+				while(te > b && s.charAt(te-1) == ' ')
+					--te;
+				if(te > b) {
+					for(int i = b; i < te; i++)
+						out.put((byte)s.charAt(i));
+					out.put((byte)'\n');
+				}
+				b = le;
+			}
+		}
+		// the trimmed length is at most that reserved, keep the width of the length field
+		int plen = out.position() - payload;
+		if(out.get(lenPos) == (byte)0xFF) {
+			out.order(ByteOrder.LITTLE_ENDIAN).putShort(lenPos + 1, (short)plen);
+		} else if(plen < 255) {
+			out.put(lenPos, (byte)plen);
+		}
+		endFrame(out, frame);
+	}
+	/**
+	 * Restore the command line of a frame.
+	 * @param opcode the frame opcode
+	 * @param payload the payload, from position to limit, consumed
+	 * @return the command in text form
+	 */
+	public static String decodeCommand(int opcode, ByteBuffer payload) {
+		payload.order(ByteOrder.LITTLE_ENDIAN);
+		StringBuilder sb = new StringBuilder();
+		switch(opcode) {
+			case OP_G5:
+			case OP_G6:
+				sb.append(opcode == OP_G5 ? "G5 Z" : "G6 Z").append(payload.get() & 0xFF);
+				int channel = payload.get() & 0xFF;
+				if(channel != NO_CHANNEL)
+					sb.append(" C").append(channel);
+				for(int level = 0; payload.remaining() >= 2 && level < levelFields.length; level++)
+					sb.append(' ').append(levelFields[level]).append(payload.getShort());
+				break;
+			case OP_M45:
+				sb.append("M45 P").append(payload.get() & 0xFF).append(" S").append(payload.getShort());
+				break;
+			default:
+				while(payload.hasRemaining())
+					sb.append((char)(payload.get() & 0xFF));
+				break;
+		}
+		return sb.toString();
+	}
+	/**
+	 * Restore the lines of a response frame, trimmed and without blank lines, as the text framing delivers them.
+	 * @param opcode the frame opcode
+	 * @param payload the payload, from position to limit, consumed
+	 * @param lines the list to append to
+	 * @return the list
+	 */
+	public static ArrayList<String> decodeResponse(int opcode, ByteBuffer payload, ArrayList<String> lines) {
+		payload.order(ByteOrder.LITTLE_ENDIAN);
+		switch(opcode) {
+			case OP_ACK_G:
+			case OP_ACK_M:
+				int code = (payload.remaining() >= 2 ? payload.getShort() & 0xFFFF : payload.get() & 0xFF);
+				lines.add((opcode == OP_ACK_G ? "<G" : "<M")+code+"/>");
+				break;
+			default:
+				StringBuilder sb = new StringBuilder();
+				while(payload.hasRemaining()) {
+					char c = (char)(payload.get() & 0xFF);
+					if(c == '\n' || c == '\r') {
+						String line = sb.toString().trim();
+						if(!line.isEmpty())
+							lines.add(line);
+						sb.setLength(0);
+					} else
+						sb.append(c);
+				}
+				String line = sb.toString().trim();
+				if(!line.isEmpty())
+					lines.add(line);
+				break;
+		}
+		return lines;
+	}
+
+	private static void beginFrame(ByteBuffer out, int opcode, int length) {
+		out.put(SYNC);
+		if(length < 255) {
+			out.put((byte)length);
+		} else {
+			out.put((byte)0xFF);
+			out.order(ByteOrder.LITTLE_ENDIAN).putShort((short)length);
+		}
+		out.put((byte)opcode);
+		out.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static void endFrame(ByteBuffer out, int frame) {
+		out.putShort((short)crc16(out, frame + 1, out.position()));
+	}
+	/**
+	 * Find the next space delimited token at or after from
+	 * @param tok receives the start and end of the token
+	 * @return false if there are no more tokens
+	 */
+	private static boolean token(CharSequence cs, int from, int end, int[] tok) {
+		while(from < end && cs.charAt(from) <= ' ')
+			++from;
+		if(from == end)
+			return false;
+		tok[0] = from;
+		while(from < end && cs.charAt(from) > ' ')
+			++from;
+		tok[1] = from;
+		return true;
+	}
+
+	private static boolean equals(CharSequence cs, int[] tok, String s) {
+		if(tok[1] - tok[0] != s.length())
+			return false;
+		for(int i = 0; i < s.length(); i++)
+			if(cs.charAt(tok[0] + i) != s.charAt(i))
+				return false;
+		return true;
+	}
+	/**
+	 * Advance to the next token, which must be the given field
+	 * @return the value, or Integer.MIN_VALUE if not that field or out of range
+	 */
+	private static int field(CharSequence cs, int end, int[] tok, char code, int min, int max) {
+		if(!token(cs, tok[1], end, tok) || cs.charAt(tok[0]) != code)
+			return Integer.MIN_VALUE;
+		return parse(cs, tok[0] + 1, tok[1], min, max);
+	}
+
+	private static int parse(CharSequence cs, int start, int end, int min, int max) {
+		if(start == end)
+			return Integer.MIN_VALUE;
+		try {
+			int v = Integer.parseInt(cs, start, end, 10);
+			return (v < min || v > max ? Integer.MIN_VALUE : v);
+		} catch(NumberFormatException nfe) {
+			return Integer.MIN_VALUE;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.neocoretechs.robocore.serialreader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+/**
+ * Accumulates bytes from a channel attached to a Marlinspike in binary framing and delivers complete frames as
+ * described in {@link BinaryFrameCodec}. Bytes preceding a sync byte are skipped, and a frame whose CRC does not match
+ * is discarded by advancing past its sync byte and searching again, so the reader resynchronizes after line noise.<p>
+ * Bytes are read into one direct buffer and the payload of the current frame is presented in place, so reading a frame
+ * allocates nothing. Not thread safe, one thread reads frames from a given channel.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class BinaryFrameReader {
+	private static boolean DEBUG = false;
+	private static final long POLL_NANOS = 20000L; // wait between reads of a channel that returned nothing
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+	private final ByteBuffer payload;
+	private int opcode = -1;
+	private int next = -1; // buffer position following the current frame
+	private long crcErrors = 0L;
+	/**
+	 * @param channel the channel to read, a read returning 0 or throwing InterruptedIOException is taken as no data yet
+	 * @param capacity the size of the direct receive buffer, at least the largest frame expected
+	 */
+	public BinaryFrameReader(ReadableByteChannel channel, int capacity) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+		this.buffer.flip(); // empty, ready to drain
+		this.payload = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public BinaryFrameReader(ReadableByteChannel channel) {
+		this(channel, 4096);
+	}
+	/**
+	 * Read until a complete frame is available or the timeout elapses. The previous frame is discarded.
+	 * @param timeout milliseconds to wait, 0 or less to wait indefinitely
+	 * @return true if a frame is available through {@link #opcode()} and {@link #payload()}, false on timeout
+	 * @throws IOException if the channel fails or reaches end of stream
+	 */
+	public boolean readFrame(long timeout) throws IOException {
+		if(next != -1) {
+			buffer.position(next);
+			next = -1;
+			opcode = -1;
+		}
+		long deadline = (timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : Long.MAX_VALUE);
+		while(true) {
+			if(scan())
+				return true;
+			buffer.compact();
+			int n;
+			try {
+				n = channel.read(buffer);
+			} catch(InterruptedIOException te) {
+				n = 0;
+			} finally {
+				buffer.flip();
+			}
+			if(n < 0)
+				throw new IOException("End of stream reading frame");
+			if(n == 0) {
+				if(System.nanoTime() - deadline >= 0)
+					return false;
+				LockSupport.parkNanos(POLL_NANOS);
+			}
+		}
+	}
+	/**
+	 * Find a complete frame with a valid CRC in the buffer, skipping anything else.
+	 * @return true if found, with the buffer positioned at its sync byte
+	 */
+	private boolean scan() {
+		while(true) {
+			int start = buffer.position();
+			int limit = buffer.limit();
+			while(start < limit && buffer.get(start) != BinaryFrameCodec.SYNC)
+				++start;
+			buffer.position(start);
+			if(limit - start < 3)
+				return false;
+			int length = buffer.get(start + 1) & 0xFF;
+			int header = 3;
+			if(length == 0xFF) {
+				if(limit - start < 5)
+					return false;
+				length = buffer.getShort(start + 2) & 0xFFFF;
+				header = 5;
+			}
+			int end = start + header + length; // first byte of the CRC
+			if(end + 2 > start + buffer.capacity()) { // can never fit, not a frame
+				buffer.position(start + 1);
+				++crcErrors;
+				continue;
+			}
+			if(end + 2 > limit)
+				return false;
+			if((buffer.getShort(end) & 0xFFFF) != BinaryFrameCodec.crc16(buffer, start + 1, end)) {
+				if(DEBUG)
+					System.out.println("BinaryFrameReader CRC mismatch, resynchronizing");
+				buffer.position(start + 1);
+				++crcErrors;
+				continue;
+			}
+			opcode = buffer.get(start + header - 1) & 0xFF;
+			payload.limit(end).position(start + header);
+			next = end + 2;
+			return true;
+		}
+	}
+	/**
+	 * @return the opcode of the current frame
+	 */
+	public int opcode() {
+		return opcode;
+	}
+	/**
+	 * The payload of the current frame in place, from position to limit, little endian. Valid until the next read.
+	 */
+	public ByteBuffer payload() {
+		return payload;
+	}
+	/**
+	 * @return the number of frames discarded for a bad CRC or length
+	 */
+	public long getCrcErrors() {
+		return crcErrors;
+	}
+	/**
+	 * Discard any partial frame and buffered bytes, as after a resynchronization of the port.
+	 */
+	public void clear() {
+		buffer.clear();
+		buffer.flip();
+		next = -1;
+		opcode = -1;
+	}
+}
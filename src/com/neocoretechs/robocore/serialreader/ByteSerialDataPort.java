@@ -6,9 +6,13 @@ import com.fazecast.jSerialComm.SerialPortTimeoutException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.neocoretechs.robocore.SynchronizedThreadManager;
 
@@ -17,11 +21,16 @@ import com.neocoretechs.robocore.SynchronizedThreadManager;
  * to effect transmission and reception. Two asynchronous threads run; one for transmit, one for receive.<p>
  * After creating the port with proper parameters such as baud rate, parity, data and stop bits, call
  * the connect method to begin communication.<p>
+ * Commands are written from a reusable buffer and responses are framed by a {@link FramedResponseReader} reading the
+ * port input stream, so each response is returned complete through its terminating &lt;topic/&gt; line.
+ * Writes and reads are independent, so commands may be pipelined through {@link DataPortPipelineInterface}.<p>
+ * Text G/M code lines are the default. Once {@link #negotiateBinaryFraming()} succeeds, commands and responses travel
+ * as {@link BinaryFrameCodec} frames, read back by a {@link BinaryFrameReader}, while the API remains text.<p>
  * @see com.fazecast.jSerialComm.SerialPort
  * @see DataPortCommandInterface
  * @author Jonathan Groff (C) NeoCoreTechs 2020,2021,2026
  */
-public class ByteSerialDataPort implements DataPortCommandInterface {
+public class ByteSerialDataPort implements DataPortBinaryFramingInterface {
 	private static boolean DEBUG = false;
 	private static boolean PORTDEBUG = false;
 	private SerialPort serialPort;
@@ -43,6 +52,8 @@ public class ByteSerialDataPort implements DataPortCommandInterface {
 	//
 	private Object readMx = new Object();// mutex
 	private Object writeMx = new Object();
+	// a lock rather than a monitor, a virtual thread waiting for a response must not pin its carrier
+	private final ReentrantLock responseMx = new ReentrantLock();
 	private boolean EOT = false;
 
 	private int[] readBuffer = new int[32767];
@@ -51,6 +62,12 @@ public class ByteSerialDataPort implements DataPortCommandInterface {
 	private int readBufferTail = 0;
 	private int writeBufferHead = 0;
 	private int writeBufferTail = 0;
+	private byte[] commandBuffer = new byte[256];
+	private FramedResponseReader framer;
+	private BinaryFrameReader binaryReader;
+	private ByteBuffer frameBuffer = ByteBuffer.allocate(256);
+	private volatile boolean binaryFraming = false;
+	private WritableByteChannel outChannel = null; // if attached to channels rather than the serial port
 
 	public ByteSerialDataPort()  {
 		if( DEBUG ) 
@@ -76,6 +93,8 @@ public class ByteSerialDataPort implements DataPortCommandInterface {
 	}
 	@Override	    
 	public void connect(boolean writeable) throws IOException {
+		if(outChannel != null) // attached to channels
+			return;
 		SynchronizedThreadManager.getInstance().init(new String[] {"SYSTEM"});
 		System.out.println("\nUsing Library Version v" + SerialPort.getVersion());
 		SerialPort.allowPortOpenForEnumeration();
@@ -109,6 +128,14 @@ public class ByteSerialDataPort implements DataPortCommandInterface {
 			case 1 -> serialPort.setParity(SerialPort.ODD_PARITY);
 			case 2 -> serialPort.setParity(SerialPort.EVEN_PARITY);
 		}
+		inStream = serialPort.getInputStream();
+		if( inStream == null ) {
+			throw new IOException("Cant get InputStream for port "+portName);
+		}
+		// semi blocking read timeout surfaces as SerialPortTimeoutException, which the framers take as no data yet
+		ReadableByteChannel inChannel = Channels.newChannel(inStream);
+		framer = new FramedResponseReader(inChannel);
+		binaryReader = new BinaryFrameReader(inChannel);
 		// Open the input and output streams for the connection. If they won't
 		// open, close the port before throwing an exception.
 		/*
@@ -142,6 +169,21 @@ public class ByteSerialDataPort implements DataPortCommandInterface {
 			System.out.println("Connected to "+portName);
 	}
 
+	/**
+	 * Attach to already open channels in place of the serial port, such as a pseudo terminal or an in memory
+	 * loopback to the {@link MarlinspikeDataPort} emulator.
+	 * @param in the channel carrying responses, a read returning 0 is taken as no data yet
+	 * @param out the channel carrying commands
+	 */
+	public void connect(ReadableByteChannel in, WritableByteChannel out) {
+		framer = new FramedResponseReader(in);
+		binaryReader = new BinaryFrameReader(in);
+		outChannel = out;
+		connected = true;
+		if( PORTDEBUG ) 
+			System.out.println("Connected to channels "+in+" "+out);
+	}
+
 	@Override
 	public boolean isConnected() {
 		return connected;
@@ -149,7 +191,9 @@ public class ByteSerialDataPort implements DataPortCommandInterface {
 	
 	@Override
 	public void close() {
-		serialPort.closePort();
+		if(serialPort != null)
+			serialPort.closePort();
+		binaryFraming = false;
 	}
 
 	@Override	    
@@ -297,60 +341,131 @@ public class ByteSerialDataPort implements DataPortCommandInterface {
 	 * pacman the jizzle in the inputstream
 	 */
 	public void clear() {
-		synchronized(readMx) {
-			readBufferHead = readBufferTail = 0;
-			try {
-				int navail = inStream.available();
-				if( PORTDEBUG )
-					System.out.println(this.getClass().getName()+".clear Clearing "+navail+" from input");
-				for(int i = 0; i < navail; i++) inStream.read();
-			} catch (IOException e) {
-				e.printStackTrace();
+		responseMx.lock();
+		try {
+			synchronized(readMx) {
+				readBufferHead = readBufferTail = 0;
+				if(framer != null)
+					framer.clear();
+				if(binaryReader != null)
+					binaryReader.clear();
+				try {
+					int navail = inStream.available();
+					if( PORTDEBUG )
+						System.out.println(this.getClass().getName()+".clear Clearing "+navail+" from input");
+					for(int i = 0; i < navail; i++) inStream.read();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				EOT = false;
 			}
-			EOT = false;
+		} finally {
+			responseMx.unlock();
 		}
 	}
 
 	@Override
 	public ArrayList<String> sendCommand(String command) throws IOException {
-		byte[] buffer = new byte[1024];
 		long writeTime = System.nanoTime();
-		long writeSleepTime = 0L;
-		long readSleepTime = 0L;
-		ArrayList<String> ret = new ArrayList<String>();
-		command += "\r";
-		byte[] bcomm = command.getBytes();
-		int blen = bcomm.length;
-		int wlen = 0;
-		int tlen = 0;
-		while(tlen < blen) {
-			wlen = serialPort.writeBytes(bcomm, blen, tlen);
-			if(wlen > 0 && tlen < blen) {
-				tlen += wlen;
-				blen -= wlen;
-				try {
-					Thread.sleep(0,5000);
-					writeSleepTime += 5000;
-				} catch (InterruptedException e) {
-					break;
+		writeCommand(command);
+		writeTime = System.nanoTime() - writeTime;
+		long readTime = System.nanoTime();
+		ArrayList<String> ret = readResponse(0);
+		readTime = System.nanoTime() - readTime;
+		if(DEBUG)
+			System.out.println("Marlinspike comm time read:"+readTime+" | write:"+writeTime);
+		return ret;
+	}
+	/**
+	 * Write the command followed by carriage return, or as a binary frame if negotiated.
+	 * The command is encoded into a reusable buffer.
+	 */
+	@Override
+	public void writeCommand(String command) throws IOException {
+		synchronized(writeMx) {
+			if(binaryFraming) {
+				while(true) {
+					try {
+						frameBuffer.clear();
+						BinaryFrameCodec.encodeCommand(command, frameBuffer);
+						break;
+					} catch(BufferOverflowException boe) {
+						frameBuffer = ByteBuffer.allocate(frameBuffer.capacity() * 2);
+					}
 				}
+				writeBytes(frameBuffer.array(), frameBuffer.position());
+				return;
 			}
+			int blen = command.length() + 1;
+			if(blen > commandBuffer.length)
+				commandBuffer = new byte[blen * 2];
+			for(int i = 0; i < blen - 1; i++)
+				commandBuffer[i] = (byte)command.charAt(i);
+			commandBuffer[blen - 1] = '\r';
+			writeBytes(commandBuffer, blen);
 		}
-		writeTime = System.nanoTime() - writeTime;
-		long readTime = System.nanoTime();
-		int num = 0;
-		while((num = serialPort.readBytes(buffer, buffer.length)) <= 0) {
-			try {
-				Thread.sleep(0,5000);
-				readSleepTime += 5000;
-			} catch (InterruptedException e) {
-				break;
+	}
+
+	private void writeBytes(byte[] bytes, int blen) throws IOException {
+		if(outChannel != null) {
+			ByteBuffer bb = ByteBuffer.wrap(bytes, 0, blen);
+			while(bb.hasRemaining())
+				outChannel.write(bb);
+			return;
+		}
+		int tlen = 0;
+		while(tlen < blen) {
+			int wlen = serialPort.writeBytes(bytes, blen - tlen, tlen);
+			if(wlen < 0)
+				throw new IOException("Write failed on port "+portName+" error code "+serialPort.getLastErrorCode());
+			tlen += wlen;
+		}
+	}
+	/**
+	 * Read the lines of the next complete response, up to and including its terminating &lt;topic/&gt; line.
+	 * @param timeout milliseconds to wait, 0 to wait indefinitely
+	 * @return the lines, or null if the response was not complete before the timeout
+	 */
+	@Override
+	public ArrayList<String> readResponse(long timeout) throws IOException {
+		responseMx.lock();
+		try {
+			if(binaryFraming) {
+				if(!binaryReader.readFrame(timeout))
+					return null;
+				return BinaryFrameCodec.decodeResponse(binaryReader.opcode(), binaryReader.payload(), new ArrayList<String>(2));
 			}
+			if(!framer.readResponse(timeout))
+				return null;
+			return framer.getLines(new ArrayList<String>(framer.lineCount()));
+		} finally {
+			responseMx.unlock();
 		}
-		ret.add(new String(Arrays.copyOf(buffer, num)));
-		readTime = System.nanoTime() - readTime;
-		System.out.println("Marlinspike comm time read:"+readTime+" read sleep:"+readSleepTime+" | write:"+writeTime+" write sleep:"+writeSleepTime);
-		return ret;
+	}
+	/**
+	 * Send M800 S1 as text and switch to binary framing if the Marlinspike acknowledges it. A firmware without
+	 * binary framing reports an unknown code, and text remains in use.
+	 */
+	@Override
+	public boolean negotiateBinaryFraming() throws IOException {
+		if(binaryFraming)
+			return true;
+		ArrayList<String> ret = sendCommand("M800 S1");
+		binaryFraming = (ret != null && ret.contains("<M800/>"));
+		if(DEBUG)
+			System.out.println("ByteSerialDataPort binary framing "+(binaryFraming ? "negotiated" : "refused "+ret));
+		return binaryFraming;
+	}
+
+	@Override
+	public boolean isBinaryFraming() {
+		return binaryFraming;
+	}
+	/**
+	 * @return the number of binary frames discarded for a bad CRC
+	 */
+	public long getCrcErrors() {
+		return (binaryReader == null ? 0 : binaryReader.getCrcErrors());
 	}
 	/*
 	public ArrayList<String> sendCommand(String command) throws IOException {
@@ -0,0 +1,22 @@
+package com.neocoretechs.robocore.serialreader;
+
+import java.io.IOException;
+/**
+ * Contract for those dataports that can switch the link to the compact binary framing of {@link BinaryFrameCodec}.
+ * The text protocol is in use until negotiated. Commands and responses pass through {@link DataPortCommandInterface}
+ * and {@link DataPortPipelineInterface} as text in either framing, the encoding is confined to the link.
+ * @author Jonathan Groff Copyright (C) NeoCoreTechs 2026
+ *
+ */
+public interface DataPortBinaryFramingInterface extends DataPortPipelineInterface {
+	/**
+	 * Ask the attached device to switch to binary framing with M800 S1, sent as text with no other commands outstanding.
+	 * @return true if the device acknowledged and binary framing is now in use, false if it is still text
+	 * @throws IOException
+	 */
+	public boolean negotiateBinaryFraming() throws IOException;
+	/**
+	 * @return true if binary framing is in use
+	 */
+	public boolean isBinaryFraming();
+}
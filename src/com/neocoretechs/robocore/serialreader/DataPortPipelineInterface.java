@@ -0,0 +1,27 @@
+package com.neocoretechs.robocore.serialreader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+/**
+ * Split command/response contract for those dataports that can have several commands outstanding at once.
+ * Commands are written without waiting for the reply, and replies are read back in the order the attached
+ * device produced them. The {@link com.neocoretechs.robocore.marlinspike.AsynchDemuxer} uses this in its pipelined mode
+ * to keep a window of commands in flight instead of one round trip at a time.
+ * @author Jonathan Groff Copyright (C) NeoCoreTechs 2026
+ *
+ */
+public interface DataPortPipelineInterface extends DataPortCommandInterface {
+	/**
+	 * Send a command line to the device without waiting for its response.
+	 * @param command the command line, without line terminator
+	 * @throws IOException
+	 */
+	public void writeCommand(String command) throws IOException;
+	/**
+	 * Wait for the next complete response from the device.
+	 * @param timeout milliseconds to wait for a response
+	 * @return the lines of the response, or null if none arrived before the timeout
+	 * @throws IOException
+	 */
+	public ArrayList<String> readResponse(long timeout) throws IOException;
+}
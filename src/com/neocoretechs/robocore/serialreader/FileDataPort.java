@@ -22,6 +22,14 @@ public class FileDataPort extends StreamDataPort {
 		super();
 		port = System.getenv("home") + filePath + fileName;
 	}
+	/**
+	 * Use the given path as is
+	 * @param fileName full path of the file
+	 */
+	public FileDataPort(String fileName) {
+		super();
+		port = fileName;
+	}
 	
 	@Override
 	public void connect(boolean writeable) throws IOException { 
@@ -0,0 +1,207 @@
+package com.neocoretechs.robocore.serialreader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+/**
+ * Accumulates bytes from a channel attached to a Marlinspike and frames them into complete responses.<p>
+ * A response is one or more lines ending with the terminating line of the quasi-XML format, a line beginning
+ * with &lt; and ending with /&gt;, such as &lt;M1/&gt; for a simple acknowledgement or &lt;status/&gt; following the
+ * &lt;status&gt; header and data lines of a report. Lines end with carriage return, line feed or both, and blank lines are dropped.<p>
+ * Bytes are read into one direct buffer and the lines of the current response are kept in one reusable character array,
+ * so framing a response allocates nothing once the arrays have grown to the largest response seen. Bytes following the
+ * terminating line are retained for the next response, so pipelined responses arriving back to back are framed correctly.<p>
+ * The lines may be read in place through {@link #line(int)}, or copied out as Strings by {@link #getLines(ArrayList)}.
+ * Not thread safe, one thread reads responses from a given channel.
+ * @author Jonathan Groff Copyright (C) NeoCoreTechs 2026
+ *
+ */
+public class FramedResponseReader {
+	private static boolean DEBUG = false;
+	private static final long POLL_NANOS = 20000L; // wait between reads of a channel that returned nothing
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+	// lines of the current response, packed in chars, bounded by lineStart/lineEnd
+	private char[] chars = new char[1024];
+	private int[] lineStart = new int[16];
+	private int[] lineEnd = new int[16];
+	private int lineCount = 0;
+	private int charCount = 0;
+	private boolean complete = false;
+	private final LineView view = new LineView();
+	/**
+	 * @param channel the channel to read, a read returning 0 or throwing InterruptedIOException is taken as no data yet
+	 * @param capacity the size of the direct receive buffer, the longest line expected
+	 */
+	public FramedResponseReader(ReadableByteChannel channel, int capacity) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(capacity);
+		this.buffer.flip(); // empty, ready to drain
+	}
+
+	public FramedResponseReader(ReadableByteChannel channel) {
+		this(channel, 4096);
+	}
+	/**
+	 * Read until a complete response is framed or the timeout elapses. The lines of any previous response are discarded.
+	 * If the timeout elapses the lines received so far are kept and the next call continues the same response.
+	 * @param timeout milliseconds to wait, 0 or less to wait indefinitely
+	 * @return true if a complete response is available, false on timeout
+	 * @throws IOException if the channel fails or reaches end of stream
+	 */
+	public boolean readResponse(long timeout) throws IOException {
+		if(complete) {
+			lineCount = 0;
+			charCount = 0;
+			complete = false;
+		}
+		long deadline = (timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : Long.MAX_VALUE);
+		while(true) {
+			if(scan())
+				return true;
+			buffer.compact();
+			int n;
+			try {
+				n = channel.read(buffer);
+			} catch(InterruptedIOException te) {
+				n = 0;
+			} finally {
+				buffer.flip();
+			}
+			if(n < 0)
+				throw new IOException("End of stream framing response, "+lineCount+" lines received");
+			if(n == 0) {
+				if(System.nanoTime() - deadline >= 0)
+					return false;
+				LockSupport.parkNanos(POLL_NANOS);
+			}
+		}
+	}
+	/**
+	 * Consume the complete lines in the buffer until the terminating line of a response.
+	 * A line filling the whole buffer without a terminator is taken as complete.
+	 * @return true if the response is complete
+	 */
+	private boolean scan() {
+		int start = buffer.position();
+		int limit = buffer.limit();
+		for(int i = start; i < limit; i++) {
+			byte b = buffer.get(i);
+			if(b == '\r' || b == '\n' || b == 0) {
+				if(addLine(start, i)) {
+					buffer.position(i + 1);
+					return true;
+				}
+				start = i + 1;
+			}
+		}
+		if(start == 0 && limit == buffer.capacity()) {
+			buffer.position(limit);
+			return addLine(start, limit);
+		}
+		buffer.position(start);
+		return false;
+	}
+	/**
+	 * Copy a line from the buffer to the response, skipping blank lines.
+	 * @return true if this line terminates the response
+	 */
+	private boolean addLine(int from, int to) {
+		while(from < to && buffer.get(from) == ' ')
+			++from;
+		while(to > from && buffer.get(to - 1) == ' ')
+			--to;
+		int len = to - from;
+		if(len == 0)
+			return false;
+		if(charCount + len > chars.length) {
+			char[] nchars = new char[Math.max(chars.length * 2, charCount + len)];
+			System.arraycopy(chars, 0, nchars, 0, charCount);
+			chars = nchars;
+		}
+		if(lineCount == lineStart.length) {
+			int[] nstart = new int[lineCount * 2];
+			int[] nend = new int[lineCount * 2];
+			System.arraycopy(lineStart, 0, nstart, 0, lineCount);
+			System.arraycopy(lineEnd, 0, nend, 0, lineCount);
+			lineStart = nstart;
+			lineEnd = nend;
+		}
+		lineStart[lineCount] = charCount;
+		for(int i = from; i < to; i++)
+			chars[charCount++] = (char)(buffer.get(i) & 0xFF);
+		lineEnd[lineCount++] = charCount;
+		if(DEBUG)
+			System.out.println("FramedResponseReader line "+lineCount+":"+line(lineCount-1));
+		complete = (len > 2 && buffer.get(from) == '<' && buffer.get(to - 2) == '/' && buffer.get(to - 1) == '>');
+		return complete;
+	}
+	/**
+	 * @return the number of lines of the current response
+	 */
+	public int lineCount() {
+		return lineCount;
+	}
+	/**
+	 * The line of the current response in place. The view is reused and valid until the next call.
+	 * @param index the line number 0 to lineCount()-1
+	 * @return the line, without terminator
+	 */
+	public CharSequence line(int index) {
+		if(index < 0 || index >= lineCount)
+			throw new IndexOutOfBoundsException("Line "+index+" of "+lineCount);
+		view.start = lineStart[index];
+		view.end = lineEnd[index];
+		return view;
+	}
+	/**
+	 * Append the lines of the current response to a list as Strings.
+	 * @param lines the list to append to
+	 * @return the list
+	 */
+	public ArrayList<String> getLines(ArrayList<String> lines) {
+		for(int i = 0; i < lineCount; i++)
+			lines.add(new String(chars, lineStart[i], lineEnd[i] - lineStart[i]));
+		return lines;
+	}
+	/**
+	 * @return true if the last call to readResponse framed a complete response
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+	/**
+	 * Discard any partial response and buffered bytes, as after a resynchronization of the port.
+	 */
+	public void clear() {
+		buffer.clear();
+		buffer.flip();
+		lineCount = 0;
+		charCount = 0;
+		complete = false;
+	}
+
+	private final class LineView implements CharSequence {
+		int start, end;
+		@Override
+		public int length() {
+			return end - start;
+		}
+		@Override
+		public char charAt(int index) {
+			return chars[start + index];
+		}
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			return new String(chars, start + from, to - from);
+		}
+		@Override
+		public String toString() {
+			return new String(chars, start, end - start);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.neocoretechs.robocore.serialreader;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+import com.neocoretechs.robocore.SynchronizedThreadManager;
+/**
+ * The one thread that reads the IMU, publishing each sample into an {@link IMUSampleRing} for the consumers,
+ * who read the ring without waiting on the sensor or on each other.<p>
+ * With no period the sensor is read again as soon as a reading is published, paced by the time the reading takes,
+ * about 4.4 ms for a burst read of the BNO055 at 115200 baud. With a period, readings start at fixed deadlines,
+ * a reading that runs past the next deadline skips it. A failed reading is counted, the last error kept, and the
+ * sensor is tried again after {@link #ERROR_DELAY_MILLIS}.<p>
+ * Since it is the only thread reading the sensor, work that must not interleave with the readings, such as
+ * calibration checks, belongs in the {@link IMUSampleSource} it calls.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class IMUAcquisition implements Runnable {
+	public static boolean DEBUG = false;
+	public static final String THREAD_GROUP = "IMUACQ";
+	public static final long ERROR_DELAY_MILLIS = 100L;
+	private final IMUSampleSource source;
+	private final IMUSampleRing ring;
+	private final long periodNanos;
+	private volatile boolean shouldRun = true;
+	private volatile Thread runner = null;
+	private volatile long samples = 0L;
+	private volatile long errors = 0L;
+	private volatile long skipped = 0L;
+	private volatile IOException lastError = null;
+	/**
+	 * @param source the sensor
+	 * @param ring receives the samples
+	 * @param periodMillis time between the starts of readings, 0 to read continuously
+	 */
+	public IMUAcquisition(IMUSampleSource source, IMUSampleRing ring, long periodMillis) {
+		this.source = source;
+		this.ring = ring;
+		this.periodNanos = periodMillis * 1000000L;
+	}
+	/**
+	 * Read continuously.
+	 */
+	public IMUAcquisition(IMUSampleSource source, IMUSampleRing ring) {
+		this(source, ring, 0L);
+	}
+	/**
+	 * Spin the acquisition on its own thread.
+	 */
+	public void start() {
+		SynchronizedThreadManager.getInstance().init(new String[] {THREAD_GROUP});
+		SynchronizedThreadManager.getInstance().spin(this, THREAD_GROUP);
+	}
+	/**
+	 * Stop after the reading in progress.
+	 */
+	public void stop() {
+		shouldRun = false;
+		Thread t = runner;
+		if(t != null && t != Thread.currentThread())
+			LockSupport.unpark(t);
+	}
+
+	@Override
+	public void run() {
+		runner = Thread.currentThread();
+		IMUSample sample = new IMUSample();
+		long deadline = System.nanoTime();
+		if(DEBUG)
+			System.out.println("IMUAcquisition starting "+this);
+		while(shouldRun) {
+			if(periodNanos > 0) {
+				long now;
+				while(shouldRun && (now = System.nanoTime()) < deadline)
+					LockSupport.parkNanos(this, deadline - now);
+				deadline += periodNanos;
+				now = System.nanoTime();
+				if(now > deadline) { // overran, skip the deadlines already past
+					long skip = (now - deadline) / periodNanos + 1;
+					skipped += skip;
+					deadline += skip * periodNanos;
+				}
+			}
+			try {
+				source.readSample(sample);
+				ring.publish(sample);
+				++samples;
+			} catch (IOException e) {
+				++errors;
+				lastError = e;
+				System.out.println("IMU acquisition malfunction "+e.getMessage());
+				LockSupport.parkNanos(this, ERROR_DELAY_MILLIS * 1000000L);
+			}
+		}
+		runner = null;
+		if(DEBUG)
+			System.out.println("IMUAcquisition stopped "+this);
+	}
+
+	public IMUSampleRing getRing() {
+		return ring;
+	}
+	/**
+	 * @return samples published
+	 */
+	public long getSamples() {
+		return samples;
+	}
+	/**
+	 * @return readings that failed
+	 */
+	public long getErrors() {
+		return errors;
+	}
+	/**
+	 * @return deadlines skipped because a reading overran its period
+	 */
+	public long getSkipped() {
+		return skipped;
+	}
+
+	public IOException getLastError() {
+		return lastError;
+	}
+
+	public boolean isRunning() {
+		return runner != null;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("period=%dus samples=%d errors=%d skipped=%d %s", periodNanos / 1000L, samples, errors, skipped, ring);
+	}
+}
@@ -0,0 +1,94 @@
+package com.neocoretechs.robocore.serialreader;
+/**
+ * One reading of every BNO055 output, decoded from the contiguous register block {@link #FIRST_REGISTER}
+ * ACC_DATA_X_LSB through {@link #LAST_REGISTER} TEMP, read in one transaction by {@link IMUSerialDataPort#readSample(IMUSample)}.
+ * The sample is meant to be reused: decoding writes the arrays in place and allocates nothing.<p>
+ * Units and order are those of the single sensor reads of {@link IMUSerialDataPort}: accelerations in m/s^2,
+ * magnetic field in microteslas, rates in degrees per second, Euler angles heading, roll and pitch in degrees,
+ * and the quaternion X, Y, Z, W, the angles and quaternion rounded to the same decimal places.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class IMUSample {
+	public static final byte FIRST_REGISTER = IMUSerialDataPort.BNO055_ACCEL_DATA_X_LSB_ADDR;
+	public static final byte LAST_REGISTER = IMUSerialDataPort.BNO055_TEMP_ADDR;
+	public static final int LENGTH = LAST_REGISTER - FIRST_REGISTER + 1; // 45 bytes
+	// offsets of each output in the block
+	static final int ACCEL = 0;
+	static final int MAG = IMUSerialDataPort.BNO055_MAG_DATA_X_LSB_ADDR - FIRST_REGISTER;
+	static final int GYRO = IMUSerialDataPort.BNO055_GYRO_DATA_X_LSB_ADDR - FIRST_REGISTER;
+	static final int EULER = IMUSerialDataPort.BNO055_EULER_H_LSB_ADDR - FIRST_REGISTER;
+	static final int QUATERNION = IMUSerialDataPort.BNO055_QUATERNION_DATA_W_LSB_ADDR - FIRST_REGISTER;
+	static final int LINEAR_ACCEL = IMUSerialDataPort.BNO055_LINEAR_ACCEL_DATA_X_LSB_ADDR - FIRST_REGISTER;
+	static final int GRAVITY = IMUSerialDataPort.BNO055_GRAVITY_DATA_X_LSB_ADDR - FIRST_REGISTER;
+	static final int TEMPERATURE = IMUSerialDataPort.BNO055_TEMP_ADDR - FIRST_REGISTER;
+	private static final double QUATERNION_SCALE = 1.0 / (1 << 14);
+
+	public final double[] accels = new double[3];
+	public final double[] mags = new double[3];
+	public final double[] gyros = new double[3];
+	public final double[] eulers = new double[3];
+	public final double[] quats = new double[4];
+	public final double[] linearAccels = new double[3];
+	public final double[] gravity = new double[3];
+	public int temperature = 0;
+	public long timestampNanos = 0L; // System.nanoTime() when the block was read
+	public long sequence = -1L; // given by the IMUSampleRing it was published to
+	/**
+	 * Decode the register block.
+	 * @param data the registers from {@link #FIRST_REGISTER}
+	 * @param off where in data the first register is
+	 * @param places decimal places the angles and quaternion are rounded to
+	 * @param timestampNanos when the registers were read
+	 */
+	public void decode(byte[] data, int off, int places, long timestampNanos) {
+		double scale = Math.pow(10, places);
+		for(int i = 0; i < 3; i++) {
+			accels[i] = ((double)word(data, off + ACCEL + 2 * i)) / 100;
+			mags[i] = ((double)word(data, off + MAG + 2 * i)) / 16;
+			gyros[i] = ((double)word(data, off + GYRO + 2 * i)) / 16;
+			eulers[i] = round(((double)word(data, off + EULER + 2 * i)) / 16.0, scale);
+			linearAccels[i] = ((double)word(data, off + LINEAR_ACCEL + 2 * i)) / 100;
+			gravity[i] = ((double)word(data, off + GRAVITY + 2 * i)) / 100;
+		}
+		// registers hold W, X, Y, Z, the sample X, Y, Z, W
+		for(int i = 0; i < 4; i++)
+			quats[(i + 3) % 4] = round(word(data, off + QUATERNION + 2 * i) * QUATERNION_SCALE, scale);
+		temperature = data[off + TEMPERATURE];
+		this.timestampNanos = timestampNanos;
+	}
+	/**
+	 * Copy another sample into this one.
+	 */
+	public void set(IMUSample s) {
+		System.arraycopy(s.accels, 0, accels, 0, 3);
+		System.arraycopy(s.mags, 0, mags, 0, 3);
+		System.arraycopy(s.gyros, 0, gyros, 0, 3);
+		System.arraycopy(s.eulers, 0, eulers, 0, 3);
+		System.arraycopy(s.quats, 0, quats, 0, 4);
+		System.arraycopy(s.linearAccels, 0, linearAccels, 0, 3);
+		System.arraycopy(s.gravity, 0, gravity, 0, 3);
+		temperature = s.temperature;
+		timestampNanos = s.timestampNanos;
+		sequence = s.sequence;
+	}
+
+	private static short word(byte[] data, int i) {
+		return (short)((data[i] & 0xFF) | ((data[i + 1] << 8) & 0xFF00));
+	}
+	/**
+	 * Round half away from zero as {@link IMUSerialDataPort#round(double, int)} does, without the BigDecimal.
+	 * The same for the sensor's values, which are exact binary fractions.
+	 */
+	static double round(double value, double scale) {
+		double r = Math.floor(Math.abs(value) * scale + 0.5) / scale;
+		return value < 0 && r != 0.0 ? -r : r;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("IMUSample accel:%.2f,%.2f,%.2f mag:%.2f,%.2f,%.2f gyro:%.2f,%.2f,%.2f euler:%.3f,%.3f,%.3f quat:%.3f,%.3f,%.3f,%.3f temp:%d at:%d seq:%d",
+				accels[0], accels[1], accels[2], mags[0], mags[1], mags[2], gyros[0], gyros[1], gyros[2], eulers[0], eulers[1], eulers[2],
+				quats[0], quats[1], quats[2], quats[3], temperature, timestampNanos, sequence);
+	}
+}
@@ -0,0 +1,200 @@
+package com.neocoretechs.robocore.serialreader;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+/**
+ * The latest {@link IMUSample}s from one writer, the acquisition thread, for any number of readers, none of whom
+ * can hold up the writer or each other.<p>
+ * Each sample published gets the next sequence number and is stored as primitives in slot sequence % capacity,
+ * overwriting the sample a ring before it. Each slot is a sequence lock: the writer marks the slot as being written,
+ * stores the sample, then stamps the slot with its sequence. A reader checks the stamp, copies the sample out, and checks
+ * the stamp again, so a sample overwritten while it was copied is detected instead of returned torn.<p>
+ * {@link #read(long, IMUSample)} of one sequence and {@link #readSince(long, IMUSample[])} take a bounded number of steps
+ * and never retry, a sample overwritten is reported as lost. {@link #latest(IMUSample)} retries only if the writer laps
+ * the whole ring during the copy, counted by {@link #getTornReads()}. {@link #awaitNext(long, IMUSample, long)} blocks
+ * for a newer sample, and the writer only takes the lock to signal when a reader is waiting.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class IMUSampleRing {
+	static final int DOUBLES = 22; // accels 3 mags 3 gyros 3 eulers 3 quats 4 linear accels 3 gravity 3
+	private static final long WRITING = -1L;
+	private final int capacity;
+	private final int mask;
+	private final double[] values;
+	private final long[] timestamps;
+	private final int[] temperatures;
+	private final AtomicLongArray stamps;
+	private final AtomicLong published = new AtomicLong(); // sequence of the next sample
+	private final AtomicInteger waiters = new AtomicInteger();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition arrived = lock.newCondition();
+	private final LongAdder tornReads = new LongAdder();
+	/**
+	 * @param capacity samples kept, a power of 2
+	 */
+	public IMUSampleRing(int capacity) {
+		if(capacity < 2 || Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException("Capacity must be a power of 2:"+capacity);
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		values = new double[capacity * DOUBLES];
+		timestamps = new long[capacity];
+		temperatures = new int[capacity];
+		stamps = new AtomicLongArray(capacity);
+		for(int i = 0; i < capacity; i++)
+			stamps.set(i, WRITING); // nothing stamped yet
+	}
+	/**
+	 * Store a sample, overwriting the oldest, and wake any reader waiting for it. Writer only, never blocks.
+	 * @param sample the sample, given its sequence number
+	 * @return the sequence number
+	 */
+	public long publish(IMUSample sample) {
+		long sequence = published.get();
+		int slot = (int)(sequence & mask);
+		stamps.setOpaque(slot, WRITING);
+		VarHandle.storeStoreFence();
+		int v = slot * DOUBLES;
+		System.arraycopy(sample.accels, 0, values, v, 3);
+		System.arraycopy(sample.mags, 0, values, v + 3, 3);
+		System.arraycopy(sample.gyros, 0, values, v + 6, 3);
+		System.arraycopy(sample.eulers, 0, values, v + 9, 3);
+		System.arraycopy(sample.quats, 0, values, v + 12, 4);
+		System.arraycopy(sample.linearAccels, 0, values, v + 16, 3);
+		System.arraycopy(sample.gravity, 0, values, v + 19, 3);
+		timestamps[slot] = sample.timestampNanos;
+		temperatures[slot] = sample.temperature;
+		stamps.setRelease(slot, sequence);
+		published.set(sequence + 1); // volatile, seen by a reader about to wait or it sees the waiter
+		sample.sequence = sequence;
+		if(waiters.get() > 0) {
+			lock.lock();
+			try {
+				arrived.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+		return sequence;
+	}
+	/**
+	 * Copy out one sample.
+	 * @param sequence its sequence number
+	 * @param sample receives it
+	 * @return false if it is not yet published or has been overwritten
+	 */
+	public boolean read(long sequence, IMUSample sample) {
+		if(sequence < 0 || sequence >= published.get())
+			return false;
+		int slot = (int)(sequence & mask);
+		if(stamps.getAcquire(slot) != sequence)
+			return false;
+		int v = slot * DOUBLES;
+		System.arraycopy(values, v, sample.accels, 0, 3);
+		System.arraycopy(values, v + 3, sample.mags, 0, 3);
+		System.arraycopy(values, v + 6, sample.gyros, 0, 3);
+		System.arraycopy(values, v + 9, sample.eulers, 0, 3);
+		System.arraycopy(values, v + 12, sample.quats, 0, 4);
+		System.arraycopy(values, v + 16, sample.linearAccels, 0, 3);
+		System.arraycopy(values, v + 19, sample.gravity, 0, 3);
+		long timestamp = timestamps[slot];
+		int temperature = temperatures[slot];
+		VarHandle.loadLoadFence();
+		if(stamps.getOpaque(slot) != sequence) // overwritten as we copied
+			return false;
+		sample.timestampNanos = timestamp;
+		sample.temperature = temperature;
+		sample.sequence = sequence;
+		return true;
+	}
+	/**
+	 * Copy out the newest sample.
+	 * @param sample receives it
+	 * @return false if none has been published
+	 */
+	public boolean latest(IMUSample sample) {
+		while(true) {
+			long sequence = published.get() - 1;
+			if(sequence < 0)
+				return false;
+			if(read(sequence, sample))
+				return true;
+			tornReads.increment(); // lapped while copying, the newest is newer still
+		}
+	}
+	/**
+	 * Copy out the samples published after a sequence number, oldest first, as many as fit. Those overwritten
+	 * before they were reached are skipped, as the gap in the sequence numbers of the samples returned shows.
+	 * @param after the last sequence number already seen, -1 for all
+	 * @param samples receive them
+	 * @return the number of samples copied
+	 */
+	public int readSince(long after, IMUSample[] samples) {
+		long end = published.get();
+		long sequence = Math.max(after + 1, end - capacity);
+		int n = 0;
+		while(sequence < end && n < samples.length) {
+			if(read(sequence++, samples[n]))
+				++n;
+		}
+		return n;
+	}
+	/**
+	 * Wait for a sample newer than a sequence number and copy out the newest.
+	 * @param after the last sequence number already seen, -1 for any
+	 * @param sample receives it
+	 * @param timeoutMillis the longest wait, 0 to wait indefinitely
+	 * @return false if none came in time
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean awaitNext(long after, IMUSample sample, long timeoutMillis) throws InterruptedException {
+		if(published.get() - 1 <= after) {
+			long wait = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			waiters.incrementAndGet();
+			lock.lock();
+			try {
+				while(published.get() - 1 <= after) {
+					if(timeoutMillis == 0) {
+						arrived.await();
+					} else {
+						if(wait <= 0)
+							return false;
+						wait = arrived.awaitNanos(wait);
+					}
+				}
+			} finally {
+				lock.unlock();
+				waiters.decrementAndGet();
+			}
+		}
+		return latest(sample);
+	}
+	/**
+	 * @return the sequence number of the newest sample, -1 if none
+	 */
+	public long getSequence() {
+		return published.get() - 1;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+	/**
+	 * @return copies of the newest sample started again because the ring was lapped during the copy
+	 */
+	public long getTornReads() {
+		return tornReads.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "IMUSampleRing capacity="+capacity+" published="+published.get()+" torn reads="+tornReads.sum()+" waiting="+waiters.get();
+	}
+}
@@ -0,0 +1,19 @@
+package com.neocoretechs.robocore.serialreader;
+
+import java.io.IOException;
+/**
+ * Anything that fills an {@link IMUSample}, the BNO055 through {@link IMUSerialDataPort#readSample(IMUSample)}
+ * or a simulated sensor, for an {@link IMUAcquisition} to publish.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+@FunctionalInterface
+public interface IMUSampleSource {
+	/**
+	 * Read the sensor, blocking as long as the reading takes.
+	 * @param sample receives the outputs and the time they were read
+	 * @return the sample
+	 * @throws IOException if the sensor cannot be read
+	 */
+	public IMUSample readSample(IMUSample sample) throws IOException;
+}
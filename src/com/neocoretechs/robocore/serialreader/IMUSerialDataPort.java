@@ -22,7 +22,7 @@ import java.math.RoundingMode;
  * @author Jonathan Groff Copyright (C) NeoCoreTechs 2017,2018,2019,2020,2021
  *
  */
-public class IMUSerialDataPort implements DataPortInterface {
+public class IMUSerialDataPort implements DataPortInterface, IMUSampleSource {
 	public static boolean DEBUG = false;
 	private static boolean PORTDEBUG = false;
 	private static boolean INFO = true;
@@ -35,6 +35,8 @@ public class IMUSerialDataPort implements DataPortInterface {
     private OutputStream outStream;
     private InputStream inStream;
     
+	private final BNO055RegisterReader registers = new BNO055RegisterReader(this);
+	private final byte[] burst = new byte[IMUSample.LENGTH];
 	private double yawDeg = 0.0;
 	private long lastTimeNs = System.nanoTime();
 
@@ -92,6 +94,10 @@ public class IMUSerialDataPort implements DataPortInterface {
 	public static final byte BNO055_TEMP_ADDR  = (byte)0x34;
 	// Quaternion data register
 	public static final byte BNO055_QUATERNION_DATA_W_LSB_ADDR = (byte)0x20;
+	// Linear acceleration data register
+	public static final byte BNO055_LINEAR_ACCEL_DATA_X_LSB_ADDR = (byte)0x28;
+	// Gravity vector data register
+	public static final byte BNO055_GRAVITY_DATA_X_LSB_ADDR = (byte)0x2E;
 	//
 	public static final byte POWER_MODE_NORMAL = (byte)0x00;
 	// Calibration register
@@ -169,6 +175,10 @@ public class IMUSerialDataPort implements DataPortInterface {
 	public static IMUSerialDataPort getInstance(String ttyPort) {
 		synchronized(mutex) {
 			if( instance == null ) {
+				if(BNO055Simulator.PORT_NAME.equals(ttyPort)) {
+					BNO055Simulator simulator = new BNO055Simulator();
+					return getInstance(ttyPort, simulator.getInputStream(), simulator.getOutputStream());
+				}
 				try {
 					portName = ttyPort;
 					instance = new IMUSerialDataPort(portName, baud, datab, stopb, parityb);									 
@@ -182,6 +192,31 @@ public class IMUSerialDataPort implements DataPortInterface {
 		}
 	}
 	
+	/**
+	 * Use the given streams in place of those of the serial port, such as those of a {@link BNO055Simulator},
+	 * and invoke constructor, which calls connect(true). The port name {@link BNO055Simulator#PORT_NAME} given to
+	 * {@link #getInstance(String)} does this with a simulator at rest.
+	 * @param name reported as the port name
+	 * @param in bytes from the sensor
+	 * @param out bytes to the sensor
+	 * @return An instance of IMUSerialDataPort, singleton for this class
+	 */
+	public static IMUSerialDataPort getInstance(String name, InputStream in, OutputStream out) {
+		synchronized(mutex) {
+			if( instance == null ) {
+				try {
+					portName = name;
+					instance = new IMUSerialDataPort(portName, in, out);
+				} catch (IOException e) {
+					System.out.println("Could not initialize IMUSerialDataPort of:"+portName+" because "+e);
+					e.printStackTrace();
+					throw new RuntimeException(e);
+				}
+			}
+			return instance;
+		}
+	}
+	
 	@Override
 	public boolean isConnected() {
 		return connected;
@@ -189,12 +224,23 @@ public class IMUSerialDataPort implements DataPortInterface {
 	
 	@Override
 	public int bytesToRead() throws IOException {
+		if(serialPort == null)
+			return inStream.available();
 		return serialPort.bytesAvailable();
 	}
 
 	@Override
 	public void close() {
-		serialPort.closePort();
+		if(serialPort != null) {
+			serialPort.closePort();
+			return;
+		}
+		SerialReader.shouldRun = false;
+		SerialWriter.shouldRun = false;
+		try {
+			inStream.close();
+			outStream.close();
+		} catch (IOException e) {}
 	}
 
 	@Override
@@ -221,6 +267,21 @@ public class IMUSerialDataPort implements DataPortInterface {
 		connect(true);
 		//clear();
 	}
+	/**
+	 * Private ctor, calls connect(true) on the given streams
+	 * @param tportName
+	 * @param in
+	 * @param out
+	 * @throws IOException
+	 */
+	private IMUSerialDataPort(String tportName, InputStream in, OutputStream out) throws IOException {
+		portName = tportName;
+		inStream = in;
+		outStream = out;
+		if( DEBUG || INFO) 
+			System.out.println("IMUSerialDataPort "+portName+" on given streams");
+		connect(true);
+	}
 
 	public void setCalibrationFile(String calibrationFile) { CALIBRATION_FILE = calibrationFile; }
 	public void setSYSTEM_CAL(int sYSTEM_CAL) {	SYSTEM_CAL = sYSTEM_CAL; }
@@ -240,6 +301,56 @@ public class IMUSerialDataPort implements DataPortInterface {
 	 */
 	public void connect(boolean writeable) throws IOException {
         SynchronizedThreadManager.getInstance().init(new String[] {"IMU"});
+        if((inStream == null || serialPort != null) && !openSerialPort(writeable)) // unless given streams in place of the port
+        	return;
+        SerialReader readThread = new SerialReader(inStream);
+        SynchronizedThreadManager.getInstance().spin(readThread, "IMU");
+        while(!readThread.isRunning)
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {}
+           
+        if( writeable) {
+            //(new Thread(new SerialWriter(outStream))).start();
+            SerialWriter writeThread = new SerialWriter(outStream);
+            SynchronizedThreadManager.getInstance().spin(writeThread, "IMU");
+            while(!writeThread.isRunning)
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {}
+        }
+	
+		//
+		// set up BNO055
+		// set config mode
+		set_mode(OPERATION_MODE_CONFIG);
+		// now read without kruft
+		while(write(BNO055_PAGE_ID_ADDR, new byte[]{(byte)0x00}, true)) {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException er) {}
+		}
+		readChipId();
+		reset();
+		// obtain calibration data if we can
+		byte[] calData = null;
+		try {
+			calData = readCalibration();
+			set_mode(OPERATION_MODE_CONFIG);
+			setCalibration(calData);
+		} catch(FileNotFoundException fnfe) {}
+		setNormalPowerNDOFMode();
+		//reportCalibrationStatus();
+		if( PORTDEBUG ) {
+			System.out.println("Connected to "+portName+" and BNO055 IMU is ready !"+stringSettings());
+		}
+		connected = true;
+	}
+	/**
+	 * Open and configure the serial port and get its streams.
+	 * @return false if the port could not be opened
+	 */
+	private boolean openSerialPort(boolean writeable) throws IOException {
 		getSerialPort();
 		SerialPort.allowPortOpenForEnumeration();
 		SerialPort.autoCleanupAtShutdown();
@@ -251,7 +362,7 @@ public class IMUSerialDataPort implements DataPortInterface {
 		if (!openedSuccessfully)
 		{
 			System.out.println("Error code was " + serialPort.getLastErrorCode() + " at Line " + serialPort.getLastErrorLocation());
-			return;
+			return false;
 		}
 		//
 		serialPort.setBaudRate(baud);
@@ -283,53 +394,13 @@ public class IMUSerialDataPort implements DataPortInterface {
         if( inStream == null ) {
         	throw new IOException("Cant get InputStream for port "+portName);
         }
-        
-        SerialReader readThread = new SerialReader(inStream);
-        SynchronizedThreadManager.getInstance().spin(readThread, "IMU");
-        while(!readThread.isRunning)
-			try {
-				Thread.sleep(1);
-			} catch (InterruptedException e) {}
-           
         if( writeable) {
             outStream = serialPort.getOutputStream();
             if( outStream == null ) {
             	throw new IOException("Cant get OutputStream for port "+portName);
             }
-            //(new Thread(new SerialWriter(outStream))).start();
-            SerialWriter writeThread = new SerialWriter(outStream);
-            SynchronizedThreadManager.getInstance().spin(writeThread, "IMU");
-            while(!writeThread.isRunning)
-				try {
-					Thread.sleep(1);
-				} catch (InterruptedException e) {}
         }
-	
-		//
-		// set up BNO055
-		// set config mode
-		set_mode(OPERATION_MODE_CONFIG);
-		// now read without kruft
-		while(write(BNO055_PAGE_ID_ADDR, new byte[]{(byte)0x00}, true)) {
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException er) {}
-		}
-		readChipId();
-		reset();
-		// obtain calibration data if we can
-		byte[] calData = null;
-		try {
-			calData = readCalibration();
-			set_mode(OPERATION_MODE_CONFIG);
-			setCalibration(calData);
-		} catch(FileNotFoundException fnfe) {}
-		setNormalPowerNDOFMode();
-		//reportCalibrationStatus();
-		if( PORTDEBUG ) {
-			System.out.println("Connected to "+portName+" and BNO055 IMU is ready !"+stringSettings());
-		}
-		connected = true;
+        return true;
 	}
 	private SerialPort getSerialPort() {
 	    SerialPort[] serialPortList = SerialPort.getCommPorts();
@@ -461,67 +532,6 @@ public class IMUSerialDataPort implements DataPortInterface {
 	}
     
 	
-	byte[] ReadErrors = {
-		 0x02, 
-		 0x04,
-		 0x05, 
-		 0x06, 
-		 0x07, 
-		 0X08, 
-		 0x09, 
-		 0x0A};
-	
-	String[] ReadErrorMsg = { "READ_FAIL","REGMAP_INVALID_ADDRESS","REGMAP_WRITE_DISABLED","WRONG_START_BYTE","BUS_OVER_RUN_ERROR",
-			 "MAX_LENGTH_ERROR","MIN_LENGTH_ERROR", "RECEIVE_CHARACTER_TIMEOUT"};
-
-	/**
-	 * 0xEE - error, 0xBB - success <br>
-	 * byte 2: returned from method, 0 if success <br>
-	 * 0x02: READ_FAIL <br>
-	 * 0x04: REGMAP_INVALID_ADDRESS <br>
-	 * 0x05: REGMAP_WRITE_DISABLED <br>
-	 * 0x06: WRONG_START_BYTE <br>
-	 * 0x07: BUS_OVER_RUN_ERROR <br>
-	 * 0X08: MAX_LENGTH_ERROR <br>
-	 * 0x09: MIN_LENGTH_ERROR <br>
-	 * 0x0A: RECEIVE_CHARACTER_TIMEOUT <br>
-	 */
-	private byte signalRead(byte address, byte length) throws IOException {
-		//if(DEBUG) 
-		//	System.out.println("signalRead:"+String.valueOf(address)+" len:"+length);
-		// Build and send serial register write command.
-		//if( DEBUG )
-		//	System.out.println("Setting up read registers from signalRead..");
-			write((byte) 0xAA); // Start byte
-			write((byte) 0x01);  // Read
-			write((byte) (address & 0xFF));
-			write((byte) (length & 0xFF));
-		//if( DEBUG )
-		//	System.out.println("Reading response header in signalRead");
-		byte resp;
-		resp = (byte)( read() & 0xFF);
-		if( resp == (byte)0xBB ) {
-			return 0;
-		}
-		// read fail is EE, otherwise confustion
-		if( resp != (byte)0xEE ) {
-			if(DEBUG)
-				System.out.printf("Received unexpected response in signalRead: %02x while looking for error byte '0xEE'\r\n", resp);
-			return (byte)0x07; // lets call this bus overrun from chip
-		} else {
-			resp = (byte)( read() & 0xFF);
-		}
-		// should have the error code
-		String err = "UNKNOWN";
-		for(int i = 0; i < ReadErrors.length; i++)
-			if(ReadErrors[i] == resp) {
-				err = ReadErrorMsg[i];
-				break;
-			}
-		System.out.printf("Error detected in IMU read, code: %02x %s\r\n",resp, err);
-		return resp;
-	}
-
 	/**
 	 * Read Success Response: <br>
 	 * Byte 1 Byte 2 Byte 3 Byte (n+2) <br>
@@ -534,58 +544,27 @@ public class IMUSerialDataPort implements DataPortInterface {
 	 * 0x03 : WRITE_FAIL - check connection protocol setting and operation of BNO <br>
 	 * 0x04 : REGMAP_INVALID_ADDRESS - Check that register is addressable <br>
 	 * 0x06 : START BYTE IS NOT 0xAA - Check that the start byte is 0xAA <br>
-	 * 0x07 : BUS_OVER_RUN_ERROR - BNO was not able to clear buffer, re-send command <br>
+	 * 0x07 : BUS_OVER_RUN_ERROR - BNO was not able to clear buffer, re-send command, retried per {@link #setRetryBackoff(RetryBackoff)} <br>
 	 * 0x08 : MAX_LENGTH_ERR - Max length of data is > 128 0x80 split frame <br>
 	 * 0x09 : MIN_LENGTH_ERR - Min length of data is < 1, send valid frame <br>
 	 * 0x0A : RECIEVE_CHARACTER_TIMEOUT - If next character does not arrive within 100ms, decrease wait time between bytes <br>
 	 */
 	public byte[] read(byte address, byte length) throws IOException {
-		//if( Props.DEBUG ) System.out.println("read");
-		// Build and send serial register read command.
-		int retry = 0;
-		byte resp;
-		while( (resp = signalRead(address, length)) == (byte)0x07 && retry++ < 10) {
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {}
-		}
-		// done retrying
-		if( resp != 0 ) {
-			switch(resp) {
-			case ((byte)0x03): 
-				throw new IOException(String.format("Error from write ACK:%02x WRITE_FAIL - check connection, protocol settings and operation mode\r\n",resp));
-			case((byte)0x04):
-				throw new IOException(String.format("Error from write ACK:%02x REGMAP_INVALID_ADDRESS - check if the register is addressable\r\n",resp));
-			case((byte)0x06): 
-				throw new IOException(String.format("Error from write ACK:%02x WRONG_START_BYTE - Check if first byte sent is 0xAA\r\n",resp));
-			case((byte)0x07):
-				throw new IOException(String.format("Error from write ACK:%02x BUS_OVER_RUN_ERROR - resend the command\r\n",resp));
-			case((byte)0X08):
-				throw new IOException(String.format("Error from write ACK:%02x MAX_LENGTH_ERROR - split command so single frame < 128 bytes\r\n",resp));
-			case((byte)0x09): 
-				throw new IOException(String.format("Error from write ACK:%02x MIN_LENGTH_ERROR - send a valid frame\r\n",resp));
-			case((byte)0x0A):
-				throw new IOException(String.format("Error from write ACK:%02x RECEIVE_CHARACTER_TIMEOUT - decrease waiting time between sending of 2 bytes of 1 frame to < 100ms\r\n",resp));
-			default:
-				throw new IOException("Bad response for signalRead after " + retry +" retries, exiting read with response:"+resp);
-			}
-		}
-		// Returning with 0 from signalRead means we found 0xBB
-		// next byte is length, then data 1..n
-		//if( Props.DEBUG ) System.out.println("readBufferHead="+readBufferHead+" readBufferTail="+readBufferTail+" = "+readBuffer[readBufferHead]);
-		byte blen = (byte)( read() & 0xFF);
-		//if( DEBUG )
-		//	System.out.printf("Recovered length byte: %02x\r\n", blen);
-		// Read the returned bytes.	
-		if( blen == 0 || blen != length) {
-			throw new IOException(String.format("Received length byte: %d but read requested %d bytes.\r\n", blen, length));
-		}
-		byte[] bout = new byte[blen];
-		for(int i = 0; i < blen; i++) {
-			bout[i] = (byte)( read() & 0xFF);
-		}
+		byte[] bout = new byte[length & 0xFF];
+		registers.read(address, bout, 0, bout.length);
 		return bout;
 	}
+	/**
+	 * Set how a register read refused with 0x07 BUS_OVER_RUN_ERROR is retried, by default 10 times 100 ms apart.
+	 * @param retry the retries and delays between them
+	 */
+	public void setRetryBackoff(RetryBackoff retry) {
+		registers.setRetryBackoff(retry);
+	}
+
+	public RetryBackoff getRetryBackoff() {
+		return registers.getRetryBackoff();
+	}
 
     /**
      * pacman the jizzle in the inputstream
@@ -850,6 +829,28 @@ public class IMUSerialDataPort implements DataPortInterface {
 				| ((data[5] << 8) & 0xFF00));
 		return new double[]{round(((double)heading)/16.0, IMU_TOL), round(((double)roll)/16.0, IMU_TOL), round(((double)pitch)/16.0, IMU_TOL)};
 	}
+	/**
+	 * Read every output of the sensor in one transaction, the registers from ACC_DATA_X_LSB to TEMP, in place of the
+	 * six round trips of {@link #readAccel()}, {@link #readMag()}, {@link #readGyro()}, {@link #readEuler()},
+	 * {@link #readQuaternion()} and {@link #readTemperature()}. The integrated yaw is updated from the gyro as by readGyro.
+	 * @param sample receives the decoded outputs and the time they were read
+	 * @return the sample
+	 * @throws IOException if the read fails after any retries
+	 */
+	@Override
+	public IMUSample readSample(IMUSample sample) throws IOException {
+		registers.read(IMUSample.FIRST_REGISTER, burst, 0, IMUSample.LENGTH);
+		sample.decode(burst, 0, IMU_TOL, System.nanoTime());
+		updateYaw(sample.gyros[2]);
+		return sample;
+	}
+	/**
+	 * @return register read frames sent to the sensor, retries included
+	 */
+	public long getReadFrames() {
+		return registers.getFrames();
+	}
+
 	/**
 	 * The gyro outputs degrees/sec (or rad/sec depending on config) The Z axis is yaw rate.
 	 * Set the global lastTimeNs to time of reading
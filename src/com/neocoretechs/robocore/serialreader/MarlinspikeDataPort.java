@@ -1,10 +1,22 @@
 package com.neocoretechs.robocore.serialreader;
 
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
+import com.neocoretechs.robocore.SynchronizedThreadManager;
 import com.neocoretechs.robocore.propulsion.PWM;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.ClockInterface;
 import com.neocoretechs.robocore.serialreader.marlinspikeport.Pins;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.RealClock;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.VirtualClock;
 import com.neocoretechs.robocore.serialreader.marlinspikeport.control.AbstractMotorControl;
 import com.neocoretechs.robocore.serialreader.marlinspikeport.control.RoboteqDevice;
 import com.neocoretechs.robocore.serialreader.marlinspikeport.control.SplitBridgeDriver;
@@ -59,30 +71,62 @@ import com.neocoretechs.robocore.serialreader.marlinspikeport.pwmcontrol.Variabl
  * M705 - Display Motor controller and channel attributes <br/>
  * M798 - Report status of attached controller <br/>
  * M999 - Restart after being stopped by error, clears 'stopped' flag <br/>
- * Responses are consumed by the calling process, typically in the form <MCode/> for success and standard error headers with the same </> delimiter for failure.
+ * Responses are consumed by the calling process, typically in the form <MCode/> for success and standard error headers with the same </> delimiter for failure.<p/>
+ * Commands may carry the N<line> prefix and *<checksum> suffix, in which case the line number and checksum are verified
+ * as the firmware does and the usual line number and checksum error headers are returned on failure. M110 sets the line number.<p/>
+ * Through {@link DataPortPipelineInterface} the emulator also accepts several outstanding commands, processing them in order
+ * on its own thread. A link latency may be set to model the transit time of the serial line for benchmarking.<p/>
+ * Through {@link #serve(ReadableByteChannel, WritableByteChannel)} the emulator runs the firmware serial loop over a byte stream,
+ * text lines by default or {@link BinaryFrameCodec} frames after M800 S1, so the {@link ByteSerialDataPort} path may be exercised without hardware.<p/>
+ * Dwell, acquisition intervals and inactivity are timed by a {@link ClockInterface}, the system clock unless a {@link VirtualClock}
+ * is set through {@link #setClock(ClockInterface)} to run a sequence faster than real time and reproduce it exactly.<p/>
+ * Each command line is tokenized in one pass into a table of parameters indexed by letter, and the most frequent
+ * G and M codes are dispatched through a table of handlers indexed by code, the rest through the switches.
  * @author Jonathan Neville Groff Copyright (C) NeoCoreTechs 2020
 */
-public class MarlinspikeDataPort implements DataPortCommandInterface {
+public class MarlinspikeDataPort implements DataPortPipelineInterface {
 	public static boolean DEBUG = false;
 	private static final int MAX_CMD_SIZE = 1024;
+	private static final int PIPELINE_DEPTH = 256;
 	public static int DEFAULT_PWM_FREQUENCY = 50000;
 	public static int DEFAULT_PWM_DUTY = 25000;
 	public static int MAX_MOTOR_POWER = 1000;
-	static int gcode_N, gcode_LastN, Stopped_gcode_LastN = 0;
+	int gcode_N, gcode_LastN, Stopped_gcode_LastN = 0;
+	// pipelined link emulation, commands and responses become visible half the link latency after they are sent
+	private long linkLatency = 0L; // nanoseconds, round trip
+	private final ArrayBlockingQueue<PendingLine> inbound = new ArrayBlockingQueue<PendingLine>(PIPELINE_DEPTH);
+	private final ArrayBlockingQueue<PendingLine> outbound = new ArrayBlockingQueue<PendingLine>(PIPELINE_DEPTH);
+	private boolean firmwareLoop = false;
+	private volatile boolean shouldRun = true;
+	private boolean binaryFraming = false; // M800, applies to the byte stream of serve
 
-	static boolean realtime_output = true; // Determines whether real time data from inactive period is streamed
+	boolean realtime_output = true; // Determines whether real time data from inactive period is streamed
 
 	String cmdbuffer;
-	String[] cmdtokens = new String[25];
 	String outbuffer;
 	char serial_char;
 
 	int serial_read;
-	int serial_count = 0;
+	int serial_count = -1; // letter index of the parameter last found by code_seen
+	// the G or M code of the current command and its parameters by letter, filled in one pass by get_command
+	char cmdLetter;
+	int cmdCode;
+	final boolean[] paramSeen = new boolean[26];
+	final double[] paramValue = new double[26];
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+			1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18 };
+	// G and M codes dispatched through a table rather than the switches, indexed by code
+	private final CodeHandler[] gcodes = new CodeHandler[128];
+	private final CodeHandler[] mcodes = new CodeHandler[1000];
+	// acknowledgements built once per code, and the builder of the variable lines of a report
+	private final String[] gacks = new String[gcodes.length];
+	private final String[] macks = new String[mcodes.length];
+	private final StringBuilder replyBuilder = new StringBuilder(64);
 
 	//Inactivity shutdown variables
 	long previous_millis_cmd = 0;
 	long max_inactive_time = 0;
+	private ClockInterface clock = new RealClock(); // time base of dwell, acquisition and inactivity
 
 	long starttime = 0;
 	long stoptime = 0;
@@ -98,27 +142,28 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 	String motorCntrlResp;
 	int status;
 	int fault = 0;
+	// Devices and controls are per instance so that several emulated boards may run in one process
 	// Dynamically defined ultrasonic rangers
-	static Ultrasonic[] psonics = new Ultrasonic[10];
+	Ultrasonic[] psonics = new Ultrasonic[10];
 	// Last distance published per sensor
-	static float[] sonicDist = new float[]{0.0f,0.0f,0.0f,0.0f,0.0f,0.0f,0.0f,0.0f,0.0f,0.0f};
+	float[] sonicDist = new float[]{0.0f,0.0f,0.0f,0.0f,0.0f,0.0f,0.0f,0.0f,0.0f,0.0f};
 	// Dynamically defined analog pins
-	static double[][] analogRanges = new double[2][16];
-	static PWM[] panalogs = new PWM[10];//{0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0};
+	double[][] analogRanges = new double[2][16];
+	PWM[] panalogs = new PWM[10];//{0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0};
 	// Dynamically defined digital pins
-	static boolean[] digitalTarget = new boolean[12];
+	boolean[] digitalTarget = new boolean[12];
 	// PWM control block
-	static PWM[] ppwms = new PWM[12];//{0,0,0,0,0,0,0,0,0,0,0,0};
-	static int pwm_freq = DEFAULT_PWM_FREQUENCY;
-	static int pwm_duty = DEFAULT_PWM_DUTY;
+	PWM[] ppwms = new PWM[12];//{0,0,0,0,0,0,0,0,0,0,0,0};
+	int pwm_freq = DEFAULT_PWM_FREQUENCY;
+	int pwm_duty = DEFAULT_PWM_DUTY;
 
 	// &roboteqDevice, new HBridgeDriver, new SplitBridgeDriver...
-	static AbstractMotorControl[] motorControl = new AbstractMotorControl[10];
-	static AbstractPWMControl[] pwmControl= new AbstractPWMControl[10];
+	AbstractMotorControl[] motorControl = new AbstractMotorControl[10];
+	AbstractPWMControl[] pwmControl= new AbstractPWMControl[10];
 	int channel;
 	  
 	int digitarg;
-	static int uspin = 0;
+	int uspin = 0;
 	long t;
 	int pin_number, pin_numberB;
 	int dir_pin, dir_default, enable_pin;
@@ -195,6 +240,40 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 	final static String MSG_BAD_MOTOR ="Bad Motor command ";
 	final static String MSG_BAD_PWM= "Bad PWM Driver command ";
 	final static String MSG_NO_CONTROL = "Attempt to configure undefined device ";
+	// Fixed lines of the reports built by the dispatched codes, NL being the %n of String.format
+	final static String NL = System.lineSeparator();
+	final static String MSG_M115_BEGIN = MSG_BEGIN+MSG_M115_REPORT+MSG_DELIMIT+NL;
+	final static String MSG_M115_END = MSG_BEGIN+MSG_M115_REPORT+MSG_TERMINATE+NL;
+	final static String MSG_STATUS_BEGIN = MSG_BEGIN+MSG_STATUS+MSG_DELIMIT+"\r\n";
+	final static String MSG_STATUS_REPORT = MSG_CONFIGURATION_VER+MSG_AUTHOR+MSG_FREE_MEMORY+"\r\n";
+	final static String MSG_STATUS_END = MSG_BEGIN+MSG_STATUS+MSG_TERMINATE+"\r\n";
+	final static String MSG_DIGITAL_PIN_BEGIN = MSG_BEGIN+digitalPinHdr+MSG_DELIMIT+NL;
+	final static String MSG_DIGITAL_PIN_END = MSG_BEGIN+digitalPinHdr+MSG_TERMINATE+NL;
+	final static String MSG_ANALOG_PIN_BEGIN = MSG_BEGIN+analogPinHdr+MSG_DELIMIT+"\r\n";
+	final static String MSG_ANALOG_PIN_END = MSG_BEGIN+analogPinHdr+MSG_TERMINATE+"\r\n";
+
+	/**
+	 * Processes one G or M code from the parameter table of the current command.
+	 */
+	private interface CodeHandler {
+		/**
+		 * @return the response, or null if the parameters are malformed
+		 * @throws IOException
+		 */
+		ArrayList<String> process() throws IOException;
+	}
+
+	public MarlinspikeDataPort() {
+		gcodes[4] = this::dwell;
+		gcodes[5] = this::command_power;
+		gcodes[99] = this::watchdog_start;
+		gcodes[100] = this::watchdog_reset;
+		mcodes[44] = this::digital_read;
+		mcodes[110] = this::set_line_number;
+		mcodes[115] = this::firmware_report;
+		mcodes[700] = this::status_report;
+		mcodes[802] = this::acquire_analog;
+	}
 
 	@Override
 	/**
@@ -219,6 +298,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 
 	@Override
 	public void close() {
+		shouldRun = false;
 		try {
 			stop();
 		} catch (IOException e) {
@@ -252,204 +332,518 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 
 	@Override
 	public ArrayList<String> sendCommand(String command) throws IOException {
-		cmdbuffer = command;
+		if(linkLatency > 0)
+			LockSupport.parkNanos(linkLatency);
+		return execute(command);
+	}
+	
+	private ArrayList<String> execute(String command) throws IOException {
+		previous_millis_cmd = clock.millis();
+		cmdbuffer = command.trim();
+		ArrayList<String> ret = check_line();
+		if(ret != null)
+			return ret;
 		get_command();
 		return process_commands();
 	}
+	/**
+	 * Set the emulated round trip transit time of the link. Applied to {@link #sendCommand(String)} and
+	 * split evenly between the command and response legs of {@link #writeCommand(String)} and {@link #readResponse(long)}.
+	 * @param micros round trip latency in microseconds, 0 for none
+	 */
+	public void setLinkLatency(long micros) {
+		linkLatency = TimeUnit.MICROSECONDS.toNanos(micros);
+	}
+	/**
+	 * Set the time base of the G4 dwell, the M802 acquisition interval and the inactivity check, a {@link RealClock}
+	 * unless set. With a {@link VirtualClock} those complete without waiting and a sequence of commands
+	 * runs the same every time. The link latency is a property of the transport and stays on the system clock.
+	 * @param clock the clock
+	 */
+	public void setClock(ClockInterface clock) {
+		this.clock = clock;
+	}
+	
+	public ClockInterface getClock() {
+		return clock;
+	}
+	
+	@Override
+	public synchronized void writeCommand(String command) throws IOException {
+		if(!firmwareLoop) {
+			firmwareLoop = true;
+			SynchronizedThreadManager.getInstance().init(new String[] {"MARLINSPIKE"});
+			SynchronizedThreadManager.getInstance().spin(new FirmwareLoop(), "MARLINSPIKE");
+		}
+		try {
+			inbound.put(new PendingLine(System.nanoTime()+linkLatency/2, command, null));
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	@Override
+	public ArrayList<String> readResponse(long timeout) throws IOException {
+		try {
+			PendingLine pl = outbound.poll(timeout, TimeUnit.MILLISECONDS);
+			if(pl == null)
+				return null;
+			pl.awaitReady();
+			return pl.response;
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+	}
+	/**
+	 * Run the firmware serial loop over a byte stream until end of stream or close. Commands are carriage return or line feed
+	 * terminated text with the responses written as text lines, until M800 S1 is acknowledged, after which both directions
+	 * are binary frames until M800 S0. As with the firmware, the host waits for the M800 acknowledgement before sending in the new framing.
+	 * @param in the channel carrying commands, blocking
+	 * @param out the channel to receive responses
+	 * @throws IOException if a channel fails
+	 */
+	public void serve(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+		ByteBuffer inbuf = ByteBuffer.allocate(MAX_CMD_SIZE);
+		ByteBuffer outbuf = ByteBuffer.allocate(4096);
+		BinaryFrameReader frames = new BinaryFrameReader(in);
+		StringBuilder line = new StringBuilder();
+		inbuf.flip();
+		while(shouldRun) {
+			String command;
+			if(binaryFraming) {
+				try {
+					if(!frames.readFrame(0))
+						continue;
+				} catch(IOException eos) {
+					return;
+				}
+				command = BinaryFrameCodec.decodeCommand(frames.opcode(), frames.payload());
+			} else {
+				if(!inbuf.hasRemaining()) {
+					inbuf.clear();
+					int n = in.read(inbuf);
+					inbuf.flip();
+					if(n < 0)
+						return;
+					continue;
+				}
+				char c = (char)(inbuf.get() & 0xFF);
+				if(c != '\r' && c != '\n') {
+					line.append(c);
+					continue;
+				}
+				if(line.length() == 0)
+					continue;
+				command = line.toString();
+				line.setLength(0);
+			}
+			boolean framing = binaryFraming;
+			ArrayList<String> ret;
+			try {
+				ret = respond(command);
+			} catch(Exception e) {
+				ret = new ArrayList<String>();
+				ret.add(String.format("%s%s%s%s%n",MSG_BEGIN,MSG_UNKNOWN_COMMAND,command,MSG_TERMINATE));
+			}
+			if(linkLatency > 0)
+				LockSupport.parkNanos(linkLatency);
+			outbuf.clear();
+			if(framing) {
+				while(true) {
+					try {
+						BinaryFrameCodec.encodeResponse(ret, outbuf);
+						break;
+					} catch(BufferOverflowException boe) {
+						outbuf = ByteBuffer.allocate(outbuf.capacity() * 2);
+					}
+				}
+			} else {
+				StringBuilder sb = new StringBuilder();
+				for(String s : ret) {
+					sb.append(s);
+					if(!s.endsWith("\n"))
+						sb.append("\r\n");
+				}
+				if(sb.length() > outbuf.capacity())
+					outbuf = ByteBuffer.allocate(sb.length() * 2);
+				for(int i = 0; i < sb.length(); i++)
+					outbuf.put((byte)sb.charAt(i));
+			}
+			outbuf.flip();
+			while(outbuf.hasRemaining())
+				out.write(outbuf);
+		}
+	}
+	/**
+	 * Process one command received by {@link #serve(ReadableByteChannel, WritableByteChannel)}. May be overridden
+	 * to stand in for devices not attached to the host running the emulator.
+	 * @param command the command line
+	 * @return the response lines
+	 * @throws IOException
+	 */
+	protected ArrayList<String> respond(String command) throws IOException {
+		return execute(command);
+	}
+	/**
+	 * A command or response in transit on the emulated link
+	 */
+	static final class PendingLine {
+		final long ready;
+		final String command;
+		final ArrayList<String> response;
+		PendingLine(long ready, String command, ArrayList<String> response) {
+			this.ready = ready;
+			this.command = command;
+			this.response = response;
+		}
+		void awaitReady() {
+			long wait;
+			while((wait = ready - System.nanoTime()) > 0)
+				LockSupport.parkNanos(wait);
+		}
+	}
+	/**
+	 * Processes pipelined commands in order as the firmware main loop would, queueing the responses.
+	 */
+	final class FirmwareLoop implements Runnable {
+		@Override
+		public void run() {
+			while(shouldRun) {
+				try {
+					PendingLine pl = inbound.take();
+					pl.awaitReady();
+					ArrayList<String> ret = execute(pl.command);
+					outbound.put(new PendingLine(System.nanoTime()+linkLatency/2, null, ret));
+				} catch(InterruptedException ie) {
+					break;
+				} catch(Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+	/**
+	 * Verify and strip the optional N&lt;line&gt; prefix and *&lt;checksum&gt; suffix. The line number must follow the last
+	 * one accepted unless the command is M110. The checksum is the exclusive or of all characters preceding the '*'.
+	 * @return null if the line was accepted, leaving the bare command in cmdbuffer, otherwise the error response
+	 */
+	ArrayList<String> check_line() {
+		if(cmdbuffer.length() == 0)
+			return null;
+		int star = cmdbuffer.lastIndexOf('*');
+		if(cmdbuffer.charAt(0) == 'N') {
+			int sindex = cmdbuffer.indexOf(' ');
+			String cmd = cmdbuffer.substring(sindex+1, (star > sindex ? star : cmdbuffer.length())).trim();
+			try {
+				gcode_N = Integer.parseInt(cmdbuffer.substring(1, sindex));
+			} catch(NumberFormatException | IndexOutOfBoundsException nfe) {
+				return lineError(MSG_ERR_LINE_NO);
+			}
+			if(gcode_N != gcode_LastN+1 && !cmd.startsWith("M110"))
+				return lineError(MSG_ERR_LINE_NO);
+			if(star == -1)
+				return lineError(MSG_ERR_NO_CHECKSUM);
+			int checksum = 0;
+			for(int i = 0; i < star; i++)
+				checksum ^= cmdbuffer.charAt(i);
+			try {
+				if(Integer.parseInt(cmdbuffer.substring(star+1).trim()) != (checksum & 0xFF))
+					return lineError(MSG_ERR_CHECKSUM_MISMATCH);
+			} catch(NumberFormatException nfe) {
+				return lineError(MSG_ERR_CHECKSUM_MISMATCH);
+			}
+			gcode_LastN = gcode_N;
+			cmdbuffer = cmd;
+		} else {
+			if(star != -1)
+				return lineError(MSG_ERR_NO_LINENUMBER_WITH_CHECKSUM);
+		}
+		return null;
+	}
+	
+	private ArrayList<String> lineError(String msg) {
+		ArrayList<String> ret = new ArrayList<String>();
+		ret.add(String.format("%s%s%d%s%n",MSG_BEGIN,msg,gcode_LastN,MSG_TERMINATE));
+		return ret;
+	}
 	 
 	void get_command() {
-		serial_count = 0;
+		cmdLetter = 0;
+		serial_count = -1;
+		Arrays.fill(paramSeen, false);
 		if(cmdbuffer.length() == 0) {
 			System.out.println("Empty command buffer..");
 			return;
 		}
 		serial_char = (char)cmdbuffer.charAt(0);
-		if(serial_char == '\n' || serial_char == '\r' || serial_char == '#' ||  serial_char == ';' || serial_count >= (MAX_CMD_SIZE - 1) ) {
+		if(serial_char == '\n' || serial_char == '\r' || serial_char == '#' ||  serial_char == ';') {
 			return;
 		}
-		// Determine if an outstanding error caused safety shutdown. If so respond with header
-		if(serial_char == 'G'){
-			switch(cmdbuffer.charAt(1)) {
-			case '0':
-			case '1':
-			case '2':
-			case '3':
-			case '4':
-			case '5':
-				if(Stopped) { // If robot is stopped by an error the G[0-5] codes are ignored.
-					serial_count = -1;
-					return;
+		// one pass over the line, the first G or M token is the command and each letter after it a parameter
+		int len = cmdbuffer.length();
+		int i = 0;
+		while(i < len) {
+			char c = cmdbuffer.charAt(i);
+			if(c == ' ' || c == '\t') {
+				++i;
+				continue;
+			}
+			int end = i + 1;
+			while(end < len && cmdbuffer.charAt(end) != ' ' && cmdbuffer.charAt(end) != '\t')
+				++end;
+			if(cmdLetter == 0) {
+				double cval = parse_value(i + 1, end);
+				if((c == 'G' || c == 'M') && !Double.isNaN(cval)) {
+					cmdLetter = c;
+					cmdCode = (int)cval;
 				}
-				break;
-			default:
-				break;
+			} else if(c >= 'A' && c <= 'Z' && !paramSeen[c - 'A']) {
+				paramSeen[c - 'A'] = true;
+				paramValue[c - 'A'] = parse_value(i + 1, end);
 			}
+			i = end;
 		}
-		serial_count = 0;
-		cmdtokens = cmdbuffer.split(" ");
+		// Determine if an outstanding error caused safety shutdown. If so the G[0-5] codes are ignored, their parameters unseen
+		if(Stopped && cmdLetter == 'G' && cmdCode >= 0 && cmdCode <= 5)
+			Arrays.fill(paramSeen, false);
 		if(DEBUG)
 			System.out.printf("%s get_command %s%n", this.getClass().getName(), cmdbuffer);
 	}
-
+	/**
+	 * Parse the number of a token in place, plain decimals directly and anything else through the library.
+	 * @param start index of the first character after the letter
+	 * @param end index following the token
+	 * @return the value, NaN if there is no number
+	 */
+	private double parse_value(int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if(i < end && (cmdbuffer.charAt(i) == '-' || cmdbuffer.charAt(i) == '+')) {
+			negative = (cmdbuffer.charAt(i) == '-');
+			++i;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fraction = 0;
+		boolean point = false;
+		for(; i < end; i++) {
+			char c = cmdbuffer.charAt(i);
+			if(c >= '0' && c <= '9' && digits < 18) {
+				mantissa = mantissa * 10 + (c - '0');
+				++digits;
+				if(point)
+					++fraction;
+			} else if(c == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+		if(i == end && digits > 0)
+			return (negative ? -mantissa : mantissa) / POWERS_OF_TEN[fraction];
+		if(start == end)
+			return Double.NaN;
+		try {
+			return Double.parseDouble(cmdbuffer.substring(start, end)); // exponents, long mantissas
+		} catch(NumberFormatException nfe) {
+			return Double.NaN;
+		}
+	}
+	/**
+	 * @return the value of the parameter last found by {@link #code_seen(char)}
+	 * @throws NumberFormatException if the parameter has no number
+	 */
 	float code_value() {
-		return Float.parseFloat(cmdtokens[serial_count].substring(1));
+		return (float)code_value_double();
 	}
 
 	long code_value_long() {
-		return Integer.parseInt(cmdtokens[serial_count].substring(1));
+		return (long)code_value_double();
+	}
+
+	private double code_value_double() {
+		double value = paramValue[serial_count];
+		if(Double.isNaN(value))
+			throw new NumberFormatException("No value for parameter "+(char)('A'+serial_count)+" in "+cmdbuffer);
+		return value;
 	}
 	/**
-	 * Determine if parameter exists in command line token sequence
+	 * Determine if parameter follows the G or M code of the command line, a parameter may share the letter
+	 * of the code such as the M of M802
 	 * @param code
 	 * @return
 	 */
 	boolean code_seen(char code) {
-		serial_count = -1;
-		for(int i = 0; i < cmdtokens.length; i++) {
-			if( cmdtokens[i].charAt(0) == code ) {
-				serial_count = i;
-				return true;
-			}
-		}
-		return false;
+		int i = code - 'A';
+		serial_count = (i >= 0 && i < paramSeen.length && paramSeen[i] ? i : -1);
+		return serial_count != -1;
 	}
 
 	/**
 	 * Process command line
 	 */
 	ArrayList<String> process_commands() throws IOException {
-		ArrayList<String> ret = new ArrayList<String>();
-		if(code_seen('G')) {
-			int cval = (int)code_value();
-			return processGCode(cval);
-		} else {
-			if(code_seen('M') ) {
-				int cval = (int)code_value();
-				return processMCode(cval);
-			}
-		}
+		if(cmdLetter == 'G')
+			return processGCode(cmdCode);
+		if(cmdLetter == 'M')
+			return processMCode(cmdCode);
 		// if neither G nor M code
+		ArrayList<String> ret = new ArrayList<String>();
 		ret.add("Neither G nor M code encountered in command:"+cmdbuffer);
 		return ret;
 	}
+	/**
+	 * @return the acknowledgement of a G or M code, built the first time it is needed
+	 */
+	String ack(char letter, int cval) {
+		String[] acks = (letter == 'G' ? gacks : macks);
+		if(cval < 0 || cval >= acks.length)
+			return MSG_BEGIN+letter+cval+MSG_TERMINATE+NL;
+		if(acks[cval] == null)
+			acks[cval] = MSG_BEGIN+letter+cval+MSG_TERMINATE+NL;
+		return acks[cval];
+	}
+	/**
+	 * @return a sequence and value line of a report
+	 */
+	String report_line(int seq, long value, String eol) {
+		replyBuilder.setLength(0);
+		replyBuilder.append(seq).append(' ').append(value).append(eol);
+		return replyBuilder.toString();
+	}
+
+	private static ArrayList<String> single_reply(String line) {
+		ArrayList<String> ret = new ArrayList<String>(1);
+		ret.add(line);
+		return ret;
+	}
 
 	/**
 	 * Processing of G-code command sequence
 	 * @param cval
 	 */
 	ArrayList<String> processGCode(int cval) throws IOException {
-		ArrayList<String> ret = new ArrayList<String>();
 		if(DEBUG)
 			System.out.printf("%s processGCode %s%n", this.getClass().getName(), String.valueOf(cval));
-		switch(cval) {    
-		case 4: // G4 dwell
-			codenum = 0;
-			if(code_seen('P')) codenum = (int) code_value(); // milliseconds to wait
-			if(code_seen('S')) codenum = (int) (code_value() * 1000); // seconds to wait
-			codenum += System.currentTimeMillis();  // keep track of when we started waiting
-			previous_millis_cmd = System.currentTimeMillis();
-			while(previous_millis_cmd  < codenum ) {
-				manage_inactivity();
-				try {
-					Thread.sleep(1);
-					previous_millis_cmd = System.currentTimeMillis();
-				} catch (InterruptedException e) {
-					break;
-				}
+		CodeHandler handler = (cval >= 0 && cval < gcodes.length ? gcodes[cval] : null);
+		if(handler == null)
+			return single_reply(String.format("%s%s%s%s%n",MSG_BEGIN,MSG_UNKNOWN_GCODE,cmdbuffer,MSG_TERMINATE));
+		ArrayList<String> ret = handler.process();
+		if(ret == null)
+			return single_reply(String.format("%s%s:%s%s%n",MSG_BEGIN,MALFORMED_GCODE,cmdbuffer,MSG_TERMINATE));
+		return ret;
+	}
+	/**
+	 * G4 P&lt;millis&gt; or S&lt;seconds&gt; dwell
+	 */
+	ArrayList<String> dwell() throws IOException {
+		codenum = 0;
+		if(code_seen('P')) codenum = (int) code_value(); // milliseconds to wait
+		if(code_seen('S')) codenum = (int) (code_value() * 1000); // seconds to wait
+		previous_millis_cmd = clock.millis();
+		long deadline = previous_millis_cmd + codenum; // keep track of when we started waiting
+		while(previous_millis_cmd < deadline) {
+			manage_inactivity();
+			try {
+				clock.delay(1);
+				previous_millis_cmd = clock.millis();
+			} catch (InterruptedException e) {
+				break;
 			}
-			ret.add(String.format("%sG4%s%n",MSG_BEGIN,MSG_TERMINATE));
-			return ret;
-			//
-			// G5 [Z<controller>] C<Channel> [P<motor power -1000 to 1000>] [X<PWM power -1000 to 1000>(scaled 0-2000)]
-			// Primary code to command power level to a given controller on a given channel.
-			//
-		case 5:
-			if(!Stopped) {
-				if(code_seen('Z')) {
-					motorController = (int) code_value();
-				}
-				if(code_seen('C')) {
-					motorChannel = (int) code_value(); // channel 1,2
-					if(code_seen('P')) {
-						motorPower = (int) code_value(); // motor power -1000,1000
+		}
+		return single_reply(ack('G', 4));
+	}
+	/**
+	 * G5 [Z&lt;controller&gt;] C&lt;Channel&gt; [P&lt;motor power -1000 to 1000&gt;] [X&lt;PWM power -1000 to 1000&gt;(scaled 0-2000)]
+	 * Primary code to command power level to a given controller on a given channel.
+	 */
+	ArrayList<String> command_power() throws IOException {
+		ArrayList<String> ret = new ArrayList<String>(1);
+		if(!Stopped) {
+			if(code_seen('Z')) {
+				motorController = (int) code_value();
+			}
+			if(code_seen('C')) {
+				motorChannel = (int) code_value(); // channel 1,2
+				if(code_seen('P')) {
+					motorPower = (int) code_value(); // motor power -1000,1000
+					fault = 0; // clear fault flag
+					if(DEBUG)
+						System.out.printf("%s Command Motor Power control %s for slot %d%n", this.getClass().getName(), motorControl[motorController], motorController);
+					if( (status=motorControl[motorController].commandMotorPower(motorChannel, motorPower)) != 0) {
+						ret.add(String.format("%s%s%d %d %d%s%n",MSG_BEGIN,MSG_BAD_MOTOR,status,motorChannel,motorPower,MSG_TERMINATE));
+					} else {
+						ret.add(ack('G', 5));
+					}
+					if(DEBUG && status != 0)
+						System.out.printf("%s Commanded Motor Power control %s for slot %d status was %d%n", this.getClass().getName(), motorControl[motorController], motorController, status);
+					return ret;
+				} else {// code P or X
+					if(code_seen('X')) {
+						PWMLevel = (int) code_value(); // PWM level -1000,1000, scaled to 0-2000 in PWM controller, as no reverse
 						fault = 0; // clear fault flag
 						if(DEBUG)
-							System.out.printf("%s Command Motor Power control %s for slot %d%n", this.getClass().getName(), motorControl[motorController], motorController);
-						if( (status=motorControl[motorController].commandMotorPower(motorChannel, motorPower)) != 0) {
-							ret.add(String.format("%s%s%d %d %d%s%n",MSG_BEGIN,MSG_BAD_MOTOR,status,motorChannel,motorPower,MSG_TERMINATE));
+							System.out.printf("%s Command PWM Level control %s for slot %d%n", this.getClass().getName(), pwmControl[motorController], motorController);
+						// use motor related index and value, as we have them
+						if( (status=pwmControl[motorController].commandPWMLevel(motorChannel, PWMLevel)) != 0) {
+							ret.add(String.format("%s%s%d %d %d%s%n",MSG_BEGIN,MSG_BAD_PWM,status,motorChannel,PWMLevel,MSG_TERMINATE));
 						} else {
-							ret.add(String.format("%sG5%s%n",MSG_BEGIN,MSG_TERMINATE));
+							ret.add(ack('G', 5));
 						}
 						if(DEBUG && status != 0)
-							System.out.printf("%s Commanded Motor Power control %s for slot %d status was %d%n", this.getClass().getName(), motorControl[motorController], motorController, status);
+							System.out.printf("%s Commanded PWM Level control %s for slot %d status was %d%n", this.getClass().getName(), pwmControl[motorController], motorController, status);
 						return ret;
-					} else {// code P or X
-						if(code_seen('X')) {
-							PWMLevel = (int) code_value(); // PWM level -1000,1000, scaled to 0-2000 in PWM controller, as no reverse
-							fault = 0; // clear fault flag
-							if(DEBUG)
-								System.out.printf("%s Command PWM Level control %s for slot %d%n", this.getClass().getName(), pwmControl[motorController], motorController);
-							// use motor related index and value, as we have them
-							if( (status=pwmControl[motorController].commandPWMLevel(motorChannel, PWMLevel)) != 0) {
-								ret.add(String.format("%s%s%d %d %d%s%n",MSG_BEGIN,MSG_BAD_PWM,status,motorChannel,PWMLevel,MSG_TERMINATE));
-							} else {
-								ret.add(String.format("%sG5%s%n",MSG_BEGIN,MSG_TERMINATE));
-							}
-							if(DEBUG && status != 0)
-								System.out.printf("%s Commanded PWM Level control %s for slot %d status was %d%n", this.getClass().getName(), pwmControl[motorController], motorController, status);
-							return ret;
-						} // code X
-					}
-				} // code C
-			} // stopped
-			break;
-			//
-			// G99 start watchdog timer. G99 T<time_in_millis> values are 15,30,60,120,250,500,1000,4000,8000 default 4000
-			//
-		case 99:
-			if( code_seen('T') ) {
-				//int time_val = (int) code_value();
-				//watchdog_timer = new WatchdogTimer();
-				ret.add(String.format("%sG99%s%n",MSG_BEGIN,MSG_TERMINATE));
-				return ret;
-				//watchdog_timer.watchdog_init(time_val);
-			}
-			break;
-			//
-			// G100 reset watchog timer before time interval is expired, otherwise a reset occurs
-			//
-		case 100:
-			//if( watchdog_timer != null ) {
-			//	watchdog_timer.watchdog_reset();
-			//}
-			ret.add(String.format("%sG100%s%n",MSG_BEGIN,MSG_TERMINATE));
-			return ret;
-		default:
-			ret.add(String.format("%s%s%s%s%n",MSG_BEGIN,MSG_UNKNOWN_GCODE,cmdbuffer,MSG_TERMINATE));
-			return ret;
-		} // switch
-		ret.add(String.format("%s%s:%s%s%n",MSG_BEGIN,MALFORMED_GCODE,cmdbuffer,MSG_TERMINATE));
-		return ret;
+					} // code X
+				}
+			} // code C
+		} // stopped
+		return null;
+	}
+	/**
+	 * G99 T&lt;time_in_millis&gt; start watchdog timer, values are 15,30,60,120,250,500,1000,4000,8000 default 4000
+	 */
+	ArrayList<String> watchdog_start() {
+		if( code_seen('T') ) {
+			//int time_val = (int) code_value();
+			//watchdog_timer = new WatchdogTimer();
+			//watchdog_timer.watchdog_init(time_val);
+			return single_reply(ack('G', 99));
+		}
+		return null;
+	}
+	/**
+	 * G100 reset watchdog timer before time interval is expired, otherwise a reset occurs
+	 */
+	ArrayList<String> watchdog_reset() {
+		//if( watchdog_timer != null ) {
+		//	watchdog_timer.watchdog_reset();
+		//}
+		return single_reply(ack('G', 100));
 	}
 
 	/**
 	 * Process M codes
 	 * @param cval
 	 */
-	ArrayList<String> processMCode(int cval) {
-		ArrayList<String> ret = new ArrayList<String>();
+	ArrayList<String> processMCode(int cval) throws IOException {
 		if(DEBUG)
 			System.out.printf("%s processMCode %s%n", this.getClass().getName(), String.valueOf(cval));
+		CodeHandler handler = (cval >= 0 && cval < mcodes.length ? mcodes[cval] : null);
+		if(handler != null) {
+			ArrayList<String> ret = handler.process();
+			return (ret != null ? ret : single_reply(malformed_mcode()));
+		}
+		ArrayList<String> ret = new ArrayList<String>();
 		int motorController = 0; 
 		int PWMDriver = 0;  
 		switch( cval ) {
 		case 0: // M0 - Set real time output off
 			realtime_output = false;
-			ret.add(String.format("%sM0%s%n",MSG_BEGIN,MSG_TERMINATE));	
+			ret.add(ack('M', 0));	
 			return ret;
 		case 1: // M1 - Set real time output on 
 			realtime_output = true;
-			ret.add(String.format("%sM1%s%n",MSG_BEGIN,MSG_TERMINATE));
+			ret.add(ack('M', 1));
 			return ret;
 			//
 			// M2 [Z<slot>] [C<channel> W<encoder pin> E<default dir>] 
@@ -476,7 +870,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 				if(code_seen('E')) {
 					motorControl[motorController].setDefaultDirection(channel, (int) code_value());
 				}
-				ret.add(String.format("%sM2%s%n",MSG_BEGIN,MSG_TERMINATE));
+				ret.add(ack('M', 2));
 				return ret;
 			}
 			break;
@@ -547,7 +941,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 						return ret;
 					}
 				}
-				ret.add(String.format("%sM3%s%n",MSG_BEGIN,MSG_TERMINATE));
+				ret.add(ack('M', 3));
 				return ret;
 			} else { //motorcontrol[motorcontroller]
 				ret.add(String.format("%s%s%s%n",MSG_BEGIN,MSG_NO_CONTROL,MSG_TERMINATE));
@@ -623,7 +1017,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 						ret.add(String.format("%s%s:%s%s%n",MSG_BEGIN,MALFORMED_MCODE,gpioe,MSG_TERMINATE));
 						return ret;
 					}
-					ret.add(String.format("%sM4%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 4));
 					return ret;
 				} // code C
 			} else { //motorcontrol[motorcontroller]
@@ -710,7 +1104,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					//	ret.add(String.format("%s%s:%s%s%n",MSG_BEGIN,MALFORMED_MCODE,gpioe,MSG_TERMINATE));
 					//return ret;
 					//}
-					ret.add(String.format("%sM5%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 5));
 					return ret;
 				} // code C
 			} else { //motorcontrol[motorcontroller]
@@ -729,14 +1123,14 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			if( code_seen('S') ) {
 				if(motorControl[motorController] != null) {
 					motorControl[motorController].setMotorPowerScale((int) code_value());
-					ret.add(String.format("%sM6%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 6));
 					return ret;
 				}
 			} else {
 				if(code_seen('X')) {
 					if(pwmControl[motorController] != null) {
 						pwmControl[motorController].setPWMPowerScale((int) code_value());
-						ret.add(String.format("%sM6%s%n",MSG_BEGIN,MSG_TERMINATE));
+						ret.add(ack('M', 6));
 						return ret;
 					}
 				}
@@ -756,7 +1150,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					} catch (IOException e) {
 						e.printStackTrace();
 					}
-					ret.add(String.format("%sM7%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 7));
 					return ret;
 				}
 			} else {
@@ -766,7 +1160,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					} catch (IOException e) {
 						e.printStackTrace();
 					}
-					ret.add(String.format("%sM7%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 7));
 					return ret;
 				}
 			}
@@ -785,7 +1179,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					} catch (IOException e) {
 						e.printStackTrace();
 					}
-					ret.add(String.format("%sM8%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 8));
 					return ret;
 				}
 			} else {
@@ -795,7 +1189,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					} catch (IOException e) {
 						e.printStackTrace();
 					}
-					ret.add(String.format("%sM8%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 8));
 					return ret;
 				}
 			}
@@ -848,7 +1242,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 						ret.add(String.format("%s%s:%s%s%n",MSG_BEGIN,MALFORMED_MCODE,gpioe,MSG_TERMINATE));
 						return ret;
 					}
-					ret.add(String.format("%sM9%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 9));
 					return ret;
 				}
 			}
@@ -880,11 +1274,11 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 							motorControl[motorController] = null; // in case assignment below fails
 						}
 						try {
-							motorControl[motorController] = new RoboteqDevice(MAX_MOTOR_POWER);
+							motorControl[motorController] = createSmartController();
 						} catch (IOException e) {
 							e.printStackTrace();
 						}
-						ret.add(String.format("%sM10%s%n",MSG_BEGIN,MSG_TERMINATE));
+						ret.add(ack('M', 10));
 						return ret;
 					case 1: // type 1 Hbridge
 						// up to 10 channels, each channel has a direction pin (1), and a PWM pin (0)
@@ -905,7 +1299,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 							motorControl[motorController] = null; // in case assignment below fails
 						}
 						motorControl[motorController] = new HBridgeDriver(MAX_MOTOR_POWER);
-						ret.add(String.format("%sM10%s%n",MSG_BEGIN,MSG_TERMINATE));
+						ret.add(ack('M', 10));
 						return ret;
 					case 2: // type 2 Split bridge, each channel has 2 PWM pins and an enable pin, so up to 5 channels
 						if(motorControl[motorController] != null) {
@@ -930,7 +1324,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 							motorControl[motorController] = null; // in case assignment below fails
 						}
 						motorControl[motorController] = new SplitBridgeDriver(MAX_MOTOR_POWER);
-						ret.add(String.format("%sM10%s%n",MSG_BEGIN,MSG_TERMINATE));
+						ret.add(ack('M', 10));
 						return ret;
 					case 3: // type 3 Switch bridge, each channel has 2 GPIO pins for full forward and back, no PWM, and an enable pin
 						if(motorControl[motorController] != null) {
@@ -955,14 +1349,14 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 							motorControl[motorController] = null; // in case assignment below fails
 						}
 						motorControl[motorController] = new SwitchBridgeDriver();
-						ret.add(String.format("%sM10%s%n",MSG_BEGIN,MSG_TERMINATE));
+						ret.add(ack('M', 10));
 						return ret;
 					case 4: // Type 4 switch H-bridge
 						if(motorControl[motorController] != null) {
 							motorControl[motorController] = null; // in case assignment below fails
 						}
 						motorControl[motorController] = new SwitchHBridgeDriver();
-						ret.add(String.format("%sM10%s%n",MSG_BEGIN,MSG_TERMINATE));
+						ret.add(ack('M', 10));
 						return ret;
 					case 5: // Type 5 non-propulsion PWM driver 
 						if(pwmControl[motorController] != null) {
@@ -982,8 +1376,8 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 							//delete pwmControl[motorController];
 							pwmControl[motorController] = null; // in case assignment below fails
 						}
-						pwmControl[motorController] = new VariablePWMDriver();
-						ret.add(String.format("%sM10%s%n",MSG_BEGIN,MSG_TERMINATE));
+						pwmControl[motorController] = createPWMDriver();
+						ret.add(ack('M', 10));
 						return ret;
 					case 8: // type 8 delayed H-bridge. Like a regular H-bridge but with a reverse direction delay
 						// up to 10 channels, each channel has a direction pin (1), and a PWM pin (0)
@@ -998,7 +1392,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 							motorControl[motorController] = null; // in case assignment below fails
 						}
 						motorControl[motorController] = new DelayedHBridgeDriver(MAX_MOTOR_POWER);
-						ret.add(String.format("%sM10%s%n",MSG_BEGIN,MSG_TERMINATE));
+						ret.add(ack('M', 10));
 						return ret;
 					default:
 						ret.add(String.format("%sBAD CONTROLLER TYPE:%d%s%n",MSG_BEGIN,controllerType,MSG_TERMINATE));
@@ -1028,7 +1422,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 				if(code_seen('X')) {
 					if(pwmControl[motorController] != null) {
 						pwmControl[motorController].setDuration(channel, (int)code_value());
-						ret.add(String.format("%sM11%s%n",MSG_BEGIN,MSG_TERMINATE));
+						ret.add(ack('M', 11));
 						return ret;
 					}
 				} else {
@@ -1058,14 +1452,14 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 				if(code_seen('X')) {
 					if(pwmControl[motorController] != null) {
 						pwmControl[motorController].setMinPWMLevel(channel, (int)code_value());
-						ret.add(String.format("%sM12%s%n",MSG_BEGIN,MSG_TERMINATE));
+						ret.add(ack('M', 12));
 						return ret;
 					}
 				} else {
 					if( code_seen('P')) {
 						if(motorControl[motorController] != null) {
 							motorControl[motorController].setMinMotorPower(channel, (int)code_value());
-							ret.add(String.format("%sM12%s%n",MSG_BEGIN,MSG_TERMINATE));
+							ret.add(ack('M', 12));
 							return ret;
 						}
 					}
@@ -1083,13 +1477,13 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			if( code_seen('P') ) {
 				if(motorControl[motorController] != null) {
 					motorControl[motorController].setMaxMotorPower((int)code_value());
-					ret.add(String.format("%sM13%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 13));
 					return ret;
 				} else {
 					if(code_seen('X')) {
 						if(pwmControl[motorController] != null) {
 							pwmControl[motorController].setMaxPWMLevel((int)code_value());
-							ret.add(String.format("%sM13%s%n",MSG_BEGIN,MSG_TERMINATE));
+							ret.add(ack('M', 13));
 							return ret;
 						}
 					}
@@ -1133,7 +1527,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					//	ret.add(String.format("%s%s:%s%s%n",MSG_BEGIN,MALFORMED_MCODE,gpioe,MSG_TERMINATE));
 					//	return ret;
 					//}
-					ret.add(String.format("%sM14%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 14));
 					return ret;
 				}
 			}
@@ -1172,7 +1566,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					//	ret.add(String.format("%s%s:%s%s%n",MSG_BEGIN,MALFORMED_MCODE,gpioe,MSG_TERMINATE));
 					//	return ret;
 					//}
-					ret.add(String.format("%sM15%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 15));
 					return ret;
 				}
 			}
@@ -1245,7 +1639,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 						return ret;
 					}
 				}
-				ret.add(String.format("%sM16%s%n",MSG_BEGIN,MSG_TERMINATE));
+				ret.add(ack('M', 16));
 				return ret;
 			}
 			break;
@@ -1277,7 +1671,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					//	ret.add(String.format("%s%s:%s%s%n",MSG_BEGIN,MALFORMED_MCODE,gpioe,MSG_TERMINATE));
 					//	return ret;
 					//}
-					ret.add(String.format("%sM33%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 33));
 					return ret;
 				} // code_seen = 'P'
 			}
@@ -1287,7 +1681,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			// Clear all digital pins assigned outside motor controller directives
 			//
 		case 35:
-			ret.add(String.format("%sM35%s%n",MSG_BEGIN,MSG_TERMINATE));
+			ret.add(ack('M', 35));
 			return ret;
 			//
 			// M36 
@@ -1295,7 +1689,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			//
 		case 36: 
 			//Pins.unassignPins();
-			ret.add(String.format("%sM36%s%n",MSG_BEGIN,MSG_TERMINATE));
+			ret.add(ack('M', 36));
 			return ret;
 			//
 			// M37 - Clear all PWM pins, ALL MOTOR AND PWM DISABLED, perhaps not cleanly
@@ -1310,7 +1704,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 				  }
 				}
 			 */
-			ret.add(String.format("%sM37%s%n",MSG_BEGIN,MSG_TERMINATE));
+			ret.add(ack('M', 37));
 			return ret;
 			//
 			// M38  P<pin> - Remove PWM pin, MOTOR AND PWM DISABLED, perhaps not cleanly
@@ -1326,7 +1720,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 				//ppwms[i] = null;
 				//} // pwms == pin_number
 				//} // i iterate pwm array
-				ret.add(String.format("%sM38%s%n",MSG_BEGIN,MSG_TERMINATE));
+				ret.add(ack('M', 38));
 				return ret;
 				// } // unassign pin
 			} // code P
@@ -1346,7 +1740,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 				// break;
 				//}
 				//}
-				ret.add(String.format("%sM39%s%n",MSG_BEGIN,MSG_TERMINATE));
+				ret.add(ack('M', 39));
 				return ret;
 				//}
 			}
@@ -1366,7 +1760,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 				// break;
 				//}
 				//}
-				ret.add(String.format("%sM40%s%n",MSG_BEGIN,MSG_TERMINATE));
+				ret.add(ack('M', 40));
 				return ret;
 				//}
 			}
@@ -1379,7 +1773,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			pin_number = -1;
 			if (code_seen('P')) {
 				pin_number = (int)code_value();
-				ret.add(String.format("%sM41%s%n",MSG_BEGIN,MSG_TERMINATE));
+				ret.add(ack('M', 41));
 				return ret;
 			}
 			break;
@@ -1413,7 +1807,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 				    				 dpin.high();
 				    	 }
 				      }
-					ret.add(String.format("%sM42%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 42));
 					return ret;
 				  }
 			 */
@@ -1426,38 +1820,10 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			pin_number = -1;
 			if (code_seen('P')) {
 				pin_number = (int)code_value();
-				ret.add(String.format("%sM43%s%n",MSG_BEGIN,MSG_TERMINATE));
+				ret.add(ack('M', 43));
 				return ret;
 			}
 			break; 
-			//
-			// M44 P<pin> [U] - -Read digital pin with optional pullup
-			//
-		case 44:
-			pin_number = -1;
-			int res = 0;
-			if (code_seen('P')) {
-				pin_number = (int)code_value();
-				/*
-		          ipin = Pins.getInputPin(pin_number);
-		          switch(ipin.getState()) {
-		          	case LOW:
-		          		res = 0;
-		          		break;
-		          	case HIGH:
-		          		res = 1;
-		          		break;
-		          	default:
-		          		res = 0;
-		          		break;
-		          }
-				 */
-				ret.add(String.format("%s%s%s%n",MSG_BEGIN,digitalPinHdr,MSG_DELIMIT));
-				ret.add(String.format("0 %d%n",pin_number));
-				ret.add(String.format("1 %d%n",res));
-				ret.add(String.format("%s%s%s%n",MSG_BEGIN,digitalPinHdr,MSG_TERMINATE));
-			}
-			break;
 			//	
 			// M45 - set up PWM P<pin> S<power val 0-255> [F<frequency>]
 			// PWM duty cycle value between 0 and 255 multiplied by 100
@@ -1488,14 +1854,14 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					}
 				}
 			}
-			ret.add(String.format("%sM45%s%n",MSG_BEGIN,MSG_TERMINATE));
+			ret.add(ack('M', 45));
 			return ret;
 			//
 			// M46 -Read analog pin P<pin>
 			//
 		case 46:
 			pin_number = -1;
-			res = 0;
+			int res = 0;
 			if (code_seen('P')) {
 				pin_number = (int)code_value();
 				/*GpioPinAnalogInput apin = null;
@@ -1511,8 +1877,8 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			     res = (int) apin.getValue();
 				 */
 				ret.add(String.format("%s%s%s%n",MSG_BEGIN,analogPinHdr,MSG_DELIMIT));
-				ret.add(String.format("0 %d%n",pin_number));
-				ret.add(String.format("1 %d%n",res));
+				ret.add(report_line(0, pin_number, NL));
+				ret.add(report_line(1, res, NL));
 				ret.add(String.format(MSG_BEGIN,analogPinHdr,MSG_TERMINATE));
 				return ret;
 			}
@@ -1541,7 +1907,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 				     if( res < digitarg ) { // result < threshold is 0 by default
 						   return publishBatteryVolts(res);
 					 } else {
-						   ret.add(String.format("%sM47%s%n",MSG_BEGIN,MSG_TERMINATE));
+						   ret.add(ack('M', 47));
 						   return ret;
 					 }
 				 */
@@ -1549,7 +1915,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			break;
 
 		case 80: //
-			ret.add(String.format("%sM80%s%n",MSG_BEGIN,MSG_TERMINATE));
+			ret.add(ack('M', 80));
 			return ret;
 			//
 			// M81 [Z<slot>] X 
@@ -1601,16 +1967,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					}
 				}
 			}
-			ret.add(String.format("%sM81%s%n",MSG_BEGIN,MSG_TERMINATE));
-			return ret;
-			//
-			// M115
-			// Generate configuration report
-			//
-		case 115: 
-			ret.add(String.format("%s%s%s%n",MSG_BEGIN,MSG_M115_REPORT,MSG_DELIMIT));
-			ret.add(MSG_115_REPORT2);
-			ret.add(String.format("%s%s%s%n",MSG_BEGIN,MSG_M115_REPORT,MSG_TERMINATE));
+			ret.add(ack('M', 81));
 			return ret;
 			//
 			// M300 P<pin number>
@@ -1630,7 +1987,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 							break;
 					}
 					ret.add(String.format("%s%s%s%n",MSG_BEGIN,sonicCntrlHdr,MSG_DELIMIT));
-					ret.add(String.format("0 %d%n", uspin));
+					ret.add(report_line(0, uspin, NL));
 					ret.add(String.format("1 %d%n", psonics[i].getRange()));
 					ret.add(String.format("%s%s%s%n",MSG_BEGIN,sonicCntrlHdr,MSG_TERMINATE));
 					return ret;	
@@ -1648,7 +2005,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			for(int i = 0; i < psonics.length; i++) {
 				if(psonics[i] != null) {
 					psonics[i] = new Ultrasonic(uspin);
-					ret.add(String.format("%sM301%s%n",MSG_BEGIN,MSG_TERMINATE));
+					ret.add(ack('M', 301));
 					return ret;
 				}
 			}
@@ -1665,7 +2022,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					break;
 				}
 			}
-			ret.add(String.format("%sM302%s%n",MSG_BEGIN,MSG_TERMINATE));
+			ret.add(ack('M', 302));
 			return ret;
 
 			//case 303: // M303 - Check the analog inputs for all pins defined by successive M304 directives. Generate a read and output data if in range.
@@ -1696,14 +2053,14 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					res = (int) apin.getValue();
 					if( res >= analogRanges[0][i] && res <= analogRanges[1][i]) {
 						ret.add(String.format("%s%s%s%n",MSG_BEGIN,analogPinHdr,MSG_DELIMIT));
-						ret.add(String.format("0 %d%n",pin_number));
-						ret.add(String.format("1 %d%n",res));
+						ret.add(report_line(0, pin_number, NL));
+						ret.add(report_line(1, res, NL));
 						ret.add(String.format(MSG_BEGIN,analogPinHdr,MSG_TERMINATE));
 						return ret;
 					}
 				 */
 			}
-			ret.add(String.format("%sM304%s%n",MSG_BEGIN,MSG_TERMINATE));
+			ret.add(ack('M', 304));
 			return ret;
 
 			//
@@ -1725,7 +2082,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 					}
 				}
 			}
-			ret.add(String.format("%sM445%s%n",MSG_BEGIN,MSG_TERMINATE));
+			ret.add(ack('M', 445));
 			return ret;
 			//
 			// M500 
@@ -1768,35 +2125,6 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			//Config_PrintSettings();
 			//break;
 			//
-			// M700
-			// return stats regarding free memory and version
-			//
-		case 700:
-			sb = new StringBuilder();
-			sb.append(MSG_BEGIN);
-			sb.append(MSG_STATUS);
-			sb.append(MSG_DELIMIT);
-			sb.append("\r\n");
-			ret.add(sb.toString());
-			// Check startup - does nothing if bootloader sets MCUSR to 0
-			sb = new StringBuilder();
-			//sb.append(VERSION_STRING);
-			sb.append(MSG_CONFIGURATION_VER);
-			//sb.append(STRING_VERSION_CONFIG_H);
-			sb.append(MSG_AUTHOR);
-			//sb.append(STRING_CONFIG_H_AUTHOR);
-			sb.append(MSG_FREE_MEMORY);
-			sb.append("\r\n");
-			ret.add(sb.toString());
-			sb = new StringBuilder();
-			//sb.appendln(freeMemory());
-			sb.append(MSG_BEGIN);
-			sb.append(MSG_STATUS);
-			sb.append(MSG_TERMINATE);
-			sb.append("\r\n");
-			ret.add(sb.toString());
-			return ret;
-			//
 			// M701
 			// Report digital pins in use
 			//
@@ -1816,6 +2144,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			sb.append(MSG_TERMINATE);
 			sb.append("\r\n");
 			ret.add(sb.toString());
+			return ret;
 			//
 			// M702
 			// Report analog pins in use
@@ -1827,7 +2156,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			sb.append(MSG_DELIMIT);
 			sb.append("\r\n");
 			ret.add(sb.toString());
-			for(int i = 0; i < 16; i++) {
+			for(int i = 0; i < panalogs.length; i++) {
 				sb = new StringBuilder();
 				if( panalogs[i]  != null ) {
 					sb.append(panalogs[i]);
@@ -1841,6 +2170,7 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 			sb.append(MSG_TERMINATE);
 			sb.append("\r\n");
 			ret.add(sb.toString());
+			return ret;
 			//
 			// M703
 			// Report ultrasonic pins in use
@@ -2127,69 +2457,16 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 				return ret;
 			}
 			//
-			// M802 P<n> S<x> M<x>
-			// Acquire analog pin data 
-			// P=Pin number, S=number readings, M=microseconds per reading. 
+			// M800 S<1|0>
+			// Select binary framing of the serial stream after this response, S1 binary, S0 text
 			//
-		case 802:
-			// Publish <dataset> 0 - pin, 1-S - reading
-			sb = new StringBuilder();
-			/*
-		        GpioPinAnalogInput apin = null;
-				if( code_seen('P')) {
-					codenum = (int) code_value();
-					apin = Pins.getAnalogInputPin(codenum);
-					if(apin == null) {
-						try {
-							Pins.assignAnalogInputPin(codenum);
-						} catch(GpioPinExistsException gpioe) {
-							ret.add(String.format("%s%s:%s%s%n",MSG_BEGIN,MALFORMED_MCODE,gpioe,MSG_TERMINATE));
-							return ret;
-						}
-					}				
-				}
-			 */
-			nread = 0;
-			if( code_seen('S') ) {
-				nread = (int)code_value();
-			}
-			micros = 0;
-			if( code_seen('M')) {
-				micros = (int)code_value();
-			}
-			values = new int[nread];
-			for(int i = 0; i < nread; i++) {
-				//values[i] = (int) apin.getValue();
-				for(int j = 0; j < micros; j++)
-					try {
-						Thread.sleep(0,1000);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-			}
-			sb.append(MSG_BEGIN);
-			sb.append(analogPinHdr);
-			sb.append(MSG_DELIMIT);
-			sb.append("\r\n");
-			ret.add(sb.toString());
-			for(int i = 0; i <= nread; i++) {
-				sb = new StringBuilder();
-				sb.append(i); // sequence
-				sb.append(' ');
-				if(i == 0)
-					sb.append(codenum); // pin at reading 0
-				else
-					sb.append((values[i-1])); // value
-				sb.append("\r\n");
-				ret.add(sb.toString());
+		case 800:
+			if(code_seen('S')) {
+				binaryFraming = ((int)code_value() != 0);
+				ret.add(ack('M', 800));
+				return ret;
 			}
-			sb = new StringBuilder();
-			sb.append(MSG_BEGIN);
-			sb.append(analogPinHdr);
-			sb.append(MSG_TERMINATE);
-			sb.append("\r\n");
-			ret.add(sb.toString());	
-			return ret;
+			break;
 			//
 			// M999
 			// Reset
@@ -2227,6 +2504,12 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 
 		} // switch m code
 
+		ret.add(malformed_mcode());
+		return ret;
+
+	} //processMCode
+
+	private String malformed_mcode() {
 		StringBuilder sb = new StringBuilder();
 		sb.append(MSG_BEGIN);
 		sb.append(MALFORMED_MCODE);
@@ -2234,16 +2517,143 @@ public class MarlinspikeDataPort implements DataPortCommandInterface {
 		sb.append(cmdbuffer);
 		sb.append(MSG_TERMINATE);
 		sb.append("\r\n");
-		ret.add(sb.toString());
+		return sb.toString();
+	}
+	/**
+	 * M44 P&lt;pin&gt; [U] - Read digital pin with optional pullup
+	 */
+	ArrayList<String> digital_read() {
+		pin_number = -1;
+		int res = 0;
+		if (!code_seen('P'))
+			return null;
+		pin_number = (int)code_value();
+		/*
+		ipin = Pins.getInputPin(pin_number);
+		switch(ipin.getState()) {
+			case LOW:
+				res = 0;
+				break;
+			case HIGH:
+				res = 1;
+				break;
+			default:
+				res = 0;
+				break;
+		}
+		 */
+		ArrayList<String> ret = new ArrayList<String>(4);
+		ret.add(MSG_DIGITAL_PIN_BEGIN);
+		ret.add(report_line(0, pin_number, NL));
+		ret.add(report_line(1, res, NL));
+		ret.add(MSG_DIGITAL_PIN_END);
 		return ret;
+	}
+	/**
+	 * M110 [N&lt;line&gt;] - Set current line number, a line number prefix on this command has already been taken as the new value
+	 */
+	ArrayList<String> set_line_number() {
+		if(code_seen('N'))
+			gcode_LastN = (int)code_value();
+		return single_reply(ack('M', 110));
+	}
+	/**
+	 * M115 - Generate configuration report
+	 */
+	ArrayList<String> firmware_report() {
+		ArrayList<String> ret = new ArrayList<String>(3);
+		ret.add(MSG_M115_BEGIN);
+		ret.add(MSG_115_REPORT2);
+		ret.add(MSG_M115_END);
+		return ret;
+	}
+	/**
+	 * M700 - Return stats regarding free memory and version
+	 */
+	ArrayList<String> status_report() {
+		ArrayList<String> ret = new ArrayList<String>(3);
+		ret.add(MSG_STATUS_BEGIN);
+		// Check startup - does nothing if bootloader sets MCUSR to 0
+		//VERSION_STRING, STRING_VERSION_CONFIG_H, STRING_CONFIG_H_AUTHOR, freeMemory()
+		ret.add(MSG_STATUS_REPORT);
+		ret.add(MSG_STATUS_END);
+		return ret;
+	}
+	/**
+	 * M802 P&lt;n&gt; S&lt;x&gt; M&lt;x&gt; - Acquire analog pin data
+	 * P=Pin number, S=number readings, M=microseconds per reading.
+	 * Publish &lt;dataset&gt; 0 - pin, 1-S - reading
+	 */
+	ArrayList<String> acquire_analog() {
+		/*
+		GpioPinAnalogInput apin = null;
+		if( code_seen('P')) {
+			codenum = (int) code_value();
+			apin = Pins.getAnalogInputPin(codenum);
+			if(apin == null) {
+				try {
+					Pins.assignAnalogInputPin(codenum);
+				} catch(GpioPinExistsException gpioe) {
+					return single_reply(String.format("%s%s:%s%s%n",MSG_BEGIN,MALFORMED_MCODE,gpioe,MSG_TERMINATE));
+				}
+			}
+		}
+		 */
+		codenum = 0;
+		if( code_seen('P') ) {
+			codenum = (int)code_value(); // pin reported at reading 0
+		}
+		nread = 0;
+		if( code_seen('S') ) {
+			nread = (int)code_value();
+		}
+		micros = 0;
+		if( code_seen('M')) {
+			micros = (int)code_value();
+		}
+		if(values == null || values.length < nread)
+			values = new int[nread];
+		for(int i = 0; i < nread; i++) {
+			//values[i] = (int) apin.getValue();
+			try {
+				clock.delayMicroseconds(micros);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+		ArrayList<String> ret = new ArrayList<String>(nread + 3);
+		ret.add(MSG_ANALOG_PIN_BEGIN);
+		for(int i = 0; i <= nread; i++)
+			ret.add(report_line(i, (i == 0 ? codenum : values[i-1]), "\r\n")); // pin at reading 0, then the values
+		ret.add(MSG_ANALOG_PIN_END);
+		return ret;
+	}
 
-	} //processMCode
+	/**
+	 * Create the smart controller of M10 T0, a Roboteq on its own serial port. A subclass may return a model
+	 * of the controller to run without the hardware attached.
+	 * @return the controller
+	 * @throws IOException if the controller cannot be reached
+	 */
+	protected AbstractMotorControl createSmartController() throws IOException {
+		return new RoboteqDevice(MAX_MOTOR_POWER);
+	}
+	/**
+	 * Create the PWM driver of M10 T5, configured by M9. A subclass may return a model of the driver
+	 * to run without the GPIO headers.
+	 * @return the driver
+	 */
+	protected VariablePWMDriver createPWMDriver() {
+		return new VariablePWMDriver();
+	}
 
 	/**---------------------------------------------------
 	 * Arrive here at the end of each command processing iteration to check for status related events
 	 * ---------------------------------------------------
 	 */
 	void manage_inactivity() throws IOException {
+		if(max_inactive_time != 0 && clock.millis() - previous_millis_cmd > max_inactive_time)
+			stop();
 		// check motor controllers
 		for(int j =0; j < 10; j++) {
 			if(motorControl[j] != null) {
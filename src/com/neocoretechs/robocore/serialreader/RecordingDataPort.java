@@ -0,0 +1,143 @@
+package com.neocoretechs.robocore.serialreader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+/**
+ * Decorates a {@link DataPortCommandInterface} to record each command passed through {@link #sendCommand(String)}
+ * and the response to it, so a session with a real Marlinspike can be played back later by {@link ReplayDataPort}.<p>
+ * The recording is a compact binary file: a header of {@link #MAGIC} and {@link #VERSION}, then for each command
+ * the microseconds since the previous command was sent, the microseconds the port took to respond, the command,
+ * the count of response lines and the lines themselves, strings in modified UTF-8 as {@link DataOutputStream} writes them.
+ * All other calls go straight to the decorated port.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class RecordingDataPort implements DataPortCommandInterface {
+	private static boolean DEBUG = false;
+	public static final int MAGIC = 0x4D535243; // MSRC
+	public static final short VERSION = 1;
+	private final DataPortCommandInterface dataPort;
+	private final String fileName;
+	private DataOutputStream out = null;
+	private long lastSent = 0L;
+	private long recorded = 0L;
+	/**
+	 * @param dataPort the port whose traffic is recorded
+	 * @param fileName full path of the recording, replaced if it exists
+	 */
+	public RecordingDataPort(DataPortCommandInterface dataPort, String fileName) {
+		this.dataPort = dataPort;
+		this.fileName = fileName;
+	}
+	/**
+	 * Connect the decorated port and start the recording.
+	 */
+	@Override
+	public synchronized void connect(boolean writeable) throws IOException {
+		dataPort.connect(writeable);
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		lastSent = System.nanoTime();
+		if(DEBUG)
+			System.out.println("RecordingDataPort recording "+dataPort.getPortName()+" to "+fileName);
+	}
+
+	@Override
+	public boolean isConnected() throws IOException {
+		return dataPort.isConnected();
+	}
+	/**
+	 * Send the command to the decorated port and record it with its response and timing.
+	 */
+	@Override
+	public synchronized ArrayList<String> sendCommand(String command) throws IOException {
+		long sent = System.nanoTime();
+		ArrayList<String> response = dataPort.sendCommand(command);
+		long received = System.nanoTime();
+		if(out != null) {
+			out.writeInt((int)Math.min((sent - lastSent) / 1000L, Integer.MAX_VALUE));
+			out.writeInt((int)Math.min((received - sent) / 1000L, Integer.MAX_VALUE));
+			out.writeUTF(command);
+			if(response == null) {
+				out.writeShort(0);
+			} else {
+				out.writeShort(response.size());
+				for(String line : response)
+					out.writeUTF(line == null ? "" : line);
+			}
+			++recorded;
+		}
+		lastSent = sent;
+		return response;
+	}
+	/**
+	 * @return the number of commands recorded so far
+	 */
+	public long getRecorded() {
+		return recorded;
+	}
+	/**
+	 * Write any buffered records to the file.
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		if(out != null)
+			out.flush();
+	}
+
+	@Override
+	public int read() throws IOException {
+		return dataPort.read();
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		dataPort.write(c);
+	}
+	/**
+	 * Close the recording, then the decorated port.
+	 */
+	@Override
+	public synchronized void close() {
+		if(out != null) {
+			try {
+				out.flush();
+				out.close();
+			} catch (IOException e) {}
+			out = null;
+			if(DEBUG)
+				System.out.println("RecordingDataPort recorded "+recorded+" commands to "+fileName);
+		}
+		dataPort.close();
+	}
+
+	@Override
+	public String readLine() {
+		return dataPort.readLine();
+	}
+
+	@Override
+	public int bytesToRead() throws IOException {
+		return dataPort.bytesToRead();
+	}
+
+	@Override
+	public void writeLine(String output) throws IOException {
+		dataPort.writeLine(output);
+	}
+
+	@Override
+	public String getPortName() {
+		return dataPort.getPortName();
+	}
+
+	@Override
+	public String stringSettings() {
+		return dataPort.stringSettings()+" recording to "+fileName;
+	}
+
+}
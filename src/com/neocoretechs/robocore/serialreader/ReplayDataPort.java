@@ -0,0 +1,208 @@
+package com.neocoretechs.robocore.serialreader;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+/**
+ * Plays back a session captured by {@link RecordingDataPort}, standing in for the Marlinspike so the
+ * {@link com.neocoretechs.robocore.marlinspike.AsynchDemuxer} can be driven with recorded traffic.<p>
+ * The recording is read entirely on connect, so file access does not figure in the replay. Each call to
+ * {@link #sendCommand(String)} returns the next recorded response. As fast as possible the response is returned at once,
+ * with original timing the replay waits for the recorded gap since the previous command and then the recorded response time.
+ * A command that differs from the one recorded at that point is counted in {@link #getMismatches()} and answered with
+ * the recorded response anyway. When the recording is exhausted it starts over if looping, otherwise EOFException is thrown.<p>
+ * {@link #getCommands()} gives the recorded commands in order, to feed back through the demuxer.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class ReplayDataPort extends FileDataPort {
+	private static boolean DEBUG = false;
+	private final boolean originalTiming;
+	private boolean loop = false;
+	private boolean connected = false;
+	private String[] commands;
+	private int[] gapMicros;
+	private int[] responseMicros;
+	private String[][] responses;
+	private int count = 0;
+	private int next = 0;
+	private long lastSent = 0L;
+	private long mismatches = 0L;
+	private long replayed = 0L;
+	/**
+	 * @param fileName full path of the recording
+	 * @param originalTiming true to reproduce the recorded timing, false to replay as fast as possible
+	 */
+	public ReplayDataPort(String fileName, boolean originalTiming) {
+		super(fileName);
+		this.originalTiming = originalTiming;
+	}
+	/**
+	 * @param loop true to start the recording over when it is exhausted
+	 */
+	public void setLoop(boolean loop) {
+		this.loop = loop;
+	}
+	/**
+	 * Read the whole recording. The recording is never written, whatever writeable says.
+	 */
+	@Override
+	public synchronized void connect(boolean writeable) throws IOException {
+		this.writeable = writeable;
+		fin = new FileInputStream(port);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(fin))) {
+			if(in.readInt() != RecordingDataPort.MAGIC)
+				throw new IOException("Not a recording: "+port);
+			short version = in.readShort();
+			if(version != RecordingDataPort.VERSION)
+				throw new IOException("Unsupported recording version "+version+" in "+port);
+			commands = new String[64];
+			gapMicros = new int[64];
+			responseMicros = new int[64];
+			responses = new String[64][];
+			count = 0;
+			while(true) {
+				int gap;
+				try {
+					gap = in.readInt();
+				} catch(EOFException eof) {
+					break;
+				}
+				if(count == commands.length)
+					grow();
+				gapMicros[count] = gap;
+				responseMicros[count] = in.readInt();
+				commands[count] = in.readUTF();
+				String[] lines = new String[in.readUnsignedShort()];
+				for(int i = 0; i < lines.length; i++)
+					lines[i] = in.readUTF();
+				responses[count++] = lines;
+			}
+		} finally {
+			fin = null;
+		}
+		next = 0;
+		lastSent = System.nanoTime();
+		connected = true;
+		if(DEBUG)
+			System.out.println("ReplayDataPort read "+count+" commands from "+port+(originalTiming ? " original timing" : " as fast as possible"));
+	}
+
+	private void grow() {
+		int size = commands.length * 2;
+		commands = Arrays.copyOf(commands, size);
+		gapMicros = Arrays.copyOf(gapMicros, size);
+		responseMicros = Arrays.copyOf(responseMicros, size);
+		responses = Arrays.copyOf(responses, size);
+	}
+
+	@Override
+	public boolean isConnected() {
+		return connected;
+	}
+	/**
+	 * @return the recorded commands in the order they were sent
+	 */
+	public ArrayList<String> getCommands() {
+		ArrayList<String> ret = new ArrayList<String>(count);
+		for(int i = 0; i < count; i++)
+			ret.add(commands[i]);
+		return ret;
+	}
+	/**
+	 * @return the number of commands in the recording
+	 */
+	public int size() {
+		return count;
+	}
+	/**
+	 * @return the number of commands that differed from the recorded command they were answered for
+	 */
+	public long getMismatches() {
+		return mismatches;
+	}
+	/**
+	 * @return the number of responses replayed
+	 */
+	public long getReplayed() {
+		return replayed;
+	}
+	/**
+	 * Answer the command with the next recorded response.
+	 * @throws EOFException if the recording is exhausted and not looping
+	 */
+	@Override
+	public synchronized ArrayList<String> sendCommand(String command) throws IOException {
+		if(!connected)
+			throw new IOException("Replay "+port+" not connected");
+		if(next == count) {
+			if(!loop || count == 0)
+				throw new EOFException("Replay "+port+" exhausted after "+replayed+" commands");
+			next = 0;
+		}
+		int i = next++;
+		if(!commands[i].equals(command)) {
+			++mismatches;
+			if(DEBUG)
+				System.out.println("ReplayDataPort command "+command+" replayed as recorded "+commands[i]);
+		}
+		if(originalTiming) {
+			waitUntil(lastSent + gapMicros[i] * 1000L);
+			lastSent = System.nanoTime();
+			waitUntil(lastSent + responseMicros[i] * 1000L);
+		}
+		String[] lines = responses[i];
+		ArrayList<String> ret = new ArrayList<String>(lines.length);
+		for(String line : lines)
+			ret.add(line);
+		++replayed;
+		return ret;
+	}
+
+	private static void waitUntil(long deadline) {
+		long remaining;
+		while((remaining = deadline - System.nanoTime()) > 0)
+			LockSupport.parkNanos(remaining);
+	}
+
+	@Override
+	public int read() throws IOException {
+		throw new IOException("Replay "+port+" answers commands only");
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		throw new IOException("Replay "+port+" answers commands only");
+	}
+
+	@Override
+	public String readLine() {
+		return null;
+	}
+
+	@Override
+	public int bytesToRead() {
+		return 0;
+	}
+
+	@Override
+	public void writeLine(String output) throws IOException {
+		throw new IOException("Replay "+port+" answers commands only");
+	}
+
+	@Override
+	public synchronized void close() {
+		connected = false;
+	}
+
+	@Override
+	public String stringSettings() {
+		return port+(originalTiming ? " original timing" : " as fast as possible")+(loop ? " looping" : "");
+	}
+
+}
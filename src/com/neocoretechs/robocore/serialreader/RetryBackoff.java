@@ -0,0 +1,66 @@
+package com.neocoretechs.robocore.serialreader;
+/**
+ * How often and after what delays a device command refused with a retryable error, such as the BNO055 0x07
+ * BUS_OVER_RUN_ERROR, is sent again. The first retry waits the initial delay, each further retry the previous
+ * delay times the multiplier, up to the maximum delay. {@link #DEFAULT} is the fixed 10 retries 100 ms apart
+ * that {@link IMUSerialDataPort} has always made.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public final class RetryBackoff {
+	public static final RetryBackoff DEFAULT = new RetryBackoff(10, 100L, 1.0, 100L);
+	private final int retries;
+	private final long initialMillis;
+	private final double multiplier;
+	private final long maxMillis;
+	/**
+	 * @param retries times the command is sent again before giving up, 0 for none
+	 * @param initialMillis delay before the first retry
+	 * @param multiplier growth of the delay with each retry, 1 for a fixed delay
+	 * @param maxMillis longest delay
+	 */
+	public RetryBackoff(int retries, long initialMillis, double multiplier, long maxMillis) {
+		if(retries < 0 || initialMillis < 0 || multiplier < 1.0 || maxMillis < initialMillis)
+			throw new IllegalArgumentException("retries "+retries+" initial "+initialMillis+"ms multiplier "+multiplier+" max "+maxMillis+"ms");
+		this.retries = retries;
+		this.initialMillis = initialMillis;
+		this.multiplier = multiplier;
+		this.maxMillis = maxMillis;
+	}
+
+	public int getRetries() {
+		return retries;
+	}
+	/**
+	 * @param retry the retry about to be made, from 1
+	 * @return the delay before it in milliseconds
+	 */
+	public long getDelayMillis(int retry) {
+		double delay = initialMillis * Math.pow(multiplier, Math.max(0, retry - 1));
+		return delay >= maxMillis ? maxMillis : (long)delay;
+	}
+	/**
+	 * Wait before a retry.
+	 * @param retry the retry about to be made, from 1
+	 * @return false if there are no more retries, or the wait was interrupted
+	 */
+	public boolean backoff(int retry) {
+		if(retry > retries)
+			return false;
+		long delay = getDelayMillis(retry);
+		if(delay > 0) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RetryBackoff retries:%d initial:%dms multiplier:%.2f max:%dms", retries, initialMillis, multiplier, maxMillis);
+	}
+}
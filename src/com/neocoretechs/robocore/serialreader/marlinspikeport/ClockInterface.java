@@ -0,0 +1,32 @@
+package com.neocoretechs.robocore.serialreader.marlinspikeport;
+
+/**
+ * The time base of the Marlinspike emulation, after the millis, micros, delay and delayMicroseconds of the
+ * firmware. The {@link RealClock} follows the system clock. The {@link VirtualClock} only advances when the
+ * emulation waits on it or a test advances it, so a command sequence runs as fast as it can be processed and
+ * gives the same result every time.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public interface ClockInterface {
+	/**
+	 * @return milliseconds since an arbitrary origin
+	 */
+	public long millis();
+	/**
+	 * @return microseconds since the same origin as {@link #millis()}
+	 */
+	public long micros();
+	/**
+	 * Wait for the given number of milliseconds to pass on this clock.
+	 * @param ms milliseconds
+	 * @throws InterruptedException
+	 */
+	public void delay(long ms) throws InterruptedException;
+	/**
+	 * Wait for the given number of microseconds to pass on this clock.
+	 * @param us microseconds
+	 * @throws InterruptedException
+	 */
+	public void delayMicroseconds(long us) throws InterruptedException;
+}
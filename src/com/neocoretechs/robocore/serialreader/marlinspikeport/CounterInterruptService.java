@@ -1,6 +1,7 @@
 package com.neocoretechs.robocore.serialreader.marlinspikeport;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 //import com.pi4j.io.gpio.PinState;
 //import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
@@ -10,19 +11,19 @@ import java.io.IOException;
  * Interrupt service that increments a counter. It can be attached to any timer or pin change to provide a monotomically
  * increasing counter of the number of overflows/compares performed by the timer.
  * In PWM, this is used to determine the number of PWM 'cycles' performed to provide a dead man switch.
+ * The counter is atomic, so services from several threads are all counted and the handler fires once per maxcount.
  * Created: 9/9/2016 3:03:02 PM
  * @uthor Jonathan Groff Copyright (C) NeoCoreTechs 2022
  */ 
 public class CounterInterruptService implements InterruptServiceInterface {
 	private static boolean DEBUG = false;
-	private volatile int counter;
+	private final AtomicInteger counter = new AtomicInteger();
 	private int pin;
 	private int maxcount;
-	private InterruptServiceHandlerInterface ishi;
+	private volatile InterruptServiceHandlerInterface ishi;
 	public CounterInterruptService(int pin, int tmax) {
 		this.pin = pin;
 		this.maxcount = tmax;
-		counter = 0;
 	}
 	
 	public int getPin() {
@@ -30,11 +31,15 @@ public class CounterInterruptService implements InterruptServiceInterface {
 	}
 	
 	public int get_counter() {
-		return counter;
+		return counter.get();
 	}
 		
 	public void set_counter(int cntx) {
-		counter = cntx;
+		counter.set(cntx);
+	}
+	
+	public int getMaxCount() {
+		return maxcount;
 	}
 	
 	@Override
@@ -46,18 +51,35 @@ public class CounterInterruptService implements InterruptServiceInterface {
 	
 	@Override
 	public void service() throws IOException {
-		if( counter < maxcount ) {
-			++counter;
-		} else {
-			if(ishi != null)
-				ishi.handleInterrupt();
-			counter = 0;
+		if(count()) {
+			InterruptServiceHandlerInterface h = ishi;
+			if(h != null)
+				h.handleInterrupt();
+		}
+	}
+	/**
+	 * Count one, resetting the counter when it has reached maxcount.
+	 * @return true if the counter was reset, when the handler is due
+	 */
+	protected boolean count() {
+		while(true) {
+			int c = counter.get();
+			if(c < maxcount) {
+				if(counter.compareAndSet(c, c + 1))
+					return false;
+			} else if(counter.compareAndSet(c, 0)) {
+				return true;
+			}
 		}
 	}
 	
+	protected InterruptServiceHandlerInterface getInterruptServiceHandler() {
+		return ishi;
+	}
+	
 	@Override
 	public String toString() {
-		return String.format("CounterInterruptService pin:%d counter:%d max count:%d", pin, counter, maxcount);
+		return String.format("CounterInterruptService pin:%d counter:%d max count:%d", pin, counter.get(), maxcount);
 	}
 
 }
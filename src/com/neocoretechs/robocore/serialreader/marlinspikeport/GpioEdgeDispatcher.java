@@ -0,0 +1,367 @@
+package com.neocoretechs.robocore.serialreader.marlinspikeport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+/**
+ * Waits on every line with a handler attached and calls the handlers with each edge and its timestamp, in place of
+ * polling a line with sleeps.<p>
+ * One platform thread blocks in {@link GpioEdgeSource#await(int[], int, boolean[], long)} on all of the lines,
+ * reads the events of each ready line in a batch, and queues them on the line. The handlers run on a pool of
+ * virtual threads, or of a few platform threads, one task per line at a time, so the events of a line reach its
+ * handler in order and never concurrently, while a slow handler on one line does not hold up the others.
+ * If a line's queue fills because its handler cannot keep up, the newest events are dropped and counted.<p>
+ * {@link #awaitEdge(int, long)} blocks a caller until the next edge on a line, with or without a handler.
+ * {@link #getDefault()} is the dispatcher over libgpiod used by {@link PCInterrupts} and {@link Pins}.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class GpioEdgeDispatcher implements Closeable {
+	public static boolean DEBUG = false;
+	public static final int RISING = 1;
+	public static final int FALLING = 3;
+	static final int BATCH = 64; // events read from a line at once
+	static final int QUEUE = 1024; // events held for a line's handler
+	static final long WAIT_MILLIS = 100L; // longest wait before the lines are looked at again
+	private static volatile GpioEdgeDispatcher defaultDispatcher = null;
+	/**
+	 * Called for each edge on a line.
+	 */
+	@FunctionalInterface
+	public interface EdgeHandler {
+		/**
+		 * @param pin the header pin
+		 * @param edge {@link #RISING} or {@link #FALLING}
+		 * @param timestampNanos when the edge occurred, as the source reports it
+		 * @throws IOException passed on from the work done for the edge, reported by the dispatcher
+		 */
+		public void edge(int pin, int edge, long timestampNanos) throws IOException;
+	}
+	private final GpioEdgeSource source;
+	private final ExecutorService workers;
+	private final ConcurrentHashMap<Integer, Line> byPin = new ConcurrentHashMap<Integer, Line>();
+	private volatile Line[] lines = new Line[0];
+	private volatile boolean running = false;
+	private Thread waiter = null;
+	private final AtomicLong events = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong delivered = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	/**
+	 * @param source the lines
+	 * @param workers the number of platform threads running handlers, ignored for virtual threads
+	 * @param virtual true to run each handler task on a virtual thread
+	 */
+	public GpioEdgeDispatcher(GpioEdgeSource source, int workers, boolean virtual) {
+		this.source = source;
+		if(virtual) {
+			this.workers = Executors.newVirtualThreadPerTaskExecutor();
+		} else {
+			this.workers = Executors.newFixedThreadPool(workers, r -> {
+				Thread t = new Thread(r, "GpioEdgeHandler");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+	/**
+	 * The dispatcher over libgpiod, created on first use, its handlers on virtual threads unless
+	 * -Drobocore.gpio.virtual=false, then on -Drobocore.gpio.workers platform threads, default 2.
+	 * @return the dispatcher
+	 */
+	public static GpioEdgeDispatcher getDefault() {
+		if(defaultDispatcher == null) {
+			synchronized(GpioEdgeDispatcher.class) {
+				if(defaultDispatcher == null)
+					defaultDispatcher = new GpioEdgeDispatcher(new GpioNativeEdgeSource(),
+							Integer.getInteger("robocore.gpio.workers", 2),
+							!"false".equals(System.getProperty("robocore.gpio.virtual")));
+			}
+		}
+		return defaultDispatcher;
+	}
+	/**
+	 * Replace the dispatcher returned by {@link #getDefault()}, as with one over a simulated source.
+	 * @param dispatcher the dispatcher
+	 */
+	public static synchronized void setDefault(GpioEdgeDispatcher dispatcher) {
+		defaultDispatcher = dispatcher;
+	}
+	/**
+	 * @param edge {@link #RISING} or {@link #FALLING}
+	 * @return true if the lines of the dispatcher report that edge
+	 */
+	public boolean delivers(int edge) {
+		return source.delivers(edge);
+	}
+	/**
+	 * Call a handler for each edge on a pin, requesting the line if it is not already, replacing any handler it had.
+	 * @param pin the header pin
+	 * @param handler the handler
+	 * @throws IOException if the line cannot be requested
+	 */
+	public synchronized void attach(int pin, EdgeHandler handler) throws IOException {
+		line(pin).handler = handler;
+		if(DEBUG)
+			System.out.printf("%s attached pin %d handler %s%n", this.getClass().getName(), pin, handler);
+	}
+	/**
+	 * Stop calling the handler of a pin and release its line. Events already queued are dropped.
+	 * @param pin the header pin
+	 * @throws IOException if the release fails
+	 */
+	public synchronized void detach(int pin) throws IOException {
+		Line l = byPin.remove(pin);
+		if(l == null)
+			return;
+		l.handler = null;
+		synchronized(l) {
+			l.count = 0;
+			l.detached = true;
+			l.notifyAll();
+		}
+		lines = byPin.values().toArray(new Line[0]);
+		source.release(pin, l.line);
+		if(DEBUG)
+			System.out.printf("%s detached pin %d%n", this.getClass().getName(), pin);
+	}
+	/**
+	 * Wait for the next edge on a pin, requesting its line if needed.
+	 * @param pin the header pin
+	 * @param timeoutMillis the longest wait, 0 to wait indefinitely
+	 * @return {@link #RISING} or {@link #FALLING}, 0 if none came in time or the pin was detached
+	 * @throws IOException if the line cannot be requested
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public int awaitEdge(int pin, long timeoutMillis) throws IOException, InterruptedException {
+		Line l;
+		synchronized(this) {
+			l = line(pin);
+		}
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		synchronized(l) {
+			long seen = l.sequence;
+			while(l.sequence == seen && !l.detached) {
+				if(timeoutMillis == 0) {
+					l.wait();
+				} else {
+					long left = deadline - System.currentTimeMillis();
+					if(left <= 0)
+						return 0;
+					l.wait(left);
+				}
+			}
+			return l.sequence == seen ? 0 : l.lastEdge;
+		}
+	}
+	/**
+	 * Get the line of a pin, requesting it and starting the waiting thread as needed. Called holding the dispatcher lock.
+	 */
+	private Line line(int pin) throws IOException {
+		Line l = byPin.get(pin);
+		if(l == null) {
+			l = new Line(pin, source.request(pin));
+			byPin.put(pin, l);
+			lines = byPin.values().toArray(new Line[0]);
+			notifyAll();
+		}
+		if(!running) {
+			running = true;
+			waiter = new Thread(this::waitLoop, "GpioEdgeDispatcher");
+			waiter.setDaemon(true);
+			waiter.start();
+		}
+		return l;
+	}
+
+	private void waitLoop() {
+		int[] handles = new int[0];
+		boolean[] ready = new boolean[0];
+		int[] edges = new int[BATCH];
+		long[] timestamps = new long[BATCH];
+		while(running) {
+			Line[] ls = lines;
+			if(ls.length == 0) {
+				synchronized(this) {
+					while(running && lines.length == 0) {
+						try {
+							wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+				continue;
+			}
+			if(handles.length < ls.length) {
+				handles = new int[ls.length];
+				ready = new boolean[ls.length];
+			}
+			for(int i = 0; i < ls.length; i++)
+				handles[i] = ls[i].line;
+			try {
+				if(source.await(handles, ls.length, ready, WAIT_MILLIS) == 0)
+					continue;
+				for(int i = 0; i < ls.length; i++) {
+					if(!ready[i])
+						continue;
+					int n = source.read(handles[i], edges, timestamps, BATCH);
+					if(n <= 0)
+						continue;
+					events.addAndGet(n);
+					batches.incrementAndGet();
+					if(ls[i].post(edges, timestamps, n))
+						workers.execute(ls[i]);
+				}
+			} catch (IOException e) {
+				if(ls != lines) // a line was released under the wait
+					continue;
+				failures.incrementAndGet();
+				System.out.println(this.getClass().getName()+" "+e);
+				try {
+					Thread.sleep(WAIT_MILLIS);
+				} catch (InterruptedException ie) {
+					return;
+				}
+			}
+		}
+	}
+	/**
+	 * A requested line, its queue of events for the handler, and the task that drains the queue into the handler.
+	 */
+	private final class Line implements Runnable {
+		final int pin;
+		final int line;
+		volatile EdgeHandler handler = null;
+		final int[] edges = new int[QUEUE]; // guarded by this
+		final long[] timestamps = new long[QUEUE];
+		int head = 0, count = 0;
+		boolean scheduled = false;
+		boolean detached = false;
+		long sequence = 0L;
+		int lastEdge = 0;
+
+		Line(int pin, int line) {
+			this.pin = pin;
+			this.line = line;
+		}
+		/**
+		 * Queue events read from the line and wake any waiting for an edge.
+		 * @return true if the drain task must be scheduled
+		 */
+		synchronized boolean post(int[] e, long[] t, int n) {
+			if(detached)
+				return false;
+			sequence += n;
+			lastEdge = e[n - 1];
+			notifyAll();
+			if(handler == null)
+				return false;
+			for(int i = 0; i < n; i++) {
+				if(count == QUEUE) {
+					dropped.addAndGet(n - i);
+					break;
+				}
+				int tail = (head + count++) % QUEUE;
+				edges[tail] = e[i];
+				timestamps[tail] = t[i];
+			}
+			if(scheduled || count == 0)
+				return false;
+			scheduled = true;
+			return true;
+		}
+
+		@Override
+		public void run() {
+			while(true) {
+				int edge;
+				long timestamp;
+				EdgeHandler h;
+				synchronized(this) {
+					h = handler;
+					if(count == 0 || h == null) {
+						scheduled = false;
+						return;
+					}
+					edge = edges[head];
+					timestamp = timestamps[head];
+					head = (head + 1) % QUEUE;
+					--count;
+				}
+				try {
+					h.edge(pin, edge, timestamp);
+					delivered.incrementAndGet();
+				} catch (Exception e) {
+					failures.incrementAndGet();
+					System.out.println(GpioEdgeDispatcher.class.getName()+" pin "+pin+" handler "+e);
+				}
+			}
+		}
+	}
+	/**
+	 * @return events read from the lines
+	 */
+	public long getEvents() {
+		return events.get();
+	}
+	/**
+	 * @return reads of one or more events from a line
+	 */
+	public long getBatches() {
+		return batches.get();
+	}
+	/**
+	 * @return events passed to handlers
+	 */
+	public long getDelivered() {
+		return delivered.get();
+	}
+	/**
+	 * @return events dropped because a handler's queue was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	/**
+	 * @return failed waits and reads, and handlers that threw
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+	/**
+	 * Stop waiting, release the lines, and let the handlers running finish.
+	 */
+	@Override
+	public void close() throws IOException {
+		Thread t;
+		synchronized(this) {
+			running = false;
+			notifyAll();
+			t = waiter;
+			waiter = null;
+		}
+		if(t != null) {
+			try {
+				t.join(WAIT_MILLIS * 10);
+			} catch (InterruptedException e) {}
+		}
+		for(Integer pin : byPin.keySet().toArray(new Integer[0]))
+			detach(pin);
+		workers.shutdown();
+		try {
+			workers.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s pins=%s events=%d batches=%d delivered=%d dropped=%d failures=%d", this.getClass().getSimpleName(),
+				byPin.keySet(), events.get(), batches.get(), delivered.get(), dropped.get(), failures.get());
+	}
+}
@@ -0,0 +1,50 @@
+package com.neocoretechs.robocore.serialreader.marlinspikeport;
+
+import java.io.IOException;
+/**
+ * The lines a {@link GpioEdgeDispatcher} waits on for edge events. {@link GpioNativeEdgeSource} is libgpiod through
+ * {@link com.neocoretechs.robocore.GpioNative}, a test supplies a simulated one.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public interface GpioEdgeSource {
+	/**
+	 * Request edge events on a header pin.
+	 * @param pin the header pin
+	 * @return the line handle used in the other calls
+	 * @throws IOException if the line cannot be requested
+	 */
+	public int request(int pin) throws IOException;
+	/**
+	 * @param edge {@link GpioEdgeDispatcher#RISING} or {@link GpioEdgeDispatcher#FALLING}
+	 * @return true if the requested lines report that edge
+	 */
+	public boolean delivers(int edge);
+	/**
+	 * Release a line requested by {@link #request(int)}.
+	 * @param pin the header pin
+	 * @param line the line handle
+	 * @throws IOException if the release fails
+	 */
+	public void release(int pin, int line) throws IOException;
+	/**
+	 * Wait until one or more of the lines has events to read, or the timeout passes.
+	 * @param lines the line handles
+	 * @param count the number of lines
+	 * @param ready set true for each line with events, false otherwise
+	 * @param timeoutMillis the longest wait
+	 * @return the number of lines with events, 0 on timeout
+	 * @throws IOException if the wait fails
+	 */
+	public int await(int[] lines, int count, boolean[] ready, long timeoutMillis) throws IOException;
+	/**
+	 * Read the events waiting on a line, without waiting for more.
+	 * @param line the line handle
+	 * @param edges receives the edge of each event, {@link GpioEdgeDispatcher#RISING} or {@link GpioEdgeDispatcher#FALLING}
+	 * @param timestamps receives the time of each event in nanoseconds
+	 * @param max the most events to read
+	 * @return the number read
+	 * @throws IOException if the read fails
+	 */
+	public int read(int line, int[] edges, long[] timestamps, int max) throws IOException;
+}
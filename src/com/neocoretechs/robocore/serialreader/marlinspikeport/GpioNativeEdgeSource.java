@@ -0,0 +1,56 @@
+package com.neocoretechs.robocore.serialreader.marlinspikeport;
+
+import java.io.IOException;
+
+import com.neocoretechs.robocore.GpioNative;
+/**
+ * Edge events from libgpiod through {@link Pins#gpio}. The lines are requested for rising edge events by
+ * {@link Pins}, the only edge the JNI layer offers, and released by it. Falling edges are never delivered.<p>
+ * GpioNative waits on one line at a time with the timeout built into the library, so the lines are waited on in
+ * turn. Its events carry no timestamp, so each is stamped with System.nanoTime as it is read, and one event is read
+ * per line per wait, since asking whether another is waiting would block for the library timeout when none is.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class GpioNativeEdgeSource implements GpioEdgeSource {
+	private final GpioNative gpio = Pins.gpio;
+
+	@Override
+	public int request(int pin) throws IOException {
+		return Pins.assignAnalogInputPin(pin);
+	}
+
+	@Override
+	public boolean delivers(int edge) {
+		return edge == GpioEdgeDispatcher.RISING;
+	}
+
+	@Override
+	public void release(int pin, int line) throws IOException {
+		Pins.unassignPin(pin);
+	}
+
+	@Override
+	public int await(int[] lines, int count, boolean[] ready, long timeoutMillis) throws IOException {
+		int n = 0;
+		for(int i = 0; i < count; i++) {
+			int err = gpio.lineEventWait(lines[i]);
+			if(err < 0)
+				throw new IOException("lineEventWait error:"+err);
+			ready[i] = err > 0;
+			if(ready[i])
+				++n;
+		}
+		return n;
+	}
+
+	@Override
+	public int read(int line, int[] edges, long[] timestamps, int max) throws IOException {
+		int ret = gpio.lineEventRead(line);
+		if(ret < 0)
+			throw new IOException("lineEventRead error:"+ret);
+		timestamps[0] = System.nanoTime();
+		edges[0] = ret;
+		return 1;
+	}
+}
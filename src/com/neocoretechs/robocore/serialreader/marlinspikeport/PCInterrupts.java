@@ -5,6 +5,8 @@ import java.io.IOException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Services the interrupts attached to pins on each edge delivered by the {@link GpioEdgeDispatcher}. An interrupt that is
+ * also an {@link GpioEdgeDispatcher.EdgeHandler}, such as a {@link WheelEncoderService}, is given the edge and its timestamp.<p/>
  * The 'pins' referred to here are the WiringPi GPIO pin designations which map to the physical 40 pin header as follows:<p/>
  * Phy | WPi <br/>
  * 11  | 0		<br/>
@@ -45,15 +47,20 @@ public class PCInterrupts /*implements GpioPinListenerDigital, GpioPinListenerAn
 	 * @throws IOException 
 	 */
 	public void attachInterrupt(int pin, InterruptServiceInterface userFunc, double loValue, double hiValue) throws IOException {
-		PCintFunc.put(pin,userFunc);	
+		PCintFunc.put(pin,userFunc);
+		if(userFunc instanceof GpioEdgeDispatcher.EdgeHandler)
+			GpioEdgeDispatcher.getDefault().attach(pin, (GpioEdgeDispatcher.EdgeHandler)userFunc);
+		else
+			GpioEdgeDispatcher.getDefault().attach(pin, (p, edge, timestamp) -> userFunc.service());
 	}
 	
 	/**
 	 * Attach digital input pin to state change interrupt
 	 * @param pin
 	 * @param userFunc
-	 * @param mode
-	 * @throws IOException 
+	 * @param mode 1 to service rising edges, 0 falling edges, otherwise both
+	 * @throws IOException if the line cannot be requested, or the lines do not report the edges of the mode,
+	 * as libgpiod through {@link GpioNativeEdgeSource} reports rising edges only
 	 */
 	public void attachInterrupt(int pin, InterruptServiceInterface userFunc, int mode) throws IOException {
 		//if(pin >= PCintMode.length)
@@ -61,7 +68,25 @@ public class PCInterrupts /*implements GpioPinListenerDigital, GpioPinListenerAn
 		//PCintMode[pin] = mode;
 		//Pin pipin = Pins.getPin(pin);
 		//Pins.assignAnalogInputPin(pin);
+		int trigger = (mode == 1 ? GpioEdgeDispatcher.RISING : (mode == 0 ? GpioEdgeDispatcher.FALLING : -1));
+		GpioEdgeDispatcher dispatcher = GpioEdgeDispatcher.getDefault();
+		if(trigger == -1 ? !(dispatcher.delivers(GpioEdgeDispatcher.RISING) && dispatcher.delivers(GpioEdgeDispatcher.FALLING)) :
+			!dispatcher.delivers(trigger))
+			throw new IOException("Pin "+pin+" interrupt mode "+mode+" needs "+(trigger == GpioEdgeDispatcher.FALLING ? "falling" : "both")+
+					" edges, which the GPIO lines do not report");
 		PCintFunc.put(pin,userFunc);
+		if(userFunc instanceof GpioEdgeDispatcher.EdgeHandler) {
+			GpioEdgeDispatcher.EdgeHandler handler = (GpioEdgeDispatcher.EdgeHandler)userFunc;
+			dispatcher.attach(pin, (p, edge, timestamp) -> {
+				if(trigger == -1 || edge == trigger)
+					handler.edge(p, edge, timestamp);
+			});
+		} else {
+			dispatcher.attach(pin, (p, edge, timestamp) -> {
+				if(trigger == -1 || edge == trigger)
+					userFunc.service();
+			});
+		}
 		//Pins.pinsIn[pin] = Pins.assignInputPin(pin);
 		//Pins.pinsIn[pin].addListener(this);
 	}
@@ -75,8 +100,7 @@ public class PCInterrupts /*implements GpioPinListenerDigital, GpioPinListenerAn
 		//Pin pipin = Pins.getPin(pin);
 		PCintFunc.remove(pin);
 		//Pins.pinsIn[pin].removeListener(this);
-		Pins.pinsIn[pin] = 0;
-		Pins.unassignPin(pin);
+		GpioEdgeDispatcher.getDefault().detach(pin);
 	}
 	
 	/**
@@ -86,13 +110,14 @@ public class PCInterrupts /*implements GpioPinListenerDigital, GpioPinListenerAn
 	 */
 	public void detachAnalogInterrupt(int pin) throws IOException {
 		PCintFunc.remove(pin);	
-		Pins.unassignPin(pin);
+		GpioEdgeDispatcher.getDefault().detach(pin);
 	}
 	
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder("Pin Change Interrupts:\r\n");
 		PCintFunc.forEach((k,v) -> sb.append(String.format("Pin:%s Interrupt:%s%n",k,v)));
+		sb.append(GpioEdgeDispatcher.getDefault());
 		return sb.toString();
 	}
 
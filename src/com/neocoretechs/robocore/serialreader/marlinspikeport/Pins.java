@@ -90,8 +90,8 @@ public class Pins {
 			if((err = gpio.lineRelease(gpin)) < 0)
 				throw new IOException("unassignPin error:"+err);
 			Pin.remove("PIN_"+ipin);
-	  		pinsIn[gpin] = 0;
-	  		pinsOut[gpin] = 0;
+	  		pinsIn[ipin] = 0;
+	  		pinsOut[ipin] = 0;
 		}
 	}
 	
@@ -107,12 +107,18 @@ public class Pins {
 		return pin;
 	}
 	
-	private static int assignAnalogInputPin(int ipin) throws IOException {
+	/**
+	 * Request rising edge events on a pin, as {@link GpioNativeEdgeSource} does for the {@link GpioEdgeDispatcher}.
+	 * @param ipin the header pin
+	 * @return the line handle
+	 * @throws IOException
+	 */
+	static int assignAnalogInputPin(int ipin) throws IOException {
 		int pin = getPin("PIN_"+ipin);
 		if(pinsIn[ipin] == 0) {
 			if((err = gpio.lineRequestRisingEdgeEvents(pin)) < 0)
 				throw new IOException("lineRequestRisingEdgeEvents error:"+err);
-			pinsIn[pin] = pin;
+			pinsIn[ipin] = pin;
 		}
 		return pin;
 	}
@@ -132,24 +138,19 @@ public class Pins {
 			throw new IOException("lineSetValue error:"+ret);
 	}
 	/**
-	 * 
+	 * Wait for the next edge on the pin through the {@link GpioEdgeDispatcher}, which shares the line
+	 * with any interrupt attached to it.
 	 * @param pin
-	 * @return 1 rising edge, 3 falling edge, 0 unknown
+	 * @return 1 rising edge, 3 falling edge, 0 unknown, as when interrupted, with the interrupt status kept
 	 * @throws IOException
 	 */
 	public static int getAnalogInputPin(int ipin) throws IOException {
-		int pin = assignAnalogInputPin(ipin);
-		while((err = gpio.lineEventWait(pin)) == 0) {
-			try {
-				Thread.sleep(10);
-			} catch (InterruptedException e) {}
+		try {
+			return GpioEdgeDispatcher.getDefault().awaitEdge(ipin, 0);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
 		}
-		if(err < 0)
-			throw new IOException("lineEventWait error:"+err);
-		int ret = gpio.lineEventRead(pin);
-		if(ret < 0)
-			throw new IOException("lineEventRead error:"+ret);
-		return ret;
 		/*
 		switch(pin) {
 		case 37:
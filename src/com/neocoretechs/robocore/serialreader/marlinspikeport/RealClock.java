@@ -0,0 +1,41 @@
+package com.neocoretechs.robocore.serialreader.marlinspikeport;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The system clock as the time base of the Marlinspike emulation, the default.
+ * Delays of a millisecond or more sleep, shorter ones park for the remaining nanoseconds.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class RealClock implements ClockInterface {
+	private final long origin = System.nanoTime();
+
+	@Override
+	public long millis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin);
+	}
+
+	@Override
+	public long micros() {
+		return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - origin);
+	}
+
+	@Override
+	public void delay(long ms) throws InterruptedException {
+		if(ms > 0)
+			Thread.sleep(ms);
+	}
+
+	@Override
+	public void delayMicroseconds(long us) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(us);
+		long remaining;
+		while((remaining = deadline - System.nanoTime()) > 0) {
+			if(Thread.interrupted())
+				throw new InterruptedException();
+			LockSupport.parkNanos(remaining);
+		}
+	}
+}
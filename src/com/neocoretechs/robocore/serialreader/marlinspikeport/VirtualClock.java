@@ -0,0 +1,57 @@
+package com.neocoretechs.robocore.serialreader.marlinspikeport;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock for the Marlinspike emulation that stands still until something waits on it. A delay advances the time by
+ * the amount of the delay and returns at once, so a G4 dwell of minutes or an M802 acquisition of many readings completes
+ * as fast as it can be processed, and a test can {@link #advance(long)} the time between commands to reproduce exactly
+ * the timing of a sequence.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class VirtualClock implements ClockInterface {
+	private final AtomicLong micros;
+
+	public VirtualClock() {
+		this(0L);
+	}
+	/**
+	 * @param startMicros the starting time in microseconds
+	 */
+	public VirtualClock(long startMicros) {
+		micros = new AtomicLong(startMicros);
+	}
+
+	@Override
+	public long millis() {
+		return micros.get() / 1000L;
+	}
+
+	@Override
+	public long micros() {
+		return micros.get();
+	}
+
+	@Override
+	public void delay(long ms) throws InterruptedException {
+		delayMicroseconds(ms * 1000L);
+	}
+
+	@Override
+	public void delayMicroseconds(long us) throws InterruptedException {
+		if(Thread.interrupted())
+			throw new InterruptedException();
+		if(us > 0)
+			micros.addAndGet(us);
+	}
+	/**
+	 * Move the time forward as if the emulation had been idle.
+	 * @param us microseconds to advance
+	 */
+	public void advance(long us) {
+		if(us < 0)
+			throw new IllegalArgumentException("Time cannot go backwards:"+us);
+		micros.addAndGet(us);
+	}
+}
@@ -0,0 +1,263 @@
+package com.neocoretechs.robocore.serialreader.marlinspikeport;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+/**
+ * Wheel encoder on a pin served by the {@link GpioEdgeDispatcher}, counting every edge atomically, keeping the
+ * timestamps of the latest edges in a ring, and estimating the wheel rate from them.<p>
+ * As a {@link CounterInterruptService} it still counts to maxcount and calls its interrupt service handler, such as
+ * the PWM of the wheel, on each rollover. An {@link EncoderListener} is called directly from the edge for the
+ * rollover, for a tick target being reached, and for the rate crossing a limit, instead of waiting to be polled.<p>
+ * The rate is measured by period at low speed, over the last few edge intervals, and by frequency at high speed,
+ * from all of the edges within a gate time, timed from the first of them to the last so the count is not quantized
+ * by the gate. The method changes when the edges in the gate cross a threshold, with hysteresis. With no edge for
+ * longer than the last period the rate falls as the time since the last edge grows, and it is 0 after the stop time.
+ * The estimate is smoothed by an exponential filter with a time constant, updated whenever it is read.<p>
+ * Counts are exact with any number of threads calling {@link #edge(int, int, long)}, the timestamp ring assumes the
+ * edges of one line arrive one at a time, as the dispatcher delivers them.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class WheelEncoderService extends CounterInterruptService implements GpioEdgeDispatcher.EdgeHandler {
+	public static boolean DEBUG = false;
+	public static final int COUNT = 0; // maxcount edges since the last rollover
+	public static final int TARGET = 1; // the tick target was reached
+	public static final int OVERSPEED = 2; // the rate rose over the limit
+	static final int RING = 256; // timestamps kept, a power of 2
+	private static final int MASK = RING - 1;
+	static final int FREQUENCY_ENTER = 16; // edges in the gate to change to frequency measurement
+	static final int FREQUENCY_LEAVE = 12; // edges in the gate to change back to period measurement
+	/**
+	 * Called from the edge that raised the event.
+	 */
+	@FunctionalInterface
+	public interface EncoderListener {
+		/**
+		 * @param encoder the encoder
+		 * @param event {@link #COUNT}, {@link #TARGET} or {@link #OVERSPEED}
+		 * @param timestampNanos the time of the edge
+		 * @throws IOException passed on to the dispatcher
+		 */
+		public void encoderEvent(WheelEncoderService encoder, int event, long timestampNanos) throws IOException;
+	}
+	private final int ticksPerRevolution;
+	private final double wheelDiameter; // mm, 0 if not known
+	private final AtomicLong ticks = new AtomicLong();
+	private final AtomicLong position = new AtomicLong();
+	private final AtomicLongArray stamps = new AtomicLongArray(RING);
+	private final AtomicLong stamped = new AtomicLong(); // timestamps written to the ring
+	private volatile int direction = 1;
+	private volatile EncoderListener listener = null;
+	private volatile long target = Long.MAX_VALUE;
+	private volatile double speedLimit = 0.0; // ticks/s, 0 for none
+	private boolean overspeed = false; // written by the edge
+	private volatile int periodEdges = 4;
+	private long gateNanos = 100000000L;
+	private long stopNanos = 1000000000L;
+	private long tauNanos = 50000000L;
+	// smoothing, guarded by this
+	private long lastEstimate = Long.MIN_VALUE;
+	private double smoothed = 0.0;
+	private boolean frequencyMode = false;
+	/**
+	 * @param pin the encoder pin
+	 * @param maxcount edges between calls of the interrupt service handler
+	 * @param ticksPerRevolution edges per turn of the wheel
+	 * @param wheelDiameter mm, 0 if not known
+	 */
+	public WheelEncoderService(int pin, int maxcount, int ticksPerRevolution, double wheelDiameter) {
+		super(pin, maxcount);
+		this.ticksPerRevolution = ticksPerRevolution;
+		this.wheelDiameter = wheelDiameter;
+	}
+
+	@Override
+	public void edge(int pin, int edge, long timestampNanos) throws IOException {
+		long n = ticks.getAndIncrement();
+		long p = position.addAndGet(direction);
+		stamps.setOpaque((int)(n & MASK), timestampNanos);
+		stamped.setRelease(n + 1);
+		EncoderListener l = listener;
+		if(count()) {
+			InterruptServiceHandlerInterface h = getInterruptServiceHandler();
+			if(h != null)
+				h.handleInterrupt();
+			if(l != null)
+				l.encoderEvent(this, COUNT, timestampNanos);
+		}
+		long t = target;
+		if(t != Long.MAX_VALUE && (direction > 0 ? p >= t : p <= t)) {
+			target = Long.MAX_VALUE;
+			if(l != null)
+				l.encoderEvent(this, TARGET, timestampNanos);
+		}
+		double limit = speedLimit;
+		if(limit > 0 && n >= periodEdges) {
+			double rate = periodEdges * 1e9 / (timestampNanos - stamps.getOpaque((int)((n - periodEdges) & MASK)));
+			if(!overspeed && rate > limit) {
+				overspeed = true;
+				if(DEBUG)
+					System.out.printf("%s pin %d overspeed %.1f ticks/s%n", this.getClass().getName(), pin, rate);
+				if(l != null)
+					l.encoderEvent(this, OVERSPEED, timestampNanos);
+			} else if(overspeed && rate < limit * 0.9) {
+				overspeed = false;
+			}
+		}
+	}
+	/**
+	 * An edge without a timestamp, as from {@link PCInterrupts} through {@link InterruptServiceInterface}, stamped now.
+	 */
+	@Override
+	public void service() throws IOException {
+		edge(getPin(), GpioEdgeDispatcher.RISING, System.nanoTime());
+	}
+	/**
+	 * @return the edges counted since the encoder was created or reset
+	 */
+	public long getTicks() {
+		return ticks.get();
+	}
+	/**
+	 * @return the edges counted, each signed by the direction when it came
+	 */
+	public long getPosition() {
+		return position.get();
+	}
+	/**
+	 * @param direction 1 forward, -1 reverse, the sign of the position and rate as the wheel turns
+	 */
+	public void setDirection(int direction) {
+		this.direction = direction < 0 ? -1 : 1;
+	}
+
+	public int getDirection() {
+		return direction;
+	}
+
+	public void setListener(EncoderListener listener) {
+		this.listener = listener;
+	}
+	/**
+	 * Raise {@link #TARGET} once, when the position reaches a tick count in the present direction.
+	 * @param ticks the position, or Long.MAX_VALUE for none
+	 */
+	public void setTarget(long ticks) {
+		this.target = ticks;
+	}
+	/**
+	 * Raise {@link #OVERSPEED} when the rate over the last few edges rises over a limit, again once it has fallen
+	 * under 90% of it.
+	 * @param rpm the limit, 0 for none
+	 */
+	public void setSpeedLimit(double rpm) {
+		this.speedLimit = rpm * ticksPerRevolution / 60.0;
+	}
+	/**
+	 * @param periodEdges intervals averaged by period measurement
+	 * @param gateMillis the gate of frequency measurement
+	 * @param stopMillis time without an edge after which the wheel is stopped
+	 * @param tauMillis time constant of the smoothing, 0 for none
+	 */
+	public synchronized void setEstimation(int periodEdges, long gateMillis, long stopMillis, long tauMillis) {
+		this.periodEdges = Math.max(1, Math.min(RING - 1, periodEdges));
+		this.gateNanos = gateMillis * 1000000L;
+		this.stopNanos = stopMillis * 1000000L;
+		this.tauNanos = tauMillis * 1000000L;
+	}
+	/**
+	 * Clear the counts, ring and estimate, as when the wheel is stopped and its encoder reset.
+	 */
+	public synchronized void reset() {
+		set_counter(0);
+		ticks.set(0L);
+		position.set(0L);
+		stamped.set(0L);
+		lastEstimate = Long.MIN_VALUE;
+		smoothed = 0.0;
+		frequencyMode = false;
+	}
+	/**
+	 * @param nowNanos the present time on the clock of the edge timestamps
+	 * @return the smoothed rate in edges per second, signed by the direction
+	 */
+	public synchronized double getRate(long nowNanos) {
+		double raw = rawRate(nowNanos);
+		if(lastEstimate == Long.MIN_VALUE || tauNanos <= 0 || raw == 0.0) { // stopped is stopped
+			smoothed = raw;
+		} else if(nowNanos > lastEstimate) {
+			smoothed += (1.0 - Math.exp(-(double)(nowNanos - lastEstimate) / tauNanos)) * (raw - smoothed);
+		}
+		lastEstimate = nowNanos;
+		return smoothed * direction;
+	}
+
+	public double getRate() {
+		return getRate(System.nanoTime());
+	}
+	/**
+	 * @return the smoothed wheel speed in revolutions per minute, signed by the direction
+	 */
+	public double getRPM(long nowNanos) {
+		return getRate(nowNanos) * 60.0 / ticksPerRevolution;
+	}
+
+	public double getRPM() {
+		return getRPM(System.nanoTime());
+	}
+	/**
+	 * @return the smoothed rim speed in mm/s, signed by the direction, 0 if the wheel diameter is not known
+	 */
+	public double getVelocity(long nowNanos) {
+		return getRate(nowNanos) * Math.PI * wheelDiameter / ticksPerRevolution;
+	}
+
+	public double getVelocity() {
+		return getVelocity(System.nanoTime());
+	}
+	/**
+	 * @return true if the last estimate was by frequency, false by period
+	 */
+	public synchronized boolean isFrequencyMode() {
+		return frequencyMode;
+	}
+	/**
+	 * The unsmoothed rate from the timestamp ring, retried a few times if the ring is overwritten under the read.
+	 */
+	private double rawRate(long now) {
+		for(int attempt = 0; ; attempt++) {
+			long s = stamped.getAcquire();
+			if(s < 2)
+				return 0.0;
+			int avail = (int)Math.min(s, RING);
+			long last = stamps.getOpaque((int)((s - 1) & MASK));
+			long age = now - last;
+			if(age >= stopNanos)
+				return 0.0;
+			long gateStart = now - gateNanos;
+			int inGate = 0;
+			while(inGate < avail && stamps.getOpaque((int)((s - 1 - inGate) & MASK)) > gateStart)
+				++inGate;
+			boolean frequency = frequencyMode ? inGate >= FREQUENCY_LEAVE : inGate >= FREQUENCY_ENTER;
+			int intervals = frequency ? inGate - 1 : Math.min(periodEdges, avail - 1);
+			long first = stamps.getOpaque((int)((s - 1 - intervals) & MASK));
+			int depth = Math.max(inGate, intervals + 1);
+			if(attempt < 4 && stamped.getAcquire() - s > RING - depth) // overwritten while read
+				continue;
+			if(last <= first)
+				return 0.0;
+			double rate = intervals * 1e9 / (last - first);
+			if(!frequency && age * rate > 1e9) // no edge for longer than a period, slowing
+				rate = 1e9 / age;
+			frequencyMode = frequency;
+			return rate;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("WheelEncoderService pin:%d ticks:%d position:%d counter:%d max count:%d ticks/rev:%d",
+				getPin(), ticks.get(), position.get(), get_counter(), getMaxCount(), ticksPerRevolution);
+	}
+}
@@ -5,6 +5,7 @@ import java.io.IOException;
 import com.neocoretechs.robocore.serialreader.Ultrasonic;
 import com.neocoretechs.robocore.serialreader.marlinspikeport.CounterInterruptService;
 import com.neocoretechs.robocore.serialreader.marlinspikeport.PCInterrupts;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.WheelEncoderService;
 
 /**
 * AbstractMotorControl
@@ -29,6 +30,10 @@ import com.neocoretechs.robocore.serialreader.marlinspikeport.PCInterrupts;
 * 4) The motorSpeed is indexed by channel and the value is the range that comes from the main controller, before any processing into a timer value.
 * 5) the current direction and default direction have different meanings depending on subclass.
 *
+* Commands and their state are serialized on the controller: commandMotorPower and commandEmergencyStop of the drivers
+* are synchronized, as are the speed and encoder resets here, since the encoder rollover stops the motors from the edge
+* dispatcher while the command thread drives them.
+*
 * Types of low level DC drivers supported:
 * HBridge - A low level motor PWM driver that uses 1 enable pin with 2 states (logic high/low), to drive a mortor in the forward or backward direction.
 * This is the most common type of low level PWM DC motor driver.
@@ -71,6 +76,8 @@ public abstract class AbstractMotorControl {
 	protected int[] currentDirection = new int[]{0,0,0,0,0,0,0,0,0,0};
 	protected int[] defaultDirection = new int[]{0,0,0,0,0,0,0,0,0,0};
 	protected int[] minMotorPower = new int[]{0,0,0,0,0,0,0,0,0,0}; // Offset to add to G5, use with care, meant to compensate for mechanical differences
+	protected int[] encoderTicksPerRevolution = new int[]{1,1,1,1,1,1,1,1,1,1}; // encoder edges per wheel turn
+	protected double[] wheelDiameter = new double[]{0,0,0,0,0,0,0,0,0,0}; // mm, 0 if not known
 	protected CounterInterruptService[] wheelEncoderService = new CounterInterruptService[channels]; // encoder service
 	protected PCInterrupts[] wheelEncoder = new PCInterrupts[channels];
 	protected int MOTORPOWERSCALE = 1; // Motor scale, divisor for motor power to reduce 0-1000 scale from controller
@@ -136,13 +143,44 @@ public abstract class AbstractMotorControl {
 		//if( shutdown ) commandEmergencyStop(8);
 		return shutdown;
 	}
+	/**
+	 * Create the encoder service of a channel. Its rollover at maxMotorDuration stops the motors directly from the edge,
+	 * rather than when {@link #checkEncoderShutdown()} is next polled. The stop holds the controller so it runs
+	 * before or after a command in progress on the command thread, never within it.
+	 * @param channel
+	 * @param encode_pin
+	 * @return the service
+	 */
+	protected WheelEncoderService createEncoderService(int channel, int encode_pin) {
+		WheelEncoderService service = new WheelEncoderService(encode_pin, maxMotorDuration[channel-1],
+				encoderTicksPerRevolution[channel-1], wheelDiameter[channel-1]);
+		service.setListener((encoder, event, timestamp) -> {
+			if(event == WheelEncoderService.COUNT) {
+				synchronized(this) {
+					if(isRunning()) {
+						if(DEBUG)
+							System.out.printf("%s Encoder shutdown raised by pin %d%n", this.getClass().getName(), encoder.getPin());
+						commandEmergencyStop(10);
+					}
+				}
+			}
+		});
+		return service;
+	}
+	
+	private boolean isRunning() {
+		for(int i = 0; i < channels; i++)
+			if( motorSpeed[i] != 0 )
+				return true;
+		return false;
+	}
 	/**
 	* If we are using an encoder check the interval since last command.
 	* Interrupt service counter counts number of timer compare match resets.
 	* If number is exceeded issue shutdown and await next G5.
 	* This shutdown is to prevent unchecked freewheeling.
 	*/
-	public boolean checkEncoderShutdown() throws IOException {
+	public synchronized boolean checkEncoderShutdown() throws IOException {
 		boolean running = false;
 		for(int i = 0; i < channels; i++)
 			if( motorSpeed[i] != 0 ) {
@@ -173,7 +211,7 @@ public abstract class AbstractMotorControl {
 	 * @throws IOException 
 	 */
 	public void createEncoder(int channel, int encode_pin, int interrupt_pin) throws IOException {
-		wheelEncoderService[channel-1] = new CounterInterruptService(encode_pin, maxMotorDuration[channel-1]);
+		wheelEncoderService[channel-1] = createEncoderService(channel, encode_pin);
 		setInterruptServiceHandler(interrupt_pin);
 		// eventually, wheelEncoderService[channel-1].setInterruptServiceHandler(concrete instance of pin);
 		wheelEncoder[channel-1] = new PCInterrupts();
@@ -188,7 +226,7 @@ public abstract class AbstractMotorControl {
 	 */
 	public void createEncoder(int channel, int encode_pin, double lowVal, double highVal, int counts, int interrupt_pin) throws IOException {
 		maxMotorDuration[channel-1] = counts;
-		wheelEncoderService[channel-1] = new CounterInterruptService(encode_pin, maxMotorDuration[channel-1]);
+		wheelEncoderService[channel-1] = createEncoderService(channel, encode_pin);
 		setInterruptServiceHandler(interrupt_pin);
 		wheelEncoder[channel-1] = new PCInterrupts();
 		wheelEncoder[channel-1].attachInterrupt(encode_pin, wheelEncoderService[channel-1], lowVal, highVal); 
@@ -199,11 +237,12 @@ public abstract class AbstractMotorControl {
 	 * @param channel
 	 * @param encode_pin
 	 * @param ps PinState.HIGH or PinState.LOW
-	 * @throws IOException 
+	 * @throws IOException if the line cannot be requested, or the GPIO lines do not report the edge of the state,
+	 * as libgpiod reports no falling edges for PinState.LOW
 	 */
 	public void createDigitalEncoder(int channel, int encode_pin, int ps, int counts, int interrupt_pin) throws IOException {
 		maxMotorDuration[channel-1] = counts;
-		wheelEncoderService[channel-1] = new CounterInterruptService(encode_pin, maxMotorDuration[channel-1]);
+		wheelEncoderService[channel-1] = createEncoderService(channel, encode_pin);
 		setInterruptServiceHandler(interrupt_pin);
 		wheelEncoder[channel-1] = new PCInterrupts();
 		wheelEncoder[channel-1].attachInterrupt(encode_pin, wheelEncoderService[channel-1], ps); // trigger at digital pin state
@@ -221,6 +260,34 @@ public abstract class AbstractMotorControl {
 			return wheelEncoderService[ch-1].get_counter();
 		return -1;
 	}
+	/**
+	 * @param ch
+	 * @return edges counted by the encoder of the channel, -1 if it has none
+	 */
+	public long getEncoderTicks(int ch) {
+		if( wheelEncoderService[ch-1] instanceof WheelEncoderService )
+			return ((WheelEncoderService)wheelEncoderService[ch-1]).getTicks();
+		return -1;
+	}
+	/**
+	 * @param ch
+	 * @return smoothed wheel speed from the encoder of the channel, 0 if it has none
+	 */
+	public double getEncoderRPM(int ch) {
+		if( wheelEncoderService[ch-1] instanceof WheelEncoderService )
+			return ((WheelEncoderService)wheelEncoderService[ch-1]).getRPM();
+		return 0;
+	}
+	/**
+	 * Set the encoder resolution and wheel size of a channel, before its encoder is created.
+	 * @param ch
+	 * @param ticksPerRevolution encoder edges per wheel turn
+	 * @param diameter wheel diameter in mm
+	 */
+	public void setEncoderResolution(int ch, int ticksPerRevolution, double diameter) {
+		encoderTicksPerRevolution[ch-1] = ticksPerRevolution;
+		wheelDiameter[ch-1] = diameter;
+	}
 	public int totalUltrasonics() {  
 		int j = 0; 
 		for(int i = 0; i < channels; i++) 
@@ -235,7 +302,7 @@ public abstract class AbstractMotorControl {
 	public int getMinMotorPower(int ch) { return minMotorPower[ch-1] ; }
 	public int getMaxMotorPower() { return MAXMOTORPOWER; }
 	public void setMaxMotorPower(int p) { MAXMOTORPOWER = p; }
-	public void setMotorSpeed(int... speed) {
+	public synchronized void setMotorSpeed(int... speed) {
 		MOTORSHUTDOWN = false;
 		motorSpeed = speed;
 	}
@@ -246,11 +313,11 @@ public abstract class AbstractMotorControl {
 	public CounterInterruptService getWheelEncoderService(int ch) { return wheelEncoderService[ch-1]; }
 	public void setChannels(int ch) { channels = ch; }
 	public int getChannels() { return channels; }
-	public void resetSpeeds() {
+	public synchronized void resetSpeeds() {
 		for(int i = 0; i < channels; i++) 
 			motorSpeed[i] = 0; // all channels down
 	}
-	public void resetEncoders() {
+	public synchronized void resetEncoders() {
 		for(int i = 0; i < channels; i++) {
 			if( wheelEncoderService[i] != null) {
 				wheelEncoderService[i].set_counter(0);
@@ -101,7 +101,7 @@ public class RoboteqDevice extends AbstractSmartMotorControl implements Marlinsp
      * @param p power levels per channel (-1000, 1000)
      * @return ROBOTEQ_OK if successful 
      */
-	public int commandMotorPower(int... p) throws IOException {
+	public synchronized int commandMotorPower(int... p) throws IOException {
 		/*
 		* Command the motor to spin. May reset current direction. Encoders reset regardless if present. Checks for ultrasonic shutdown if present.
 		* p - power level -1000 to 10000
@@ -154,7 +154,7 @@ public class RoboteqDevice extends AbstractSmartMotorControl implements Marlinsp
 		return fault_flag;
 	}
 
-	private int sendCommand(String commandx) {
+	private synchronized int sendCommand(String commandx) {
 		int res;
 		if(DEBUG)
 			System.out.printf("%s sending command %s%n", this.getClass().getName(),commandx);
@@ -212,7 +212,7 @@ public class RoboteqDevice extends AbstractSmartMotorControl implements Marlinsp
 		return buf.toString().length();
 	}
 
-	private int sendQuery(String commandx, StringBuilder response) {
+	private synchronized int sendQuery(String commandx, StringBuilder response) {
 		if(DEBUG)
 			System.out.printf("%s sending query:%s%n", this.getClass().getName(),commandx);
 		try {
@@ -244,11 +244,9 @@ public class RoboteqDevice extends AbstractSmartMotorControl implements Marlinsp
      * @param status pass as ROBOTEQ_OK to return success
      * @return passed status param
      */
-	public int commandEmergencyStop(int status) throws IOException {
-		for(int ch = 0; ch < getChannels(); ch++) {
-			command = String.format("!G %02d %d\r", ch+1, 0);
-			this.sendCommand(command);
-		}
+	public synchronized int commandEmergencyStop(int status) throws IOException {
+		for(int ch = 0; ch < getChannels(); ch++) // not through command, the encoder stop may come while it is in use
+			this.sendCommand(String.format("!G %02d %d\r", ch+1, 0));
 		fault_flag = 16;
 		resetSpeeds();
 		resetEncoders();
@@ -97,7 +97,7 @@ public class SplitBridgeDriver extends HBridgeDriver {
 	}
 	
 	@Override
-	public int commandMotorPower(int... motorPower) throws IOException {
+	public synchronized int commandMotorPower(int... motorPower) throws IOException {
 		// check shutdown override
 		if( MOTORSHUTDOWN )
 			return 0;
@@ -222,7 +222,7 @@ public class SplitBridgeDriver extends HBridgeDriver {
 	}
 
 	@Override
-	public int commandEmergencyStop(int status) throws IOException {
+	public synchronized int commandEmergencyStop(int status) throws IOException {
 		for(int j=1; j <= channels; j++) {
 			int pindex = getMotorPWMIndex(j);
 			if(pindex != 255) {
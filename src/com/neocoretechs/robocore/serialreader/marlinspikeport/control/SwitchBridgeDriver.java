@@ -81,7 +81,7 @@ public class SwitchBridgeDriver extends AbstractMotorControl {
 	 * Power either 0 or 1, gpio is on/off, so enable/low, forward, enable/high back
 	 * @throws IOException 
 	 */
-	public int commandMotorPower(int... motorPower) throws IOException {
+	public synchronized int commandMotorPower(int... motorPower) throws IOException {
 		// check shutdown override
 		if( MOTORSHUTDOWN )
 			return 0;
@@ -143,7 +143,7 @@ public class SwitchBridgeDriver extends AbstractMotorControl {
 	}
 
 	@Override
-	public int commandEmergencyStop(int status) throws IOException {
+	public synchronized int commandEmergencyStop(int status) throws IOException {
 		for(int j=1; j <= channels; j++) {
 			if(getMotorDigitalPin(j) != 255) {
 				Pins.getOutputPin(getMotorEnablePin(j),0);
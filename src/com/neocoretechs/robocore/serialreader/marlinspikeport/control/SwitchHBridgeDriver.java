@@ -41,7 +41,7 @@ public class SwitchHBridgeDriver extends SwitchBridgeDriver {
 	}
 	
 	@Override
-	public int commandMotorPower(int... motorPower) throws IOException {
+	public synchronized int commandMotorPower(int... motorPower) throws IOException {
 		// check shutdown override
 		if( MOTORSHUTDOWN )
 			return 0;
@@ -105,7 +105,7 @@ public class SwitchHBridgeDriver extends SwitchBridgeDriver {
 	}
 
 	@Override
-	public int commandEmergencyStop(int status) throws IOException {
+	public synchronized int commandEmergencyStop(int status) throws IOException {
 		for(int j=1; j <= channels; j++) {
 			int pindex = getMotorDigitalPin(j);
 			if(pindex != 255) {
@@ -42,7 +42,7 @@ public class DelayedHBridgeDriver extends HBridgeDriver {
 	}
 	
 	@Override
-	public int commandMotorPower(int... motorPower) throws IOException {
+	public synchronized int commandMotorPower(int... motorPower) throws IOException {
 		if(DEBUG)
 			System.out.printf("%s channel=%d, motorPower=%d%n", this.getClass().getName(), motorPower);
 		// check shutdown override
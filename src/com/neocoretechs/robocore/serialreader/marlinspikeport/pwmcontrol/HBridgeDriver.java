@@ -48,7 +48,7 @@ public class HBridgeDriver extends AbstractPWMMotorControl {
 	}
 	
 	@Override
-	public int commandMotorPower(int... motorPower) throws IOException {
+	public synchronized int commandMotorPower(int... motorPower) throws IOException {
 		// check shutdown override
 		if( MOTORSHUTDOWN )
 			return 0;
@@ -114,7 +114,7 @@ public class HBridgeDriver extends AbstractPWMMotorControl {
 	}
 
 	@Override
-	public int commandEmergencyStop(int status) throws IOException {
+	public synchronized int commandEmergencyStop(int status) throws IOException {
 		for(int j=1; j <= channels; j++) {
 			int pindex = getMotorPWMIndex(j);
 			if(pindex != 255) {
@@ -0,0 +1,358 @@
+package com.neocoretechs.robocore.test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import com.neocoretechs.robocore.serialreader.BNO055RegisterReader;
+import com.neocoretechs.robocore.serialreader.DataPortInterface;
+import com.neocoretechs.robocore.serialreader.IMUSample;
+import com.neocoretechs.robocore.serialreader.IMUSerialDataPort;
+import com.neocoretechs.robocore.serialreader.RetryBackoff;
+/**
+ * Check the burst read of {@link IMUSerialDataPort#readSample(IMUSample)} through {@link BNO055RegisterReader} and
+ * {@link IMUSample} against a stand-in for the BNO055 answering register read frames from a register map.
+ * Random register contents, and the extremes, must decode to exactly what the single sensor reads make of them,
+ * as one frame in place of six. Bus overruns and unexpected responses must be retried after the delays of the
+ * {@link RetryBackoff}, other errors and exhausted retries must fail. Then the bytes on the wire at 115200 baud
+ * for a snapshot each way, and the time and allocation per burst read and decode, are reported.<p>
+ * java com.neocoretechs.robocore.test.BNO055BurstTest [samples]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class BNO055BurstTest {
+	static int failures = 0;
+	static final int PLACES = 3; // IMUSerialDataPort IMU_TOL
+
+	public static void main(String[] args) throws Exception {
+		int samples = 200000;
+		if(args.length > 0)
+			samples = Integer.parseInt(args[0]);
+		checkDecode();
+		checkRetry();
+		checkWire();
+		for(int pass = 0; pass < 2; pass++) // first pass warms up
+			time(pass > 0, samples);
+		System.out.println("BNO055BurstTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+	/**
+	 * Answers register read frames from its register map as the BNO055 does in UART mode, 0xBB length data,
+	 * or 0xEE and a status. Scripted overruns, unexpected bytes and errors answer the next frames in their place.
+	 * Counts the frames and bytes each way.
+	 */
+	static class SimulatedBNO055 implements DataPortInterface {
+		final byte[] registers = new byte[0x80];
+		int overruns = 0; // frames answered 0xEE 0x07
+		int garbage = 0; // frames answered with a byte that is no response header
+		int error = 0; // status answering the next frame, 0 for none
+		long frames = 0L, bytesIn = 0L, bytesOut = 0L;
+		private final int[] frame = new int[4];
+		private int framed = 0;
+		private final int[] response = new int[256];
+		private int head = 0, tail = 0;
+
+		@Override
+		public void write(int c) throws IOException {
+			++bytesIn;
+			frame[framed++] = c & 0xFF;
+			if(framed < frame.length)
+				return;
+			framed = 0;
+			if(frame[0] != 0xAA || frame[1] != 0x01) {
+				respond(0xEE);
+				respond(0x06);
+				return;
+			}
+			++frames;
+			int address = frame[2], length = frame[3];
+			if(overruns > 0) {
+				--overruns;
+				respond(0xEE);
+				respond(0x07);
+			} else if(garbage > 0) {
+				--garbage;
+				respond(0x55);
+			} else if(error != 0) {
+				respond(0xEE);
+				respond(error);
+				error = 0;
+			} else if(address + length > registers.length) {
+				respond(0xEE);
+				respond(0x04);
+			} else {
+				respond(0xBB);
+				respond(length);
+				for(int i = 0; i < length; i++)
+					respond(registers[address + i]);
+			}
+		}
+
+		private void respond(int c) {
+			response[tail++ & 0xFF] = c & 0xFF;
+			++bytesOut;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if(head == tail)
+				throw new IOException("read with no response pending");
+			return response[head++ & 0xFF];
+		}
+
+		@Override
+		public int bytesToRead() {
+			return tail - head;
+		}
+		/**
+		 * Set a register pair, LSB first.
+		 */
+		void word(int address, int value) {
+			registers[address] = (byte)value;
+			registers[address + 1] = (byte)(value >> 8);
+		}
+
+		@Override
+		public void connect(boolean writeable) {}
+		@Override
+		public boolean isConnected() { return true; }
+		@Override
+		public void close() {}
+		@Override
+		public String readLine() { return null; }
+		@Override
+		public void writeLine(String output) {}
+		@Override
+		public String getPortName() { return "SimulatedBNO055"; }
+		@Override
+		public String stringSettings() { return "frames="+frames+" in="+bytesIn+" out="+bytesOut; }
+	}
+	/**
+	 * The single sensor reads of IMUSerialDataPort, each its own frame, decoded as readAccel, readMag, readGyro,
+	 * readEuler, readQuaternion and readTemperature do.
+	 */
+	static IMUSample readEach(BNO055RegisterReader reader) throws IOException {
+		IMUSample s = new IMUSample();
+		decode3(read(reader, IMUSerialDataPort.BNO055_ACCEL_DATA_X_LSB_ADDR, 6), s.accels, 100, false);
+		decode3(read(reader, IMUSerialDataPort.BNO055_MAG_DATA_X_LSB_ADDR, 6), s.mags, 16, false);
+		decode3(read(reader, IMUSerialDataPort.BNO055_GYRO_DATA_X_LSB_ADDR, 6), s.gyros, 16, false);
+		decode3(read(reader, IMUSerialDataPort.BNO055_EULER_H_LSB_ADDR, 6), s.eulers, 16.0, true);
+		byte[] data = read(reader, IMUSerialDataPort.BNO055_QUATERNION_DATA_W_LSB_ADDR, 8);
+		short w = word(data, 0), x = word(data, 2), y = word(data, 4), z = word(data, 6);
+		double scale = (1.0 / (1<<14));
+		s.quats[0] = IMUSerialDataPort.round(x*scale, PLACES);
+		s.quats[1] = IMUSerialDataPort.round(y*scale, PLACES);
+		s.quats[2] = IMUSerialDataPort.round(z*scale, PLACES);
+		s.quats[3] = IMUSerialDataPort.round(w*scale, PLACES);
+		data = read(reader, IMUSerialDataPort.BNO055_TEMP_ADDR, 1);
+		int temp = data[0];
+		if(temp > 127)
+			temp -= 256;
+		s.temperature = temp;
+		decode3(read(reader, IMUSerialDataPort.BNO055_LINEAR_ACCEL_DATA_X_LSB_ADDR, 6), s.linearAccels, 100, false);
+		decode3(read(reader, IMUSerialDataPort.BNO055_GRAVITY_DATA_X_LSB_ADDR, 6), s.gravity, 100, false);
+		return s;
+	}
+
+	static byte[] read(BNO055RegisterReader reader, byte address, int length) throws IOException {
+		byte[] b = new byte[length];
+		reader.read(address, b, 0, length);
+		return b;
+	}
+
+	static short word(byte[] data, int i) {
+		return (short)((data[i] & 0xFF) | ((data[i + 1] << 8) & 0xFF00));
+	}
+
+	static void decode3(byte[] data, double[] v, double divisor, boolean round) {
+		for(int i = 0; i < 3; i++) {
+			v[i] = ((double)word(data, 2 * i)) / divisor;
+			if(round)
+				v[i] = IMUSerialDataPort.round(v[i], PLACES);
+		}
+	}
+
+	static boolean same(double[] a, double[] b) {
+		for(int i = 0; i < a.length; i++)
+			if(a[i] != b[i])
+				return false;
+		return true;
+	}
+
+	static String differs(IMUSample burst, IMUSample each) {
+		if(!same(burst.accels, each.accels)) return "accels";
+		if(!same(burst.mags, each.mags)) return "mags";
+		if(!same(burst.gyros, each.gyros)) return "gyros";
+		if(!same(burst.eulers, each.eulers)) return "eulers";
+		if(!same(burst.quats, each.quats)) return "quats";
+		if(!same(burst.linearAccels, each.linearAccels)) return "linear accels";
+		if(!same(burst.gravity, each.gravity)) return "gravity";
+		if(burst.temperature != each.temperature) return "temperature";
+		return null;
+	}
+
+	static void checkDecode() throws IOException {
+		SimulatedBNO055 bno = new SimulatedBNO055();
+		BNO055RegisterReader reader = new BNO055RegisterReader(bno);
+		Random r = new Random(21);
+		byte[] burst = new byte[IMUSample.LENGTH];
+		IMUSample sample = new IMUSample();
+		int maps = 20000;
+		for(int m = 0; m < maps; m++) {
+			if(m < 4) { // extremes, and quaternions on the rounding ties, +-1024/16384 and +-3072/16384
+				int v = new int[] {Short.MIN_VALUE, Short.MAX_VALUE, -1, 0}[m];
+				for(int a = IMUSample.FIRST_REGISTER; a < IMUSample.LAST_REGISTER; a += 2)
+					bno.word(a, v);
+				for(int i = 0; i < 4; i++)
+					bno.word(IMUSerialDataPort.BNO055_QUATERNION_DATA_W_LSB_ADDR + 2 * i, (m < 2 ? 1024 : 3072) * (i % 2 == 0 ? 1 : -1));
+				bno.registers[IMUSample.LAST_REGISTER] = (byte)(m == 0 ? -128 : m == 1 ? 127 : m - 2);
+			} else {
+				r.nextBytes(bno.registers);
+			}
+			long frames = bno.frames;
+			reader.read(IMUSample.FIRST_REGISTER, burst, 0, IMUSample.LENGTH);
+			sample.decode(burst, 0, PLACES, m);
+			if(bno.frames - frames != 1) {
+				System.out.println("burst read sent "+(bno.frames - frames)+" frames");
+				++failures;
+				return;
+			}
+			IMUSample each = readEach(reader);
+			String field = differs(sample, each);
+			if(field != null) {
+				System.out.println("register map "+m+" "+field+" differ:\n"+sample+"\n"+each);
+				++failures;
+				return;
+			}
+		}
+		IMUSample copy = new IMUSample();
+		copy.set(sample);
+		if(differs(copy, sample) != null || copy.timestampNanos != maps - 1) {
+			System.out.println("copied sample differs");
+			++failures;
+		}
+		System.out.println(maps+" register maps decode as the single reads: "+sample);
+	}
+
+	static void checkRetry() throws IOException {
+		SimulatedBNO055 bno = new SimulatedBNO055();
+		BNO055RegisterReader reader = new BNO055RegisterReader(bno);
+		byte[] burst = new byte[IMUSample.LENGTH];
+		RetryBackoff d = RetryBackoff.DEFAULT;
+		if(d.getRetries() != 10 || d.getDelayMillis(1) != 100 || d.getDelayMillis(10) != 100) {
+			System.out.println("default retries changed: "+d);
+			++failures;
+		}
+		RetryBackoff backoff = new RetryBackoff(5, 4L, 2.0, 20L); // 4 8 16 20 20
+		long[] expect = {4, 8, 16, 20, 20};
+		for(int i = 0; i < expect.length; i++) {
+			if(backoff.getDelayMillis(i + 1) != expect[i]) {
+				System.out.println("retry "+(i + 1)+" delay "+backoff.getDelayMillis(i + 1)+" expected "+expect[i]);
+				++failures;
+			}
+		}
+		reader.setRetryBackoff(backoff);
+		// 3 overruns and an unexpected byte, recovered on the 5th frame after 4+8+16+20 ms
+		bno.overruns = 3;
+		bno.garbage = 1;
+		long start = System.nanoTime();
+		reader.read(IMUSample.FIRST_REGISTER, burst, 0, IMUSample.LENGTH);
+		long elapsed = (System.nanoTime() - start) / 1000000L;
+		System.out.printf("4 refused frames retried: %d frames, %d retries, %d ms%n", bno.frames, reader.getRetries(), elapsed);
+		if(bno.frames != 5 || reader.getRetries() != 4 || elapsed < 48 || elapsed > 1000) {
+			System.out.println("retries not made after their delays");
+			++failures;
+		}
+		// more overruns than retries
+		bno.overruns = 7;
+		long frames = bno.frames;
+		try {
+			reader.read(IMUSample.FIRST_REGISTER, burst, 0, IMUSample.LENGTH);
+			System.out.println("read succeeded after exhausting retries");
+			++failures;
+		} catch (IOException e) {
+			if(bno.frames - frames != 6) {
+				System.out.println("exhausted retries sent "+(bno.frames - frames)+" frames");
+				++failures;
+			}
+		}
+		bno.overruns = 0;
+		// other errors are not retried
+		bno.error = 0x04;
+		frames = bno.frames;
+		try {
+			reader.read(IMUSample.FIRST_REGISTER, burst, 0, IMUSample.LENGTH);
+			System.out.println("REGMAP_INVALID_ADDRESS read succeeded");
+			++failures;
+		} catch (IOException e) {
+			if(bno.frames - frames != 1) {
+				System.out.println("REGMAP_INVALID_ADDRESS retried");
+				++failures;
+			}
+		}
+		try {
+			reader.read(IMUSample.FIRST_REGISTER, new byte[200], 0, 129);
+			System.out.println("read over 128 bytes sent");
+			++failures;
+		} catch (IOException e) {}
+		reader.read(IMUSample.FIRST_REGISTER, burst, 0, IMUSample.LENGTH);
+		if(bno.bytesToRead() != 0) {
+			System.out.println(bno.bytesToRead()+" response bytes left unread");
+			++failures;
+		}
+	}
+	/**
+	 * Bytes each way for a snapshot and the time they take at 115200 baud, 10 bits a byte.
+	 */
+	static void checkWire() throws IOException {
+		SimulatedBNO055 bno = new SimulatedBNO055();
+		BNO055RegisterReader reader = new BNO055RegisterReader(bno);
+		readEach(reader);
+		long eachFrames = bno.frames - 2, eachBytes = bno.bytesIn + bno.bytesOut - 2 * (4 + 2 + 6); // the six reads of getIMU
+		bno.frames = bno.bytesIn = bno.bytesOut = 0;
+		reader.read(IMUSample.FIRST_REGISTER, new byte[IMUSample.LENGTH], 0, IMUSample.LENGTH);
+		long burstBytes = bno.bytesIn + bno.bytesOut;
+		System.out.printf("snapshot: %d frames %d bytes %.2f ms, burst %d frame %d bytes %.2f ms at 115200 baud, with linear accel and gravity%n",
+				eachFrames, eachBytes, eachBytes * 10 / 115.2, bno.frames, burstBytes, burstBytes * 10 / 115.2);
+		if(bno.frames != 1 || burstBytes != 4 + 2 + IMUSample.LENGTH) {
+			System.out.println("burst is not one frame");
+			++failures;
+		}
+	}
+
+	static void time(boolean report, int samples) throws IOException {
+		SimulatedBNO055 bno = new SimulatedBNO055();
+		new Random(23).nextBytes(bno.registers);
+		BNO055RegisterReader reader = new BNO055RegisterReader(bno);
+		byte[] burst = new byte[IMUSample.LENGTH];
+		IMUSample sample = new IMUSample();
+		com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long id = Thread.currentThread().threadId();
+		long allocated = mx.getThreadAllocatedBytes(id);
+		long start = System.nanoTime();
+		double sum = 0;
+		for(int i = 0; i < samples; i++) {
+			reader.read(IMUSample.FIRST_REGISTER, burst, 0, IMUSample.LENGTH);
+			sample.decode(burst, 0, PLACES, i);
+			sum += sample.eulers[0];
+		}
+		long burstNanos = System.nanoTime() - start;
+		long burstAllocated = mx.getThreadAllocatedBytes(id) - allocated;
+		int each = samples / 10;
+		start = System.nanoTime();
+		allocated = mx.getThreadAllocatedBytes(id);
+		for(int i = 0; i < each; i++)
+			sum += readEach(reader).eulers[0];
+		long eachNanos = System.nanoTime() - start;
+		long eachAllocated = mx.getThreadAllocatedBytes(id) - allocated;
+		if(report) {
+			System.out.printf("burst read and decode   %8.1f ns %6.1f bytes allocated/sample%n", (double)burstNanos/samples, (double)burstAllocated/samples);
+			System.out.printf("single reads and decode %8.1f ns %6.1f bytes allocated/sample (%s)%n", (double)eachNanos/each, (double)eachAllocated/each,
+					sum == 0 ? "0" : "ok");
+			if(burstAllocated > samples / 100) { // nothing but the odd profiling object
+				System.out.println("burst read allocates");
+				++failures;
+			}
+		}
+	}
+}
@@ -0,0 +1,353 @@
+package com.neocoretechs.robocore.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import com.neocoretechs.robocore.serialreader.BNO055RegisterReader;
+import com.neocoretechs.robocore.serialreader.BNO055Simulator;
+import com.neocoretechs.robocore.serialreader.IMUAcquisition;
+import com.neocoretechs.robocore.serialreader.IMUSample;
+import com.neocoretechs.robocore.serialreader.IMUSampleRing;
+import com.neocoretechs.robocore.serialreader.IMUSerialDataPort;
+import com.neocoretechs.robocore.serialreader.RetryBackoff;
+import com.neocoretechs.robocore.serialreader.StreamDataPort;
+/**
+ * Check {@link BNO055Simulator} answers the UART register protocol as the BNO055 does: reads, writes and each
+ * error status, operation modes, reset, and calibration, and that its outputs follow the motion profile. Then the
+ * simulator stands in for the serial port of {@link IMUSerialDataPort}, which must set it up as it would the sensor,
+ * and the throughput and latency of reading the IMU are reported: over the bare streams, through the port, with
+ * bus overruns, and from the sensor to a consumer of an {@link IMUAcquisition}.<p>
+ * java com.neocoretechs.robocore.test.BNO055SimulatorTest [samples]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class BNO055SimulatorTest {
+	static int failures = 0;
+	static final int PLACES = 3; // IMUSerialDataPort IMU_TOL
+
+	public static void main(String[] args) throws Exception {
+		int samples = 50;
+		if(args.length > 0)
+			samples = Integer.parseInt(args[0]);
+		checkProtocol();
+		checkTimeout();
+		checkCalibration();
+		checkMotion();
+		for(int pass = 0; pass < 2; pass++) // first pass warms up
+			streams(pass > 0, samples * 20);
+		port(samples);
+		System.out.println("BNO055SimulatorTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+	/**
+	 * Send a frame and compare the response.
+	 */
+	static void expect(String what, BNO055Simulator bno, int[] frame, int... response) throws IOException {
+		OutputStream out = bno.getOutputStream();
+		InputStream in = bno.getInputStream();
+		for(int b : frame)
+			out.write(b);
+		int[] got = new int[response.length];
+		for(int i = 0; i < got.length; i++)
+			got[i] = in.read();
+		if(!Arrays.equals(got, response)) {
+			System.out.println(what+" answered "+hex(got)+" expected "+hex(response));
+			++failures;
+		}
+	}
+
+	static int[] read(int address, int length) {
+		return new int[] {0xAA, 0x01, address, length};
+	}
+
+	static int[] write(int address, int... data) {
+		int[] frame = Arrays.copyOf(new int[] {0xAA, 0x00, address, data.length}, 4 + data.length);
+		System.arraycopy(data, 0, frame, 4, data.length);
+		return frame;
+	}
+
+	static String hex(int[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for(int b : bytes)
+			sb.append(String.format("%02x ", b));
+		return sb.toString().trim();
+	}
+
+	static void checkProtocol() throws Exception {
+		BNO055Simulator bno = new BNO055Simulator(BNO055Simulator.still(), 0);
+		expect("chip id", bno, read(0x00, 1), 0xBB, 0x01, 0xA0);
+		expect("revisions", bno, read(0x01, 3), 0xBB, 0x03, 0xFB, 0x32, 0x0F);
+		expect("write chip id", bno, write(0x00, 0x00), 0xEE, BNO055Simulator.REGMAP_WRITE_DISABLED);
+		expect("read past map", bno, read(0x7F, 2), 0xEE, BNO055Simulator.REGMAP_INVALID_ADDRESS);
+		expect("read nothing", bno, read(0x00, 0), 0xEE, BNO055Simulator.MIN_LENGTH_ERROR);
+		expect("read too much", bno, read(0x00, 129), 0xEE, BNO055Simulator.MAX_LENGTH_ERROR);
+		expect("start byte", bno, new int[] {0x55}, 0xEE, BNO055Simulator.WRONG_START_BYTE);
+		expect("config idle", bno, read(0x39, 1), 0xBB, 0x01, 0x00);
+		bno.setCalibrationMillis(60000L);
+		int[] offsets = new int[22];
+		for(int i = 0; i < offsets.length; i++)
+			offsets[i] = i + 1;
+		expect("offsets", bno, write(0x55, offsets), 0xEE, BNO055Simulator.WRITE_SUCCESS);
+		int[] readBack = new int[2 + offsets.length];
+		readBack[0] = 0xBB;
+		readBack[1] = offsets.length;
+		System.arraycopy(offsets, 0, readBack, 2, offsets.length);
+		expect("offsets read back", bno, read(0x55, offsets.length), readBack);
+		expect("ndof", bno, write(0x3D, IMUSerialDataPort.OPERATION_MODE_NDOF), 0xEE, BNO055Simulator.WRITE_SUCCESS);
+		expect("offsets calibrate", bno, read(0x35, 1), 0xBB, 0x01, 0xFF);
+		expect("fusion running", bno, read(0x39, 1), 0xBB, 0x01, 0x05);
+		expect("offsets outside config", bno, write(0x55, 0), 0xEE, BNO055Simulator.WRITE_FAIL);
+		expect("gravity", bno, read(0x2E, 6), 0xBB, 0x06, 0, 0, 0, 0, 0xD5, 0x03); // 981 up
+		expect("amg", bno, write(0x3D, IMUSerialDataPort.OPERATION_MODE_AMG), 0xEE, BNO055Simulator.WRITE_SUCCESS);
+		expect("no fusion", bno, read(0x39, 1), 0xBB, 0x01, 0x06);
+		expect("no gravity", bno, read(0x2E, 6), 0xBB, 0x06, 0, 0, 0, 0, 0, 0);
+		bno.scriptOverruns(2);
+		expect("overrun", bno, read(0x00, 1), 0xEE, BNO055Simulator.BUS_OVER_RUN_ERROR);
+		expect("overrun write", bno, write(0x07, 0), 0xEE, BNO055Simulator.BUS_OVER_RUN_ERROR);
+		expect("after overrun", bno, read(0x00, 1), 0xBB, 0x01, 0xA0);
+		bno.scriptError(BNO055Simulator.READ_FAIL);
+		expect("read fail", bno, read(0x00, 1), 0xEE, BNO055Simulator.READ_FAIL);
+		// reset goes unanswered, back in config mode, uncalibrated
+		for(int b : write(0x3F, 0x20))
+			bno.getOutputStream().write(b);
+		Thread.sleep(10);
+		if(bno.getInputStream().available() != 0 || bno.getMode() != IMUSerialDataPort.OPERATION_MODE_CONFIG || bno.getResets() != 1) {
+			System.out.println("reset answered or not reset "+bno);
+			++failures;
+		}
+		expect("reset uncalibrated", bno, read(0x35, 1), 0xBB, 0x01, 0x00);
+		expect("page 1", bno, write(0x07, 1), 0xEE, BNO055Simulator.WRITE_SUCCESS);
+		expect("page 1 id", bno, read(0x07, 1), 0xBB, 0x01, 0x01);
+		expect("page 0", bno, write(0x07, 0), 0xEE, BNO055Simulator.WRITE_SUCCESS);
+		expect("page 0 chip id", bno, read(0x00, 1), 0xBB, 0x01, 0xA0);
+		System.out.println("protocol "+bno);
+	}
+	/**
+	 * A frame broken off for more than 100 ms is answered 0x0A and the next start byte begins a frame.
+	 */
+	static void checkTimeout() throws Exception {
+		BNO055Simulator bno = new BNO055Simulator(BNO055Simulator.still(), 0);
+		bno.getOutputStream().write(0xAA);
+		Thread.sleep(BNO055Simulator.CHARACTER_TIMEOUT_NANOS / 1000000L + 20);
+		expect("character timeout", bno, read(0x00, 1), 0xEE, BNO055Simulator.RECEIVE_CHARACTER_TIMEOUT, 0xBB, 0x01, 0xA0);
+	}
+	/**
+	 * Calibration rises gyro first, magnetometer and system last, to fully calibrated.
+	 */
+	static void checkCalibration() throws Exception {
+		BNO055Simulator bno = new BNO055Simulator(BNO055Simulator.still(), 0);
+		bno.setCalibrationMillis(300);
+		expect("ndof", bno, write(0x3D, IMUSerialDataPort.OPERATION_MODE_NDOF), 0xEE, BNO055Simulator.WRITE_SUCCESS);
+		expect("uncalibrated", bno, read(0x35, 1), 0xBB, 0x01, 0x00);
+		Thread.sleep(130);
+		int stat = calibration(bno);
+		int sys = stat >> 6 & 3, gyro = stat >> 4 & 3, accel = stat >> 2 & 3, mag = stat & 3;
+		if(gyro != 3 || accel < mag || mag == 3 || sys != mag) {
+			System.out.printf("calibrating %02x: sys %d gyro %d accel %d mag %d%n", stat, sys, gyro, accel, mag);
+			++failures;
+		}
+		Thread.sleep(200);
+		expect("calibrated", bno, read(0x35, 1), 0xBB, 0x01, 0xFF);
+		expect("imuplus", bno, write(0x3D, IMUSerialDataPort.OPERATION_MODE_CONFIG), 0xEE, BNO055Simulator.WRITE_SUCCESS);
+		expect("imuplus", bno, write(0x3D, IMUSerialDataPort.OPERATION_MODE_IMUPLUS), 0xEE, BNO055Simulator.WRITE_SUCCESS);
+		Thread.sleep(330);
+		expect("imuplus calibrated, no magnetometer", bno, read(0x35, 1), 0xBB, 0x01, 0xFC);
+	}
+
+	static int calibration(BNO055Simulator bno) throws IOException {
+		for(int b : read(0x35, 1))
+			bno.getOutputStream().write(b);
+		InputStream in = bno.getInputStream();
+		in.read();
+		in.read();
+		return in.read();
+	}
+	/**
+	 * The outputs read through {@link BNO055RegisterReader} follow the motion profile.
+	 */
+	static void checkMotion() throws Exception {
+		BNO055Simulator bno = new BNO055Simulator(BNO055Simulator.turning(90.0), 0);
+		StreamDataPort port = new StreamDataPort(bno.getInputStream(), bno.getOutputStream());
+		port.connect(true);
+		BNO055RegisterReader reader = new BNO055RegisterReader(port);
+		expect("mode", bno, write(0x3D, IMUSerialDataPort.OPERATION_MODE_NDOF), 0xEE, BNO055Simulator.WRITE_SUCCESS);
+		IMUSample a = sample(reader), b;
+		Thread.sleep(200);
+		b = sample(reader);
+		double elapsed = (b.timestampNanos - a.timestampNanos) / 1e9;
+		double turned = ((b.eulers[0] - a.eulers[0]) % 360.0 + 360.0) % 360.0;
+		double field = Math.hypot(Math.hypot(b.mags[0], b.mags[1]), b.mags[2]);
+		double norm = Math.sqrt(b.quats[0] * b.quats[0] + b.quats[1] * b.quats[1] + b.quats[2] * b.quats[2] + b.quats[3] * b.quats[3]);
+		if(Math.abs(turned - 90.0 * elapsed) > 2.0 || Math.abs(b.gyros[2] + 90.0) > 0.1 || Math.abs(b.gravity[2] - 9.81) > 0.01
+				|| Math.abs(b.accels[2] - 9.81) > 0.01 || Math.abs(field - Math.hypot(BNO055Simulator.FIELD_NORTH, BNO055Simulator.FIELD_DOWN)) > 0.2
+				|| Math.abs(norm - 1.0) > 0.002) {
+			System.out.printf("turning: %.3f degrees in %.3f s, field %.2f, quaternion norm %.4f, %s%n", turned, elapsed, field, norm, b);
+			++failures;
+		}
+		// a tilted sensor still senses 1 g, gravity being the whole of the acceleration
+		bno.setMotion(BNO055Simulator.rocking(20.0, 10.0, 1.0));
+		for(int i = 0; i < 20; i++) {
+			b = sample(reader);
+			double g = Math.hypot(Math.hypot(b.gravity[0], b.gravity[1]), b.gravity[2]);
+			if(Math.abs(g - 9.81) > 0.03 || Math.abs(b.eulers[1]) > 20.1 || Math.abs(b.eulers[2]) > 10.1
+					|| Math.abs(b.accels[0] - b.gravity[0]) > 0.011 || Math.abs(b.accels[1] - b.gravity[1]) > 0.011) {
+				System.out.printf("rocking: gravity %.3f, %s%n", g, b);
+				++failures;
+				break;
+			}
+			Thread.sleep(20);
+		}
+		// IMUPLUS heading is relative to where it started
+		bno.setMotion(BNO055Simulator.waypoints(new double[] {0.0}, new double[][] {{100.0, 0, 0, 0.5, 0, 0}}));
+		expect("mode", bno, write(0x3D, IMUSerialDataPort.OPERATION_MODE_CONFIG), 0xEE, BNO055Simulator.WRITE_SUCCESS);
+		expect("mode", bno, write(0x3D, IMUSerialDataPort.OPERATION_MODE_IMUPLUS), 0xEE, BNO055Simulator.WRITE_SUCCESS);
+		b = sample(reader);
+		if(b.eulers[0] != 0.0 || b.linearAccels[0] != 0.5 || b.mags[0] != 0.0) {
+			System.out.println("imuplus: "+b);
+			++failures;
+		}
+		double[] pose = new double[6];
+		BNO055Simulator.waypoints(new double[] {0.0, 1.0}, new double[][] {{350.0}, {10.0, 10.0}}).pose(0.5, pose);
+		if(Math.abs(pose[0]) > 1e-9 && Math.abs(pose[0] - 360.0) > 1e-9 || Math.abs(pose[1] - 5.0) > 1e-9) {
+			System.out.println("waypoints: "+Arrays.toString(pose));
+			++failures;
+		}
+	}
+
+	static IMUSample sample(BNO055RegisterReader reader) throws IOException {
+		byte[] burst = new byte[IMUSample.LENGTH];
+		reader.read(IMUSample.FIRST_REGISTER, burst, 0, burst.length);
+		IMUSample s = new IMUSample();
+		s.decode(burst, 0, PLACES, System.nanoTime());
+		return s;
+	}
+	/**
+	 * Burst and single reads over the bare streams at 115200 baud, without and with a response time.
+	 */
+	static void streams(boolean report, int samples) throws Exception {
+		for(long responseMicros : new long[] {0L, 1000L}) {
+			BNO055Simulator bno = new BNO055Simulator(BNO055Simulator.rocking(20.0, 10.0, 1.0), 115200);
+			bno.setResponseMicros(responseMicros);
+			StreamDataPort port = new StreamDataPort(bno.getInputStream(), bno.getOutputStream());
+			port.connect(true);
+			BNO055RegisterReader reader = new BNO055RegisterReader(port);
+			expect("mode", bno, write(0x3D, IMUSerialDataPort.OPERATION_MODE_NDOF), 0xEE, BNO055Simulator.WRITE_SUCCESS);
+			byte[] burst = new byte[IMUSample.LENGTH];
+			IMUSample s = new IMUSample();
+			long[] bursts = new long[samples], singles = new long[samples / 4];
+			for(int i = 0; i < bursts.length; i++) {
+				long t0 = System.nanoTime();
+				reader.read(IMUSample.FIRST_REGISTER, burst, 0, burst.length);
+				s.decode(burst, 0, PLACES, System.nanoTime());
+				bursts[i] = System.nanoTime() - t0;
+			}
+			byte[] one = new byte[8];
+			for(int i = 0; i < singles.length; i++) { // as readAccel, readMag, readGyro, readEuler, readQuaternion, readTemperature
+				long t0 = System.nanoTime();
+				reader.read(IMUSerialDataPort.BNO055_ACCEL_DATA_X_LSB_ADDR, one, 0, 6);
+				reader.read(IMUSerialDataPort.BNO055_MAG_DATA_X_LSB_ADDR, one, 0, 6);
+				reader.read(IMUSerialDataPort.BNO055_GYRO_DATA_X_LSB_ADDR, one, 0, 6);
+				reader.read(IMUSerialDataPort.BNO055_EULER_H_LSB_ADDR, one, 0, 6);
+				reader.read(IMUSerialDataPort.BNO055_QUATERNION_DATA_W_LSB_ADDR, one, 0, 8);
+				reader.read(IMUSerialDataPort.BNO055_TEMP_ADDR, one, 0, 1);
+				singles[i] = System.nanoTime() - t0;
+			}
+			if(report)
+				report("streams response "+responseMicros+"us", bursts, singles);
+		}
+	}
+
+	static void report(String what, long[] bursts, long[] singles) {
+		Arrays.sort(bursts);
+		Arrays.sort(singles);
+		double burstMean = Arrays.stream(bursts).average().orElse(Double.NaN) / 1e6;
+		double singleMean = Arrays.stream(singles).average().orElse(Double.NaN) / 1e6;
+		System.out.printf("%s: burst %.1f samples/s p50 %.3f ms p99 %.3f ms, six reads %.1f samples/s p50 %.3f ms p99 %.3f ms%n", what,
+				1000.0 / burstMean, IMURingTest.percentile(bursts, 0.5), IMURingTest.percentile(bursts, 0.99),
+				1000.0 / singleMean, IMURingTest.percentile(singles, 0.5), IMURingTest.percentile(singles, 0.99));
+	}
+	/**
+	 * The simulator in place of the serial port of {@link IMUSerialDataPort}: set up, read as the sensor, with
+	 * bus overruns, and acquired into a ring.
+	 */
+	static void port(int samples) throws Exception {
+		BNO055Simulator bno = new BNO055Simulator(BNO055Simulator.rocking(20.0, 10.0, 1.0), 115200);
+		bno.setCalibrationMillis(500);
+		long t0 = System.nanoTime();
+		IMUSerialDataPort imu = IMUSerialDataPort.getInstance(BNO055Simulator.PORT_NAME, bno.getInputStream(), bno.getOutputStream());
+		System.out.printf("connected in %.0f ms, %s%n", (System.nanoTime() - t0) / 1e6, bno);
+		if(!imu.isConnected() || bno.getMode() != IMUSerialDataPort.OPERATION_MODE_NDOF || bno.getResets() != 1) {
+			System.out.println("port did not set up the simulator");
+			++failures;
+			return;
+		}
+		Thread.sleep(500);
+		byte[] stat = imu.getCalibrationStatus();
+		if(stat[0] != 3 || stat[1] != 3 || stat[2] != 3 || stat[3] != 3) {
+			System.out.println("not calibrated "+Arrays.toString(stat));
+			++failures;
+		}
+		IMUSample s = new IMUSample();
+		long[] bursts = new long[samples], singles = new long[Math.max(1, samples / 4)];
+		for(int i = 0; i < bursts.length; i++) {
+			long t1 = System.nanoTime();
+			imu.readSample(s);
+			bursts[i] = System.nanoTime() - t1;
+		}
+		if(Math.abs(Math.hypot(Math.hypot(s.gravity[0], s.gravity[1]), s.gravity[2]) - 9.81) > 0.03) {
+			System.out.println("port sample "+s);
+			++failures;
+		}
+		for(int i = 0; i < singles.length; i++) {
+			long t1 = System.nanoTime();
+			imu.readAccel();
+			imu.readMag();
+			imu.readGyro();
+			imu.readEuler();
+			imu.readQuaternion();
+			imu.readTemperature();
+			singles[i] = System.nanoTime() - t1;
+		}
+		report("port", bursts, singles);
+		// overruns retried
+		imu.setRetryBackoff(new RetryBackoff(10, 5L, 2.0, 40L));
+		bno.setOverrunRate(0.1, 23L);
+		long frames = imu.getReadFrames();
+		long[] retried = new long[samples];
+		for(int i = 0; i < retried.length; i++) {
+			long t1 = System.nanoTime();
+			imu.readSample(s);
+			retried[i] = System.nanoTime() - t1;
+		}
+		Arrays.sort(retried);
+		System.out.printf("port 10%% overruns: %d frames for %d samples, p50 %.3f ms p99 %.3f ms max %.3f ms%n", imu.getReadFrames() - frames,
+				samples, IMURingTest.percentile(retried, 0.5), IMURingTest.percentile(retried, 0.99), IMURingTest.percentile(retried, 1.0));
+		bno.setOverrunRate(0.0, 0L);
+		// acquired into a ring, sensor to consumer
+		IMUSampleRing ring = new IMUSampleRing(64);
+		IMUAcquisition acquisition = new IMUAcquisition(imu, ring);
+		Thread acquirer = new Thread(acquisition, "IMUAcquisition");
+		acquirer.start();
+		long[] latency = new long[samples];
+		long seen = -1;
+		int n = 0;
+		t0 = System.nanoTime();
+		while(n < latency.length && ring.awaitNext(seen, s, 1000L)) {
+			latency[n++] = System.nanoTime() - s.timestampNanos;
+			seen = s.sequence;
+		}
+		double seconds = (System.nanoTime() - t0) / 1e9;
+		acquisition.stop();
+		acquirer.join(1000);
+		long[] l = Arrays.copyOf(latency, n);
+		Arrays.sort(l);
+		System.out.printf("acquisition %.1f samples/s, sample to consumer p50 %.3f ms p99 %.3f ms, %s%n", n / seconds,
+				IMURingTest.percentile(l, 0.5), IMURingTest.percentile(l, 0.99), bno);
+		if(n < samples || acquisition.getErrors() != 0) {
+			System.out.println("acquisition short "+n+" "+acquisition);
+			++failures;
+		}
+	}
+}
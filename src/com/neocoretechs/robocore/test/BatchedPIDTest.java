@@ -0,0 +1,212 @@
+package com.neocoretechs.robocore.test;
+
+import java.util.Random;
+
+import com.neocoretechs.robocore.PID.BatchedPIDController;
+import com.neocoretechs.robocore.PID.IMUSetpointInfo;
+import com.neocoretechs.robocore.PID.MotionPIDController;
+/**
+ * Check {@link BatchedPIDController}: the vector and scalar passes give identical outputs and integrals over random
+ * gains, limits and errors on a channel count that leaves a scalar tail, the proportional and derivative terms match
+ * {@link MotionPIDController}, the integral removes the steady state error of a simulated motor under load that
+ * proportional control leaves, and a saturated channel does not wind up its integral.
+ * Then the time per channel of the batch is compared with a MotionPIDController per channel.<p>
+ * java com.neocoretechs.robocore.test.BatchedPIDTest [channels] [steps]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class BatchedPIDTest {
+	static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		int channels = 67;
+		int steps = 20000;
+		if(args.length > 0)
+			channels = Integer.parseInt(args[0]);
+		if(args.length > 1)
+			steps = Integer.parseInt(args[1]);
+		vectorMatchesScalar(channels, steps);
+		matchesMotionPID(steps);
+		integralRemovesOffset();
+		antiWindup();
+		for(int pass = 0; pass < 2; pass++) // first pass warms up
+			time(pass > 0, channels, steps * 5);
+		System.out.println("BatchedPIDTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static BatchedPIDController randomController(int channels, long seed) {
+		Random r = new Random(seed);
+		BatchedPIDController pid = new BatchedPIDController(channels);
+		for(int i = 0; i < channels; i++) {
+			pid.setGains(i, r.nextFloat() * 5, r.nextFloat(), r.nextFloat() * 2);
+			float limit = 100 + r.nextFloat() * 900;
+			pid.setOutputLimits(i, -limit, limit);
+			pid.setIntegralLimits(i, -limit / 2, limit / 2);
+		}
+		return pid;
+	}
+
+	static void vectorMatchesScalar(int channels, int steps) {
+		BatchedPIDController vector = randomController(channels, 1L);
+		BatchedPIDController scalar = randomController(channels, 1L);
+		vector.setVector(true);
+		scalar.setVector(false);
+		Random r = new Random(2L);
+		float[] setpoint = new float[channels], measured = new float[channels];
+		for(int step = 0; step < steps; step++) {
+			for(int i = 0; i < channels; i++) {
+				if(r.nextInt(50) == 0)
+					setpoint[i] = (r.nextFloat() * 2 - 1) * 1000;
+				measured[i] += (r.nextFloat() * 2 - 1) * 20;
+			}
+			float dt = 0.005f + r.nextFloat() * 0.01f;
+			float[] v = vector.compute(setpoint, measured, dt);
+			float[] s = scalar.compute(setpoint, measured, dt);
+			for(int i = 0; i < channels; i++) {
+				if(Float.floatToIntBits(v[i]) != Float.floatToIntBits(s[i]) ||
+						Float.floatToIntBits(vector.getIntegral(i)) != Float.floatToIntBits(scalar.getIntegral(i))) {
+					System.out.println("Step "+step+" channel "+i+" vector "+vector.toString(i)+"\nscalar "+scalar.toString(i));
+					++failures;
+					return;
+				}
+			}
+		}
+		System.out.println(vector+" matches scalar over "+channels+" channels "+steps+" steps");
+	}
+
+	static void matchesMotionPID(int steps) {
+		MotionPIDController motion = new MotionPIDController(3.5f, 1.25f, 0f, 1f, 30);
+		IMUSetpointInfo imu = new IMUSetpointInfo();
+		imu.setMaximum(45);
+		imu.setMinimum(-45);
+		BatchedPIDController pid = new BatchedPIDController(1);
+		pid.setGains(0, 3.5f, 0f, 1.25f);
+		Random r = new Random(3L);
+		float[] err = new float[1];
+		for(int step = 0; step < steps; step++) {
+			imu.setDesiredTarget((float)Math.floor(r.nextFloat() * 90));
+			imu.setTarget((float)Math.floor(r.nextFloat() * 90));
+			motion.Compute(imu);
+			err[0] = imu.delta();
+			pid.computeError(err, 1f);
+			if(pid.getOutput(0) != motion.getOutput()) {
+				System.out.println("Step "+step+" batched "+pid.toString(0)+"\n"+motion);
+				++failures;
+				return;
+			}
+		}
+		System.out.println("PD terms match MotionPIDController over "+steps+" steps");
+	}
+	/**
+	 * Motor speed responds to drive over a time constant, less a constant load.
+	 * @return the speed error after settling
+	 */
+	static float settle(float ki) {
+		BatchedPIDController pid = new BatchedPIDController(1);
+		pid.setGains(0, 2f, ki, 0.01f);
+		pid.setOutputLimits(0, -1000, 1000);
+		pid.setIntegralLimits(0, -1000, 1000);
+		float dt = 0.01f, tau = 0.2f, load = 150f;
+		float[] setpoint = {300f}, speed = {0f};
+		for(int step = 0; step < 2000; step++) {
+			float u = pid.compute(setpoint, speed, dt)[0];
+			speed[0] += (u - load - speed[0]) * dt / tau;
+		}
+		return setpoint[0] - speed[0];
+	}
+
+	static void integralRemovesOffset() {
+		float pd = settle(0f);
+		float pid = settle(4f);
+		System.out.printf("Steady state error under load PD=%f PID=%f%n", pd, pid);
+		if(Math.abs(pd) < 10f || Math.abs(pid) > 0.5f) {
+			System.out.println("Expected the integral to remove the offset proportional control leaves");
+			++failures;
+		}
+	}
+
+	static void antiWindup() {
+		BatchedPIDController pid = new BatchedPIDController(1);
+		pid.setGains(0, 1f, 10f, 0f);
+		pid.setOutputLimits(0, -100, 100);
+		pid.setIntegralLimits(0, -1000, 1000);
+		float[] setpoint = {500f}, measured = {0f};
+		for(int step = 0; step < 100; step++)
+			pid.compute(setpoint, measured, 0.01f);
+		float held = pid.getIntegral(0);
+		if(pid.getOutput(0) != 100f || held != 0f) {
+			System.out.println("Saturated from the first step, expected the integral held at 0: "+pid.toString(0));
+			++failures;
+		}
+		// once the error reverses the integral may move toward unsaturating the output
+		measured[0] = 520f;
+		pid.compute(setpoint, measured, 0.01f);
+		if(pid.getIntegral(0) >= held || pid.getOutput(0) != -22f) {
+			System.out.println("Expected the integral to unwind on reversed error: "+pid.toString(0));
+			++failures;
+		}
+		setpoint[0] = 50f;
+		measured[0] = 0f;
+		pid.clear(0);
+		for(int step = 0; step < 5; step++)
+			pid.compute(setpoint, measured, 0.01f);
+		if(pid.getIntegral(0) != 25f || pid.getOutput(0) != 75f) {
+			System.out.println("Expected the integral to accumulate while unsaturated: "+pid.toString(0));
+			++failures;
+		}
+		System.out.println("Anti windup "+pid.toString(0));
+	}
+
+	static void time(boolean report, int channels, int steps) {
+		MotionPIDController[] motion = new MotionPIDController[channels];
+		IMUSetpointInfo[] imu = new IMUSetpointInfo[channels];
+		for(int i = 0; i < channels; i++) {
+			motion[i] = new MotionPIDController(2f, 0.5f, 0.1f, 1f, 30);
+			imu[i] = new IMUSetpointInfo();
+			imu[i].setMaximum(45);
+			imu[i].setMinimum(-45);
+		}
+		float[] setpoint = new float[channels], measured = new float[channels];
+		for(int i = 0; i < channels; i++)
+			setpoint[i] = i % 90;
+		double check = 0; // the sum of the final measurements, printed so the loops are not optimized away
+		long start = System.nanoTime();
+		for(int step = 0; step < steps; step++) {
+			for(int i = 0; i < channels; i++) {
+				imu[i].setDesiredTarget(setpoint[i]);
+				imu[i].setTarget(measured[i]);
+				motion[i].Compute(imu[i]);
+				measured[i] += motion[i].getOutput() * 0.001f;
+			}
+		}
+		long scalarControllers = System.nanoTime() - start;
+		for(int i = 0; i < channels; i++)
+			check += measured[i];
+		BatchedPIDController pid = new BatchedPIDController(channels);
+		for(int i = 0; i < channels; i++) {
+			pid.setGains(i, 2f, 0.1f, 0.5f);
+			pid.setIntegralLimits(i, -45, 45);
+		}
+		long[] batched = new long[2];
+		for(int v = 0; v < 2; v++) {
+			pid.setVector(v == 1);
+			pid.clear();
+			java.util.Arrays.fill(measured, 0f);
+			start = System.nanoTime();
+			for(int step = 0; step < steps; step++) {
+				float[] out = pid.compute(setpoint, measured, 1f);
+				for(int i = 0; i < channels; i++)
+					measured[i] += out[i] * 0.001f;
+			}
+			batched[v] = System.nanoTime() - start;
+			for(int i = 0; i < channels; i++)
+				check += measured[i];
+		}
+		if(report) {
+			double per = (double)steps * channels;
+			System.out.printf("%d channels: MotionPIDController %.2f ns/channel, batched scalar %.2f ns/channel, batched vector %.2f ns/channel, measurement sum %.1f%n",
+					channels, scalarControllers / per, batched[0] / per, batched[1] / per, check);
+		}
+	}
+}
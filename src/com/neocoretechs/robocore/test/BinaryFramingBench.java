@@ -0,0 +1,142 @@
+package com.neocoretechs.robocore.test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+
+import com.neocoretechs.robocore.serialreader.BinaryFrameCodec;
+import com.neocoretechs.robocore.serialreader.ByteSerialDataPort;
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+/**
+ * Compare the text protocol and the binary framing of the link between {@link ByteSerialDataPort} and the
+ * {@link MarlinspikeDataPort} emulator serving an in memory loopback. Commands are first checked to survive encoding,
+ * and both encodings to deliver the same response lines, then a stream of motor level commands, as setDeviceLevels
+ * generates, with an occasional report is timed, counting the bytes carried in each direction. The motor drivers
+ * need GPIO, so the emulator acknowledges G5 as the firmware does without driving them.<p>
+ * java com.neocoretechs.robocore.test.BinaryFramingBench [commands]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class BinaryFramingBench {
+	static final String[] codecChecks = { "G5 Z0 C1 P100", "G5 Z1 P250 Q-250", "G6 Z2 C3 P-1000", "M45 P3 S500",
+			"G5 Z0 C1 X500", "G5 Z0 P70000", "N12 G5 Z0 P1*99", "M700", "G5 Z0 P1 Q2 R3 S4 T5 U6 V7 W8 X9 Y10" };
+	static final String[] checks = { "G5 Z0 C1 P100", "G5 Z1 P250 Q-250", "M1", "M115", "M700", "M999", "G99", "M44 P12" };
+
+	public static void main(String[] args) throws Exception {
+		int count = 20000;
+		if(args.length > 0)
+			count = Integer.parseInt(args[0]);
+		Link text = new Link(false);
+		Link binary = new Link(true);
+		int failures = 0;
+		ByteBuffer frame = ByteBuffer.allocate(256);
+		for(String cmd : codecChecks) {
+			frame.clear();
+			BinaryFrameCodec.encodeCommand(cmd, frame);
+			int opcode = frame.get(2) & 0xFF;
+			ByteBuffer payload = frame.duplicate().limit(frame.position() - 2).position(3);
+			String decoded = BinaryFrameCodec.decodeCommand(opcode, payload);
+			System.out.printf("%-40s %2d bytes as %-40s %d bytes%n", cmd, cmd.length() + 1, decoded, frame.position());
+			if(!decoded.equals(cmd)) {
+				System.out.println(cmd+" decoded as "+decoded);
+				++failures;
+			}
+		}
+		for(String cmd : checks) {
+			ArrayList<String> t = text.port.sendCommand(cmd);
+			ArrayList<String> b = binary.port.sendCommand(cmd);
+			if(!t.equals(b)) {
+				System.out.println(cmd+" text "+t+" binary "+b);
+				++failures;
+			}
+		}
+		System.out.println("Responses "+(failures == 0 ? "match" : "DIFFER "+failures));
+		for(int pass = 0; pass < 2; pass++) { // first pass warms up
+			run(pass, "text  ", text, count);
+			run(pass, "binary", binary, count);
+		}
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static void run(int pass, String name, Link link, int count) throws IOException {
+		long sent = link.toFirmware.count, received = link.fromFirmware.count;
+		long start = System.nanoTime();
+		for(int i = 0; i < count; i++) {
+			int level = (i % 2001) - 1000;
+			if(i % 50 == 49)
+				link.port.sendCommand("M700");
+			else
+				link.port.sendCommand("G5 Z0 P"+level+" Q"+(-level)+" ");
+		}
+		long elapsed = System.nanoTime() - start;
+		double out = (double)(link.toFirmware.count - sent)/count, in = (double)(link.fromFirmware.count - received)/count;
+		// 115200 baud carries 11520 bytes/sec each way with 8N1
+		if(pass > 0)
+			System.out.printf("%s %8.2f bytes/command sent %8.2f bytes/command received %10.1f commands/sec loopback %8.1f commands/sec at 115200 baud%n",
+				name, out, in, count*1e9/elapsed, 11520/Math.max(out, in));
+	}
+	/**
+	 * A ByteSerialDataPort attached through a pair of pipes to an emulator serving on its own thread.
+	 */
+	static class Link {
+		final ByteSerialDataPort port = new ByteSerialDataPort();
+		final Counting toFirmware;
+		final Counting fromFirmware;
+		Link(boolean binary) throws IOException {
+			Pipe commands = Pipe.open();
+			Pipe responses = Pipe.open();
+			toFirmware = new Counting(commands.sink());
+			fromFirmware = new Counting(responses.sink());
+			MarlinspikeDataPort marlinspike = new MarlinspikeDataPort() {
+				@Override
+				protected ArrayList<String> respond(String command) throws IOException {
+					if(command.startsWith("G5 ")) {
+						ArrayList<String> ret = new ArrayList<String>();
+						ret.add("<G5/>\r\n");
+						return ret;
+					}
+					return super.respond(command);
+				}
+			};
+			Thread ft = new Thread(() -> {
+				try {
+					marlinspike.serve(commands.source(), fromFirmware);
+				} catch(IOException ioe) {
+					ioe.printStackTrace();
+				}
+			});
+			ft.setDaemon(true);
+			ft.start();
+			responses.source().configureBlocking(false);
+			port.connect(responses.source(), toFirmware);
+			if(binary && !port.negotiateBinaryFraming())
+				throw new IOException("Binary framing refused");
+		}
+	}
+	/**
+	 * Counts the bytes written through to a channel.
+	 */
+	static class Counting implements WritableByteChannel {
+		final WritableByteChannel channel;
+		volatile long count = 0;
+		Counting(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			int n = channel.write(src);
+			count += n;
+			return n;
+		}
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen();
+		}
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
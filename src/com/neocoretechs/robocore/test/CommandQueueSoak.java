@@ -0,0 +1,229 @@
+package com.neocoretechs.robocore.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.marlinspike.CommandQueue;
+import com.neocoretechs.robocore.marlinspike.MarlinspikeControl;
+import com.neocoretechs.robocore.marlinspike.TypeSlotChannelEnable;
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+/**
+ * Soak the {@link CommandQueue} of the {@link AsynchDemuxer} against the
+ * {@link MarlinspikeDataPort} emulator with an emulated link latency. Two threads flood
+ * {@link MarlinspikeControl#setDeviceLevels(String, int...)} for a two channel drive and a single channel boom
+ * as cmd_vel and joystick messages would, while another queues configuration and report commands.<p>
+ * Passes if every one shot command is delivered exactly once and in order, the last level set for each device
+ * is the last one delivered, and no delivered level was older than the latency bound when sent. First, queued
+ * directly, a level must not be coalesced ahead of a stop or reset queued after the level it would replace.<p>
+ * java com.neocoretechs.robocore.test.CommandQueueSoak [levels per device] [latency micros] [bound millis]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class CommandQueueSoak {
+	static final String[] oneShots = { "M2 Z0 C1", "M2 Z0 C2", "M1", "M115", "M700", "M702", "M703",
+			"M704", "M705", "M706" };
+	static final String[] devices = { "LeftWheel", "Boom" };
+	static final int[] slots = { 0, 1 };
+	static final int CONFIG_ROUNDS = 50;
+
+	public static void main(String[] args) throws Exception {
+		int levels = 2000;
+		long latency = 1000;
+		long bound = 250;
+		if(args.length > 0)
+			levels = Integer.parseInt(args[0]);
+		if(args.length > 1)
+			latency = Long.parseLong(args[1]);
+		if(args.length > 2)
+			bound = Long.parseLong(args[2]);
+		RecordingPort port = new RecordingPort();
+		port.setLinkLatency(latency);
+		AsynchDemuxer demuxer = new AsynchDemuxer(null) {
+			@Override
+			public TypeSlotChannelEnable getNameToTypeSlotChannel(String name) {
+				for(int i = 0; i < devices.length; i++)
+					if(devices[i].equals(name))
+						return new TypeSlotChannelEnable(TypeSlotChannelEnable.typeNames.SMARTCONTROLLER, slots[i], 1, 0);
+				throw new RuntimeException("No device "+name);
+			}
+		};
+		demuxer.connect(port);
+		MarlinspikeControl control = new MarlinspikeControl(demuxer);
+		// submit time of each level by device, levels run from -levels/2 upward so each is sent once per device
+		final int nLevels = levels;
+		final long[][] submitted = new long[devices.length][nLevels];
+		final List<String> configSent = Collections.synchronizedList(new ArrayList<String>());
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for(int d = 0; d < devices.length; d++) {
+			final int device = d;
+			threads.add(new Thread(() -> {
+				try {
+					for(int k = 0; k < nLevels; k++) {
+						int level = k - nLevels/2;
+						submitted[device][k] = System.nanoTime();
+						if(device == 0)
+							control.setDeviceLevels(devices[device], level, -level);
+						else
+							control.setDeviceLevels(devices[device], level);
+						if((k & 15) == 0)
+							Thread.sleep(1);
+					}
+				} catch(IOException | InterruptedException e) {
+					e.printStackTrace();
+				}
+			}));
+		}
+		threads.add(new Thread(() -> {
+			try {
+				for(int round = 0; round < CONFIG_ROUNDS; round++) {
+					for(String cmd : oneShots) {
+						configSent.add(cmd);
+						demuxer.addWrite(cmd);
+					}
+					Thread.sleep(2);
+				}
+			} catch(InterruptedException e) {
+				e.printStackTrace();
+			}
+		}));
+		long start = System.nanoTime();
+		for(Thread t : threads)
+			t.start();
+		for(Thread t : threads)
+			t.join();
+		int expected = configSent.size();
+		long deadline = System.currentTimeMillis() + 10000;
+		while(System.currentTimeMillis() < deadline && !port.drained(expected, devices.length, nLevels))
+			Thread.sleep(10);
+		long elapsed = System.nanoTime() - start;
+		// check
+		int failures = checkOrder();
+		ArrayList<String> configGot = new ArrayList<String>();
+		int[] lastLevel = new int[devices.length];
+		int[] delivered = new int[devices.length];
+		Arrays.fill(lastLevel, Integer.MIN_VALUE);
+		long[] latencies = new long[port.size()];
+		int nLatencies = 0;
+		synchronized(port) {
+			for(int i = 0; i < port.commands.size(); i++) {
+				String cmd = port.commands.get(i).trim();
+				if(!cmd.startsWith("G5")) {
+					configGot.add(cmd);
+					continue;
+				}
+				int slot = field(cmd, 'Z');
+				int level = field(cmd, 'P');
+				if(slot == 0 && field(cmd, 'Q') != -level) {
+					System.out.println("Channels of a drive command split: "+cmd);
+					++failures;
+				}
+				lastLevel[slot] = level;
+				++delivered[slot];
+				latencies[nLatencies++] = port.times.get(i) - submitted[slot][level + nLevels/2];
+			}
+		}
+		if(!configGot.equals(configSent)) {
+			System.out.println("Configuration commands lost or reordered, sent "+configSent.size()+" got "+configGot.size());
+			++failures;
+		}
+		for(int d = 0; d < devices.length; d++) {
+			if(lastLevel[d] != nLevels - 1 - nLevels/2) {
+				System.out.println(devices[d]+" last level delivered "+lastLevel[d]+" not the last set "+(nLevels - 1 - nLevels/2));
+				++failures;
+			}
+		}
+		Arrays.sort(latencies, 0, nLatencies);
+		long max = (nLatencies > 0 ? latencies[nLatencies-1] : 0);
+		long p99 = (nLatencies > 0 ? latencies[(int)(nLatencies*.99)] : 0);
+		if(max > bound * 1000000L) {
+			System.out.println("Level latency "+(max/1000000)+"ms exceeds bound "+bound+"ms");
+			++failures;
+		}
+		System.out.printf("elapsed=%dms levels set=%d delivered=%s coalesced=%d one shot commands=%d/%d%n",
+				elapsed/1000000, nLevels * devices.length, Arrays.toString(delivered), demuxer.getCommandsCoalesced(),
+				configGot.size(), configSent.size());
+		System.out.printf("level latency p99=%.2fms max=%.2fms%n", p99/1e6, max/1e6);
+		System.out.println("Soak "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Levels coalesce with each other, but never across a one shot command, and the queue gives them back in the
+	 * order submitted otherwise.
+	 * @return the failures
+	 */
+	static int checkOrder() throws InterruptedException {
+		CommandQueue queue = new CommandQueue(16);
+		String[][] cases = {
+			// submitted, then expected
+			{"G5 Z0 C1 P10", "G5 Z0 C1 P20"}, {"G5 Z0 C1 P20"},
+			{"G5 Z0 C1 P10", "M2 Z0 C1", "G5 Z0 C1 P20"}, {"G5 Z0 C1 P10", "M2 Z0 C1", "G5 Z0 C1 P20"},
+			{"G5 Z0 C1 P10", "M2 Z0 C1", "G5 Z0 C1 P20", "G5 Z0 C1 P30"}, {"G5 Z0 C1 P10", "M2 Z0 C1", "G5 Z0 C1 P30"},
+			{"G5 Z0 C1 P10", "G5 Z0 C2 P5", "G5 Z0 C1 P20", "M10 Z0", "G5 Z0 C2 P0"}, {"G5 Z0 C1 P20", "G5 Z0 C2 P5", "M10 Z0", "G5 Z0 C2 P0"},
+			{"M45 P9 S100", "M1", "M45 P9 S0", "M45 P9 S50"}, {"M45 P9 S100", "M1", "M45 P9 S50"}
+		};
+		int failures = 0;
+		for(int c = 0; c < cases.length; c += 2) {
+			for(String cmd : cases[c])
+				queue.addLast(cmd);
+			ArrayList<String> got = new ArrayList<String>();
+			while(queue.length() > 0)
+				got.add(queue.takeFirst());
+			if(!got.equals(Arrays.asList(cases[c + 1]))) {
+				System.out.println("Queued "+Arrays.toString(cases[c])+" took "+got+" expected "+Arrays.toString(cases[c + 1]));
+				++failures;
+			}
+		}
+		return failures;
+	}
+
+	static int field(String cmd, char code) {
+		int i = cmd.indexOf(" "+code);
+		if(i == -1)
+			return Integer.MIN_VALUE;
+		int j = cmd.indexOf(' ', i + 1);
+		return Integer.parseInt(cmd.substring(i + 2, j == -1 ? cmd.length() : j));
+	}
+	/**
+	 * The emulator, recording each command as the demuxer sends it and the time it was sent.
+	 */
+	static class RecordingPort extends MarlinspikeDataPort {
+		final ArrayList<String> commands = new ArrayList<String>();
+		final ArrayList<Long> times = new ArrayList<Long>();
+		private int configCount = 0;
+		private final int[] lastLevel = new int[slots.length];
+
+		@Override
+		public ArrayList<String> sendCommand(String command) throws IOException {
+			synchronized(this) {
+				commands.add(command);
+				times.add(System.nanoTime());
+				String cmd = command.trim();
+				if(cmd.startsWith("G5"))
+					lastLevel[field(cmd, 'Z')] = field(cmd, 'P');
+				else
+					++configCount;
+			}
+			return super.sendCommand(command);
+		}
+
+		synchronized int size() {
+			return commands.size();
+		}
+		/**
+		 * @return true once all the one shot commands and the last level of every device have been sent
+		 */
+		synchronized boolean drained(int config, int nDevices, int nLevels) {
+			if(configCount < config)
+				return false;
+			for(int d = 0; d < nDevices; d++)
+				if(lastLevel[d] != nLevels - 1 - nLevels/2)
+					return false;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.neocoretechs.robocore.test;
+
+import com.neocoretechs.robocore.propulsion.ControlLoop;
+import com.neocoretechs.robocore.propulsion.JitterHistogram;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.VirtualClock;
+/**
+ * Check the deadline scheduling and overrun accounting of {@link ControlLoop}.<p>
+ * First on a {@link VirtualClock}, with ticks that take a fixed time and every tenth one that runs past the following
+ * deadlines, checking each tick is called at its absolute deadline and the overruns and skipped deadlines are counted
+ * exactly. Then on the system clock at the given rate for the given seconds, reporting the jitter histogram.<p>
+ * java com.neocoretechs.robocore.test.ControlLoopTest [rate Hz] [seconds]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class ControlLoopTest {
+	static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		int rate = 200;
+		int seconds = 2;
+		if(args.length > 0)
+			rate = Integer.parseInt(args[0]);
+		if(args.length > 1)
+			seconds = Integer.parseInt(args[1]);
+		virtual();
+		real(rate, seconds);
+		System.out.println("ControlLoopTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static void virtual() {
+		final int ticks = 100;
+		final long period = 10000L; // 100 Hz
+		VirtualClock clock = new VirtualClock(5000L);
+		long[] expected = new long[] {5000L}; // next deadline
+		long[] calls = new long[1];
+		ControlLoop[] loop = new ControlLoop[1];
+		loop[0] = new ControlLoop(100, (tick, deadline) -> {
+			if(deadline != expected[0]) {
+				System.out.println("Tick "+tick+" due "+deadline+" expected "+expected[0]);
+				++failures;
+			}
+			if(clock.micros() != deadline) {
+				System.out.println("Tick "+tick+" ran at "+clock.micros()+" due "+deadline);
+				++failures;
+			}
+			++calls[0];
+			if(calls[0] % 10 == 0) {
+				clock.advance(period * 2 + period / 2); // past two more deadlines
+				expected[0] = deadline + period * 3;
+			} else {
+				clock.advance(period / 5);
+				expected[0] = deadline + period;
+			}
+			if(calls[0] == ticks)
+				loop[0].stop();
+		}, clock);
+		loop[0].run();
+		System.out.println("Virtual clock "+loop[0]);
+		if(loop[0].getTicks() != ticks || loop[0].getOverruns() != ticks / 10 || loop[0].getMissed() != 2 * (ticks / 10) ||
+				loop[0].getErrors() != 0 || loop[0].getWorstTickMicros() != period * 2 + period / 2) {
+			System.out.println("Expected ticks="+ticks+" overruns="+ticks/10+" missed="+2*(ticks/10)+" worst tick="+(period*2+period/2)+"us");
+			++failures;
+		}
+		JitterHistogram jitter = loop[0].getJitter();
+		if(jitter.getTotal() != ticks || jitter.getCount(0) != ticks) {
+			System.out.println("Expected "+ticks+" ticks on time:\n"+jitter);
+			++failures;
+		}
+	}
+
+	static void real(int rate, int seconds) throws InterruptedException {
+		long[] last = new long[] {-1L};
+		ControlLoop[] loop = new ControlLoop[1];
+		loop[0] = new ControlLoop(rate, (tick, deadline) -> {
+			if(last[0] != -1L && (deadline - last[0]) % loop[0].getPeriodMicros() != 0) {
+				System.out.println("Tick "+tick+" due "+deadline+" not a whole period after "+last[0]);
+				++failures;
+			}
+			last[0] = deadline;
+		});
+		loop[0].start();
+		Thread.sleep(seconds * 1000L);
+		loop[0].stop();
+		while(loop[0].isRunning())
+			Thread.sleep(1);
+		long scheduled = loop[0].getTicks() + loop[0].getMissed();
+		System.out.printf("System clock %d Hz for %d s: %s%n%s%n", rate, seconds, loop[0], loop[0].getJitter());
+		if(Math.abs(scheduled - (long)rate * seconds) > rate / 10 + 2) {
+			System.out.println("Scheduled "+scheduled+" ticks, expected about "+(long)rate * seconds);
+			++failures;
+		}
+		if(loop[0].getJitter().getTotal() != loop[0].getTicks()) {
+			System.out.println("Jitter histogram counted "+loop[0].getJitter().getTotal()+" of "+loop[0].getTicks()+" ticks");
+			++failures;
+		}
+	}
+}
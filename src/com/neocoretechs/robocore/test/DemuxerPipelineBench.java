@@ -0,0 +1,50 @@
+package com.neocoretechs.robocore.test;
+
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+/**
+ * Measure command throughput of the {@link AsynchDemuxer} against the {@link MarlinspikeDataPort} emulator
+ * with an emulated link latency, one command at a time and then with increasing pipeline windows.<p>
+ * java com.neocoretechs.robocore.test.DemuxerPipelineBench [commands] [latency micros]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class DemuxerPipelineBench {
+	static final String[] commands = { "G100", "M1", "M700" };
+	static final int[] windows = { 0, 1, 4, 16 };
+
+	public static void main(String[] args) throws Exception {
+		int count = 5000;
+		long latency = 1000;
+		if(args.length > 0)
+			count = Integer.parseInt(args[0]);
+		if(args.length > 1)
+			latency = Long.parseLong(args[1]);
+		for(int window : windows) {
+			MarlinspikeDataPort port = new MarlinspikeDataPort();
+			port.setLinkLatency(latency);
+			AsynchDemuxer demuxer = new AsynchDemuxer(null);
+			demuxer.setPipelineWindow(window);
+			demuxer.connect(port);
+			run(demuxer, count/10); // warm up
+			long start = System.nanoTime();
+			run(demuxer, count);
+			long elapsed = System.nanoTime() - start;
+			System.out.printf("window=%d commands=%d latency=%dus elapsed=%dms commands/sec=%.1f sequence errors=%d%n",
+					window, count, latency, elapsed/1000000, (count*1e9)/elapsed, demuxer.getSequenceErrors());
+			port.close();
+		}
+		System.exit(0);
+	}
+	/**
+	 * Feed commands and wait for all of them to complete. The request queue holds submission
+	 * when it is full.
+	 */
+	static void run(AsynchDemuxer demuxer, int count) throws InterruptedException {
+		long base = demuxer.getCommandsCompleted();
+		for(int i = 0; i < count; i++)
+			demuxer.addWrite(commands[i % commands.length]);
+		while(demuxer.getCommandsCompleted() - base < count)
+			Thread.sleep(1);
+	}
+}
@@ -0,0 +1,169 @@
+package com.neocoretechs.robocore.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.control.AbstractMotorControl;
+/**
+ * Check that the pipelined {@link AsynchDemuxer} sends again the commands the {@link MarlinspikeDataPort} emulator
+ * refuses. Lines are corrupted on the way to the emulator, every so often once and one command every time. The
+ * emulator refuses each for its checksum and those behind it for their line number. Every motor power level must be
+ * run once, in the order queued, except the one always corrupted, which must be dropped and counted as failed.
+ * Then a response is lost while the board streams unsolicited reports, which must not hold the window for good.<p>
+ * java com.neocoretechs.robocore.test.DemuxerResendTest [commands]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class DemuxerResendTest {
+	static final long TIMEOUT = 10000000000L; // nanoseconds to wait for the last command
+	static final int EVERY = 37; // lines between those corrupted once
+	static final int ALWAYS = 500; // power level of the command corrupted every time
+	static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		int commands = 2000;
+		if(args.length > 0)
+			commands = Integer.parseInt(args[0]);
+		for(int window : new int[] {1, 4, 16})
+			run(window, commands);
+		for(int window : new int[] {1, 4})
+			lost(window);
+		System.out.println("DemuxerResendTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static void run(int window, int commands) throws Exception {
+		NoisyBoard port = new NoisyBoard();
+		AsynchDemuxer demuxer = new AsynchDemuxer(null);
+		demuxer.setPipelineWindow(window);
+		demuxer.connect(port);
+		demuxer.addWrite("M10 Z0 T0");
+		// a one shot command between the levels so none is coalesced
+		for(int i = 0; i < commands; i++) {
+			demuxer.addWrite("G5 Z0 C1 P"+i);
+			demuxer.addWrite("G4 P0");
+		}
+		int last = commands - 1;
+		long start = System.nanoTime();
+		while(!port.powers.contains(last) && System.nanoTime() - start < TIMEOUT)
+			Thread.sleep(1);
+		List<Integer> expected = new ArrayList<Integer>();
+		for(int i = 0; i < commands; i++)
+			if(i != ALWAYS)
+				expected.add(i);
+		List<Integer> powers;
+		synchronized(port.powers) {
+			powers = new ArrayList<Integer>(port.powers);
+		}
+		System.out.printf("window=%2d: %d levels run of %d, %d lines corrupted, %d sequence errors, %d failed%n",
+				window, powers.size(), commands, port.corrupted, demuxer.getSequenceErrors(), demuxer.getCommandsFailed());
+		if(!powers.equals(expected)) {
+			for(int i = 0; i < Math.min(powers.size(), expected.size()); i++) {
+				if(!powers.get(i).equals(expected.get(i))) {
+					System.out.println("window "+window+" level "+powers.get(i)+" run where "+expected.get(i)+" was expected");
+					break;
+				}
+			}
+			++failures;
+		}
+		if(demuxer.getCommandsFailed() != 1 || demuxer.getSequenceErrors() == 0) {
+			System.out.println("window "+window+" expected the one command always corrupted to fail");
+			++failures;
+		}
+		port.close();
+	}
+	/**
+	 * Lose the response to one command of a few while reports arrive faster than the response wait. The command
+	 * must expire and those after it run.
+	 */
+	static void lost(int window) throws Exception {
+		ReportingBoard port = new ReportingBoard();
+		AsynchDemuxer demuxer = new AsynchDemuxer(null) {{ RESPONSE_WAIT_MS = 200; }};
+		demuxer.setPipelineWindow(window);
+		demuxer.connect(port);
+		demuxer.addWrite("M10 Z0 T0");
+		for(int i = 0; i < 10; i++) {
+			demuxer.addWrite("G5 Z0 C1 P"+i);
+			demuxer.addWrite("G4 P0");
+		}
+		long start = System.nanoTime();
+		while(!port.powers.contains(9) && System.nanoTime() - start < TIMEOUT)
+			Thread.sleep(1);
+		System.out.printf("window=%2d: response lost, %d levels run of 10, %d reports%n", window, port.powers.size(), port.reports);
+		if(!port.powers.contains(9)) {
+			System.out.println("window "+window+" the command whose response was lost never expired");
+			++failures;
+		}
+		port.close();
+	}
+	/**
+	 * An emulated board that loses the response to level {@link #LOST} and sends an unsolicited status report
+	 * whenever no response comes for {@link #REPORT_MS}.
+	 */
+	static class ReportingBoard extends NoisyBoard {
+		static final int LOST = 3;
+		static final long REPORT_MS = 5;
+		int written = 0, read = 0, lostAt = -1, reports = 0;
+		ReportingBoard() {
+			corrupting = false;
+		}
+		@Override
+		public synchronized void writeCommand(String command) throws IOException {
+			if(command.contains(" P"+LOST+"*"))
+				lostAt = written;
+			++written;
+			super.writeCommand(command);
+		}
+		@Override
+		public ArrayList<String> readResponse(long timeout) throws IOException {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+			while(System.nanoTime() < deadline) {
+				ArrayList<String> ret = super.readResponse(REPORT_MS);
+				if(ret == null) {
+					++reports;
+					return new ArrayList<String>(Arrays.asList("<status>", "unsolicited", "</status>"));
+				}
+				synchronized(this) {
+					if(read++ != lostAt)
+						return ret;
+				}
+			}
+			return null;
+		}
+	}
+	/**
+	 * An emulated board that corrupts the checksum of every {@link #EVERY}th line sent, and of the level
+	 * {@link #ALWAYS} whenever it is sent, and records the power levels its smart controller is commanded.
+	 */
+	static class NoisyBoard extends MarlinspikeDataPort {
+		final List<Integer> powers = Collections.synchronizedList(new ArrayList<Integer>());
+		int lines = 0, corrupted = 0;
+		boolean corrupting = true;
+		@Override
+		protected AbstractMotorControl createSmartController() {
+			return new MultiBoardHarness.ModelMotorControl() {
+				@Override
+				public int commandMotorPower(int... deviceLevel) {
+					powers.add(deviceLevel[1]);
+					return super.commandMotorPower(deviceLevel);
+				}
+			};
+		}
+		@Override
+		public synchronized void writeCommand(String command) throws IOException {
+			int star = command.lastIndexOf('*');
+			if(corrupting && !command.contains("M110") && (++lines % EVERY == 0 || command.contains(" P"+ALWAYS+"*"))) {
+				int checksum = Integer.parseInt(command.substring(star+1));
+				command = command.substring(0, star+1)+((checksum + 1) & 0xFF);
+				++corrupted;
+			}
+			super.writeCommand(command);
+		}
+	}
+}
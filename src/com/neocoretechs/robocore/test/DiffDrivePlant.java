@@ -0,0 +1,181 @@
+package com.neocoretechs.robocore.test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+/**
+ * Headless model of a differential drive robot in a walled rectangular arena, the plant a control loop closes around
+ * in place of the motors, encoders and sensors.<p>
+ * Each wheel speed follows the power commanded on its channel, -1000 to 1000, as a first order lag with a dead band
+ * and a gain that may differ between the wheels. The wheel speeds move the robot by unicycle kinematics over the wheel
+ * track and turn the wheel encoders, whose counts are whole ticks. The heading for an IMU stand-in and the range
+ * an ultrasonic sensor facing forward sees to the nearest wall, with noise, are taken from the true pose.<p>
+ * Positions are in millimeters, x to the right and y up from the lower left corner of the arena, theta
+ * counterclockwise from the x axis. The powers are set by the motor control model on the emulator thread
+ * and read as the plant steps on the control thread.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class DiffDrivePlant {
+	public static final int LEFT = 0;
+	public static final int RIGHT = 1;
+	final double wheelDiameter; // mm
+	final double track; // mm
+	final int ticksPerRevolution;
+	final double maxWheelSpeed; // mm/s at power 1000
+	final double tau; // seconds, motor time constant
+	final int deadBand; // power below which a wheel does not turn
+	final double[] gain = { 1.0, 1.0 };
+	final double arenaWidth, arenaHeight; // mm
+	final double maxRange = 4000.0; // mm the ultrasonic sensor can see
+	final double rangeNoise = 5.0; // mm standard deviation
+	final Random random;
+	final AtomicIntegerArray power = new AtomicIntegerArray(2);
+	double x, y, theta; // true pose
+	final double[] wheelSpeed = new double[2]; // mm/s
+	final double[] wheelTicks = new double[2];
+	double distance = 0.0; // mm travelled by the center
+	long timeMicros = 0L;
+	/**
+	 * @param wheelDiameter mm
+	 * @param track distance between the wheels, mm
+	 * @param ticksPerRevolution encoder ticks per turn of a wheel
+	 * @param maxWheelSpeed wheel rim speed at full power, mm/s
+	 * @param tau motor time constant, seconds
+	 * @param deadBand power below which the wheels do not move
+	 * @param arenaWidth mm
+	 * @param arenaHeight mm
+	 * @param seed of the sensor noise
+	 */
+	public DiffDrivePlant(double wheelDiameter, double track, int ticksPerRevolution, double maxWheelSpeed, double tau, int deadBand,
+			double arenaWidth, double arenaHeight, long seed) {
+		this.wheelDiameter = wheelDiameter;
+		this.track = track;
+		this.ticksPerRevolution = ticksPerRevolution;
+		this.maxWheelSpeed = maxWheelSpeed;
+		this.tau = tau;
+		this.deadBand = deadBand;
+		this.arenaWidth = arenaWidth;
+		this.arenaHeight = arenaHeight;
+		this.random = new Random(seed);
+	}
+	/**
+	 * Place the robot, at rest.
+	 */
+	public void setPose(double x, double y, double theta) {
+		this.x = x;
+		this.y = y;
+		this.theta = theta;
+	}
+	/**
+	 * @param wheel LEFT or RIGHT
+	 * @param gain the fraction of the nominal speed the wheel reaches for its power, as from a weaker motor
+	 */
+	public void setGain(int wheel, double gain) {
+		this.gain[wheel] = gain;
+	}
+	/**
+	 * @param wheel LEFT or RIGHT
+	 * @param level -1000 to 1000
+	 */
+	public void setPower(int wheel, int level) {
+		power.set(wheel, Math.max(-1000, Math.min(1000, level)));
+	}
+
+	public int getPower(int wheel) {
+		return power.get(wheel);
+	}
+	/**
+	 * Run the plant forward to the given time in steps of at most stepMicros.
+	 * @param micros the time to advance to, at or after the present time
+	 * @param stepMicros the longest integration step
+	 */
+	public void advanceTo(long micros, long stepMicros) {
+		while(timeMicros < micros) {
+			long step = Math.min(stepMicros, micros - timeMicros);
+			step(step / 1e6);
+			timeMicros += step;
+		}
+	}
+
+	private void step(double dt) {
+		double decay = Math.exp(-dt / tau);
+		for(int w = LEFT; w <= RIGHT; w++) {
+			int p = power.get(w);
+			double target = Math.abs(p) < deadBand ? 0.0 : gain[w] * maxWheelSpeed * p / 1000.0;
+			wheelSpeed[w] = target + (wheelSpeed[w] - target) * decay;
+			wheelTicks[w] += wheelSpeed[w] * dt * ticksPerRevolution / (Math.PI * wheelDiameter);
+		}
+		double v = (wheelSpeed[LEFT] + wheelSpeed[RIGHT]) / 2.0;
+		double w = (wheelSpeed[RIGHT] - wheelSpeed[LEFT]) / track;
+		double mid = theta + w * dt / 2.0;
+		x += v * Math.cos(mid) * dt;
+		y += v * Math.sin(mid) * dt;
+		theta += w * dt;
+		distance += Math.abs(v) * dt;
+	}
+	/**
+	 * @param wheel LEFT or RIGHT
+	 * @return whole encoder ticks counted, negative in reverse
+	 */
+	public long getEncoder(int wheel) {
+		return (long)Math.floor(wheelTicks[wheel]);
+	}
+	/**
+	 * @return the true heading in compass degrees 0 to 360, clockwise, 0 along the x axis
+	 */
+	public double getHeadingDegrees() {
+		double deg = -Math.toDegrees(theta) % 360.0;
+		return deg < 0 ? deg + 360.0 : deg;
+	}
+	/**
+	 * @return the range to the nearest wall straight ahead with sensor noise, in mm, maxRange if none in sight
+	 */
+	public double getRange() {
+		double wall = wallDistance();
+		if(wall >= maxRange)
+			return maxRange;
+		return Math.max(0.0, wall + random.nextGaussian() * rangeNoise);
+	}
+	/**
+	 * @return the true distance to the wall straight ahead, in mm
+	 */
+	public double wallDistance() {
+		double c = Math.cos(theta), s = Math.sin(theta);
+		double d = Double.POSITIVE_INFINITY;
+		if(c > 1e-9)
+			d = Math.min(d, (arenaWidth - x) / c);
+		else if(c < -1e-9)
+			d = Math.min(d, -x / c);
+		if(s > 1e-9)
+			d = Math.min(d, (arenaHeight - y) / s);
+		else if(s < -1e-9)
+			d = Math.min(d, -y / s);
+		return d;
+	}
+
+	public boolean collided() {
+		return x < 0 || y < 0 || x > arenaWidth || y > arenaHeight;
+	}
+
+	public double getX() { return x; }
+
+	public double getY() { return y; }
+
+	public double getTheta() { return theta; }
+	/**
+	 * @param wheel LEFT or RIGHT
+	 * @return the true rim speed of the wheel, mm/s
+	 */
+	public double getWheelSpeed(int wheel) { return wheelSpeed[wheel]; }
+
+	public double getDistance() { return distance; }
+
+	public long getTimeMicros() { return timeMicros; }
+
+	@Override
+	public String toString() {
+		return String.format("t=%.3fs x=%.1f y=%.1f heading=%.2f speed L=%.1f R=%.1f power L=%d R=%d encoders L=%d R=%d",
+				timeMicros / 1e6, x, y, getHeadingDegrees(), wheelSpeed[LEFT], wheelSpeed[RIGHT], power.get(LEFT), power.get(RIGHT),
+				getEncoder(LEFT), getEncoder(RIGHT));
+	}
+}
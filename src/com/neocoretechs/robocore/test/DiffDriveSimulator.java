@@ -0,0 +1,410 @@
+package com.neocoretechs.robocore.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+
+import com.neocoretechs.robocore.PID.BatchedPIDController;
+import com.neocoretechs.robocore.PID.IMUSetpointInfo;
+import com.neocoretechs.robocore.PID.MotionPIDController;
+import com.neocoretechs.robocore.config.TypedWrapper;
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.marlinspike.MarlinspikeManager;
+import com.neocoretechs.robocore.propulsion.ControlLoop;
+import com.neocoretechs.robocore.propulsion.RobotDiffDrive;
+import com.neocoretechs.robocore.propulsion.RobotDiffDriveInterface;
+import com.neocoretechs.robocore.propulsion.TwistInfo;
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.VirtualClock;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.control.AbstractMotorControl;
+/**
+ * Close the loop from cmd_vel through the motors to odometry without hardware, faster than real time.<p>
+ * The robot is configured as a properties file would give it, two smart controller wheels parsed into a
+ * {@link RobotDiffDrive} and a {@link MarlinspikeManager}, whose {@link AsynchDemuxer} sends the M10 startup and every
+ * G5 motor power to a {@link MarlinspikeDataPort} emulator. The smart controller behind the emulator drives the wheels of a
+ * {@link DiffDrivePlant}, whose encoders, {@link SimulatedIMU} heading and forward ultrasonic range are read back.<p>
+ * A {@link ControlLoop} on a {@link VirtualClock} runs the control at a fixed rate: the plant is advanced to each deadline,
+ * wheel speeds are taken from the encoder counts, odometry is integrated into a {@link TwistInfo}, the linear and angular
+ * velocity of the scenario become wheel speed setpoints, held to a heading through the {@link MotionPIDController} and
+ * {@link IMUSetpointInfo} as MotionController does, and the wheel speed {@link BatchedPIDController} of the LUNs computes
+ * the power sent to each channel. Each tick waits until the emulator has applied its powers, so a run is reproducible.<p>
+ * The scenarios drive straight holding a heading with one motor weaker than the other, turn in place to a new heading,
+ * and drive at a wall until the ultrasonic range says stop. Each reports the settling time and overshoot of its step,
+ * the odometry error against the true pose, the CPU per control tick, and how much faster than real time it ran.<p>
+ * java com.neocoretechs.robocore.test.DiffDriveSimulator [control rate Hz]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class DiffDriveSimulator {
+	static final long STEP_MICROS = 1000L; // plant integration step
+	static final long TIMEOUT = 5000000000L; // nanoseconds to wait for the emulator to apply a power
+	static final double WHEEL_DIAMETER = 150.0; // mm
+	static final double WHEEL_TRACK = 400.0; // mm
+	static final int TICKS_PER_REVOLUTION = 4096;
+	static final double MAX_WHEEL_SPEED = 1000.0; // mm/s at full power
+	static final double MAX_CORRECTION = 300.0; // mm/s of wheel speed the heading PID may apply
+	static final double HEADING_SCALE = 4.0; // mm/s of wheel speed per unit of heading PID output
+	static int failures = 0;
+	/**
+	 * The commanded motion at a time into a scenario.
+	 */
+	interface Scenario {
+		/**
+		 * @param sim the simulation, for its sensor readings
+		 * @param t seconds since the start
+		 * @param cmd set to linear velocity mm/s, angular velocity radians/s counterclockwise, and a compass heading to
+		 * hold or NaN, ignored unless the angular velocity is 0
+		 * @return false to end the scenario
+		 */
+		boolean command(Simulation sim, double t, double[] cmd);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int rate = 50;
+		if(args.length > 0)
+			rate = Integer.parseInt(args[0]);
+		run(rate, "warm up", 1.0, (sim, t, cmd) -> { cmd[0] = 200; cmd[2] = sim.startHeading; return t < 2.0; }, false);
+		Simulation straight = run(rate, "straight 400mm/s holding heading", 0.95, (sim, t, cmd) -> {
+			cmd[0] = 400;
+			cmd[2] = sim.startHeading;
+			return t < 6.0;
+		}, true);
+		Report speed = Report.step(straight, straight.speed, 0, straight.ticks, 0.0, 400.0, 8.0);
+		speed.print("  center speed");
+		double drift = Math.abs(wrap(straight.plant.getHeadingDegrees() - straight.startHeading));
+		System.out.printf("  heading held within %.2f degrees, off by %.2f at the end%n", straight.maxHeadingError, drift);
+		expect(speed.settling < 1.0 && speed.overshoot < 25.0, "speed to settle within 1s and overshoot less than 25%");
+		expect(straight.maxHeadingError < 3.0, "heading held within 3 degrees");
+		expect(straight.odometryDistanceError() < 0.02 * straight.plant.getDistance(), "odometry within 2% of the distance travelled");
+
+		Simulation turn = run(rate, "turn in place 90 degrees clockwise", 1.0, (sim, t, cmd) -> {
+			cmd[0] = 0;
+			cmd[2] = (sim.startHeading + 90.0) % 360.0;
+			return t < 6.0;
+		}, true);
+		Report heading = Report.step(turn, turn.heading, 0, turn.ticks, 0.0, 90.0, 1.8);
+		heading.print("  heading change");
+		expect(heading.settling < 4.0 && heading.overshoot < 20.0, "heading to settle within 4s and overshoot less than 20%");
+
+		Simulation wall = run(rate, "drive at a wall 5000mm ahead, stop at 600mm", 1.0, (sim, t, cmd) -> {
+			if(sim.range < 600.0)
+				sim.stopped = true;
+			cmd[0] = sim.stopped ? 0 : 400;
+			cmd[2] = sim.startHeading;
+			return t < 12.0;
+		}, true);
+		double left = wall.plant.wallDistance();
+		System.out.printf("  stopped %.1fmm from the wall, travelled %.1fmm%n", left, wall.plant.getDistance());
+		expect(!wall.plant.collided() && left > 300.0 && left < 600.0, "to stop between 300 and 600mm from the wall");
+
+		System.out.println("DiffDriveSimulator "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static void expect(boolean ok, String what) {
+		if(!ok) {
+			System.out.println("  Expected "+what);
+			++failures;
+		}
+	}
+	/**
+	 * @return degrees reduced to -180 to 180
+	 */
+	static double wrap(double degrees) {
+		degrees %= 360.0;
+		if(degrees <= -180.0)
+			degrees += 360.0;
+		if(degrees > 180.0)
+			degrees -= 360.0;
+		return degrees;
+	}
+
+	/**
+	 * @return the CPU time of all live threads in nanoseconds
+	 */
+	static long threadsCpu() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long sum = 0L;
+		for(long cpu : threads.getThreadCpuTime(threads.getAllThreadIds()))
+			if(cpu > 0)
+				sum += cpu;
+		return sum;
+	}
+
+	static Simulation run(int rate, String name, double rightGain, Scenario scenario, boolean report) throws Exception {
+		Simulation sim = new Simulation(rate, rightGain, scenario);
+		// per thread, the process CPU time is counted in scheduler ticks as coarse as 10ms
+		long cpu = -threadsCpu();
+		long start = System.nanoTime();
+		sim.loop.run();
+		long wall = System.nanoTime() - start;
+		cpu += threadsCpu();
+		sim.close();
+		if(sim.error != null) {
+			System.out.println(name+" failed: "+sim.error);
+			++failures;
+		}
+		if(report) {
+			double simulated = sim.plant.getTimeMicros() / 1e6;
+			System.out.printf("%s: %d ticks at %d Hz, %.1fs simulated in %.3fs, %.0fx real time%n", name, sim.ticks, rate,
+					simulated, wall / 1e9, simulated / (wall / 1e9));
+			System.out.printf("  CPU per control tick: %.1fus control, %.1fus all threads with demuxer and emulator%n",
+					sim.controlCpu / 1e3 / sim.ticks, cpu / 1e3 / sim.ticks);
+			System.out.printf("  odometry x=%.1f y=%.1f theta=%.2f true x=%.1f y=%.1f theta=%.2f, off by %.1fmm%n",
+					sim.twist.getX(), sim.twist.getY(), Math.toDegrees(sim.twist.getRobotTheta()),
+					sim.plant.getX(), sim.plant.getY(), Math.toDegrees(sim.plant.getTheta()), sim.odometryDistanceError());
+		}
+		return sim;
+	}
+	/**
+	 * One run of a scenario, the plant, emulator and control loop.
+	 */
+	static class Simulation implements ControlLoop.Tick {
+		final DiffDrivePlant plant;
+		final SimulatedIMU imu;
+		final VirtualClock clock = new VirtualClock(0L);
+		final SimulatedRobot robot = new SimulatedRobot();
+		final PlantBoard board;
+		final AsynchDemuxer demuxer;
+		final BatchedPIDController speedPID;
+		final MotionPIDController headingPID = new MotionPIDController(1.5f, 4.0f, 0f, 1f, 30);
+		final IMUSetpointInfo headingSetpoint = new IMUSetpointInfo();
+		final TwistInfo twist = new TwistInfo();
+		final ControlLoop loop;
+		final Scenario scenario;
+		final int leftLun, rightLun;
+		final float[] setpoint, measured;
+		final double mmPerTick;
+		final double dt;
+		final double[] cmd = new double[3];
+		final double[] speed, heading; // per tick, true center speed and heading change from the start
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long lastLeft, lastRight;
+		long controlCpu = 0L;
+		int ticks = 0;
+		double startHeading;
+		double range;
+		double maxHeadingError = 0.0;
+		boolean stopped = false;
+		String error = null;
+
+		Simulation(int rate, double rightGain, Scenario scenario) throws Exception {
+			this.scenario = scenario;
+			plant = new DiffDrivePlant(WHEEL_DIAMETER, WHEEL_TRACK, TICKS_PER_REVOLUTION, MAX_WHEEL_SPEED, 0.15, 30, 6000.0, 6000.0, 1L);
+			plant.setPose(1000.0, 3000.0, 0.0);
+			plant.setGain(DiffDrivePlant.RIGHT, rightGain);
+			imu = new SimulatedIMU(plant, 0.1, 0.01, 2L);
+			RobotDiffDriveInterface drive = robot.getDiffDrive();
+			leftLun = robot.getLUN("LeftWheel");
+			rightLun = robot.getLUN("RightWheel");
+			mmPerTick = Math.PI * drive.getLeftWheel(1).getTickSetpointInfo().getWheelDiameter() / TICKS_PER_REVOLUTION;
+			speedPID = BatchedPIDController.fromConfig(robot.getLUN(), robot.getPID());
+			setpoint = new float[speedPID.getChannels()];
+			measured = new float[speedPID.getChannels()];
+			headingSetpoint.setMaximum(45);
+			headingSetpoint.setMinimum(-45);
+			MarlinspikeManager manager = new MarlinspikeManager(robot);
+			manager.createControllers(false);
+			board = new PlantBoard(plant);
+			board.setClock(clock);
+			manager.configureDemuxer(board);
+			demuxer = manager.getDemuxer();
+			MultiBoardHarness.awaitStartup(demuxer);
+			startHeading = imu.readEuler()[0];
+			loop = new ControlLoop(rate, this, clock);
+			dt = loop.getPeriodMicros() / 1e6;
+			speed = new double[(int)(30.0 / dt)];
+			heading = new double[speed.length];
+		}
+
+		@Override
+		public void tick(long tick, long deadlineMicros) throws Exception {
+			try {
+				control(deadlineMicros);
+			} catch(RuntimeException e) {
+				error = e.toString();
+				loop.stop();
+				throw e;
+			}
+		}
+
+		void control(long deadlineMicros) throws InterruptedException {
+			plant.advanceTo(deadlineMicros, STEP_MICROS);
+			long cpu = threads.getCurrentThreadCpuTime();
+			// sensors
+			long encLeft = plant.getEncoder(DiffDrivePlant.LEFT), encRight = plant.getEncoder(DiffDrivePlant.RIGHT);
+			double dl = (encLeft - lastLeft) * mmPerTick, dr = (encRight - lastRight) * mmPerTick;
+			lastLeft = encLeft;
+			lastRight = encRight;
+			measured[leftLun] = (float)(dl / dt);
+			measured[rightLun] = (float)(dr / dt);
+			double yaw = imu.readEuler()[0];
+			range = plant.getRange();
+			// odometry
+			double dtheta = (dr - dl) / WHEEL_TRACK;
+			double mid = twist.getRobotTheta() + dtheta / 2.0;
+			twist.setX((float)(twist.getX() + (dl + dr) / 2.0 * Math.cos(mid)));
+			twist.setY((float)(twist.getY() + (dl + dr) / 2.0 * Math.sin(mid)));
+			twist.setRobotTheta((float)(twist.getRobotTheta() + dtheta));
+			twist.setImuTheta((float)Math.toRadians(yaw));
+			double t = deadlineMicros / 1e6;
+			cmd[0] = cmd[1] = 0.0;
+			cmd[2] = Double.NaN;
+			if(!scenario.command(this, t, cmd) || ticks == speed.length) {
+				loop.stop();
+				return;
+			}
+			// cmd_vel to wheel speeds
+			double vl = cmd[0] - cmd[1] * WHEEL_TRACK / 2.0, vr = cmd[0] + cmd[1] * WHEEL_TRACK / 2.0;
+			if(cmd[1] == 0.0 && !Double.isNaN(cmd[2])) {
+				headingSetpoint.setDesiredTarget((float)cmd[2]);
+				headingSetpoint.setTarget((float)yaw);
+				headingPID.Compute(headingSetpoint);
+				// error positive when the heading must increase, clockwise, left wheel faster
+				double correction = Math.max(-MAX_CORRECTION, Math.min(MAX_CORRECTION, headingPID.getOutput() * HEADING_SCALE));
+				vl += correction;
+				vr -= correction;
+				if(cmd[2] == startHeading)
+					maxHeadingError = Math.max(maxHeadingError, Math.abs(wrap(plant.getHeadingDegrees() - startHeading)));
+			}
+			setpoint[leftLun] = (float)vl;
+			setpoint[rightLun] = (float)vr;
+			float[] power = speedPID.compute(setpoint, measured, (float)dt);
+			int pl = Math.round(power[leftLun]), pr = Math.round(power[rightLun]);
+			controlCpu += threads.getCurrentThreadCpuTime() - cpu;
+			command(pl, pr);
+			speed[ticks] = (plant.getWheelSpeed(DiffDrivePlant.LEFT) + plant.getWheelSpeed(DiffDrivePlant.RIGHT)) / 2.0;
+			heading[ticks] = wrap(plant.getHeadingDegrees() - startHeading);
+			++ticks;
+		}
+		/**
+		 * Send the powers through the demuxer and wait for the emulator to apply them to the plant.
+		 */
+		void command(int left, int right) throws InterruptedException {
+			demuxer.addWrite("G5 Z0 C1 P"+left);
+			demuxer.addWrite("G5 Z0 C2 P"+right);
+			long start = System.nanoTime();
+			while(plant.getPower(DiffDrivePlant.LEFT) != left || plant.getPower(DiffDrivePlant.RIGHT) != right) {
+				if(System.nanoTime() - start > TIMEOUT) {
+					error = "powers "+left+","+right+" not applied: "+plant;
+					loop.stop();
+					return;
+				}
+				Thread.yield();
+			}
+		}
+
+		double odometryDistanceError() {
+			return Math.hypot(plant.getX() - 1000.0 - twist.getX(), plant.getY() - 3000.0 - twist.getY());
+		}
+
+		void close() {
+			board.close();
+		}
+	}
+	/**
+	 * Step response of a series recorded each tick.
+	 */
+	static class Report {
+		double settling; // seconds after the step until the series stays within the band
+		double overshoot; // percent of the step beyond the target
+		double finalValue;
+
+		static Report step(Simulation sim, double[] series, int from, int to, double initial, double target, double band) {
+			Report r = new Report();
+			double step = target - initial;
+			double peak = 0.0;
+			int last = from;
+			for(int i = from; i < to; i++) {
+				peak = Math.max(peak, (series[i] - target) * Math.signum(step));
+				if(Math.abs(series[i] - target) > band)
+					last = i + 1;
+			}
+			r.settling = (last - from) * sim.dt;
+			r.overshoot = 100.0 * peak / Math.abs(step);
+			r.finalValue = series[to - 1];
+			return r;
+		}
+
+		void print(String what) {
+			System.out.printf("%s settled in %.2fs, overshoot %.1f%%, final %.2f%n", what, settling, overshoot, finalValue);
+		}
+	}
+	/**
+	 * An emulated board whose smart controller drives the wheels of the plant.
+	 */
+	static class PlantBoard extends MarlinspikeDataPort {
+		final PlantMotorControl motors;
+		PlantBoard(DiffDrivePlant plant) {
+			motors = new PlantMotorControl(plant);
+		}
+		@Override
+		protected AbstractMotorControl createSmartController() {
+			return motors;
+		}
+	}
+	/**
+	 * A smart controller whose channel 1 is the left wheel and channel 2 the right wheel of the plant.
+	 */
+	static class PlantMotorControl extends MultiBoardHarness.ModelMotorControl {
+		final DiffDrivePlant plant;
+		PlantMotorControl(DiffDrivePlant plant) {
+			this.plant = plant;
+		}
+		@Override
+		public int commandMotorPower(int... deviceLevel) {
+			super.commandMotorPower(deviceLevel);
+			plant.setPower(deviceLevel[0] - 1, deviceLevel[1]);
+			return 0;
+		}
+		@Override
+		public int commandEmergencyStop(int status) {
+			plant.setPower(DiffDrivePlant.LEFT, 0);
+			plant.setPower(DiffDrivePlant.RIGHT, 0);
+			return super.commandEmergencyStop(status);
+		}
+	}
+	/**
+	 * The board configuration of {@link MultiBoardHarness} with the wheel geometry, speed limits and wheel speed PID
+	 * gains of a diff drive.
+	 */
+	static class SimulatedRobot extends MultiBoardHarness.SyntheticRobot {
+		final TypedWrapper[] wheel, pid, axis;
+		final RobotDiffDrive drive;
+		SimulatedRobot() {
+			super("Simulator");
+			wheel = new TypedWrapper[lun.length];
+			pid = new TypedWrapper[lun.length];
+			axis = new TypedWrapper[lun.length];
+			for(int i = 0; i < lun.length; i++) {
+				lun[i].put("MinValue", "-1000");
+				lun[i].put("MaxValue", "1000");
+				HashMap<String, Object> w = new HashMap<String, Object>();
+				w.put("WheelTrackMM", String.valueOf(WHEEL_TRACK));
+				w.put("WheelDiameterMM", String.valueOf(WHEEL_DIAMETER));
+				w.put("TicksPerRevolution", String.valueOf(TICKS_PER_REVOLUTION));
+				wheel[i] = new TypedWrapper(w);
+				HashMap<String, Object> p = new HashMap<String, Object>();
+				boolean isWheel = ((String)lun[i].get("Name")).endsWith("Wheel");
+				p.put("MotorKp", isWheel ? "0.8" : "0");
+				p.put("MotorKi", isWheel ? "6.0" : "0");
+				p.put("MotorKd", "0");
+				p.put("MotorKo", "1");
+				p.put("MotorPIDRate", "50");
+				pid[i] = new TypedWrapper(p);
+				HashMap<String, Object> a = new HashMap<String, Object>();
+				a.put("AxisX", "0");
+				a.put("AxisY", "2");
+				axis[i] = new TypedWrapper(a);
+			}
+			drive = new RobotDiffDrive(lun, wheel, axis, pid);
+		}
+		@Override
+		public RobotDiffDriveInterface getDiffDrive() { return drive; }
+		@Override
+		public TypedWrapper[] getWHEEL() { return wheel; }
+		@Override
+		public TypedWrapper[] getPID() { return pid; }
+		@Override
+		public TypedWrapper[] getAXIS() { return axis; }
+	}
+}
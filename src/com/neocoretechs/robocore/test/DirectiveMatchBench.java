@@ -0,0 +1,112 @@
+package com.neocoretechs.robocore.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Set;
+
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+/**
+ * Compare AsynchDemuxer.parseDirective through the {@link com.neocoretechs.robocore.marlinspike.DirectiveTrie} with
+ * the substring and linear key scan it replaced, feeding both the lines recorded from the {@link MarlinspikeDataPort}
+ * emulator for a mix of commands, reports and errors.<p>
+ * java com.neocoretechs.robocore.test.DirectiveMatchBench [passes]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class DirectiveMatchBench {
+	static final String[] commands = { "G100", "M1", "M2", "M700", "M115", "M44 P12", "M799", "M999",
+			"G77", "M777", "M10 Z1 T9", "N5 G100*3", "M41" };
+
+	public static void main(String[] args) throws Exception {
+		int passes = 20000;
+		if(args.length > 0)
+			passes = Integer.parseInt(args[0]);
+		MarlinspikeDataPort marlinspike = new MarlinspikeDataPort();
+		AsynchDemuxer demuxer = new AsynchDemuxer(null);
+		demuxer.connect(marlinspike);
+		ArrayList<String> recorded = new ArrayList<String>();
+		for(String cmd : commands)
+			for(String s : marlinspike.sendCommand(cmd))
+				for(String l : s.split("[\r\n]"))
+					if(!l.trim().isEmpty())
+						recorded.add(l.trim());
+		String[] lines = recorded.toArray(new String[recorded.size()]);
+		Set<String> keys = demuxer.getTopicNames();
+		int mismatch = 0;
+		for(String line : lines) {
+			String n = demuxer.parseDirective(line), o = legacyParseDirective(line, keys);
+			if(n == null ? o != null : !n.equals(o)) {
+				++mismatch;
+				System.out.println("Differs: "+line+" trie:"+n+" scan:"+o);
+			}
+		}
+		System.out.println(lines.length+" recorded lines, "+mismatch+" resolve differently");
+		for(int pass = 0; pass < 2; pass++) { // first pass warms up
+			int hits = 0;
+			long alloc = allocated();
+			long start = System.nanoTime();
+			for(int i = 0; i < passes; i++)
+				for(String line : lines)
+					if(legacyParseDirective(line, keys) != null)
+						++hits;
+			report(pass, "substring and scan", passes * lines.length, System.nanoTime() - start, allocated() - alloc, hits);
+			hits = 0;
+			alloc = allocated();
+			start = System.nanoTime();
+			for(int i = 0; i < passes; i++)
+				for(String line : lines)
+					if(demuxer.parseDirective(line) != null)
+						++hits;
+			report(pass, "trie              ", passes * lines.length, System.nanoTime() - start, allocated() - alloc, hits);
+		}
+		System.exit(0);
+	}
+
+	static void report(int pass, String name, long count, long nanos, long bytes, int hits) {
+		if(pass > 0)
+			System.out.printf("%s %8.1f ns/line %8.1f bytes/line (%d resolved)%n", name, (double)nanos/count, (double)bytes/count, hits);
+	}
+
+	static long allocated() {
+		return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+	/**
+	 * AsynchDemuxer.parseDirective before the trie.
+	 */
+	static String legacyParseDirective(String line, Set<String> keys) {
+		int endDelim = -1;
+		String fop;
+		try {
+			if(line.charAt(0) == '<' ) {
+				endDelim = line.indexOf("/>");
+				if(endDelim == -1)
+					endDelim = line.indexOf('>');
+				if( endDelim == -1 ) {
+					return null;
+				}
+				fop = line.substring(1, endDelim);
+				if(fop.startsWith("/"))
+					fop = fop.substring(1);
+				if(fop.endsWith("/"))
+					fop = fop.substring(0,fop.length()-1);
+				if(fop.contains(" ")) {
+					Iterator<String> it = keys.iterator();
+					while(it.hasNext()) {
+						String directive = (String)it.next();
+						endDelim = fop.indexOf(directive);
+						if(endDelim != -1) {
+							return directive;
+						}
+					}
+					return null;
+				}
+				return fop;
+			}
+		} catch (IndexOutOfBoundsException ioob) {
+			return null;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,72 @@
+package com.neocoretechs.robocore.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.VirtualClock;
+/**
+ * Measure the command processing of the {@link MarlinspikeDataPort} emulator, tokenizing, dispatch and building the
+ * response, in commands per second and bytes allocated per command, for each of a set of commands that need no
+ * hardware and then for all of them interleaved. The emulator runs on a {@link VirtualClock} so dwells and
+ * acquisition intervals cost nothing and only the processing is measured.<p>
+ * Each command is checked to give the same response every time it is issued, and none to be reported as
+ * unknown or malformed.<p>
+ * java com.neocoretechs.robocore.test.EmulatorCommandBench [commands per measurement]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class EmulatorCommandBench {
+	static final String[] commands = { "G4 P5", "G99 T4000", "G100", "M1", "M44 P12", "M110 N0",
+			"M115", "M700", "M802 P0 S10 M100", "M705", "N1 M110*34" };
+	static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		int count = 200000;
+		if(args.length > 0)
+			count = Integer.parseInt(args[0]);
+		MarlinspikeDataPort port = new MarlinspikeDataPort();
+		port.setClock(new VirtualClock());
+		ArrayList<ArrayList<String>> expected = new ArrayList<ArrayList<String>>();
+		for(String command : commands) {
+			ArrayList<String> response = port.sendCommand(command);
+			for(String line : response) {
+				if(line.contains("UNKNOWN") || line.contains("MALFORMED") || line.startsWith("Neither")) {
+					System.out.println(command+" rejected: "+line.trim());
+					++failures;
+				}
+			}
+			expected.add(response);
+		}
+		for(int pass = 0; pass < 2; pass++) { // first pass warms up
+			boolean report = (pass > 0);
+			for(int c = 0; c < commands.length; c++)
+				measure(report, port, new String[] {commands[c]}, expected.subList(c, c+1), count);
+			measure(report, port, commands, expected, count);
+		}
+		System.out.println("EmulatorCommandBench "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static void measure(boolean report, MarlinspikeDataPort port, String[] cmds, java.util.List<ArrayList<String>> expected, int count) throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long allocated = threads.getCurrentThreadAllocatedBytes();
+		long start = System.nanoTime();
+		int mismatch = -1;
+		for(int i = 0; i < count; i++) {
+			int c = i % cmds.length;
+			ArrayList<String> response = port.sendCommand(cmds[c]);
+			if(mismatch == -1 && !response.equals(expected.get(c)))
+				mismatch = c;
+		}
+		long elapsed = System.nanoTime() - start;
+		allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+		if(mismatch != -1) {
+			System.out.println(cmds[mismatch]+" response changed from "+expected.get(mismatch));
+			++failures;
+		}
+		if(report)
+			System.out.printf("%-20s %10.0f commands/sec %8.1f bytes allocated/command%n",
+				cmds.length == 1 ? cmds[0] : "interleaved", count*1e9/elapsed, (double)allocated/count);
+	}
+}
@@ -0,0 +1,186 @@
+package com.neocoretechs.robocore.test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.neocoretechs.robocore.serialreader.FramedResponseReader;
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+/**
+ * Check framing of {@link FramedResponseReader} against the {@link MarlinspikeDataPort} emulator over an in memory
+ * channel pair, with responses split into small chunks and pipelined back to back, then compare latency and garbage
+ * per command with the single read the ByteSerialDataPort used before, which allocated a new buffer and polled with short sleeps.<p>
+ * java com.neocoretechs.robocore.test.FramedResponseReaderBench [commands] [chunk bytes]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class FramedResponseReaderBench {
+	static final String[] commands = { "G100", "M1", "M700", "M115", "M999", "M44 P99" };
+
+	public static void main(String[] args) throws Exception {
+		int count = 20000;
+		int chunk = 7;
+		if(args.length > 0)
+			count = Integer.parseInt(args[0]);
+		if(args.length > 1)
+			chunk = Integer.parseInt(args[1]);
+		Pipe toFirmware = Pipe.open();
+		Pipe fromFirmware = Pipe.open();
+		Firmware firmware = new Firmware(toFirmware.source(), fromFirmware.sink());
+		Thread ft = new Thread(firmware);
+		ft.setDaemon(true);
+		ft.start();
+		fromFirmware.source().configureBlocking(false);
+		FramedResponseReader framer = new FramedResponseReader(fromFirmware.source());
+		MarlinspikeDataPort reference = new MarlinspikeDataPort();
+		// framing, one at a time then pipelined, responses chunked
+		firmware.chunk = chunk;
+		int failures = 0;
+		for(String cmd : commands) {
+			send(toFirmware.sink(), cmd);
+			failures += verify(framer, cmd, reference);
+		}
+		for(String cmd : commands)
+			send(toFirmware.sink(), cmd);
+		for(String cmd : commands)
+			failures += verify(framer, cmd, reference);
+		System.out.println("Framing "+(failures == 0 ? "passed" : "FAILED "+failures));
+		// latency and garbage, whole responses written at once as the old single read expects
+		firmware.chunk = Integer.MAX_VALUE;
+		ByteBuffer ack = ByteBuffer.wrap("M1\r".getBytes());
+		for(int pass = 0; pass < 2; pass++) { // first pass warms up
+			long alloc = allocated();
+			long start = System.nanoTime();
+			for(int i = 0; i < count; i++) {
+				ack.rewind();
+				toFirmware.sink().write(ack);
+				legacyRead(fromFirmware.source());
+			}
+			report(pass, "single read      ", count, System.nanoTime() - start, allocated() - alloc);
+			alloc = allocated();
+			start = System.nanoTime();
+			for(int i = 0; i < count; i++) {
+				ack.rewind();
+				toFirmware.sink().write(ack);
+				framer.readResponse(0);
+			}
+			report(pass, "framed in place  ", count, System.nanoTime() - start, allocated() - alloc);
+			alloc = allocated();
+			start = System.nanoTime();
+			for(int i = 0; i < count; i++) {
+				ack.rewind();
+				toFirmware.sink().write(ack);
+				framer.readResponse(0);
+				framer.getLines(new ArrayList<String>(framer.lineCount()));
+			}
+			report(pass, "framed as Strings", count, System.nanoTime() - start, allocated() - alloc);
+		}
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static void report(int pass, String name, int count, long nanos, long bytes) {
+		if(pass > 0)
+			System.out.printf("%s %8.2f us/command %8.1f bytes/command%n", name, nanos/1000.0/count, (double)bytes/count);
+	}
+
+	static long allocated() {
+		return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+
+	static void send(Pipe.SinkChannel sink, String cmd) throws IOException {
+		ByteBuffer bb = ByteBuffer.wrap((cmd+"\r").getBytes());
+		while(bb.hasRemaining())
+			sink.write(bb);
+	}
+	/**
+	 * Compare the next framed response with the emulator's response split into lines.
+	 */
+	static int verify(FramedResponseReader framer, String cmd, MarlinspikeDataPort reference) throws IOException {
+		ArrayList<String> expected = lines(reference.sendCommand(cmd));
+		if(!framer.readResponse(2000)) {
+			System.out.println(cmd+" timed out with "+framer.lineCount()+" lines");
+			return 1;
+		}
+		ArrayList<String> got = framer.getLines(new ArrayList<String>());
+		if(!got.equals(expected)) {
+			System.out.println(cmd+" expected "+expected+" got "+got);
+			return 1;
+		}
+		return 0;
+	}
+
+	static ArrayList<String> lines(ArrayList<String> response) {
+		ArrayList<String> ret = new ArrayList<String>();
+		for(String s : response)
+			for(String l : s.split("[\r\n]"))
+				if(!l.trim().isEmpty())
+					ret.add(l.trim());
+		return ret;
+	}
+	/**
+	 * The read path ByteSerialDataPort.sendCommand used before framing.
+	 */
+	static ArrayList<String> legacyRead(Pipe.SourceChannel source) throws IOException {
+		byte[] buffer = new byte[1024];
+		ArrayList<String> ret = new ArrayList<String>();
+		int num = 0;
+		while((num = source.read(ByteBuffer.wrap(buffer))) <= 0) {
+			try {
+				Thread.sleep(0,5000);
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+		ret.add(new String(Arrays.copyOf(buffer, num)));
+		return ret;
+	}
+	/**
+	 * Reads carriage return terminated commands, runs them on the emulator and writes the responses
+	 * in pieces of the given chunk size.
+	 */
+	static class Firmware implements Runnable {
+		final Pipe.SourceChannel in;
+		final Pipe.SinkChannel out;
+		final MarlinspikeDataPort marlinspike = new MarlinspikeDataPort();
+		volatile int chunk = Integer.MAX_VALUE;
+		Firmware(Pipe.SourceChannel in, Pipe.SinkChannel out) {
+			this.in = in;
+			this.out = out;
+		}
+		@Override
+		public void run() {
+			ByteBuffer one = ByteBuffer.allocate(1);
+			StringBuilder cmd = new StringBuilder();
+			try {
+				while(true) {
+					one.clear();
+					if(in.read(one) < 0)
+						return;
+					char c = (char)one.get(0);
+					if(c != '\r') {
+						cmd.append(c);
+						continue;
+					}
+					StringBuilder resp = new StringBuilder();
+					for(String s : marlinspike.sendCommand(cmd.toString())) {
+						resp.append(s);
+						if(!s.endsWith("\n"))
+							resp.append("\r\n");
+					}
+					cmd.setLength(0);
+					ByteBuffer bb = ByteBuffer.wrap(resp.toString().getBytes());
+					while(bb.hasRemaining()) {
+						ByteBuffer piece = bb.slice();
+						piece.limit(Math.min(chunk, piece.remaining()));
+						bb.position(bb.position() + out.write(piece));
+					}
+				}
+			} catch(IOException ioe) {
+				ioe.printStackTrace();
+			}
+		}
+	}
+}
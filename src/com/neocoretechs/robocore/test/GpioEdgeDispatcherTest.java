@@ -0,0 +1,378 @@
+package com.neocoretechs.robocore.test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.neocoretechs.robocore.serialreader.marlinspikeport.CounterInterruptService;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.GpioEdgeDispatcher;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.GpioEdgeSource;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.PCInterrupts;
+/**
+ * Check {@link GpioEdgeDispatcher} over simulated lines in place of libgpiod, with handlers on virtual threads and
+ * on two platform threads. Edges injected on several pins from several threads at once must reach each pin's handler
+ * in order, with the timestamps they were injected with, never two at once on a pin. A {@link CounterInterruptService}
+ * attached through {@link PCInterrupts} must fire its handler every maxcount rising edges, ignoring falling ones, or every
+ * maxcount falling edges in mode 0. Over lines reporting rising edges only, as libgpiod does, modes needing falling edges
+ * must be refused rather than attached to never fire.
+ * {@link GpioEdgeDispatcher#awaitEdge(int, long)} must return the next edge or time out, and a detached pin must
+ * release its line and get no more events. Then the time from an edge to its handler is reported.<p>
+ * java com.neocoretechs.robocore.test.GpioEdgeDispatcherTest [edges per pin]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class GpioEdgeDispatcherTest {
+	static int failures = 0;
+	/**
+	 * Lines whose edges are injected by the test, each stamped with System.nanoTime.
+	 */
+	static class SimulatedLines implements GpioEdgeSource {
+		final ReentrantLock lock = new ReentrantLock();
+		final Condition arrived = lock.newCondition();
+		final Map<Integer, long[]> queues = new HashMap<Integer, long[]>(); // line to edge, timestamp pairs
+		final Map<Integer, int[]> counts = new HashMap<Integer, int[]>(); // line to head, count
+		final Map<Integer, Integer> requested = new HashMap<Integer, Integer>(); // pin to line
+		int released = 0;
+		boolean risingOnly = false; // as libgpiod through GpioNative
+
+		@Override
+		public boolean delivers(int edge) {
+			return !risingOnly || edge == GpioEdgeDispatcher.RISING;
+		}
+
+		@Override
+		public int request(int pin) throws IOException {
+			lock.lock();
+			try {
+				int line = pin + 100;
+				requested.put(pin, line);
+				queues.put(line, new long[2 * 65536]);
+				counts.put(line, new int[2]);
+				return line;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void release(int pin, int line) throws IOException {
+			lock.lock();
+			try {
+				requested.remove(pin);
+				queues.remove(line);
+				counts.remove(line);
+				++released;
+			} finally {
+				lock.unlock();
+			}
+		}
+		/**
+		 * @return the timestamp given the edge, or -1 if the pin has no line
+		 */
+		long inject(int pin, int edge) {
+			lock.lock();
+			try {
+				Integer line = requested.get(pin);
+				if(line == null)
+					return -1L;
+				long[] q = queues.get(line);
+				int[] c = counts.get(line);
+				int cap = q.length / 2;
+				if(c[1] == cap)
+					throw new IllegalStateException("line "+line+" overflowed");
+				int tail = (c[0] + c[1]++) % cap;
+				long t = System.nanoTime();
+				q[2 * tail] = edge;
+				q[2 * tail + 1] = t;
+				arrived.signal();
+				return t;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public int await(int[] lines, int count, boolean[] ready, long timeoutMillis) throws IOException {
+			long nanos = timeoutMillis * 1000000L;
+			lock.lock();
+			try {
+				while(true) {
+					int n = 0;
+					for(int i = 0; i < count; i++) {
+						int[] c = counts.get(lines[i]);
+						if(c == null)
+							throw new IOException("line "+lines[i]+" released");
+						ready[i] = c[1] > 0;
+						if(ready[i])
+							++n;
+					}
+					if(n > 0 || nanos <= 0)
+						return n;
+					nanos = arrived.awaitNanos(nanos);
+				}
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public int read(int line, int[] edges, long[] timestamps, int max) throws IOException {
+			lock.lock();
+			try {
+				long[] q = queues.get(line);
+				int[] c = counts.get(line);
+				if(c == null)
+					throw new IOException("line "+line+" released");
+				int cap = q.length / 2;
+				int n = 0;
+				while(n < max && c[1] > 0) {
+					edges[n] = (int)q[2 * c[0]];
+					timestamps[n++] = q[2 * c[0] + 1];
+					c[0] = (c[0] + 1) % cap;
+					--c[1];
+				}
+				return n;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int edges = 20000;
+		if(args.length > 0)
+			edges = Integer.parseInt(args[0]);
+		for(boolean virtual : new boolean[] {true, false}) {
+			String name = virtual ? "virtual threads" : "2 platform threads";
+			checkOrder(virtual, name, 4, edges);
+			checkInterrupts(virtual, name);
+			checkAwaitDetach(virtual, name);
+		}
+		for(int pass = 0; pass < 2; pass++) { // first pass warms up
+			latency(pass > 0, true, edges / 2);
+			latency(pass > 0, false, edges / 2);
+		}
+		System.out.println("GpioEdgeDispatcherTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static boolean waitFor(java.util.function.BooleanSupplier done, long millis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + millis;
+		while(!done.getAsBoolean()) {
+			if(System.currentTimeMillis() > deadline)
+				return false;
+			Thread.sleep(1);
+		}
+		return true;
+	}
+
+	static void checkOrder(boolean virtual, String name, int pins, int edges) throws Exception {
+		SimulatedLines lines = new SimulatedLines();
+		GpioEdgeDispatcher dispatcher = new GpioEdgeDispatcher(lines, 2, virtual);
+		long[][] injected = new long[pins][edges];
+		long[][] received = new long[pins][edges];
+		int[][] receivedEdge = new int[pins][edges];
+		AtomicIntegerArray next = new AtomicIntegerArray(pins);
+		AtomicInteger[] inside = new AtomicInteger[pins];
+		AtomicInteger overlaps = new AtomicInteger();
+		for(int p = 0; p < pins; p++) {
+			final int idx = p;
+			inside[p] = new AtomicInteger();
+			dispatcher.attach(p + 20, (pin, edge, timestamp) -> {
+				if(inside[idx].incrementAndGet() != 1)
+					overlaps.incrementAndGet();
+				int i = next.get(idx);
+				if(pin == idx + 20 && i < edges) {
+					receivedEdge[idx][i] = edge;
+					received[idx][i] = timestamp;
+					next.set(idx, i + 1);
+				}
+				inside[idx].decrementAndGet();
+			});
+		}
+		Thread[] injectors = new Thread[pins];
+		for(int p = 0; p < pins; p++) {
+			final int idx = p;
+			injectors[p] = new Thread(() -> {
+				for(int i = 0; i < edges; i++) {
+					injected[idx][i] = lines.inject(idx + 20, (i & 1) == 0 ? GpioEdgeDispatcher.RISING : GpioEdgeDispatcher.FALLING);
+					if(i % 64 == 63) { // in bursts, within the queue the dispatcher holds for the handler
+						while(i - next.get(idx) > 512)
+							Thread.yield();
+					}
+				}
+			});
+		}
+		for(Thread t : injectors)
+			t.start();
+		for(Thread t : injectors)
+			t.join();
+		if(!waitFor(() -> dispatcher.getDelivered() + dispatcher.getDropped() >= (long)pins * edges, 10000)) {
+			System.out.println(name+" delivered "+dispatcher.getDelivered()+" of "+(long)pins * edges);
+			++failures;
+		}
+		for(int p = 0; p < pins; p++) {
+			if(next.get(p) != edges) {
+				System.out.println(name+" pin "+(p + 20)+" got "+next.get(p)+" of "+edges);
+				++failures;
+				continue;
+			}
+			for(int i = 0; i < edges; i++) {
+				int edge = (i & 1) == 0 ? GpioEdgeDispatcher.RISING : GpioEdgeDispatcher.FALLING;
+				if(received[p][i] != injected[p][i] || receivedEdge[p][i] != edge) {
+					System.out.println(name+" pin "+(p + 20)+" edge "+i+" out of order or mis-stamped");
+					++failures;
+					break;
+				}
+			}
+		}
+		if(overlaps.get() != 0 || dispatcher.getDropped() != 0 || dispatcher.getFailures() != 0) {
+			System.out.println(name+" concurrent handler calls "+overlaps.get()+", "+dispatcher);
+			++failures;
+		}
+		System.out.printf("%-18s %d pins x %d edges: %d read in %d batches, %.1f per batch%n", name, pins, edges,
+				dispatcher.getEvents(), dispatcher.getBatches(), (double)dispatcher.getEvents() / dispatcher.getBatches());
+		dispatcher.close();
+		if(lines.released != pins) {
+			System.out.println(name+" close released "+lines.released+" of "+pins+" lines");
+			++failures;
+		}
+	}
+
+	static void checkInterrupts(boolean virtual, String name) throws Exception {
+		SimulatedLines lines = new SimulatedLines();
+		GpioEdgeDispatcher dispatcher = new GpioEdgeDispatcher(lines, 2, virtual);
+		GpioEdgeDispatcher.setDefault(dispatcher);
+		AtomicInteger fired = new AtomicInteger();
+		CounterInterruptService counter = new CounterInterruptService(16, 9);
+		counter.setInterruptServiceHandler(() -> fired.incrementAndGet());
+		PCInterrupts encoder = new PCInterrupts();
+		encoder.attachInterrupt(16, counter, 1);
+		for(int i = 0; i < 100; i++) {
+			lines.inject(16, GpioEdgeDispatcher.RISING);
+			lines.inject(16, GpioEdgeDispatcher.FALLING);
+		}
+		waitFor(() -> dispatcher.getDelivered() == 200, 5000);
+		if(fired.get() != 10 || counter.get_counter() != 0) {
+			System.out.println(name+" counter service fired "+fired.get()+" times, counter "+counter.get_counter()+", expected 10 and 0");
+			++failures;
+		}
+		encoder.detachDigitalInterrupt(16);
+		if(lines.inject(16, GpioEdgeDispatcher.RISING) != -1L) {
+			System.out.println(name+" pin 16 line held after detach");
+			++failures;
+		}
+		// mode 0, falling edges
+		AtomicInteger firedFalling = new AtomicInteger();
+		CounterInterruptService fallingCounter = new CounterInterruptService(17, 9);
+		fallingCounter.setInterruptServiceHandler(() -> firedFalling.incrementAndGet());
+		encoder.attachInterrupt(17, fallingCounter, 0);
+		for(int i = 0; i < 100; i++) {
+			lines.inject(17, GpioEdgeDispatcher.RISING);
+			lines.inject(17, GpioEdgeDispatcher.FALLING);
+		}
+		waitFor(() -> dispatcher.getDelivered() == 400, 5000);
+		if(firedFalling.get() != 10) {
+			System.out.println(name+" falling edge counter service fired "+firedFalling.get()+" times, expected 10");
+			++failures;
+		}
+		encoder.detachDigitalInterrupt(17);
+		// rising edges only, falling and both refused without requesting the line
+		lines.risingOnly = true;
+		for(int mode : new int[] {0, 2}) {
+			try {
+				encoder.attachInterrupt(19, new CounterInterruptService(19, 9), mode);
+				System.out.println(name+" mode "+mode+" attached over lines reporting rising edges only");
+				++failures;
+			} catch(IOException e) {
+				if(lines.inject(19, GpioEdgeDispatcher.RISING) != -1L) {
+					System.out.println(name+" pin 19 line requested for refused mode "+mode);
+					++failures;
+				}
+			}
+		}
+		encoder.attachInterrupt(19, new CounterInterruptService(19, 9), 1);
+		if(lines.inject(19, GpioEdgeDispatcher.RISING) == -1L) {
+			System.out.println(name+" mode 1 not attached over lines reporting rising edges only");
+			++failures;
+		}
+		encoder.detachDigitalInterrupt(19);
+		dispatcher.close();
+		GpioEdgeDispatcher.setDefault(null);
+	}
+
+	static void checkAwaitDetach(boolean virtual, String name) throws Exception {
+		SimulatedLines lines = new SimulatedLines();
+		GpioEdgeDispatcher dispatcher = new GpioEdgeDispatcher(lines, 2, virtual);
+		AtomicLong got = new AtomicLong();
+		dispatcher.attach(18, (pin, edge, timestamp) -> got.incrementAndGet());
+		int[] edge = new int[1];
+		Thread waiter = new Thread(() -> {
+			try {
+				edge[0] = dispatcher.awaitEdge(18, 2000);
+			} catch (IOException | InterruptedException e) {
+				edge[0] = -1;
+			}
+		});
+		waiter.start();
+		Thread.sleep(50);
+		lines.inject(18, GpioEdgeDispatcher.FALLING);
+		waiter.join();
+		if(edge[0] != GpioEdgeDispatcher.FALLING || !waitFor(() -> got.get() == 1, 1000)) {
+			System.out.println(name+" awaitEdge returned "+edge[0]+", handler saw "+got.get());
+			++failures;
+		}
+		long start = System.nanoTime();
+		int none = dispatcher.awaitEdge(18, 30);
+		if(none != 0 || System.nanoTime() - start < 25000000L) {
+			System.out.println(name+" awaitEdge without an edge returned "+none);
+			++failures;
+		}
+		dispatcher.detach(18);
+		if(lines.released != 1 || lines.inject(18, GpioEdgeDispatcher.RISING) != -1L) {
+			System.out.println(name+" detach did not release the line");
+			++failures;
+		}
+		Thread.sleep(20);
+		if(got.get() != 1 || dispatcher.getFailures() != 0) {
+			System.out.println(name+" after detach "+dispatcher);
+			++failures;
+		}
+		dispatcher.close();
+	}
+	/**
+	 * Single edges spaced about 20 microseconds, the time from injection to the handler.
+	 */
+	static void latency(boolean report, boolean virtual, int edges) throws Exception {
+		SimulatedLines lines = new SimulatedLines();
+		GpioEdgeDispatcher dispatcher = new GpioEdgeDispatcher(lines, 2, virtual);
+		long[] delay = new long[edges];
+		AtomicInteger n = new AtomicInteger();
+		dispatcher.attach(22, (pin, edge, timestamp) -> {
+			int i = n.getAndIncrement();
+			if(i < edges)
+				delay[i] = System.nanoTime() - timestamp;
+		});
+		for(int i = 0; i < edges; i++) {
+			lines.inject(22, GpioEdgeDispatcher.RISING);
+			long until = System.nanoTime() + 20000L;
+			while(System.nanoTime() < until)
+				Thread.onSpinWait();
+		}
+		waitFor(() -> n.get() >= edges, 5000);
+		dispatcher.close();
+		if(report) {
+			Arrays.sort(delay);
+			System.out.printf("%-18s edge to handler p50 %6.1f us p99 %7.1f us max %8.1f us%n", virtual ? "virtual threads" : "2 platform threads",
+					delay[edges / 2] / 1e3, delay[edges * 99 / 100] / 1e3, delay[edges - 1] / 1e3);
+		}
+	}
+}
@@ -0,0 +1,316 @@
+package com.neocoretechs.robocore.test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.neocoretechs.robocore.serialreader.BNO055RegisterReader;
+import com.neocoretechs.robocore.serialreader.IMUAcquisition;
+import com.neocoretechs.robocore.serialreader.IMUSample;
+import com.neocoretechs.robocore.serialreader.IMUSampleRing;
+import com.neocoretechs.robocore.serialreader.IMUSampleSource;
+/**
+ * Check {@link IMUSampleRing} and {@link IMUAcquisition}. A writer publishing samples whose every value is derived
+ * from its sequence, into a ring small enough to be lapped, must never hand readers of the latest sample a torn one,
+ * and readers of every sample since the last they saw must get them in order, the overwritten reported by the gaps.
+ * A reader waiting for the next sample must wake for it, or time out. Then the writer's time per sample and the
+ * publishes held up are reported alone, with readers of the ring, and with readers of one sample behind a monitor as
+ * the EulerTime arrays were, and the latency from the reading of a simulated BNO055 to its consumer, waiting on the
+ * ring against polling with the sleeps of the publishers.<p>
+ * java com.neocoretechs.robocore.test.IMURingTest [millis]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class IMURingTest {
+	static int failures = 0;
+	static final long STALL_NANOS = 50000L; // a publish this long was held up
+
+	public static void main(String[] args) throws Exception {
+		long millis = 1000;
+		if(args.length > 0)
+			millis = Long.parseLong(args[0]);
+		checkTorn(millis);
+		checkSince(millis);
+		checkAwait();
+		for(int pass = 0; pass < 2; pass++) // first pass warms up
+			contention(pass > 0, millis / 2);
+		latency(millis * 2);
+		System.out.println("IMURingTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+	/**
+	 * Fill every value of the sample from its sequence number.
+	 */
+	static void fill(IMUSample s, long n) {
+		double[][] all = {s.accels, s.mags, s.gyros, s.eulers, s.quats, s.linearAccels, s.gravity};
+		int k = 0;
+		for(double[] a : all)
+			for(int i = 0; i < a.length; i++)
+				a[i] = n * 32 + k++;
+		s.temperature = (int)n;
+		s.timestampNanos = n * 7;
+	}
+	/**
+	 * @return true if every value of the sample is from its one sequence number
+	 */
+	static boolean whole(IMUSample s) {
+		long n = s.sequence;
+		double[][] all = {s.accels, s.mags, s.gyros, s.eulers, s.quats, s.linearAccels, s.gravity};
+		int k = 0;
+		for(double[] a : all)
+			for(int i = 0; i < a.length; i++)
+				if(a[i] != n * 32 + k++)
+					return false;
+		return s.temperature == (int)n && s.timestampNanos == n * 7;
+	}
+
+	static void checkTorn(long millis) throws Exception {
+		IMUSampleRing ring = new IMUSampleRing(2);
+		int readers = 3;
+		AtomicLong reads = new AtomicLong(), torn = new AtomicLong(), backwards = new AtomicLong();
+		long end = System.currentTimeMillis() + millis;
+		Thread[] t = new Thread[readers];
+		for(int i = 0; i < readers; i++) {
+			t[i] = new Thread(() -> {
+				IMUSample s = new IMUSample();
+				long last = -1, n = 0;
+				while(System.currentTimeMillis() < end) {
+					if(!ring.latest(s))
+						continue;
+					++n;
+					if(!whole(s))
+						torn.incrementAndGet();
+					if(s.sequence < last)
+						backwards.incrementAndGet();
+					last = s.sequence;
+				}
+				reads.addAndGet(n);
+			});
+			t[i].start();
+		}
+		IMUSample w = new IMUSample();
+		long n = 0;
+		while(System.currentTimeMillis() < end) {
+			fill(w, n);
+			if(ring.publish(w) != n++ || w.sequence != n - 1) {
+				System.out.println("published out of sequence");
+				++failures;
+				break;
+			}
+		}
+		for(Thread th : t)
+			th.join();
+		System.out.printf("lapped ring of 2: %d published, %d latest read, %d retried for a lap, %d torn, %d backwards%n",
+				n, reads.get(), ring.getTornReads(), torn.get(), backwards.get());
+		if(torn.get() != 0 || backwards.get() != 0 || reads.get() == 0) {
+			System.out.println("torn or reordered samples read");
+			++failures;
+		}
+	}
+
+	static void checkSince(long millis) throws Exception {
+		IMUSampleRing ring = new IMUSampleRing(16);
+		long total = 200000;
+		AtomicLong got = new AtomicLong(), lost = new AtomicLong(), bad = new AtomicLong();
+		Thread reader = new Thread(() -> {
+			IMUSample[] batch = new IMUSample[8];
+			for(int i = 0; i < batch.length; i++)
+				batch[i] = new IMUSample();
+			long seen = -1;
+			Random r = new Random(22);
+			while(seen < total - 1) {
+				int k = ring.readSince(seen, batch);
+				for(int i = 0; i < k; i++) {
+					if(batch[i].sequence <= seen || !whole(batch[i]))
+						bad.incrementAndGet();
+					lost.addAndGet(batch[i].sequence - seen - 1);
+					seen = batch[i].sequence;
+				}
+				got.addAndGet(k);
+				if(r.nextInt(64) == 0) // fall behind now and then
+					LockSupport.parkNanos(20000);
+			}
+		});
+		reader.start();
+		IMUSample w = new IMUSample();
+		for(long n = 0; n < total; n++) {
+			fill(w, n);
+			ring.publish(w);
+			if((n & 15) == 0)
+				Thread.yield();
+		}
+		reader.join(10000);
+		System.out.printf("read since: %d published, %d read in order, %d overwritten before read%n", total, got.get(), lost.get());
+		if(bad.get() != 0 || got.get() + lost.get() != total) {
+			System.out.println("samples since out of order, torn or unaccounted, "+bad.get()+" bad");
+			++failures;
+		}
+		IMUSample s = new IMUSample();
+		if(ring.read(total, s) || ring.read(total - 17, s) || !ring.read(total - 1, s) || !whole(s)) {
+			System.out.println("read of an unpublished or overwritten sequence");
+			++failures;
+		}
+	}
+
+	static void checkAwait() throws Exception {
+		IMUSampleRing ring = new IMUSampleRing(4);
+		IMUSample s = new IMUSample();
+		long start = System.nanoTime();
+		boolean timedOut = !ring.awaitNext(-1, s, 50);
+		long waited = (System.nanoTime() - start) / 1000000L;
+		AtomicLong woke = new AtomicLong(-1);
+		Thread waiter = new Thread(() -> {
+			IMUSample r = new IMUSample();
+			try {
+				if(ring.awaitNext(-1, r, 0) && whole(r))
+					woke.set(r.sequence);
+			} catch (InterruptedException e) {}
+		});
+		waiter.start();
+		Thread.sleep(50);
+		IMUSample w = new IMUSample();
+		fill(w, 0);
+		ring.publish(w);
+		waiter.join(1000);
+		boolean newer = !ring.awaitNext(0, s, 20);
+		System.out.printf("await: timed out %b after %d ms, woke for sequence %d, no newer than 0 %b%n", timedOut, waited, woke.get(), newer);
+		if(!timedOut || waited < 50 || woke.get() != 0 || !newer) {
+			System.out.println("wait for the next sample failed");
+			++failures;
+		}
+	}
+	/**
+	 * The writer's time per sample with readers copying the latest all the time, through the ring, and through one
+	 * sample behind a monitor.
+	 */
+	static void contention(boolean report, long millis) throws Exception {
+		for(int readers : new int[] {0, 3}) {
+			IMUSampleRing ring = new IMUSampleRing(64);
+			IMUSample shared = new IMUSample();
+			for(boolean locked : new boolean[] {false, true}) {
+				if(readers == 0 && locked)
+					continue;
+				AtomicLong reads = new AtomicLong();
+				long end = System.currentTimeMillis() + millis;
+				Thread[] t = new Thread[readers];
+				for(int i = 0; i < readers; i++) {
+					t[i] = new Thread(() -> {
+						IMUSample s = new IMUSample();
+						long n = 0;
+						while(System.currentTimeMillis() < end) {
+							if(locked) {
+								synchronized(shared) {
+									s.set(shared);
+								}
+							} else {
+								ring.latest(s);
+							}
+							++n;
+						}
+						reads.addAndGet(n);
+					});
+					t[i].start();
+				}
+				IMUSample w = new IMUSample();
+				long n = 0, stalls = 0, worst = 0, start = System.nanoTime();
+				while(System.currentTimeMillis() < end) {
+					fill(w, n++);
+					long before = System.nanoTime();
+					if(locked) {
+						synchronized(shared) {
+							shared.set(w);
+						}
+					} else {
+						ring.publish(w);
+					}
+					long took = System.nanoTime() - before;
+					if(took > STALL_NANOS)
+						++stalls;
+					if(took > worst)
+						worst = took;
+				}
+				long elapsed = System.nanoTime() - start;
+				for(Thread th : t)
+					th.join();
+				if(report)
+					System.out.printf("%d readers %-7s writer %7.1f ns/sample, %d held over %dus, worst %.1fus, readers %6.2f M reads/s%n",
+							readers, locked ? "monitor" : "ring", (double)elapsed / n, stalls, STALL_NANOS / 1000, worst / 1e3, reads.get() * 1000.0 / elapsed);
+			}
+		}
+	}
+	/**
+	 * A simulated BNO055 read by burst at 115200 baud through an IMUAcquisition, consumed by a thread waiting on the ring
+	 * and by one polling with a 20 ms sleep as the publishers did.
+	 */
+	static void latency(long millis) throws Exception {
+		BNO055BurstTest.SimulatedBNO055 bno = new BNO055BurstTest.SimulatedBNO055();
+		new Random(22).nextBytes(bno.registers);
+		BNO055RegisterReader reader = new BNO055RegisterReader(bno);
+		byte[] burst = new byte[IMUSample.LENGTH];
+		long wireNanos = (4 + 2 + IMUSample.LENGTH) * 10 * 1000000000L / 115200;
+		IMUSampleSource source = s -> {
+			LockSupport.parkNanos(wireNanos);
+			reader.read(IMUSample.FIRST_REGISTER, burst, 0, IMUSample.LENGTH);
+			s.decode(burst, 0, 3, System.nanoTime());
+			return s;
+		};
+		IMUSampleRing ring = new IMUSampleRing(64);
+		IMUAcquisition acquisition = new IMUAcquisition(source, ring);
+		Thread acquirer = new Thread(acquisition, "IMUAcquisition");
+		acquirer.start();
+		long end = System.currentTimeMillis() + millis;
+		long[] waited = new long[100000], polled = new long[100000];
+		int[] counts = new int[2];
+		Thread waiter = new Thread(() -> {
+			IMUSample s = new IMUSample();
+			long seen = -1;
+			try {
+				while(System.currentTimeMillis() < end && counts[0] < waited.length) {
+					if(ring.awaitNext(seen, s, 100)) {
+						waited[counts[0]++] = System.nanoTime() - s.timestampNanos;
+						seen = s.sequence;
+					}
+				}
+			} catch (InterruptedException e) {}
+		});
+		Thread poller = new Thread(() -> {
+			IMUSample s = new IMUSample();
+			long seen = -1;
+			while(System.currentTimeMillis() < end && counts[1] < polled.length) {
+				if(ring.latest(s) && s.sequence != seen) {
+					polled[counts[1]++] = System.nanoTime() - s.timestampNanos;
+					seen = s.sequence;
+				}
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {}
+			}
+		});
+		waiter.start();
+		poller.start();
+		waiter.join();
+		poller.join();
+		acquisition.stop();
+		acquirer.join(1000);
+		long[] w = Arrays.copyOf(waited, counts[0]), p = Arrays.copyOf(polled, counts[1]);
+		Arrays.sort(w);
+		Arrays.sort(p);
+		System.out.printf("acquisition %s, %.0f samples/s%n", acquisition, acquisition.getSamples() * 1000.0 / millis);
+		System.out.printf("sample to consumer waiting: %d samples p50 %.3f ms p99 %.3f ms max %.3f ms%n", w.length,
+				percentile(w, 0.5), percentile(w, 0.99), percentile(w, 1.0));
+		System.out.printf("sample to consumer polling: %d samples p50 %.3f ms p99 %.3f ms max %.3f ms%n", p.length,
+				percentile(p, 0.5), percentile(p, 0.99), percentile(p, 1.0));
+		if(acquisition.getErrors() != 0 || acquisition.isRunning() || w.length < acquisition.getSamples() / 2
+				|| percentile(w, 0.5) >= percentile(p, 0.5)) {
+			System.out.println("waiting consumer missed samples or was later than polling");
+			++failures;
+		}
+	}
+
+	static double percentile(long[] sorted, double fraction) {
+		if(sorted.length == 0)
+			return Double.NaN;
+		return sorted[(int)Math.min(sorted.length - 1, Math.round(fraction * (sorted.length - 1)))] / 1e6;
+	}
+}
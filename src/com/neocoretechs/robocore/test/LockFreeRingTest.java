@@ -0,0 +1,108 @@
+package com.neocoretechs.robocore.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.neocoretechs.robocore.machine.bridge.LockFreeRing;
+import com.neocoretechs.robocore.machine.bridge.LockFreeRing.WaitStrategy;
+/**
+ * Check {@link LockFreeRing} with many producers racing on a ring of 2, the MachineBridge queue size, so that
+ * producers a whole ring apart claim the same slot. The consumer must get each producer's entries in the order it added
+ * them, and once the producers are done, the last entries added must all be there: a slot stamped backwards by the
+ * older of two writers loses the newer entry and leaves the consumer waiting on a sequence that never comes.<p>
+ * java com.neocoretechs.robocore.test.LockFreeRingTest [rounds]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class LockFreeRingTest {
+	static int failures = 0;
+	static final int PRODUCERS = 8;
+	static final int ADDS = 2000; // per producer per round
+
+	public static void main(String[] args) throws Exception {
+		int rounds = 200;
+		if(args.length > 0)
+			rounds = Integer.parseInt(args[0]);
+		for(int capacity : new int[] {2, 3, 16})
+			for(WaitStrategy strategy : new WaitStrategy[] {WaitStrategy.PARK, WaitStrategy.YIELD})
+				race(capacity, strategy, capacity == 2 ? rounds : rounds / 5 + 1);
+		System.out.println("LockFreeRingTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+	/**
+	 * Entries are the producer in the high bits and its count in the low.
+	 */
+	static void race(int capacity, WaitStrategy strategy, int rounds) throws InterruptedException {
+		long consumed = 0L, lost = 0L;
+		for(int round = 0; round < rounds; round++) {
+			LockFreeRing<Long> ring = new LockFreeRing<Long>(capacity, true, strategy);
+			CountDownLatch start = new CountDownLatch(1);
+			Thread[] producers = new Thread[PRODUCERS];
+			for(int p = 0; p < PRODUCERS; p++) {
+				final long id = p;
+				producers[p] = new Thread(() -> {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for(long n = 0; n < ADDS; n++) {
+						ring.addLast((id << 32) | n);
+						if((n & 63) == 0)
+							Thread.yield(); // interleave the producers on few cores
+					}
+				});
+				producers[p].start();
+			}
+			long[] last = new long[PRODUCERS];
+			java.util.Arrays.fill(last, -1L);
+			start.countDown();
+			boolean producing = true;
+			while(producing) {
+				producing = false;
+				for(Thread t : producers)
+					producing |= t.isAlive();
+				Long e;
+				while((e = ring.poll(1, TimeUnit.MILLISECONDS)) != null) {
+					++consumed;
+					if(!inOrder(e, last, capacity, strategy, round))
+						return;
+				}
+			}
+			// all added, the last of them must be there to take
+			int waiting = ring.length();
+			for(int i = 0; i < waiting; i++) {
+				Long e = ring.poll(100, TimeUnit.MILLISECONDS);
+				if(e == null) {
+					System.out.println("capacity "+capacity+" "+strategy+" round "+round+": entry "+i+" of the "+waiting+
+							" waiting never came, the consumer stalls");
+					++failures;
+					return;
+				}
+				++consumed;
+				if(!inOrder(e, last, capacity, strategy, round))
+					return;
+			}
+			if(ring.poll() != null) {
+				System.out.println("capacity "+capacity+" "+strategy+" round "+round+": more than the "+waiting+" waiting");
+				++failures;
+				return;
+			}
+			lost += ring.getOverwritten();
+		}
+		System.out.printf("capacity %2d %-5s: %d rounds of %d producers, %d taken, %d overwritten%n",
+				capacity, strategy, rounds, PRODUCERS, consumed, lost);
+	}
+
+	static boolean inOrder(long e, long[] last, int capacity, WaitStrategy strategy, int round) {
+		int p = (int)(e >>> 32);
+		long n = e & 0xFFFFFFFFL;
+		if(n <= last[p]) {
+			System.out.println("capacity "+capacity+" "+strategy+" round "+round+": producer "+p+" entry "+n+" after "+last[p]);
+			++failures;
+			return false;
+		}
+		last[p] = n;
+		return true;
+	}
+}
@@ -0,0 +1,333 @@
+package com.neocoretechs.robocore.test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.neocoretechs.robocore.PID.PIDParameterInterface;
+import com.neocoretechs.robocore.PID.SetpointInfoInterface;
+import com.neocoretechs.robocore.config.RobotInterface;
+import com.neocoretechs.robocore.config.TypedWrapper;
+import com.neocoretechs.robocore.machine.bridge.MachineBridge;
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer.topicNames;
+import com.neocoretechs.robocore.marlinspike.MarlinspikeManager;
+import com.neocoretechs.robocore.propulsion.RobotDiffDriveInterface;
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.control.AbstractMotorControl;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.pwmcontrol.VariablePWMDriver;
+/**
+ * Measure how command latency and throughput hold up as Marlinspike boards are added to one process.<p>
+ * For 1, 2, 4 and so on up to the given number of boards, each board is configured the way a robot is: a synthetic
+ * {@link TypedWrapper} LUN configuration with two smart controller wheels and a PWM driver is parsed by its own
+ * {@link MarlinspikeManager}, whose {@link AsynchDemuxer} sends the generated M10 startup to a {@link MarlinspikeDataPort}
+ * emulator. The controllers behind the emulator are software models so no serial port or GPIO is needed.<p>
+ * A thread per board then drives a mix of motor power, PWM level and status commands through its demuxer, one
+ * command at a time, timing each from submission to completion. The latency percentiles of each board and the
+ * total commands per second are reported, and the last level commanded on every channel is checked to have
+ * reached the model on its own board.<p>
+ * G5 is sent in the emulator form G5 Z&lt;slot&gt; C&lt;channel&gt; P&lt;power&gt; or X&lt;level&gt;.<p>
+ * java com.neocoretechs.robocore.test.MultiBoardHarness [max boards] [commands per board] [link latency micros]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class MultiBoardHarness {
+	static final long TIMEOUT = 5000000000L; // nanoseconds to wait for one command
+	static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		int maxBoards = 8;
+		int commands = 2000;
+		long latency = 0;
+		if(args.length > 0)
+			maxBoards = Integer.parseInt(args[0]);
+		if(args.length > 1)
+			commands = Integer.parseInt(args[1]);
+		if(args.length > 2)
+			latency = Long.parseLong(args[2]);
+		run(1, commands/10, latency, false); // warm up
+		for(int boards = 1; boards <= maxBoards; boards *= 2)
+			run(boards, commands, latency, true);
+		System.out.println("MultiBoardHarness "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static void run(int boards, int commands, long latency, boolean report) throws Exception {
+		EmulatedBoard[] ports = new EmulatedBoard[boards];
+		AsynchDemuxer[] demuxers = new AsynchDemuxer[boards];
+		for(int b = 0; b < boards; b++) {
+			MarlinspikeManager manager = new MarlinspikeManager(new SyntheticRobot("Board"+b));
+			manager.createControllers(false);
+			ports[b] = new EmulatedBoard();
+			ports[b].setLinkLatency(latency);
+			manager.configureDemuxer(ports[b]);
+			demuxers[b] = manager.getDemuxer();
+			awaitStartup(demuxers[b]);
+		}
+		long[][] times = new long[boards][commands];
+		int[] timeouts = new int[boards];
+		Thread[] drivers = new Thread[boards];
+		for(int b = 0; b < boards; b++) {
+			final int board = b;
+			drivers[b] = new Thread(() -> drive(demuxers[board], times[board], timeouts, board), "Board"+b);
+		}
+		long start = System.nanoTime();
+		for(Thread t : drivers)
+			t.start();
+		for(Thread t : drivers)
+			t.join();
+		long elapsed = System.nanoTime() - start;
+		for(int b = 0; b < boards; b++) {
+			String error = ports[b].check(commands);
+			if(error != null || timeouts[b] > 0) {
+				if(report)
+					System.out.println("Board"+b+" "+(error != null ? error : "")+" timeouts="+timeouts[b]);
+				++failures;
+			}
+			ports[b].close();
+		}
+		if(report) {
+			System.out.printf("boards=%d commands/board=%d link latency=%dus elapsed=%dms total commands/sec=%.0f%n",
+					boards, commands, latency, elapsed/1000000, (double)boards*commands*1e9/elapsed);
+			for(int b = 0; b < boards; b++) {
+				long[] t = times[b];
+				Arrays.sort(t);
+				System.out.printf("  Board%d latency p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus%n", b,
+						t[t.length/2]/1e3, t[(int)(t.length*.9)]/1e3, t[(int)(t.length*.99)]/1e3, t[t.length-1]/1e3);
+			}
+		}
+	}
+	/**
+	 * The mix of commands in every ten: six motor power levels alternating between the wheels, three PWM levels
+	 * and one status report.
+	 * @param i the command number
+	 * @return the command
+	 */
+	static String command(int i) {
+		int level = EmulatedBoard.level(i);
+		switch(i % 10) {
+			case 0: case 2: case 4:
+				return "G5 Z0 C1 P"+level;
+			case 1: case 3: case 5:
+				return "G5 Z0 C2 P"+(-level);
+			case 6: case 7: case 8:
+				return "G5 Z0 C1 X"+level;
+			default:
+				return "M700";
+		}
+	}
+	/**
+	 * Issue the commands one at a time, timing each from submission until the demuxer completes it.
+	 */
+	static void drive(AsynchDemuxer demuxer, long[] times, int[] timeouts, int board) {
+		for(int i = 0; i < times.length; i++) {
+			long done = demuxer.getCommandsCompleted();
+			long start = System.nanoTime();
+			demuxer.addWrite(command(i));
+			while(demuxer.getCommandsCompleted() == done) {
+				if(System.nanoTime() - start > TIMEOUT) {
+					++timeouts[board];
+					break;
+				}
+				Thread.yield();
+			}
+			times[i] = System.nanoTime() - start;
+		}
+	}
+	/**
+	 * Wait until the startup configuration has been processed, marked by the report of an M700 queued behind it.
+	 */
+	static void awaitStartup(AsynchDemuxer demuxer) throws InterruptedException {
+		MachineBridge status = demuxer.getMachineBridge(topicNames.STATUS.val());
+		demuxer.addWrite("M700");
+		long start = System.nanoTime();
+		while(status.get().isEmpty()) {
+			if(System.nanoTime() - start > TIMEOUT) {
+				System.out.println("Startup of "+demuxer+" did not complete");
+				++failures;
+				break;
+			}
+			Thread.sleep(1);
+		}
+		status.get().clear();
+	}
+	/**
+	 * An emulated board whose smart controller and PWM driver are models recording the levels they are commanded.
+	 */
+	static class EmulatedBoard extends MarlinspikeDataPort {
+		final ModelMotorControl motors = new ModelMotorControl();
+		final ModelPWMDriver pwm = new ModelPWMDriver();
+		@Override
+		protected AbstractMotorControl createSmartController() {
+			return motors;
+		}
+		@Override
+		protected VariablePWMDriver createPWMDriver() {
+			return pwm;
+		}
+		static int level(int i) {
+			return (i * 7) % 1000;
+		}
+		/**
+		 * @return null if each channel holds the last level of the mix, otherwise a description of the difference
+		 */
+		String check(int commands) {
+			int[] expected = new int[3]; // wheel 1, wheel 2, PWM 1
+			for(int i = 0; i < commands; i++) {
+				String cmd = command(i);
+				if(cmd.startsWith("G5 Z0 C1 P"))
+					expected[0] = level(i);
+				else if(cmd.startsWith("G5 Z0 C2 P"))
+					expected[1] = -level(i);
+				else if(cmd.startsWith("G5 Z0 C1 X"))
+					expected[2] = level(i);
+			}
+			int[] actual = { motors.levels[0], motors.levels[1], pwm.levels[0] };
+			return Arrays.equals(expected, actual) ? null : "levels "+Arrays.toString(actual)+" expected "+Arrays.toString(expected);
+		}
+	}
+	/**
+	 * A smart controller that keeps the power commanded on each channel.
+	 */
+	static class ModelMotorControl extends AbstractMotorControl {
+		final int[] levels = new int[10];
+		@Override
+		public int commandMotorPower(int... deviceLevel) {
+			levels[deviceLevel[0]-1] = deviceLevel[1]; // channel, power
+			return 0;
+		}
+		@Override
+		public int commandEmergencyStop(int status) {
+			Arrays.fill(levels, 0);
+			return 0;
+		}
+		@Override
+		public int isConnected() { return 1; }
+		@Override
+		public String getDriverInfo(int ch) { return "Model smart controller channel "+ch; }
+		@Override
+		public int queryFaultFlag() { return fault_flag; }
+		@Override
+		public int queryStatusFlag() { return 0; }
+		@Override
+		public String getMotorFaultDescriptor(int fault) { return "none"; }
+		@Override
+		public String getMotorStatusDescriptor(int status) { return "none"; }
+		@Override
+		public void setInterruptServiceHandler(int intPin) {}
+		@Override
+		public void enable(int ch) {}
+		@Override
+		public void disable(int ch) {}
+	}
+	/**
+	 * A PWM driver that keeps the level commanded on each channel instead of driving a pin.
+	 */
+	static class ModelPWMDriver extends VariablePWMDriver {
+		final int[] levels = new int[10];
+		@Override
+		public void createPWM(int channel, int pin_number, int enable_pin, int dir_default, int freq, int duty) {}
+		@Override
+		public int commandPWMLevel(int pwmChannel, int pwmPower) {
+			levels[pwmChannel-1] = pwmPower;
+			return 0;
+		}
+		@Override
+		public int commandEmergencyStop(int status) {
+			Arrays.fill(levels, 0);
+			return 0;
+		}
+	}
+	/**
+	 * The configuration of one board as the properties file would give it, wheels on a smart controller in slot 0
+	 * and a PWM driver in slot 0 of the non propulsion controls.
+	 */
+	static class SyntheticRobot implements RobotInterface {
+		final String hostName;
+		final TypedWrapper[] lun;
+		SyntheticRobot(String hostName) {
+			this.hostName = hostName;
+			lun = new TypedWrapper[] {
+				lun("LeftWheel", "SmartController", "0", "1", "0"),
+				lun("RightWheel", "SmartController", "0", "2", "1"),
+				lun("LEDDriver", "PWM", "0", "1", "0")
+			};
+		}
+		private TypedWrapper lun(String name, String type, String slot, String channel, String direction) {
+			HashMap<String, Object> props = new HashMap<String, Object>();
+			props.put("Name", name);
+			props.put("NodeName", hostName);
+			props.put("Type", type);
+			props.put("Slot", slot);
+			props.put("Channel", channel);
+			props.put("Direction", direction);
+			props.put("SignalPin0", "7");
+			props.put("EnablePin", "12");
+			return new TypedWrapper(props);
+		}
+		@Override
+		public boolean[] active() { return new boolean[lun.length]; }
+		@Override
+		public String getName() { return hostName; }
+		@Override
+		public String getHostName() { return hostName; }
+		@Override
+		public String getDataPort() { return "MarlinspikeDataPort"; }
+		@Override
+		public MarlinspikeManager getManager() { return null; }
+		@Override
+		public void configureMarlinspike() throws IOException {}
+		@Override
+		public HashMap<String, Boolean> getOperating() { return new HashMap<String, Boolean>(); }
+		@Override
+		public RobotDiffDriveInterface getDiffDrive() { return null; }
+		@Override
+		public PIDParameterInterface getMotionPIDController() { return null; }
+		@Override
+		public PIDParameterInterface getLeftMotorPIDController(int chan) { return null; }
+		@Override
+		public PIDParameterInterface getRightMotorPIDController(int chan) { return null; }
+		@Override
+		public SetpointInfoInterface getLeftDistanceSetpointInfo(int chan) { return null; }
+		@Override
+		public SetpointInfoInterface getRightDistanceSetpointInfo(int chan) { return null; }
+		@Override
+		public SetpointInfoInterface getIMUSetpointInfo() { return null; }
+		@Override
+		public SetpointInfoInterface getLeftSpeedSetpointInfo(int chan) { return null; }
+		@Override
+		public SetpointInfoInterface getRightSpeedSetpointInfo(int chan) { return null; }
+		@Override
+		public SetpointInfoInterface getLeftTickSetpointInfo(int chan) { return null; }
+		@Override
+		public SetpointInfoInterface getRightTickSetpointInfo(int chan) { return null; }
+		@Override
+		public int getPowerScale() { return 0; }
+		@Override
+		public float getTemperatureThreshold() { return 40; }
+		@Override
+		public TypedWrapper[] getLUN() { return lun; }
+		@Override
+		public TypedWrapper[] getWHEEL() { return new TypedWrapper[0]; }
+		@Override
+		public TypedWrapper[] getPID() { return new TypedWrapper[0]; }
+		@Override
+		public TypedWrapper[] getAXIS() { return new TypedWrapper[0]; }
+		@Override
+		public TypedWrapper[] getBUTTON() { return new TypedWrapper[0]; }
+		@Override
+		public int getLUN(String name) {
+			for(int i = 0; i < lun.length; i++)
+				if(name.equals(lun[i].get("Name")))
+					return i;
+			return -1;
+		}
+		@Override
+		public String getNameByLUN(int i) { return (String)lun[i].get("Name"); }
+		@Override
+		public String getSlotByName(String name) {
+			int i = getLUN(name);
+			return (i == -1 ? null : (String)lun[i].get("Slot"));
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.neocoretechs.robocore.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import com.neocoretechs.robocore.machine.bridge.MachineBridge;
+import com.neocoretechs.robocore.machine.bridge.MachineReading;
+import com.neocoretechs.robocore.machine.bridge.ReadingBuffer;
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer.topicNames;
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+/**
+ * Compare a {@link MachineBridge} carrying MachineReading instances with one backed by a {@link ReadingBuffer}.<p>
+ * First the digital pin and status reports of the {@link MarlinspikeDataPort} emulator are demuxxed both ways,
+ * and the readings drained from each bridge checked to be the same. Then batches of numeric readings, as an
+ * ultrasonic or encoder report delivers them, are added and drained both ways, reporting the time and bytes
+ * allocated per reading.<p>
+ * java com.neocoretechs.robocore.test.ReadingBufferBench [reports] [readings]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class ReadingBufferBench {
+	static final String[] commands = { "M44 P12", "M700" };
+	static final String[] topics = { topicNames.DIGITALPIN.val(), topicNames.STATUS.val() };
+	static final int BATCH = 8;
+
+	public static void main(String[] args) throws Exception {
+		int reports = 200;
+		int readings = 2000000;
+		if(args.length > 0)
+			reports = Integer.parseInt(args[0]);
+		if(args.length > 1)
+			readings = Integer.parseInt(args[1]);
+		ArrayList<String> queued = demux(false, reports);
+		ArrayList<String> buffered = demux(true, reports);
+		int failures = 0;
+		if(queued.isEmpty() || !queued.equals(buffered)) {
+			System.out.println("Readings differ, MachineReading "+queued.size()+" ReadingBuffer "+buffered.size());
+			for(int i = 0; i < Math.min(queued.size(), buffered.size()); i++)
+				if(!queued.get(i).equals(buffered.get(i))) {
+					System.out.println(i+" "+queued.get(i)+" | "+buffered.get(i));
+					break;
+				}
+			++failures;
+		}
+		System.out.println("Demuxxed readings "+queued.size()+" "+(failures == 0 ? "match" : "DIFFER"));
+		for(int pass = 0; pass < 2; pass++) { // first pass warms up
+			numeric(pass > 0, false, readings);
+			numeric(pass > 0, true, readings);
+		}
+		System.out.println("ReadingBufferBench "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+	/**
+	 * Issue each command, wait for its response, and drain the readings of its topic formatted as MachineReading does.
+	 */
+	static ArrayList<String> demux(boolean buffers, int reports) throws Exception {
+		MarlinspikeDataPort port = new MarlinspikeDataPort();
+		AsynchDemuxer demuxer = new AsynchDemuxer(null);
+		demuxer.setReadingBuffers(buffers);
+		demuxer.connect(port);
+		ArrayList<String> out = new ArrayList<String>();
+		for(int r = 0; r < reports; r++) {
+			for(int c = 0; c < commands.length; c++) {
+				long done = demuxer.getCommandsCompleted();
+				demuxer.addWrite(commands[c]);
+				while(demuxer.getCommandsCompleted() == done)
+					Thread.sleep(0, 100000);
+				MachineBridge mb = demuxer.getTopic(topics[c]).getMachineBridge();
+				if(buffers) {
+					ReadingBuffer rb = mb.getReadings();
+					rb.drain(reading -> out.add(reading.toString()), rb.capacity());
+				} else {
+					synchronized(mb) {
+						while(!mb.get().isEmpty())
+							out.add(mb.waitForNewReading().toString());
+					}
+				}
+			}
+		}
+		port.close();
+		return out;
+	}
+
+	static void numeric(boolean report, boolean buffers, int readings) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		MachineBridge mb = new MachineBridge("ultrasonic", BATCH * 2);
+		if(buffers)
+			mb.initReadingBuffer(BATCH * 2);
+		ReadingBuffer rb = mb.getReadings();
+		long[] sum = new long[1];
+		ReadingBuffer.ReadingVisitor visitor = reading -> sum[0] += reading.getReadingValInt();
+		long allocated = threads.getCurrentThreadAllocatedBytes();
+		long start = System.nanoTime();
+		for(int i = 0; i < readings; i += BATCH) {
+			for(int j = 0; j < BATCH; j++) {
+				if(buffers)
+					rb.add(1, j, j, i + j);
+				else
+					mb.add(new MachineReading(1, j, j, i + j));
+			}
+			if(buffers) {
+				rb.drain(visitor, BATCH);
+			} else {
+				while(!mb.get().isEmpty())
+					sum[0] += mb.waitForNewReading().getReadingValInt();
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+		if(report)
+			System.out.printf("%-15s readings=%d %8.1f ns/reading %8.1f bytes allocated/reading checksum=%d%n",
+				buffers ? "ReadingBuffer" : "MachineReading", readings, (double)elapsed/readings, (double)allocated/readings, sum[0]);
+	}
+}
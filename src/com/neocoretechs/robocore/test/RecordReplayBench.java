@@ -0,0 +1,117 @@
+package com.neocoretechs.robocore.test;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import com.neocoretechs.robocore.marlinspike.AsynchDemuxer;
+import com.neocoretechs.robocore.serialreader.DataPortCommandInterface;
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+import com.neocoretechs.robocore.serialreader.RecordingDataPort;
+import com.neocoretechs.robocore.serialreader.ReplayDataPort;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.VirtualClock;
+/**
+ * Record a session of the {@link MarlinspikeDataPort} emulator through an {@link AsynchDemuxer} with a
+ * {@link RecordingDataPort}, then play it back with a {@link ReplayDataPort}.<p>
+ * The recorded responses are checked against the emulator, the recording is replayed through a demuxer
+ * as fast as possible reporting commands/sec, and then with original timing, checking the replay takes
+ * about as long as the recording.<p>
+ * java com.neocoretechs.robocore.test.RecordReplayBench [rounds] [recording file]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class RecordReplayBench {
+	static final String[] commands = { "G4 P5", "G99 T4000", "G100", "M1", "M44 P12", "M110 N0",
+			"M115", "M700", "M802 P0 S10 M100", "M705" };
+	static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		int rounds = 200;
+		if(args.length > 0)
+			rounds = Integer.parseInt(args[0]);
+		File file = args.length > 1 ? new File(args[1]) : File.createTempFile("marlinspike", ".rec");
+		ArrayList<String> sent = new ArrayList<String>();
+		for(int r = 0; r < rounds; r++)
+			for(String command : commands)
+				sent.add(command);
+		// record
+		RecordingDataPort recorder = new RecordingDataPort(new MarlinspikeDataPort(), file.getPath());
+		long elapsed = drive(recorder, sent);
+		long recorded = elapsed;
+		recorder.close();
+		System.out.printf("Recorded %d commands in %d ms, %d bytes%n", recorder.getRecorded(), elapsed/1000000, file.length());
+		if(recorder.getRecorded() != sent.size()) {
+			System.out.println("Recorded "+recorder.getRecorded()+" of "+sent.size()+" commands");
+			++failures;
+		}
+		// recorded responses match the emulator
+		ReplayDataPort replay = new ReplayDataPort(file.getPath(), false);
+		replay.connect(false);
+		if(!replay.getCommands().equals(sent)) {
+			System.out.println("Recorded commands differ from those sent");
+			++failures;
+		}
+		MarlinspikeDataPort emulator = new MarlinspikeDataPort();
+		emulator.setClock(new VirtualClock());
+		for(String command : replay.getCommands()) {
+			ArrayList<String> expected = emulator.sendCommand(command);
+			ArrayList<String> replayed = replay.sendCommand(command);
+			if(!expected.equals(replayed)) {
+				System.out.println(command+" replayed "+replayed+" emulator "+expected);
+				++failures;
+				break;
+			}
+		}
+		replay.close();
+		// as fast as possible, through the demuxer
+		for(int pass = 0; pass < 2; pass++) { // first pass warms up
+			replay = new ReplayDataPort(file.getPath(), false);
+			elapsed = drive(replay, sent);
+			if(pass > 0)
+				System.out.printf("Replay as fast as possible %d commands in %d ms, %.0f commands/sec%n",
+					replay.getReplayed(), elapsed/1000000, replay.getReplayed()*1e9/elapsed);
+			check(replay, sent.size());
+			replay.close();
+		}
+		// original timing, direct to the port so only the replay sets the pace
+		replay = new ReplayDataPort(file.getPath(), true);
+		replay.connect(false);
+		long start = System.nanoTime();
+		for(String command : sent)
+			replay.sendCommand(command);
+		elapsed = System.nanoTime() - start;
+		System.out.printf("Replay original timing %d commands in %d ms%n", replay.getReplayed(), elapsed/1000000);
+		if(elapsed < recorded * 9 / 10) {
+			System.out.println("Replay with original timing took "+elapsed/1000000+" ms of "+recorded/1000000+" ms recorded");
+			++failures;
+		}
+		check(replay, sent.size());
+		replay.close();
+		if(args.length < 2)
+			file.delete();
+		System.out.println("RecordReplayBench "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+	/**
+	 * Send the commands through a demuxer on the port one at a time, waiting for each to complete.
+	 * @return elapsed nanoseconds
+	 */
+	static long drive(DataPortCommandInterface port, ArrayList<String> sent) throws Exception {
+		AsynchDemuxer demuxer = new AsynchDemuxer(null);
+		demuxer.connect(port);
+		long start = System.nanoTime();
+		for(String command : sent) {
+			long done = demuxer.getCommandsCompleted();
+			demuxer.addWrite(command);
+			while(demuxer.getCommandsCompleted() == done)
+				Thread.yield();
+		}
+		return System.nanoTime() - start;
+	}
+
+	static void check(ReplayDataPort replay, int size) {
+		if(replay.getReplayed() != size || replay.getMismatches() != 0) {
+			System.out.println("Replayed "+replay.getReplayed()+" of "+size+" with "+replay.getMismatches()+" mismatches");
+			++failures;
+		}
+	}
+}
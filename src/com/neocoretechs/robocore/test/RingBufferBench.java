@@ -0,0 +1,135 @@
+package com.neocoretechs.robocore.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import com.neocoretechs.robocore.machine.bridge.CircularBlockingDeque;
+import com.neocoretechs.robocore.machine.bridge.CircularQueue;
+import com.neocoretechs.robocore.machine.bridge.LockFreeRing;
+import com.neocoretechs.robocore.machine.bridge.LockFreeRing.WaitStrategy;
+/**
+ * Compare the {@link LockFreeRing} with the {@link CircularBlockingDeque} it can replace in a MachineBridge.<p>
+ * Throughput: one and then several producers add as fast as they can to one consumer taking. Since both overwrite
+ * the oldest entry when full, the entries taken per second are reported along with the number lost.<p>
+ * Latency: an entry is passed to an echo thread through one queue and back through another, half the round trip
+ * is reported at the median, 99th percentile and worst.<p>
+ * Every entry taken is checked to be one that was added, and the entries of each producer to arrive in order.<p>
+ * java com.neocoretechs.robocore.test.RingBufferBench [entries per producer] [producers] [round trips]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class RingBufferBench {
+	static final int CAPACITY = 1024;
+	static final int PRODUCER_SHIFT = 24; // entries carry the producer above this bit and its sequence below
+	static Integer[] boxed; // entries are boxed ahead of time so the producers measure the queue, not the allocator
+	static final int END = -1;
+	static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		int entries = 1000000;
+		int producers = 4;
+		int trips = 20000;
+		if(args.length > 0)
+			entries = Integer.parseInt(args[0]);
+		if(args.length > 1)
+			producers = Integer.parseInt(args[1]);
+		if(args.length > 2)
+			trips = Integer.parseInt(args[2]);
+		boxed = new Integer[producers * entries];
+		for(int p = 0; p < producers; p++)
+			for(int i = 0; i < entries; i++)
+				boxed[p * entries + i] = (p << PRODUCER_SHIFT) | i;
+		final int n = producers;
+		for(int pass = 0; pass < 2; pass++) { // first pass warms up
+			boolean report = (pass > 0);
+			throughput(report, "CircularBlockingDeque      ", 1, entries, () -> new CircularBlockingDeque<Integer>(CAPACITY));
+			throughput(report, "LockFreeRing SPSC park     ", 1, entries, () -> new LockFreeRing<Integer>(CAPACITY, false, WaitStrategy.PARK));
+			throughput(report, "LockFreeRing SPSC yield    ", 1, entries, () -> new LockFreeRing<Integer>(CAPACITY, false, WaitStrategy.YIELD));
+			throughput(report, "CircularBlockingDeque      ", n, entries, () -> new CircularBlockingDeque<Integer>(CAPACITY));
+			throughput(report, "LockFreeRing MPSC park     ", n, entries, () -> new LockFreeRing<Integer>(CAPACITY, true, WaitStrategy.PARK));
+			throughput(report, "LockFreeRing MPSC yield    ", n, entries, () -> new LockFreeRing<Integer>(CAPACITY, true, WaitStrategy.YIELD));
+			latency(report, "CircularBlockingDeque      ", trips, () -> new CircularBlockingDeque<Integer>(CAPACITY));
+			latency(report, "LockFreeRing SPSC park     ", trips, () -> new LockFreeRing<Integer>(CAPACITY, false, WaitStrategy.PARK));
+			latency(report, "LockFreeRing SPSC yield    ", trips, () -> new LockFreeRing<Integer>(CAPACITY, false, WaitStrategy.YIELD));
+		}
+		System.out.println("RingBufferBench "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static void throughput(boolean report, String name, int producers, int entries, Supplier<CircularQueue<Integer>> factory) throws InterruptedException {
+		CircularQueue<Integer> queue = factory.get();
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for(int p = 0; p < producers; p++) {
+			final int base = p * entries;
+			threads.add(new Thread(() -> {
+				for(int i = 0; i < entries; i++)
+					queue.addLast(boxed[base + i]);
+			}));
+		}
+		// once the producers are done one more entry marks the end, being the newest it is never overwritten
+		Thread closer = new Thread(() -> {
+			try {
+				for(Thread t : threads)
+					t.join();
+				queue.addLast(END);
+			} catch(InterruptedException ie) {}
+		});
+		final int[] last = new int[producers];
+		Arrays.fill(last, -1);
+		long start = System.nanoTime();
+		for(Thread t : threads)
+			t.start();
+		closer.start();
+		long taken = 0;
+		while(true) {
+			int e = queue.takeFirst();
+			if(e == END)
+				break;
+			int p = e >>> PRODUCER_SHIFT;
+			int i = e & ((1 << PRODUCER_SHIFT) - 1);
+			if(p >= producers || i <= last[p]) {
+				if(report)
+					System.out.println(name+" entry "+i+" of producer "+p+" out of order, previous "+(p < producers ? last[p] : -1));
+				++failures;
+			}
+			if(p < producers)
+				last[p] = i;
+			++taken;
+		}
+		long elapsed = System.nanoTime() - start;
+		closer.join();
+		long added = (long)producers * entries;
+		if(report)
+			System.out.printf("%s producers=%d added=%d taken=%d lost=%d elapsed=%dms added/sec=%.0f taken/sec=%.0f%n",
+				name, producers, added, taken, added - taken, elapsed/1000000, added*1e9/elapsed, taken*1e9/elapsed);
+	}
+
+	static void latency(boolean report, String name, int trips, Supplier<CircularQueue<Integer>> factory) throws InterruptedException {
+		CircularQueue<Integer> out = factory.get();
+		CircularQueue<Integer> back = factory.get();
+		Thread echo = new Thread(() -> {
+			try {
+				for(int i = 0; i < trips; i++)
+					back.addLast(out.takeFirst());
+			} catch(InterruptedException ie) {}
+		});
+		echo.start();
+		long[] times = new long[trips];
+		for(int i = 0; i < trips; i++) {
+			long start = System.nanoTime();
+			out.addLast(boxed[i % boxed.length]);
+			int e = back.takeFirst();
+			times[i] = (System.nanoTime() - start) / 2;
+			if(e != boxed[i % boxed.length]) {
+				++failures;
+				break;
+			}
+		}
+		echo.join();
+		Arrays.sort(times);
+		if(report)
+			System.out.printf("%s one way latency median=%.2fus p99=%.2fus max=%.2fus%n", name,
+				times[trips/2]/1e3, times[(int)(trips*.99)]/1e3, times[trips-1]/1e3);
+	}
+}
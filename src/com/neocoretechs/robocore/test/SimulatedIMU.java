@@ -0,0 +1,41 @@
+package com.neocoretechs.robocore.test;
+
+import java.util.Random;
+/**
+ * Stand-in for the BNO055 behind {@link com.neocoretechs.robocore.serialreader.IMUSerialDataPort}, reading the heading
+ * of a {@link DiffDrivePlant} as {@link #readEuler()} does: heading, roll and pitch in degrees, at the sensor's
+ * resolution of 1/16 degree. The heading carries white noise and a bias that drifts at a constant rate, as an
+ * uncorrected gyro does. The robot is on level ground, so roll and pitch are noise about 0.
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class SimulatedIMU {
+	private final DiffDrivePlant plant;
+	private final double noise; // degrees standard deviation
+	private final double drift; // degrees per second
+	private final Random random;
+	/**
+	 * @param plant the robot
+	 * @param noise heading noise standard deviation, degrees
+	 * @param drift heading bias growth, degrees per second
+	 * @param seed of the noise
+	 */
+	public SimulatedIMU(DiffDrivePlant plant, double noise, double drift, long seed) {
+		this.plant = plant;
+		this.noise = noise;
+		this.drift = drift;
+		this.random = new Random(seed);
+	}
+	/**
+	 * @return heading, roll and pitch in degrees, heading 0 to 360 clockwise
+	 */
+	public double[] readEuler() {
+		double heading = plant.getHeadingDegrees() + drift * plant.getTimeMicros() / 1e6 + random.nextGaussian() * noise;
+		heading = (heading % 360.0 + 360.0) % 360.0;
+		return new double[] { quantize(heading) % 360.0, quantize(random.nextGaussian() * noise), quantize(random.nextGaussian() * noise) };
+	}
+
+	private static double quantize(double degrees) {
+		return Math.round(degrees * 16.0) / 16.0;
+	}
+}
@@ -0,0 +1,226 @@
+package com.neocoretechs.robocore.test;
+
+import java.util.Random;
+
+import com.neocoretechs.robocore.machine.bridge.CircularBlockingDeque;
+import com.neocoretechs.robocore.pca.ComputeVariance;
+import com.neocoretechs.robocore.pca.Point3f;
+import com.neocoretechs.robocore.pca.SlidingWindowCovariance;
+/**
+ * Check {@link SlidingWindowCovariance} against the passes FusionIMURange.queueResponse made over its window for each
+ * point: the least, greatest and latest distance and the earliest and latest time must be the same, the averages and
+ * the principal components from {@link ComputeVariance#leastVariance(SlidingWindowCovariance)} the same as
+ * {@link ComputeVariance#leastVariance(java.util.List)} of the window, to rounding, and as queueResponse computed them,
+ * on the window shifted to its earliest time, to the float rounding of the shifted times.
+ * Points are range readings along compass headings, as the ranger and IMU produce them, over runs long enough to
+ * resynchronize the sums, with times late enough to test the running mean, and ties of distance and time.
+ * Then the time per point of both is reported for windows of 8 to 1024 points.<p>
+ * java com.neocoretechs.robocore.test.SlidingCovarianceTest [points]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class SlidingCovarianceTest {
+	static int failures = 0;
+	static final int[] WINDOWS = {8, 16, 20, 32, 64, 128, 256, 512, 1024};
+	static final double TOLERANCE = 1e-9; // of the greatest variance
+	static final double SHIFTED_TOLERANCE = 1e-6; // the shifted times were rounded to float
+
+	public static void main(String[] args) throws Exception {
+		int points = 20000;
+		if(args.length > 0)
+			points = Integer.parseInt(args[0]);
+		for(int window : WINDOWS)
+			check(window, points, 0.0, false, window);
+		check(20, SlidingWindowCovariance.RESYNC * 12, 10000.0, false, 99); // late times, through resyncs
+		check(16, points, 0.0, true, 7); // ties
+		for(int pass = 0; pass < 2; pass++) // first pass warms up
+			for(int window : WINDOWS)
+				time(pass > 0, window, Math.max(points / 4, window * 40));
+		System.out.println("SlidingCovarianceTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+	/**
+	 * Range readings walking about a heading, 50 ms apart with jitter.
+	 */
+	static final class Readings {
+		final Random random;
+		final boolean ties;
+		double heading, distance = 1.0, time;
+
+		Readings(long seed, double start, boolean ties) {
+			random = new Random(seed);
+			time = start;
+			this.ties = ties;
+		}
+
+		Point3f next() {
+			heading += random.nextGaussian() * 5.0;
+			distance = Math.max(0.05, distance + random.nextGaussian() * 0.05);
+			if(ties) { // few distinct distances, times repeating
+				distance = 0.5 + random.nextInt(4) * 0.25;
+				if(random.nextInt(3) != 0)
+					time += 0.05;
+			} else {
+				time += 0.05 + random.nextDouble() * 0.01;
+			}
+			double x = Math.sin(Math.toRadians(heading)) * distance;
+			double y = Math.cos(Math.toRadians(heading)) * distance;
+			return new Point3f((float)x, (float)y, (float)time);
+		}
+	}
+	/**
+	 * What queueResponse computed over the whole window for each point.
+	 */
+	static final class Reference {
+		float latestDist, minDist, maxDist, avgDist;
+		double minTime, maxTime, avgTime;
+		final ComputeVariance c = new ComputeVariance();
+
+		void compute(CircularBlockingDeque<Point3f> pointWindow) {
+			latestDist = 0.0f;
+			float latestTime = Float.MIN_VALUE;
+			minDist = Float.MAX_VALUE;
+			maxDist = Float.MIN_VALUE;
+			float sumDist = 0.0f;
+			minTime = Double.MAX_VALUE;
+			maxTime = Double.MIN_VALUE;
+			double sumTime = 0.0f;
+			for (Point3f p : pointWindow) {
+				float d = (float)Math.sqrt(p.x()*p.x() + p.y()*p.y());
+				if (p.t() > latestTime) {
+					latestTime = p.t();
+					latestDist = d;
+				}
+				if (d < minDist)
+					minDist = d;
+				if (d > maxDist)
+					maxDist = d;
+				if(p.t() < minTime)
+					minTime = p.t();
+				if(p.t() > maxTime)
+					maxTime = p.t();
+				sumDist += Math.sqrt(p.x()*p.x() + p.y()*p.y());
+				sumTime += p.t();
+			}
+			avgDist = sumDist / pointWindow.size();
+			avgTime = sumTime / pointWindow.size();
+			CircularBlockingDeque<Point3f> newWindow = new CircularBlockingDeque<Point3f>(pointWindow.size());
+			for(int i = 0; i < pointWindow.size(); i++) {
+				Point3f px = pointWindow.get(i);
+				double td = px.t() - minTime;
+				Point3f nx = new Point3f(px.x(), px.y(), (float)td);
+				newWindow.add(i, nx);
+			}
+			c.leastVariance(newWindow);
+		}
+	}
+
+	static void check(int window, int points, double start, boolean ties, long seed) {
+		Readings readings = new Readings(seed, start, ties);
+		CircularBlockingDeque<Point3f> pointWindow = new CircularBlockingDeque<Point3f>(window);
+		SlidingWindowCovariance sliding = new SlidingWindowCovariance(window);
+		Reference reference = new Reference();
+		ComputeVariance c = new ComputeVariance(), exact = new ComputeVariance();
+		int compared = 0, flips = 0;
+		double worstValue = 0.0, worstExact = 0.0, worstVector = 0.0, worstMean = 0.0;
+		for(int i = 0; i < points; i++) {
+			Point3f p = readings.next();
+			pointWindow.addLast(p);
+			sliding.add(p);
+			if(pointWindow.length() != sliding.size()) {
+				System.out.println("window "+window+" size "+sliding.size()+" expected "+pointWindow.length());
+				++failures;
+				return;
+			}
+			if(pointWindow.length() < window)
+				continue;
+			reference.compute(pointWindow);
+			c.leastVariance(sliding);
+			++compared;
+			if(sliding.getMinDistance() != reference.minDist || sliding.getMaxDistance() != reference.maxDist
+					|| sliding.getLatestDistance() != reference.latestDist || sliding.getMinTime() != reference.minTime
+					|| sliding.getMaxTime() != reference.maxTime) {
+				System.out.printf("window %d point %d extremes %f %f %f %f %f expected %f %f %f %f %f%n", window, i,
+						sliding.getMinDistance(), sliding.getMaxDistance(), sliding.getLatestDistance(), sliding.getMinTime(), sliding.getMaxTime(),
+						reference.minDist, reference.maxDist, reference.latestDist, reference.minTime, reference.maxTime);
+				++failures;
+				return;
+			}
+			// the reference sums distances in float
+			worstMean = Math.max(worstMean, Math.abs(sliding.getMeanDistance() - reference.avgDist) / reference.avgDist);
+			worstMean = Math.max(worstMean, Math.abs(sliding.getMeanTime() - reference.avgTime) / Math.max(1.0, reference.avgTime));
+			exact.leastVariance(pointWindow);
+			pointWindow.poll();
+			sliding.poll();
+			worstExact = Math.max(worstExact, error(c, exact));
+			ComputeVariance r = reference.c;
+			double scale = Math.abs(r.getVariance3()) + Double.MIN_NORMAL;
+			worstValue = Math.max(worstValue, error(c, r));
+			double dot = c.getEigvec3().x * r.getEigvec3().x + c.getEigvec3().y * r.getEigvec3().y + c.getEigvec3().z * r.getEigvec3().z;
+			if(dot < 0)
+				++flips;
+			// the direction is only defined when the greatest variance stands apart
+			if(r.getVariance3() - r.getVariance2() > 1e-6 * scale)
+				worstVector = Math.max(worstVector, 1.0 - Math.abs(dot));
+		}
+		System.out.printf("window %4d%s%s: %d windows, variance error %.2e (unshifted %.2e), direction error %.2e, mean error %.2e, sign flips %d%n", window,
+				start > 0 ? " late" : "", ties ? " ties" : "", compared, worstValue, worstExact, worstVector, worstMean, flips);
+		if(worstExact > TOLERANCE || worstValue > SHIFTED_TOLERANCE || worstVector > 1e-6 || worstMean > 1e-5 || flips > compared / 1000) {
+			System.out.println("window "+window+" differs from the passes over it");
+			++failures;
+		}
+	}
+	/**
+	 * @return the greatest difference of the variances, relative to the greatest variance
+	 */
+	static double error(ComputeVariance c, ComputeVariance r) {
+		double scale = Math.abs(r.getVariance3()) + Double.MIN_NORMAL;
+		return Math.max(Math.abs(c.getVariance1() - r.getVariance1()),
+				Math.max(Math.abs(c.getVariance2() - r.getVariance2()), Math.abs(c.getVariance3() - r.getVariance3()))) / scale;
+	}
+	/**
+	 * Time per point of the passes over the window against the sliding window, the statistics alone and with
+	 * the principal components.
+	 */
+	static void time(boolean report, int window, int points) {
+		Readings readings = new Readings(window, 0.0, false);
+		Point3f[] ps = new Point3f[points];
+		for(int i = 0; i < points; i++)
+			ps[i] = readings.next();
+		CircularBlockingDeque<Point3f> pointWindow = new CircularBlockingDeque<Point3f>(window);
+		Reference reference = new Reference();
+		double sink = 0.0;
+		long t0 = System.nanoTime();
+		for(Point3f p : ps) {
+			pointWindow.addLast(p);
+			if(pointWindow.length() == window) {
+				reference.compute(pointWindow);
+				sink += reference.c.getEigvec3().x;
+				pointWindow.poll();
+			}
+		}
+		long passes = System.nanoTime() - t0;
+		SlidingWindowCovariance sliding = new SlidingWindowCovariance(window);
+		t0 = System.nanoTime();
+		for(Point3f p : ps) {
+			sliding.add(p);
+			if(sliding.isFull()) {
+				ComputeVariance c = new ComputeVariance();
+				c.leastVariance(sliding);
+				sink += c.getEigvec3().x + sliding.getMinDistance() + sliding.getMaxDistance() + sliding.getLatestDistance() + sliding.getMeanDistance();
+				sliding.poll();
+			}
+		}
+		long slid = System.nanoTime() - t0;
+		sliding.clear();
+		t0 = System.nanoTime();
+		for(Point3f p : ps) {
+			sliding.add(p);
+			sink += sliding.getMinDistance() + sliding.getMaxTime() + sliding.getMeanDistance();
+		}
+		long statistics = System.nanoTime() - t0;
+		if(report)
+			System.out.printf("window %4d: passes %10.1f ns/point, sliding %8.1f ns/point (%6.1fx), sliding statistics alone %6.1f ns/point %s%n",
+					window, (double)passes / points, (double)slid / points, (double)passes / slid, (double)statistics / points, sink == 0.0 ? "" : " ");
+	}
+}
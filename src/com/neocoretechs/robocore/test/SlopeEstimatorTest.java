@@ -0,0 +1,209 @@
+package com.neocoretechs.robocore.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import com.neocoretechs.robocore.machine.bridge.CircularBlockingDeque;
+import com.neocoretechs.robocore.propulsion.SlopeEstimator;
+/**
+ * Check {@link SlopeEstimator} numerically against the regression MotionController.slope ran over a
+ * CircularBlockingDeque of boxed Floats, for windows of several lengths over random speed sequences:
+ * the slopes must agree to within the float rounding of the old sum of products, and the speeds limited to
+ * maxSpeedSlope must be the same, apart from slopes that round to either side of the limit.
+ * Timestamped samples with irregular spacing and large times are checked against a direct two pass least squares,
+ * then the time and bytes allocated per sample of both are reported.<p>
+ * java com.neocoretechs.robocore.test.SlopeEstimatorTest [samples]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class SlopeEstimatorTest {
+	static final float maxSpeedSlope = 100;
+	static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		int samples = 200000;
+		if(args.length > 0)
+			samples = Integer.parseInt(args[0]);
+		for(int window : new int[] {2, 3, 5, 8, 16})
+			compareUnitSpacing(window, samples);
+		compareTimestamps(5, samples);
+		compareTimestamps(32, samples);
+		for(int pass = 0; pass < 2; pass++) // first pass warms up
+			time(pass > 0, samples * 5);
+		System.out.println("SlopeEstimatorTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+	/**
+	 * The slope of MotionController before the SlopeEstimator, returning the slope in m[0].
+	 */
+	static float referenceSlope(float speed, CircularBlockingDeque<Float> speedQueue, double[] m) {
+		speedQueue.addLast(speed);
+		int n = speedQueue.length();
+		double sum_x = 0, sum_y = 0, sum_xy = 0, sum_x2 = 0;
+		for (int i = 0; i < n; i++) {
+			sum_x += i;
+			sum_y += speedQueue.get(i);
+			sum_xy += i * speedQueue.get(i);
+			sum_x2 += Math.pow(i, 2);
+		}
+		m[0] = (n * sum_xy - sum_x * sum_y) / (n * sum_x2 - Math.pow(sum_x, 2));
+		if(m[0] == 0)
+			return speedQueue.get(n-1);
+		if(m[0] < 0) {
+			if(m[0] < -maxSpeedSlope) {
+				if(speedQueue.get(n-1) < 0) {
+					float diff = speedQueue.get(n-1)-speedQueue.get(n-2);
+					speedQueue.set(n-1, speedQueue.get(n-2)+(diff/2.0f));
+				} else {
+					float diff = speedQueue.get(n-2)-speedQueue.get(n-1);
+					speedQueue.set(n-1, speedQueue.get(n-2)-(diff/2.0f));
+				}
+			}
+		} else {
+			if(m[0] > maxSpeedSlope) {
+				if(speedQueue.get(n-1) < 0) {
+					float diff = speedQueue.get(n-2)-speedQueue.get(n-1);
+					speedQueue.set(n-1, speedQueue.get(n-2)-(diff/2.0f));
+				} else {
+					float diff = speedQueue.get(n-1)-speedQueue.get(n-2);
+					speedQueue.set(n-1, speedQueue.get(n-2)+(diff/2.0f));
+				}
+			}
+		}
+		return speedQueue.get(n-1);
+	}
+	/**
+	 * The slope of MotionController with the SlopeEstimator, returning the slope in m[0].
+	 */
+	static float estimatorSlope(float speed, SlopeEstimator speedWindow, double[] m) {
+		m[0] = speedWindow.add(speed);
+		int n = speedWindow.size();
+		if(n > 1 && (m[0] < -maxSpeedSlope || m[0] > maxSpeedSlope)) {
+			float last = (float)speedWindow.getY(n-1);
+			float prev = (float)speedWindow.getY(n-2);
+			speedWindow.replaceLast(prev+((last-prev)/2.0f));
+		}
+		return (float)speedWindow.last();
+	}
+	/**
+	 * Joystick like speeds, holding, stepping and ramping between -1000 and 1000.
+	 */
+	static float nextSpeed(Random r, float speed) {
+		switch(r.nextInt(4)) {
+			case 0: return speed;
+			case 1: return (float)Math.round((r.nextFloat() * 2 - 1) * 1000);
+			default: return Math.max(-1000f, Math.min(1000f, speed + (r.nextFloat() * 2 - 1) * 150));
+		}
+	}
+
+	static void compareUnitSpacing(int window, int samples) {
+		Random r = new Random(window);
+		CircularBlockingDeque<Float> queue = new CircularBlockingDeque<Float>(window);
+		SlopeEstimator estimator = new SlopeEstimator(window);
+		double[] m0 = new double[1], m1 = new double[1];
+		double worst = 0;
+		int limited = 0, ties = 0;
+		float speed = 0;
+		for(int i = 0; i < samples; i++) {
+			speed = nextSpeed(r, speed);
+			float expected = referenceSlope(speed, queue, m0);
+			float actual = estimatorSlope(speed, estimator, m1);
+			if(expected != speed)
+				++limited;
+			if(Double.isNaN(m0[0]) != Double.isNaN(m1[0])) {
+				System.out.println("window "+window+" sample "+i+" slope "+m1[0]+" reference "+m0[0]);
+				++failures;
+				return;
+			}
+			if(!Double.isNaN(m0[0])) {
+				// the old regression multiplied i * Float in float, good to about 1e-7 of the largest product
+				double err = Math.abs(m1[0] - m0[0]);
+				worst = Math.max(worst, err);
+				if(err > 1e-4) {
+					System.out.println("window "+window+" sample "+i+" slope "+m1[0]+" reference "+m0[0]);
+					++failures;
+					return;
+				}
+			}
+			if(expected != actual) {
+				if(Math.abs(Math.abs(m0[0]) - maxSpeedSlope) > 1e-4) {
+					System.out.println("window "+window+" sample "+i+" speed "+actual+" reference "+expected);
+					++failures;
+					return;
+				}
+				// rounded to either side of the limit, carry on from the estimator's window
+				++ties;
+				for(int j = 0; j < estimator.size(); j++)
+					queue.set(j, (float)estimator.getY(j));
+			}
+		}
+		System.out.printf("window=%-3d samples=%d limited=%d ties=%d worst slope error=%.3e%n", window, samples, limited, ties, worst);
+	}
+
+	static void compareTimestamps(int window, int samples) {
+		Random r = new Random(-window);
+		SlopeEstimator estimator = new SlopeEstimator(window);
+		double[] xs = new double[window], ys = new double[window];
+		double t = 1.7e9; // seconds since the epoch
+		double worst = 0;
+		for(int i = 0; i < samples; i++) {
+			t += 0.001 + r.nextDouble() * 0.02;
+			double y = 3.0 * t + r.nextGaussian() * 10.0;
+			double m = estimator.add(t, y);
+			xs[i % window] = t;
+			ys[i % window] = y;
+			int n = Math.min(i + 1, window);
+			if(n < 2)
+				continue;
+			double mx = 0, my = 0;
+			for(int j = 0; j < n; j++) {
+				mx += xs[j];
+				my += ys[j];
+			}
+			mx /= n;
+			my /= n;
+			double sxy = 0, sxx = 0;
+			for(int j = 0; j < n; j++) {
+				sxy += (xs[j] - mx) * (ys[j] - my);
+				sxx += (xs[j] - mx) * (xs[j] - mx);
+			}
+			double expected = sxy / sxx;
+			double err = Math.abs(m - expected) / Math.max(1.0, Math.abs(expected));
+			worst = Math.max(worst, err);
+			if(err > 1e-6) {
+				System.out.println("timestamped window "+window+" sample "+i+" slope "+m+" two pass "+expected);
+				++failures;
+				return;
+			}
+		}
+		System.out.printf("timestamped window=%-3d samples=%d worst relative slope error=%.3e%n", window, samples, worst);
+	}
+
+	static void time(boolean report, int samples) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		double[] m = new double[1];
+		double check = 0, check2 = 0;
+		CircularBlockingDeque<Float> queue = new CircularBlockingDeque<Float>(5);
+		long allocated = threads.getCurrentThreadAllocatedBytes();
+		long start = System.nanoTime();
+		for(int i = 0; i < samples; i++)
+			check += referenceSlope((i * 37) % 2001 - 1000, queue, m);
+		long elapsed = System.nanoTime() - start;
+		allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+		if(report)
+			System.out.printf("CircularBlockingDeque<Float> %8.1f ns/sample %8.1f bytes allocated/sample%n", (double)elapsed/samples, (double)allocated/samples);
+		SlopeEstimator estimator = new SlopeEstimator(5);
+		allocated = threads.getCurrentThreadAllocatedBytes();
+		start = System.nanoTime();
+		for(int i = 0; i < samples; i++)
+			check2 += estimatorSlope((i * 37) % 2001 - 1000, estimator, m);
+		elapsed = System.nanoTime() - start;
+		allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+		if(report)
+			System.out.printf("SlopeEstimator               %8.1f ns/sample %8.1f bytes allocated/sample%n", (double)elapsed/samples, (double)allocated/samples);
+		if(report && check != check2) {
+			System.out.println("Limited speeds differ, checksum "+check2+" reference "+check);
+			++failures;
+		}
+	}
+}
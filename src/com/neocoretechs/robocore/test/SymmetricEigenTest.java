@@ -0,0 +1,278 @@
+package com.neocoretechs.robocore.test;
+
+import java.util.Random;
+
+import com.neocoretechs.robocore.pca.ComputeVariance;
+import com.neocoretechs.robocore.pca.EigenvalueDecomposition;
+import com.neocoretechs.robocore.pca.Matrix3;
+import com.neocoretechs.robocore.pca.Point3f;
+import com.neocoretechs.robocore.pca.SlidingWindowCovariance;
+import com.neocoretechs.robocore.pca.SymmetricEigen3;
+/**
+ * Check {@link SymmetricEigen3} against {@link EigenvalueDecomposition} over random symmetric matrices, covariances
+ * of random points, and degenerate ones: repeated and nearly repeated eigenvalues, a multiple of the identity, rank 1
+ * and 2, diagonal, zero, and scales from 1e-150 to 1e150. The eigenvalues must agree with the iterative ones, the
+ * residual |Av - lambda v| be rounding of |A|, the vectors orthonormal, and where an eigenvalue stands apart its vector
+ * the same as the iterative one, to its sign.
+ * Then the decompositions per second of both, alone and through {@link ComputeVariance#leastVariance(SlidingWindowCovariance)}.<p>
+ * java com.neocoretechs.robocore.test.SymmetricEigenTest [matrices]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class SymmetricEigenTest {
+	static int failures = 0;
+	static final double TOLERANCE = 1e-13; // of the greatest eigenvalue magnitude
+	static double worstValue, worstResidual, worstOrthogonal, worstVector;
+	static int checked;
+
+	public static void main(String[] args) throws Exception {
+		int matrices = 200000;
+		if(args.length > 0)
+			matrices = Integer.parseInt(args[0]);
+		Random random = new Random(25);
+		for(String kind : new String[] {"random", "covariance", "repeated", "nearly repeated", "identity", "rank 1", "rank 2", "diagonal", "scaled"}) {
+			worstValue = worstResidual = worstOrthogonal = worstVector = 0.0;
+			checked = 0;
+			for(int i = 0; i < matrices / 9; i++)
+				check(kind, matrix(kind, random));
+			System.out.printf("%-16s %7d matrices, eigenvalue error %.2e, residual %.2e, orthogonality %.2e, vector error %.2e%n",
+					kind, checked, worstValue, worstResidual, worstOrthogonal, worstVector);
+		}
+		check("zero", new double[9]);
+		checkComputeVariance(random);
+		for(int pass = 0; pass < 2; pass++) // first pass warms up
+			time(pass > 0, random, Math.max(matrices, 100000));
+		System.out.println("SymmetricEigenTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+	/**
+	 * A symmetric matrix, row major, of the kind named.
+	 */
+	static double[] matrix(String kind, Random random) {
+		switch(kind) {
+		case "random": {
+			double[] m = new double[9];
+			for(int r = 0; r < 3; r++)
+				for(int c = r; c < 3; c++)
+					m[r * 3 + c] = m[c * 3 + r] = random.nextGaussian();
+			return m;
+		}
+		case "covariance": {
+			// as ComputeVariance sees them, range points along a heading over time
+			double heading = random.nextDouble() * 2.0 * Math.PI, speed = random.nextDouble();
+			double[] p = new double[20 * 3];
+			for(int i = 0; i < 20; i++) {
+				double t = i * 0.05 + random.nextDouble() * 0.01;
+				p[i * 3] = Math.sin(heading) * speed * t + random.nextGaussian() * 0.01;
+				p[i * 3 + 1] = Math.cos(heading) * speed * t + random.nextGaussian() * 0.01;
+				p[i * 3 + 2] = t;
+			}
+			return covariance(p, 20);
+		}
+		case "repeated":
+			return rotated(random, random.nextGaussian(), random.nextGaussian(), random.nextBoolean());
+		case "nearly repeated": {
+			double a = random.nextGaussian(), delta = Math.abs(a) * Math.pow(10.0, -1.0 - random.nextInt(15));
+			return rotated(random, a, a + delta, random.nextBoolean());
+		}
+		case "identity": {
+			double a = random.nextGaussian();
+			return new double[] {a, 0, 0, 0, a, 0, 0, 0, a};
+		}
+		case "rank 1": {
+			double x = random.nextGaussian(), y = random.nextGaussian(), z = random.nextGaussian(), s = random.nextGaussian();
+			return new double[] {s*x*x, s*x*y, s*x*z, s*y*x, s*y*y, s*y*z, s*z*x, s*z*y, s*z*z};
+		}
+		case "rank 2":
+			return rotated(random, 0.0, random.nextGaussian(), random.nextBoolean());
+		case "diagonal":
+			return new double[] {random.nextGaussian(), 0, 0, 0, random.nextGaussian(), 0, 0, 0, random.nextGaussian()};
+		default: { // scaled
+			double[] m = matrix(random.nextBoolean() ? "random" : "nearly repeated", random);
+			double s = Math.pow(10.0, random.nextInt(301) - 150);
+			for(int i = 0; i < 9; i++)
+				m[i] *= s;
+			return m;
+		}
+		}
+	}
+	/**
+	 * Q diag(a, a, b) Q' or Q diag(b, a, a) Q' for a random rotation Q.
+	 */
+	static double[] rotated(Random random, double a, double b, boolean pairLeast) {
+		double[] d = pairLeast ? new double[] {a, a, b} : new double[] {b, a, a};
+		// random unit quaternion to rotation
+		double w = random.nextGaussian(), x = random.nextGaussian(), y = random.nextGaussian(), z = random.nextGaussian();
+		double n = Math.sqrt(w*w + x*x + y*y + z*z);
+		w /= n; x /= n; y /= n; z /= n;
+		double[] q = {1 - 2*(y*y + z*z), 2*(x*y - z*w), 2*(x*z + y*w),
+				2*(x*y + z*w), 1 - 2*(x*x + z*z), 2*(y*z - x*w),
+				2*(x*z - y*w), 2*(y*z + x*w), 1 - 2*(x*x + y*y)};
+		double[] m = new double[9];
+		for(int r = 0; r < 3; r++)
+			for(int c = r; c < 3; c++) {
+				double s = 0.0;
+				for(int k = 0; k < 3; k++)
+					s += q[r * 3 + k] * d[k] * q[c * 3 + k];
+				m[r * 3 + c] = m[c * 3 + r] = s;
+			}
+		return m;
+	}
+
+	static double[] covariance(double[] p, int n) {
+		double[] mean = new double[3], m = new double[9];
+		for(int i = 0; i < n; i++)
+			for(int k = 0; k < 3; k++)
+				mean[k] += p[i * 3 + k] / n;
+		for(int i = 0; i < n; i++)
+			for(int r = 0; r < 3; r++)
+				for(int c = 0; c < 3; c++)
+					m[r * 3 + c] += (p[i * 3 + r] - mean[r]) * (p[i * 3 + c] - mean[c]) / n;
+		return m;
+	}
+
+	static void check(String kind, double[] m) {
+		double[] values = new double[3], vectors = new double[9];
+		SymmetricEigen3.decompose(m, values, vectors);
+		++checked;
+		EigenvalueDecomposition reference = new EigenvalueDecomposition(new Matrix3(new double[][] {
+			{m[0], m[1], m[2]}, {m[3], m[4], m[5]}, {m[6], m[7], m[8]}}));
+		double[] rv = reference.getRealEigenvalues().clone();
+		Matrix3 rV = reference.getV();
+		int[] order = {0, 1, 2};
+		for(int i = 1; i < 3; i++) // order the iterative ones least to greatest
+			for(int j = i; j > 0 && rv[order[j]] < rv[order[j - 1]]; j--) {
+				int s = order[j]; order[j] = order[j - 1]; order[j - 1] = s;
+			}
+		double norm = Math.max(Math.abs(rv[order[0]]), Math.abs(rv[order[2]]));
+		double scale = norm == 0.0 ? 1.0 : norm;
+		double value = 0.0, residual = 0.0, orthogonal = 0.0, vector = 0.0;
+		for(int k = 0; k < 3; k++) {
+			if(values[k] != values[k] || (k > 0 && values[k] < values[k - 1])) {
+				value = Double.POSITIVE_INFINITY;
+				break;
+			}
+			value = Math.max(value, Math.abs(values[k] - rv[order[k]]) / scale);
+			for(int r = 0; r < 3; r++) {
+				double av = m[r * 3] * vectors[3 * k] + m[r * 3 + 1] * vectors[3 * k + 1] + m[r * 3 + 2] * vectors[3 * k + 2];
+				residual = Math.max(residual, Math.abs(av - values[k] * vectors[3 * k + r]) / scale);
+			}
+			for(int j = 0; j < 3; j++) {
+				double dot = vectors[3 * k] * vectors[3 * j] + vectors[3 * k + 1] * vectors[3 * j + 1] + vectors[3 * k + 2] * vectors[3 * j + 2];
+				orthogonal = Math.max(orthogonal, Math.abs(dot - (j == k ? 1.0 : 0.0)));
+			}
+			// a direction is only defined when its eigenvalue stands apart
+			double gap = Double.MAX_VALUE;
+			for(int j = 0; j < 3; j++)
+				if(j != k)
+					gap = Math.min(gap, Math.abs(values[k] - values[j]));
+			if(gap > 1e-6 * scale) {
+				double minus = 0.0, plus = 0.0;
+				for(int r = 0; r < 3; r++) {
+					double d = vectors[3 * k + r] - rV.get(r, order[k]), e = vectors[3 * k + r] + rV.get(r, order[k]);
+					minus += d * d;
+					plus += e * e;
+				}
+				// the angle between them, rounding of |A| over the gap to the other eigenvalues
+				vector = Math.max(vector, Math.sqrt(Math.min(minus, plus)) * gap / scale);
+			}
+		}
+		worstValue = Math.max(worstValue, value);
+		worstResidual = Math.max(worstResidual, residual);
+		worstOrthogonal = Math.max(worstOrthogonal, orthogonal);
+		worstVector = Math.max(worstVector, vector);
+		if(!(value <= TOLERANCE && residual <= TOLERANCE && orthogonal <= TOLERANCE && vector <= TOLERANCE)) {
+			if(failures < 10)
+				System.out.printf("%s matrix %s values %s %s %s expected %s %s %s: eigenvalue error %.2e residual %.2e orthogonality %.2e vector error %.2e%n",
+						kind, java.util.Arrays.toString(m), values[0], values[1], values[2], rv[order[0]], rv[order[1]], rv[order[2]],
+						value, residual, orthogonal, vector);
+			++failures;
+		}
+	}
+	/**
+	 * leastVariance in closed form against the iterative, the same variances and principal direction, forward in time.
+	 */
+	static void checkComputeVariance(Random random) {
+		SlidingWindowCovariance window = new SlidingWindowCovariance(20);
+		ComputeVariance closed = new ComputeVariance(), iterative = new ComputeVariance();
+		iterative.setClosedForm(false);
+		double worst = 0.0, worstDirection = 0.0;
+		int backward = 0, n = 0;
+		double heading = 0.0, t = 0.0;
+		for(int i = 0; i < 20000; i++) {
+			heading += random.nextGaussian() * 0.1;
+			t += 0.05;
+			window.add((float)(Math.sin(heading) * t), (float)(Math.cos(heading) * t), (float)t);
+			if(!window.isFull())
+				continue;
+			closed.leastVariance(window);
+			iterative.leastVariance(window);
+			++n;
+			double scale = iterative.getVariance3();
+			worst = Math.max(worst, Math.max(Math.abs(closed.getVariance1() - iterative.getVariance1()),
+					Math.max(Math.abs(closed.getVariance2() - iterative.getVariance2()), Math.abs(closed.getVariance3() - iterative.getVariance3()))) / scale);
+			double dot = closed.getEigvec3().x * iterative.getEigvec3().x + closed.getEigvec3().y * iterative.getEigvec3().y
+					+ closed.getEigvec3().z * iterative.getEigvec3().z;
+			worstDirection = Math.max(worstDirection, 1.0 - dot);
+			if(closed.getEigvec3().z < 0.0)
+				++backward;
+		}
+		System.out.printf("leastVariance    %7d windows, variance error %.2e, direction error %.2e, backward in time %d%n", n, worst, worstDirection, backward);
+		if(worst > TOLERANCE || worstDirection > 1e-10 || backward > 0) {
+			System.out.println("leastVariance closed form differs from the iterative");
+			++failures;
+		}
+	}
+	/**
+	 * Decompositions per second, iterative against closed form, alone and through leastVariance of a sliding window.
+	 */
+	static void time(boolean report, Random random, int matrices) {
+		double[][] ms = new double[1024][];
+		for(int i = 0; i < ms.length; i++)
+			ms[i] = matrix(i % 2 == 0 ? "covariance" : "random", random);
+		Matrix3[] m3 = new Matrix3[ms.length];
+		for(int i = 0; i < ms.length; i++)
+			m3[i] = new Matrix3(new double[][] {{ms[i][0], ms[i][1], ms[i][2]}, {ms[i][3], ms[i][4], ms[i][5]}, {ms[i][6], ms[i][7], ms[i][8]}});
+		double sink = 0.0;
+		long t0 = System.nanoTime();
+		for(int i = 0; i < matrices; i++) {
+			EigenvalueDecomposition e = new EigenvalueDecomposition(m3[i & 1023]);
+			sink += e.getRealEigenvalues()[0] + e.getV().get(0, 0);
+		}
+		long iterative = System.nanoTime() - t0;
+		double[] values = new double[3], vectors = new double[9];
+		t0 = System.nanoTime();
+		for(int i = 0; i < matrices; i++) {
+			SymmetricEigen3.decompose(ms[i & 1023], values, vectors);
+			sink += values[0] + vectors[0];
+		}
+		long closed = System.nanoTime() - t0;
+		Point3f[] points = new Point3f[matrices];
+		double heading = 0.0;
+		for(int i = 0; i < matrices; i++) {
+			heading += random.nextGaussian() * 0.1;
+			points[i] = new Point3f((float)Math.sin(heading), (float)Math.cos(heading), i * 0.05f);
+		}
+		long[] pca = new long[2];
+		for(int form = 0; form < 2; form++) {
+			SlidingWindowCovariance window = new SlidingWindowCovariance(20);
+			ComputeVariance c = new ComputeVariance();
+			c.setClosedForm(form == 1);
+			t0 = System.nanoTime();
+			for(Point3f p : points) {
+				window.add(p);
+				if(window.isFull()) {
+					c.leastVariance(window);
+					sink += c.getEigvec3().x;
+				}
+			}
+			pca[form] = System.nanoTime() - t0;
+		}
+		if(report) {
+			System.out.printf("decompose: iterative %8.1f ns %10.0f/s, closed form %8.1f ns %10.0f/s (%5.1fx)%n",
+					(double)iterative / matrices, matrices * 1e9 / iterative, (double)closed / matrices, matrices * 1e9 / closed, (double)iterative / closed);
+			System.out.printf("leastVariance of a 20 point sliding window: iterative %8.1f ns/point, closed form %8.1f ns/point (%5.1fx) %s%n",
+					(double)pca[0] / matrices, (double)pca[1] / matrices, (double)pca[0] / pca[1], sink == 0.0 ? "" : " ");
+		}
+	}
+}
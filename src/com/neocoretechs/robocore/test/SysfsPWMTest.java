@@ -0,0 +1,320 @@
+package com.neocoretechs.robocore.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import com.neocoretechs.robocore.propulsion.HardwarePWM;
+import com.neocoretechs.robocore.propulsion.PWM;
+import com.neocoretechs.robocore.propulsion.PWMDevice;
+import com.neocoretechs.robocore.propulsion.SysfsPWMWriter;
+/**
+ * Check {@link SysfsPWMWriter} and {@link PWM} against a temporary directory laid out as /sys/class/pwm, with
+ * a thread standing in for udev that creates a channel's directory when its number is written to the chip's export.
+ * Pin 7 is exported on first use, pin 12 already exported, and pin 33 is added to pwmchip1 channel 1 with -DPWMPins.
+ * The values in the attribute files are checked after each call, unchanged values must not be written again, a duty
+ * cycle longer than the period must be refused, and duty cycles set from several threads at once must be coalesced
+ * without losing the last, nor the last be lost while another thread holds the channel to enable or invalidate it.
+ * PWM.freqDuty at an unchanged period must go through the coalescing duty cycle. The legacy pwm-ctrl attributes,
+ * a frequency in freq0, must take a duty cycle greater than the frequency. Then the time per duty cycle update is reported against a FileWriter per value.<p>
+ * java com.neocoretechs.robocore.test.SysfsPWMTest [updates]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class SysfsPWMTest {
+	static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		int updates = 50000;
+		if(args.length > 0)
+			updates = Integer.parseInt(args[0]);
+		Path root = Files.createTempDirectory("pwm");
+		System.setProperty("PWMRoot", root.toString());
+		System.setProperty("PWMPins", "33:1:1");
+		for(int chip : new int[] {0, 1, 4})
+			Files.write(Files.createDirectories(root.resolve("pwmchip"+chip)).resolve("export"), new byte[0]);
+		makeChannel(root.resolve("pwmchip4"), 0);
+		Thread udev = new Thread(() -> exporter(root), "udev");
+		udev.setDaemon(true);
+		udev.start();
+		try {
+			checkPin(root);
+			checkMappedPin(root);
+			checkCoalescing(root);
+			checkDrain(root);
+			checkLegacy(root);
+			for(int pass = 0; pass < 2; pass++) // first pass warms up
+				time(pass > 0, root, updates);
+		} finally {
+			PWMDevice.closeWriters();
+			try(Stream<Path> walk = Files.walk(root)) {
+				walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+			}
+		}
+		System.out.println("SysfsPWMTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static void makeChannel(Path chip, int channel) throws IOException {
+		Path dir = Files.createDirectories(chip.resolve("pwm"+channel));
+		for(String attr : new String[] {"period", "duty_cycle", "enable"})
+			Files.write(dir.resolve(attr), "0\n".getBytes());
+	}
+	/**
+	 * Watch the export files, creating the channel written to each as the kernel and udev would.
+	 */
+	static void exporter(Path root) {
+		try {
+			while(true) {
+				for(int chip : new int[] {0, 1, 4}) {
+					Path export = root.resolve("pwmchip"+chip).resolve("export");
+					List<String> lines = Files.readAllLines(export);
+					if(!lines.isEmpty() && !lines.get(0).isBlank()) {
+						Thread.sleep(20); // udev is not immediate
+						makeChannel(export.getParent(), Integer.parseInt(lines.get(0).trim()));
+						Files.write(export, new byte[0]);
+					}
+				}
+				Thread.sleep(5);
+			}
+		} catch (IOException | InterruptedException e) {}
+	}
+
+	static long read(Path attr) throws IOException {
+		return Long.parseLong(Files.readAllLines(attr).get(0).trim());
+	}
+
+	static void expect(Path dir, long period, long duty, long enable, String what) throws IOException {
+		long p = read(dir.resolve("period")), d = read(dir.resolve("duty_cycle")), e = read(dir.resolve("enable"));
+		if(p != period || d != duty || e != enable) {
+			System.out.printf("%s: %s period=%d duty=%d enable=%d expected %d %d %d%n", what, dir, p, d, e, period, duty, enable);
+			++failures;
+		}
+	}
+
+	static void checkPin(Path root) throws IOException {
+		Path dir = root.resolve("pwmchip0").resolve("pwm0");
+		if(Files.exists(dir)) {
+			System.out.println("pwmchip0/pwm0 exists before export");
+			++failures;
+		}
+		PWM pwm = new PWM(7);
+		expect(dir, 100000, 0, 0, "pin 7 initialized");
+		pwm.freqDuty(50000, 25000);
+		expect(dir, 50000, 25000, 1, "pin 7 freqDuty");
+		SysfsPWMWriter w = PWMDevice.getWriter(7);
+		long writes = w.getWrites();
+		pwm.freqDuty(50000, 25000);
+		if(w.getWrites() != writes) {
+			System.out.println("unchanged freqDuty wrote "+(w.getWrites() - writes)+" values");
+			++failures;
+		}
+		pwm.enable(false);
+		expect(dir, 50000, 25000, 0, "pin 7 disabled");
+		pwm.freqDuty(10000, 5000); // period shrinks below the duty cycle, duty cycle first
+		expect(dir, 10000, 5000, 1, "pin 7 shorter period");
+		try {
+			w.setPeriodDuty(10000, 20000);
+			System.out.println("duty cycle over the period accepted");
+			++failures;
+		} catch (IOException e) {}
+		try {
+			w.setDuty(20000);
+			System.out.println("duty cycle over the period written accepted");
+			++failures;
+		} catch (IOException e) {}
+		expect(dir, 10000, 5000, 1, "pin 7 after refused duty cycles");
+		// the static compatibility entry points share the writer
+		HardwarePWM.pwm1("40000", "30000");
+		expect(root.resolve("pwmchip4").resolve("pwm0"), 40000, 30000, 1, "pin 12 pwm1");
+		HardwarePWM.disable1();
+		expect(root.resolve("pwmchip4").resolve("pwm0"), 40000, 30000, 0, "pin 12 disable1");
+		System.out.println(pwm);
+	}
+
+	static void checkMappedPin(Path root) throws IOException {
+		PWM pwm = new PWM(33);
+		pwm.freqDuty(20000, 1000);
+		expect(root.resolve("pwmchip1").resolve("pwm1"), 20000, 1000, 1, "pin 33");
+		if(PWMDevice.getWriter(1, 1) != PWMDevice.getWriter(33)) {
+			System.out.println("chip 1 channel 1 and pin 33 have different writers");
+			++failures;
+		}
+		try {
+			new PWM(8);
+			System.out.println("pin 8 accepted");
+			++failures;
+		} catch (IOException e) {}
+		System.out.println(pwm);
+	}
+
+	static void checkCoalescing(Path root) throws Exception {
+		SysfsPWMWriter w = PWMDevice.getWriter(12);
+		w.setPeriodDuty(1000000, 0);
+		long writes = w.getWrites(), skipped = w.getSkipped(), coalesced = w.getCoalesced();
+		int threads = 4, each = 20000;
+		long[] last = new long[threads];
+		AtomicLong errors = new AtomicLong();
+		Thread[] t = new Thread[threads];
+		for(int i = 0; i < threads; i++) {
+			final int id = i;
+			t[i] = new Thread(() -> {
+				long d = 0;
+				try {
+					for(int j = 0; j < each; j++) {
+						d = id * 100000 + j;
+						w.setDuty(d);
+					}
+				} catch (IOException e) {
+					errors.incrementAndGet();
+				}
+				last[id] = d;
+			});
+		}
+		for(Thread th : t)
+			th.start();
+		for(Thread th : t)
+			th.join();
+		long duty = read(root.resolve("pwmchip4").resolve("pwm0").resolve("duty_cycle"));
+		boolean isLast = false;
+		for(long d : last)
+			isLast |= d == duty;
+		long made = w.getWrites() - writes, merged = w.getCoalesced() - coalesced;
+		System.out.printf("%d threads %d duty cycles: %d written, %d skipped, %d coalesced, final %d%n",
+				threads, threads * each, made, w.getSkipped() - skipped, merged, duty);
+		if(errors.get() != 0 || !isLast || duty != w.getDuty()) {
+			System.out.println("coalesced duty cycle "+duty+" is not the last of a thread, writer has "+w.getDuty());
+			++failures;
+		}
+		if(made + merged + (w.getSkipped() - skipped) < threads * each) {
+			System.out.println("duty cycles unaccounted for");
+			++failures;
+		}
+	}
+
+	/**
+	 * A duty cycle set while another thread holds the channel for enable or invalidate must be written when it lets go.
+	 */
+	static void checkDrain(Path root) throws Exception {
+		SysfsPWMWriter w = PWMDevice.getWriter(12);
+		w.setPeriodDuty(1000000, 0);
+		Path attr = root.resolve("pwmchip4").resolve("pwm0").resolve("duty_cycle");
+		int trials = 2000, lost = 0;
+		for(int trial = 0; trial < trials; trial++) {
+			AtomicBoolean stop = new AtomicBoolean();
+			AtomicLong errors = new AtomicLong();
+			Thread holder = new Thread(() -> {
+				try {
+					for(int i = 0; !stop.get(); i++) {
+						if((i & 1) == 0)
+							w.enable((i & 2) == 0);
+						else
+							w.invalidate();
+					}
+				} catch (IOException e) {
+					errors.incrementAndGet();
+				}
+			});
+			holder.start();
+			long last = 0;
+			for(int j = 1; j <= 50; j++) {
+				last = trial * 100 + j;
+				w.setDuty(last);
+			}
+			stop.set(true);
+			holder.join();
+			if(errors.get() != 0 || read(attr) != last)
+				++lost;
+		}
+		System.out.printf("%d duty cycles set against enable and invalidate, %d lost%n", trials, lost);
+		if(lost != 0) {
+			++failures;
+		}
+		// freqDuty at the period it has goes through setDuty, not waiting on the PWM
+		PWM pwm = new PWM(12);
+		pwm.freqDuty(50000, 1000);
+		CountDownLatch held = new CountDownLatch(1), done = new CountDownLatch(1);
+		Thread owner = new Thread(() -> {
+			synchronized(pwm) {
+				held.countDown();
+				try {
+					done.await();
+				} catch (InterruptedException e) {}
+			}
+		});
+		owner.start();
+		held.await();
+		Thread setter = new Thread(() -> {
+			try {
+				pwm.freqDuty(50000, 2000);
+				pwm.freqDuty(50000, 3000);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		});
+		setter.start();
+		setter.join(1000);
+		boolean waited = setter.isAlive();
+		done.countDown();
+		owner.join();
+		setter.join();
+		if(waited) {
+			System.out.println("duty cycle only freqDuty waited on the PWM");
+			++failures;
+		}
+		expect(root.resolve("pwmchip4").resolve("pwm0"), 50000, 3000, 1, "pin 12 duty cycle only");
+	}
+
+	/**
+	 * pwm-ctrl freq0 is a frequency in Hertz and duty0 a level of 1023, so a duty cycle above the frequency is valid.
+	 */
+	static void checkLegacy(Path root) throws IOException {
+		Path dir = Files.createDirectories(root.resolve("pwm-ctrl"));
+		for(String attr : new String[] {"freq0", "duty0", "enable0"})
+			Files.write(dir.resolve(attr), "0\n".getBytes());
+		try(SysfsPWMWriter w = new SysfsPWMWriter("pwm-ctrl 0", dir.resolve("freq0"), dir.resolve("duty0"), dir.resolve("enable0"), true)) {
+			w.setPeriodDuty(1000, 512);
+			w.setPeriodDuty(100, 1023);
+			w.setDuty(900);
+			w.enable(true);
+			if(read(dir.resolve("freq0")) != 100 || read(dir.resolve("duty0")) != 900 || read(dir.resolve("enable0")) != 1) {
+				System.out.printf("pwm-ctrl freq0=%d duty0=%d enable0=%d expected 100 900 1%n",
+						read(dir.resolve("freq0")), read(dir.resolve("duty0")), read(dir.resolve("enable0")));
+				++failures;
+			}
+		} catch (IOException e) {
+			System.out.println("pwm-ctrl refused a duty cycle over the frequency: "+e.getMessage());
+			++failures;
+		}
+	}
+
+	static void time(boolean report, Path root, int updates) throws IOException {
+		Path dir = root.resolve("pwmchip4").resolve("pwm0");
+		String duty = dir.resolve("duty_cycle").toString();
+		long start = System.nanoTime();
+		for(int i = 0; i < updates; i++)
+			HardwarePWM.writeSysfs(duty, String.valueOf(i % 1000));
+		long fileWriter = System.nanoTime() - start;
+		SysfsPWMWriter w = PWMDevice.getWriter(12);
+		w.invalidate();
+		start = System.nanoTime();
+		for(int i = 0; i < updates; i++)
+			w.setDuty(i % 1000);
+		long channel = System.nanoTime() - start;
+		start = System.nanoTime();
+		for(int i = 0; i < updates; i++)
+			w.setDuty(500);
+		long unchanged = System.nanoTime() - start;
+		if(report) {
+			System.out.printf("FileWriter per value      %8.1f ns/update%n", (double)fileWriter/updates);
+			System.out.printf("SysfsPWMWriter            %8.1f ns/update%n", (double)channel/updates);
+			System.out.printf("SysfsPWMWriter unchanged  %8.1f ns/update%n", (double)unchanged/updates);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package com.neocoretechs.robocore.test;
+
+import java.util.ArrayList;
+
+import com.neocoretechs.robocore.serialreader.MarlinspikeDataPort;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.ClockInterface;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.RealClock;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.VirtualClock;
+/**
+ * Run a sequence of dwells and analog acquisitions through the {@link MarlinspikeDataPort} emulator on a
+ * {@link VirtualClock}, checking that the clock advances by exactly the time the sequence asks for, that a second
+ * run gives the same responses and time, and that a short sequence on the {@link RealClock} gives the same responses.<p>
+ * java com.neocoretechs.robocore.test.VirtualClockTest [repetitions]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class VirtualClockTest {
+	// G4 P<millis> and S<seconds>, M802 P<pin> S<readings> M<micros per reading>
+	static final String[] sequence = { "G4 P1500", "M802 P0 S100 M250", "G4 S2", "M700", "M802 P1 S10 M10000", "G4 P1" };
+	static final long sequenceMicros = 1500000L + 100*250L + 2000000L + 10*10000L + 1000L;
+
+	public static void main(String[] args) throws Exception {
+		int repetitions = 100;
+		if(args.length > 0)
+			repetitions = Integer.parseInt(args[0]);
+		int failures = 0;
+		long start = System.nanoTime();
+		VirtualClock clock = new VirtualClock();
+		ArrayList<String> first = run(clock, repetitions);
+		long elapsed = System.nanoTime() - start;
+		long expected = sequenceMicros * repetitions;
+		if(clock.micros() != expected) {
+			System.out.println("Virtual time "+clock.micros()+"us, expected "+expected+"us");
+			++failures;
+		}
+		VirtualClock again = new VirtualClock();
+		ArrayList<String> second = run(again, repetitions);
+		if(!first.equals(second) || again.micros() != clock.micros()) {
+			System.out.println("Second run differs");
+			++failures;
+		}
+		// a clock past 2^31 ms, where a dwell deadline kept in an int wraps
+		long late = (1L << 31) * 1000L;
+		VirtualClock uptime = new VirtualClock(late);
+		run(uptime, 1);
+		if(uptime.micros() - late != sequenceMicros) {
+			System.out.println("Virtual time from "+late+"us took "+(uptime.micros() - late)+"us, expected "+sequenceMicros+"us");
+			++failures;
+		}
+		System.out.printf("virtual clock: %d commands emulating %.1f s in %.1f ms%n", repetitions * sequence.length, expected/1e6, elapsed/1e6);
+		// one pass in real time for comparison
+		start = System.nanoTime();
+		ArrayList<String> real = run(new RealClock(), 1);
+		elapsed = System.nanoTime() - start;
+		if(!real.equals(first.subList(0, real.size()))) {
+			System.out.println("Real clock responses differ");
+			++failures;
+		}
+		System.out.printf("real clock: %d commands emulating %.1f s in %.1f ms%n", sequence.length, sequenceMicros/1e6, elapsed/1e6);
+		System.out.println("VirtualClockTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static ArrayList<String> run(ClockInterface clock, int repetitions) throws Exception {
+		MarlinspikeDataPort port = new MarlinspikeDataPort();
+		port.setClock(clock);
+		ArrayList<String> responses = new ArrayList<String>();
+		for(int r = 0; r < repetitions; r++)
+			for(String cmd : sequence)
+				responses.addAll(port.sendCommand(cmd));
+		return responses;
+	}
+}
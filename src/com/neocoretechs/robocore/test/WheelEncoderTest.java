@@ -0,0 +1,263 @@
+package com.neocoretechs.robocore.test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.neocoretechs.robocore.serialreader.marlinspikeport.CounterInterruptService;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.GpioEdgeDispatcher;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.PCInterrupts;
+import com.neocoretechs.robocore.serialreader.marlinspikeport.WheelEncoderService;
+/**
+ * Check {@link WheelEncoderService}. Edges injected as fast as the simulated lines of {@link GpioEdgeDispatcherTest}
+ * take them, through the {@link GpioEdgeDispatcher} and {@link PCInterrupts}, must all be counted, with a rollover event
+ * every maxcount + 1 edges. Threads calling the encoder and a {@link CounterInterruptService} at once must lose no
+ * counts, while the counts a volatile int loses are reported. Rates estimated from edge timestamps with jitter must be
+ * within 1% by frequency and 2.5% by period at steady speeds, follow a ramp, and fall to 0 when the
+ * wheel stops. The tick target and overspeed events must be raised once each from the edge. The rollover stop of a motor
+ * controller must never come within a power command in progress on another thread, nor while the motors are stopped.<p>
+ * java com.neocoretechs.robocore.test.WheelEncoderTest [edges]
+ * @author Jonathan Groff (C) NeoCoreTechs 2026
+ *
+ */
+public class WheelEncoderTest {
+	static int failures = 0;
+	static volatile int racyCounter = 0;
+
+	public static void main(String[] args) throws Exception {
+		int edges = 200000;
+		if(args.length > 0)
+			edges = Integer.parseInt(args[0]);
+		checkDispatched(edges);
+		checkConcurrent(edges * 5);
+		checkSteady();
+		checkRampAndStop();
+		checkEvents();
+		checkControllerStop();
+		System.out.println("WheelEncoderTest "+(failures == 0 ? "passed" : "FAILED "+failures));
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	static void checkDispatched(int edges) throws Exception {
+		GpioEdgeDispatcherTest.SimulatedLines lines = new GpioEdgeDispatcherTest.SimulatedLines();
+		GpioEdgeDispatcher dispatcher = new GpioEdgeDispatcher(lines, 2, true);
+		GpioEdgeDispatcher.setDefault(dispatcher);
+		WheelEncoderService encoder = new WheelEncoderService(24, 99, 20, 100.0);
+		AtomicInteger rollovers = new AtomicInteger();
+		encoder.setListener((e, event, timestamp) -> {
+			if(event == WheelEncoderService.COUNT)
+				rollovers.incrementAndGet();
+		});
+		new PCInterrupts().attachInterrupt(24, encoder, 1, 3);
+		long start = System.nanoTime();
+		for(int i = 0; i < edges; i++) {
+			lines.inject(24, GpioEdgeDispatcher.RISING);
+			if(i % 256 == 255) { // within the queue the dispatcher holds for the handler
+				while(i - encoder.getTicks() > 512)
+					Thread.onSpinWait();
+			}
+		}
+		long deadline = System.currentTimeMillis() + 10000;
+		while(encoder.getTicks() < edges && System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("dispatched %d edges at %.0f edges/s: %d counted, %d rollovers, %d dropped, rate %.0f edges/s%n",
+				edges, edges * 1e9 / elapsed, encoder.getTicks(), rollovers.get(), dispatcher.getDropped(), encoder.getRate());
+		if(encoder.getTicks() != edges || rollovers.get() != edges / 100 || dispatcher.getDropped() != 0) {
+			System.out.println("dispatched edges lost");
+			++failures;
+		}
+		dispatcher.close();
+		GpioEdgeDispatcher.setDefault(null);
+	}
+
+	static void checkConcurrent(int edges) throws Exception {
+		int threads = 4;
+		WheelEncoderService encoder = new WheelEncoderService(25, 9, 20, 0);
+		CounterInterruptService counter = new CounterInterruptService(26, 9);
+		AtomicLong encoderRollovers = new AtomicLong(), counterRollovers = new AtomicLong();
+		encoder.setInterruptServiceHandler(() -> encoderRollovers.incrementAndGet());
+		counter.setInterruptServiceHandler(() -> counterRollovers.incrementAndGet());
+		racyCounter = 0;
+		Thread[] t = new Thread[threads];
+		for(int i = 0; i < threads; i++) {
+			t[i] = new Thread(() -> {
+				try {
+					for(int j = 0; j < edges / threads; j++) {
+						encoder.edge(25, GpioEdgeDispatcher.RISING, System.nanoTime());
+						counter.service();
+						racyCounter++;
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			});
+		}
+		for(Thread th : t)
+			th.start();
+		for(Thread th : t)
+			th.join();
+		long total = (long)threads * (edges / threads);
+		System.out.printf("%d threads x %d edges: encoder %d rollovers %d, counter rollovers %d, volatile int %d lost%n",
+				threads, edges / threads, encoder.getTicks(), encoderRollovers.get(), counterRollovers.get(), total - racyCounter);
+		if(encoder.getTicks() != total || encoderRollovers.get() != total / 10 || counterRollovers.get() != total / 10) {
+			System.out.println("concurrent counts lost");
+			++failures;
+		}
+	}
+	/**
+	 * Feed edges at a steady rate with 2% timing jitter for 2 seconds and compare the estimate at the end.
+	 */
+	static void checkSteady() throws Exception {
+		Random r = new Random(7);
+		int ticksPerRev = 20;
+		for(double rpm : new double[] {3, 30, 60, 300, 3000, 30000}) {
+			WheelEncoderService encoder = new WheelEncoderService(27, 1000000, ticksPerRev, 100.0);
+			double rate = rpm * ticksPerRev / 60.0;
+			long period = (long)(1e9 / rate);
+			long t = 1000000000L, end = t + 2000000000L;
+			double worst = 0;
+			while(t < end) {
+				encoder.edge(27, GpioEdgeDispatcher.RISING, t + (long)(r.nextGaussian() * 0.02 * period));
+				t += period;
+				if(t > end - 500000000L) { // settled
+					double est = encoder.getRPM(t - period / 2);
+					worst = Math.max(worst, Math.abs(est - rpm) / rpm);
+				}
+			}
+			System.out.printf("steady %7.0f rpm: estimate %9.2f rpm, worst error %.3f%%, %s%n", rpm, encoder.getRPM(t - period / 2),
+					worst * 100, encoder.isFrequencyMode() ? "frequency" : "period");
+			double tolerance = encoder.isFrequencyMode() ? 0.01 : 0.025; // the jitter of a few intervals by period
+			if(worst > tolerance) {
+				System.out.println("steady estimate off at "+rpm+" rpm");
+				++failures;
+			}
+			if(encoder.isFrequencyMode() != (rate * 0.1 >= 16)) {
+				System.out.println("measurement by "+(encoder.isFrequencyMode() ? "frequency" : "period")+" at "+rate+" edges/s");
+				++failures;
+			}
+		}
+	}
+	/**
+	 * Ramp from 60 to 600 rpm over a second, then stop dead.
+	 */
+	static void checkRampAndStop() throws Exception {
+		int ticksPerRev = 20;
+		WheelEncoderService encoder = new WheelEncoderService(28, 1000000, ticksPerRev, 100.0);
+		encoder.setEstimation(4, 100, 500, 20);
+		long t = 0L;
+		double worst = 0;
+		for(double s = 0; s < 1.0; ) {
+			double rpm = 60 + 540 * s;
+			long period = (long)(60e9 / (rpm * ticksPerRev));
+			t += period;
+			s += period / 1e9;
+			encoder.edge(28, GpioEdgeDispatcher.RISING, t);
+			if(s > 0.2)
+				worst = Math.max(worst, Math.abs(encoder.getRPM(t) - rpm) / rpm);
+		}
+		long last = t;
+		double before = encoder.getRPM(t);
+		double at100 = encoder.getRPM(last + 100000000L), at400 = encoder.getRPM(last + 400000000L), at600 = encoder.getRPM(last + 600000000L);
+		System.out.printf("ramp 60-600 rpm worst lag %.1f%%, stopped: %.1f rpm, 100ms %.1f, 400ms %.1f, 600ms %.1f%n",
+				worst * 100, before, at100, at400, at600);
+		if(worst > 0.15 || !(at100 < before / 5 && at400 < at100 && at600 == 0.0)) {
+			System.out.println("ramp or stop not followed");
+			++failures;
+		}
+	}
+
+	static void checkEvents() throws Exception {
+		WheelEncoderService encoder = new WheelEncoderService(29, 1000000, 20, 100.0);
+		int[] events = new int[3];
+		encoder.setListener((e, event, timestamp) -> events[event]++);
+		encoder.setTarget(100);
+		encoder.setSpeedLimit(120); // 40 edges/s
+		long t = 0L;
+		for(int i = 0; i < 200; i++) // 20 edges/s
+			encoder.edge(29, GpioEdgeDispatcher.RISING, t += 50000000L);
+		for(int i = 0; i < 200; i++) // 100 edges/s
+			encoder.edge(29, GpioEdgeDispatcher.RISING, t += 10000000L);
+		for(int i = 0; i < 200; i++) // 38 edges/s, within 90% of the limit
+			encoder.edge(29, GpioEdgeDispatcher.RISING, t += 26000000L);
+		int overAtNear = events[WheelEncoderService.OVERSPEED];
+		for(int i = 0; i < 200; i++) // 20 edges/s then 100 again
+			encoder.edge(29, GpioEdgeDispatcher.RISING, t += 50000000L);
+		for(int i = 0; i < 200; i++)
+			encoder.edge(29, GpioEdgeDispatcher.RISING, t += 10000000L);
+		encoder.setDirection(-1);
+		encoder.setTarget(900);
+		for(int i = 0; i < 200; i++)
+			encoder.edge(29, GpioEdgeDispatcher.RISING, t += 50000000L);
+		System.out.printf("events: target %d overspeed %d, position %d, rate %.1f edges/s%n", events[WheelEncoderService.TARGET],
+				events[WheelEncoderService.OVERSPEED], encoder.getPosition(), encoder.getRate(t));
+		if(events[WheelEncoderService.TARGET] != 2 || overAtNear != 1 || events[WheelEncoderService.OVERSPEED] != 2
+				|| encoder.getPosition() != 800 || encoder.getRate(t) >= 0) {
+			System.out.println("events not raised once each");
+			++failures;
+		}
+	}
+
+	static void checkControllerStop() throws Exception {
+		StopMotorControl control = new StopMotorControl();
+		WheelEncoderService encoder = control.encoder(1, 30);
+		int commands = 2000;
+		Thread edges = new Thread(() -> {
+			long t = 0L;
+			while(!Thread.currentThread().isInterrupted()) {
+				try {
+					encoder.edge(30, GpioEdgeDispatcher.RISING, t += 1000000L);
+				} catch (java.io.IOException e) {
+					return;
+				}
+				Thread.yield();
+			}
+		});
+		edges.start();
+		for(int i = 0; i < commands; i++)
+			control.commandMotorPower(1, 500);
+		edges.interrupt();
+		edges.join();
+		int stopsRunning = control.stops;
+		control.resetSpeeds();
+		for(int i = 0; i < 100; i++)
+			encoder.edge(30, GpioEdgeDispatcher.RISING, i * 1000000L);
+		System.out.printf("controller: %d commands, %d rollover stops, %d within a command, %d stopped%n",
+				commands, stopsRunning, control.overlapped, control.stops - stopsRunning);
+		if(stopsRunning == 0 || control.overlapped != 0 || control.stops != stopsRunning) {
+			System.out.println("rollover stop not serialized with the commands");
+			++failures;
+		}
+	}
+	/**
+	 * A controller whose power command holds it as the drivers do, and takes a while, and whose stop does not, so
+	 * only the hold of the rollover listener keeps the stop out of a command.
+	 */
+	static class StopMotorControl extends MultiBoardHarness.ModelMotorControl {
+		volatile boolean commanding = false;
+		int stops = 0, overlapped = 0;
+		WheelEncoderService encoder(int channel, int pin) {
+			setDuration(channel, 1);
+			wheelEncoderService[channel-1] = createEncoderService(channel, pin);
+			return (WheelEncoderService)wheelEncoderService[channel-1];
+		}
+		@Override
+		public synchronized int commandMotorPower(int... deviceLevel) {
+			commanding = true;
+			motorSpeed[deviceLevel[0]-1] = deviceLevel[1];
+			LockSupport.parkNanos(100000L);
+			super.commandMotorPower(deviceLevel);
+			commanding = false;
+			return 0;
+		}
+		@Override
+		public int commandEmergencyStop(int status) {
+			if(commanding)
+				++overlapped;
+			++stops;
+			resetSpeeds();
+			return super.commandEmergencyStop(status);
+		}
+	}
+}